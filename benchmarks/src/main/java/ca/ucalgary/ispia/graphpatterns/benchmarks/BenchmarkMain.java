@@ -0,0 +1,30 @@
+package ca.ucalgary.ispia.graphpatterns.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the EngineBenchmark with the GC profiler (allocation rate per engine and suite) and writes the results to
+ * benchmark-results.csv. The arguments are passed to JMH (e.g. "-p suite=1 -p engine=FCLBJ" to run a subset).
+ * @author szrrizvi
+ *
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		Options opts = new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(EngineBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.CSV)
+				.result("benchmark-results.csv")
+				.build();
+		new Runner(opts).run();
+	}
+}
@@ -0,0 +1,272 @@
+package ca.ucalgary.ispia.graphpatterns.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ca.ucalgary.ispia.graphpatterns.gpchecker.GPChecker;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.GPCheckerFC;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.GPCheckerFCCBJ;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.GPCheckerFCLBJ;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.AttrBasedStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.ColumnarConstraintsChecker;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.ConstraintsChecker;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.DBAccess;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.DSAccess;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.IndexedAttrStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.LeastCandidates;
+import ca.ucalgary.ispia.graphpatterns.graph.AttributeStore;
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.DataSet;
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.tests.Killable;
+import ca.ucalgary.ispia.graphpatterns.util.BulkImporter;
+
+/**
+ * JMH benchmarks for the GPChecker engines. One operation evaluates every graph pattern of a test suite
+ * (performance-tests/testCase-N.ser), so the reported throughput is in suites/s and the average time in s/suite.
+ *
+ * The engines run against the same deterministic synthetic graph (see SyntheticGraph), either in memory (DSAccess over
+ * a CSRGraph, with the ColumnarConstraintsChecker and IndexedAttrStart) or on an embedded Neo4j database created from
+ * it (DBAccess, with the ConstraintsChecker and AttrBasedStart). GPCheckerFC only supports Neo4j.
+ *
+ * System properties: suiteDir (default "performance-tests") and timeout (per graph pattern in ms, default 60000).
+ * Killed patterns count as evaluated. Run from the project root; see BenchmarkMain for the allocation rates.
+ * @author szrrizvi
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class EngineBenchmark {
+
+	private static final long SEED = 274185;	//The seed for the synthetic graph
+
+	/**
+	 * Creates the engine for a graph pattern.
+	 */
+	interface EngineFactory {
+		GPChecker<?, ?> create(GPHolder gph);
+	}
+
+	/**
+	 * The state shared by the backends: the suite, and the synthetic graph built from all of the suites.
+	 * Annotated with @State (like its subclasses) since JMH only accepts @Param fields in @State classes.
+	 */
+	@State(Scope.Benchmark)
+	public abstract static class Backend {
+
+		@Param({"1", "2", "3", "4", "5", "6"})
+		public String suite;
+
+		@Param({"82168"})
+		public int numNodes;
+
+		@Param({"12"})
+		public int avgDegree;
+
+		List<GPHolder> tests;
+		DataSet dataSet;
+		ScheduledExecutorService killer;
+		long timeout;
+
+		void load() throws IOException {
+			String dir = System.getProperty("suiteDir", "performance-tests");
+			timeout = Long.getLong("timeout", 60000l);
+			killer = Executors.newSingleThreadScheduledExecutor();
+
+			//All of the suites, so that the graph is the same for each suite
+			List<GPHolder> all = new ArrayList<GPHolder>();
+			File[] files = new File(dir).listFiles();
+			if (files == null){
+				throw new IOException("Could not list " + dir);
+			}
+			Arrays.sort(files);
+			for (File file : files){
+				if (file.getName().startsWith("testCase-") && file.getName().endsWith(".ser")){
+					all.addAll(SyntheticGraph.loadSuite(file.getPath()));
+				}
+			}
+			tests = SyntheticGraph.loadSuite(dir + "/testCase-" + suite + ".ser");
+			dataSet = SyntheticGraph.generate(all, numNodes, avgDegree, SEED);
+		}
+
+		void shutdownKiller(){
+			killer.shutdownNow();
+		}
+
+		/**
+		 * Evaluates all of the tests, killing each engine after the timeout.
+		 * @return The total number of results found (getAllRes; GPCheckerFCLBJ doesn't collect the results)
+		 */
+		long runSuite(EngineFactory factory){
+			long total = 0;
+			for (GPHolder gph : tests){
+				final GPChecker<?, ?> engine = factory.create(gph);
+				ScheduledFuture<?> kill = killer.schedule(new Runnable() {
+					@Override
+					public void run() {
+						((Killable) engine).kill();
+					}
+				}, timeout, TimeUnit.MILLISECONDS);
+
+				engine.check();
+				kill.cancel(false);
+				total += engine.getAllRes();
+			}
+			return total;
+		}
+	}
+
+	/**
+	 * In-memory evaluation.
+	 */
+	@State(Scope.Benchmark)
+	public static class Memory extends Backend {
+
+		@Param({"FCCBJ", "FCLBJ"})
+		public String engine;
+
+		//The minimum degree of the hub neighbourhoods (see CSRGraph.buildHubIndex); 0 for no hub index
+		@Param({"0", "16"})
+		public int hubDegree;
+
+		EngineFactory factory;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			load();
+			final CSRGraph graph = CSRGraph.fromDataSet(dataSet, hubDegree);
+			final AttributeStore store = AttributeStore.build(dataSet);
+			final IndexedAttrStart altStart = new IndexedAttrStart(store);
+			dataSet = null;
+
+			final boolean lbj = engine.equals("FCLBJ");
+			factory = new EngineFactory() {
+				@Override
+				public GPChecker<?, ?> create(GPHolder gph){
+					ColumnarConstraintsChecker ce = new ColumnarConstraintsChecker(gph, store);
+					DSAccess access = new DSAccess(graph, ce);
+					LeastCandidates<MyNode> ordering = new LeastCandidates<MyNode>(gph.getGp());
+					if (lbj){
+						return new GPCheckerFCLBJ<MyNode, HasAttributes>(gph, ce, access, ordering, altStart);
+					}
+					return new GPCheckerFCCBJ<MyNode, HasAttributes>(gph, ce, access, ordering, altStart);
+				}
+			};
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown(){
+			shutdownKiller();
+		}
+	}
+
+	/**
+	 * Evaluation on an embedded Neo4j database, created in a temporary directory.
+	 */
+	@State(Scope.Benchmark)
+	public static class Neo4j extends Backend {
+
+		@Param({"FC", "FCCBJ", "FCLBJ"})
+		public String engine;
+
+		EngineFactory factory;
+		File storeDir;
+		GraphDatabaseService graphDb;
+
+		@Setup(Level.Trial)
+		public void setup() throws IOException {
+			load();
+			storeDir = File.createTempFile("arebac-bench", "");
+			if (!storeDir.delete() || !storeDir.mkdir()){
+				throw new IOException("Could not create " + storeDir);
+			}
+			if (BulkImporter.importDataSet(storeDir.getPath(), dataSet) == -1){
+				throw new IOException("Could not import the synthetic graph");
+			}
+			dataSet = null;
+
+			graphDb = new GraphDatabaseFactory().newEmbeddedDatabase(storeDir);
+			try (Transaction tx = graphDb.beginTx()){
+				graphDb.schema().awaitIndexesOnline(10, TimeUnit.MINUTES);
+				tx.success();
+			}
+
+			final GraphDatabaseService db = graphDb;
+			final String name = engine;
+			factory = new EngineFactory() {
+				@Override
+				public GPChecker<?, ?> create(GPHolder gph){
+					if (name.equals("FC")){
+						return new GPCheckerFC(db, gph);
+					}
+					ConstraintsChecker ce = new ConstraintsChecker(gph, db);
+					DBAccess access = new DBAccess(db, ce);
+					LeastCandidates<Node> ordering = new LeastCandidates<Node>(gph.getGp());
+					AttrBasedStart altStart = new AttrBasedStart(db, ce);
+					if (name.equals("FCLBJ")){
+						return new GPCheckerFCLBJ<Node, Entity>(gph, ce, access, ordering, altStart);
+					}
+					return new GPCheckerFCCBJ<Node, Entity>(gph, ce, access, ordering, altStart);
+				}
+			};
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown(){
+			shutdownKiller();
+			graphDb.shutdown();
+			delete(storeDir);
+		}
+
+		private static void delete(File file){
+			File[] children = file.listFiles();
+			if (children != null){
+				for (File child : children){
+					delete(child);
+				}
+			}
+			file.delete();
+		}
+	}
+
+	@Benchmark
+	public long memory(Memory state){
+		return state.runSuite(state.factory);
+	}
+
+	@Benchmark
+	public long neo4j(Neo4j state){
+		return state.runSuite(state.factory);
+	}
+}
@@ -0,0 +1,209 @@
+package ca.ucalgary.ispia.graphpatterns.benchmarks;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import ca.ucalgary.ispia.graphpatterns.graph.DataSet;
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+import ca.ucalgary.ispia.graphpatterns.util.GPHolderIO;
+
+/**
+ * Builds the deterministic synthetic graph used by the benchmarks, and loads the test suites.
+ *
+ * The graph has numNodes nodes (ids 0 .. numNodes - 1). First, an instance of each given graph pattern is planted: the
+ * fixed nodes are mapped to the nodes with the same id, the others to random nodes, and the nodes and relationships get
+ * the required attribute values (the first pattern wins on conflicts, so later instances may be incomplete). Then
+ * numNodes * avgDegree relationships are added between uniformly random nodes, with uniformly random RelTypes. The
+ * remaining attribute values are drawn from the values required by the patterns (per attribute), so the attribute
+ * requirements have roughly uniform selectivity. The same seed and patterns (in the same order) always produce the
+ * same graph.
+ * @author szrrizvi
+ *
+ */
+public class SyntheticGraph {
+
+	/**
+	 * Generates the graph.
+	 * @param patterns The graph patterns to plant, also used for the attribute values
+	 * @param numNodes The number of nodes
+	 * @param avgDegree The average out degree
+	 * @param seed The seed for the PRNG
+	 * @return The dataset
+	 */
+	public static DataSet generate(Collection<GPHolder> patterns, int numNodes, int avgDegree, long seed){
+		Random random = new Random(seed);
+
+		//Collect the required values per attribute (sorted, so the pools don't depend on the hash order)
+		Map<String, Set<String>> nodeVals = new TreeMap<String, Set<String>>();
+		Map<String, Set<String>> relVals = new TreeMap<String, Set<String>>();
+		for (GPHolder gph : patterns){
+			for (MyNode node : gph.getGp().getNodes()){
+				addValues(nodeVals, node.getAttributes());
+			}
+			for (MyRelationship rel : gph.getGp().getAllRelationships()){
+				addValues(relVals, rel.getAttributes());
+			}
+		}
+		//The id is the node id
+		nodeVals.remove("id");
+		Map<String, String[]> nodePools = toPools(nodeVals);
+		Map<String, String[]> relPools = toPools(relVals);
+
+		DataSet dataSet = new DataSet();
+		MyNode[] nodes = new MyNode[numNodes];
+		for (int id = 0; id < numNodes; id++){
+			nodes[id] = new MyNode(id, "PERSON");
+			dataSet.addNode(nodes[id]);
+		}
+
+		//Plant an instance of each pattern
+		int relId = 0;
+		for (GPHolder gph : patterns){
+			Map<MyNode, MyNode> embedding = embed(gph, nodes, random);
+			if (embedding == null){
+				continue;
+			}
+			for (Map.Entry<MyNode, MyNode> entry : embedding.entrySet()){
+				for (Map.Entry<String, String> attr : entry.getKey().getAttributes().entrySet()){
+					if (!attr.getKey().equals("id")){
+						entry.getValue().addAttribute(attr.getKey(), attr.getValue());
+					}
+				}
+			}
+			for (MyRelationship rel : gph.getGp().getAllRelationships()){
+				MyRelationship planted = new MyRelationship(embedding.get(rel.getSource()), embedding.get(rel.getTarget()), rel.getIdentifier(), relId++);
+				for (Map.Entry<String, String> attr : rel.getAttributes().entrySet()){
+					planted.addAttribute(attr.getKey(), attr.getValue());
+				}
+				fill(planted, relPools, random);
+				dataSet.addRelationship(planted);
+			}
+		}
+
+		//The remaining attribute values
+		for (MyNode node : nodes){
+			fill(node, nodePools, random);
+		}
+
+		//The random relationships
+		RelType[] types = RelType.values();
+		long numRels = (long) numNodes * avgDegree;
+		for (long count = 0; count < numRels; count++){
+			int src = random.nextInt(numNodes);
+			int tgt = random.nextInt(numNodes);
+			if (src == tgt){
+				continue;
+			}
+			MyRelationship rel = new MyRelationship(nodes[src], nodes[tgt], types[random.nextInt(types.length)], relId++);
+			fill(rel, relPools, random);
+			dataSet.addRelationship(rel);
+		}
+
+		return dataSet;
+	}
+
+	/**
+	 * Maps the nodes of the pattern to distinct nodes of the graph: the fixed nodes to the node with the same id, and the
+	 * others to random nodes.
+	 * @return The mapping, or null if a fixed id is not in the graph.
+	 */
+	private static Map<MyNode, MyNode> embed(GPHolder gph, MyNode[] nodes, Random random){
+		Map<MyNode, MyNode> embedding = new HashMap<MyNode, MyNode>();
+		Set<MyNode> used = new HashSet<MyNode>();
+		List<MyNode> free = new ArrayList<MyNode>();
+		for (MyNode node : gph.getGp().getNodes()){
+			String id = node.getAttribute("id");
+			if (id == null){
+				free.add(node);
+				continue;
+			}
+			int idx = Integer.parseInt(id);
+			if (idx < 0 || idx >= nodes.length || !used.add(nodes[idx])){
+				return null;
+			}
+			embedding.put(node, nodes[idx]);
+		}
+		if (free.size() > nodes.length - used.size()){
+			return null;
+		}
+		for (MyNode node : free){
+			MyNode target = nodes[random.nextInt(nodes.length)];
+			while (!used.add(target)){
+				target = nodes[random.nextInt(nodes.length)];
+			}
+			embedding.put(node, target);
+		}
+		return embedding;
+	}
+
+	/**
+	 * Assigns a random value from the pool for each attribute (the existing values are kept).
+	 */
+	private static void fill(HasAttributes obj, Map<String, String[]> pools, Random random){
+		for (Map.Entry<String, String[]> entry : pools.entrySet()){
+			String[] pool = entry.getValue();
+			obj.addAttribute(entry.getKey(), pool[random.nextInt(pool.length)]);
+		}
+	}
+
+	private static void addValues(Map<String, Set<String>> vals, Map<String, String> attrs){
+		for (Map.Entry<String, String> entry : attrs.entrySet()){
+			Set<String> set = vals.get(entry.getKey());
+			if (set == null){
+				set = new TreeSet<String>();
+				vals.put(entry.getKey(), set);
+			}
+			set.add(entry.getValue());
+		}
+	}
+
+	private static Map<String, String[]> toPools(Map<String, Set<String>> vals){
+		Map<String, String[]> pools = new TreeMap<String, String[]>();
+		for (Map.Entry<String, Set<String>> entry : vals.entrySet()){
+			pools.put(entry.getKey(), entry.getValue().toArray(new String[entry.getValue().size()]));
+		}
+		return pools;
+	}
+
+	/**
+	 * Loads the given test suite. Files ending with ".gph" are read with GPHolderIO, the others are deserialized
+	 * (List&lt;GPHolder&gt;, as written by TestGeneration).
+	 * @param fileName The suite file
+	 * @return The graph patterns
+	 * @throws IOException If the suite could not be read
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<GPHolder> loadSuite(String fileName) throws IOException {
+		if (fileName.endsWith(".gph")){
+			List<GPHolder> tests = GPHolderIO.readAll(fileName);
+			if (tests == null){
+				throw new IOException("Could not read " + fileName);
+			}
+			return tests;
+		}
+
+		ObjectInputStream ois = new ObjectInputStream(new FileInputStream(fileName));
+		try {
+			return new ArrayList<GPHolder>((List<GPHolder>) ois.readObject());
+		} catch (ClassNotFoundException e){
+			throw new IOException(e);
+		} finally {
+			ois.close();
+		}
+	}
+}
@@ -24,11 +24,11 @@ public interface GPChecker<N, E> {
 	 * Internal debugging/analyzing method. Used for counting the number of database invokactions. 
 	 * @return The number of times the database has been invoked.
 	 */
-	public int getQueryCount();
+	public long getQueryCount();
 	
-	public int getMaxNeighbourhood();
+	public long getMaxNeighbourhood();
 	
-	public int getAllRes();
+	public long getAllRes();
 	
-	public int getSearchSpace();
+	public long getSearchSpace();
 }
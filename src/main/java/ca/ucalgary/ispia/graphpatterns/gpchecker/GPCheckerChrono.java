@@ -35,18 +35,18 @@ public class GPCheckerChrono implements GPChecker{
 	
 	private GraphDatabaseService graphDb;
 	private Set<Set<Pair<MyNode, Node>>> conflicts;
-	private int queryCount;
+	private long queryCount;
 	
 	
-	public int getMaxNeighbourhood(){
+	public long getMaxNeighbourhood(){
 		return 0;//neighbourhoodAccess.getMaxNeighbourhood();
 	}
 	
-	public int getAllRes(){
+	public long getAllRes(){
 		return 0;//this.allRes;
 	}
 	
-	public int getSearchSpace(){
+	public long getSearchSpace(){
 		return 0;//this.searchSpace;
 	}
 	
@@ -59,7 +59,7 @@ public class GPCheckerChrono implements GPChecker{
 		queryCount= 0;
 	}
 	
-	public int getQueryCount(){
+	public long getQueryCount(){
 		return this.queryCount;
 	}
 	
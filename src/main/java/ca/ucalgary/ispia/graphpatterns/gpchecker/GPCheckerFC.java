@@ -16,6 +16,8 @@ import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
 
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
+import ca.ucalgary.ispia.graphpatterns.graph.CompiledPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
 import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
@@ -24,7 +26,6 @@ import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
 import ca.ucalgary.ispia.graphpatterns.tests.Killable;
 import ca.ucalgary.ispia.graphpatterns.util.AttributeTypes;
 import ca.ucalgary.ispia.graphpatterns.util.LabelEnum;
-import ca.ucalgary.ispia.graphpatterns.util.Pair;
 
 /**
  * This class provides the engine for checking if a given graph pattern
@@ -36,15 +37,16 @@ import ca.ucalgary.ispia.graphpatterns.util.Pair;
 public class GPCheckerFC implements GPChecker, Killable{
 
 	private GraphDatabaseService graphDb;			//The graph database interface
-	private int queryCount;							//The counter for transactions
+	private long queryCount;							//The counter for transactions
 	private GPHolder gph;							//The GPHolder
 	private GraphPattern gp;						//The graph pattern
+	private final CompiledPattern cp;					//The compiled graph pattern, used during the search
 	public List<Map<MyNode, Node>> queryResults;	//The list of results that satisfy the query
 
 	private boolean killed;							//The kill flag.
-	private int maxNeighbourhood;
-	private int allRes;
-	private int searchSpace;
+	private long maxNeighbourhood;
+	private long allRes;
+	private long searchSpace;
 
 	/**
 	 * Constructor to set and initialize the fields.
@@ -56,6 +58,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 		this.graphDb = graphDb;
 		this.gph = gph;
 		this.gp = gph.getGp();
+		this.cp = gph.compile();
 
 		//Initialize the results, the counter, and the kill flag
 		queryResults = new ArrayList<Map<MyNode, Node>>();
@@ -67,22 +70,22 @@ public class GPCheckerFC implements GPChecker, Killable{
 		searchSpace = 0;
 	}
 
-	public int getMaxNeighbourhood(){
+	public long getMaxNeighbourhood(){
 		return this.maxNeighbourhood;
 	}
 	
-	public int getAllRes(){
+	public long getAllRes(){
 		return this.allRes;
 	}
 	
-	public int getSearchSpace(){
+	public long getSearchSpace(){
 		return this.searchSpace;
 	}
 	
 	/**
 	 * @return the query count
 	 */
-	public int getQueryCount(){
+	public long getQueryCount(){
 		return this.queryCount;
 	}
 
@@ -151,7 +154,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 		Set<MyNode> alreadyFixed = assignments.keySet();
 
 		//Create the assignments for the remaining fixed nodes
-		List<MyNode> nodes = gp.getNodes();
+		List<MyNode> nodes = cp.getVars();
 		for (MyNode node : nodes){
 			//These nodes are not already fixed and have the id attribute
 			if (!alreadyFixed.contains(node) && node.hasAttribute("id")){
@@ -184,7 +187,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 
 		//Populate and filter the immediate neighbours of the fixed nodes
 		for (MyNode key : assignments.keySet()){
-			if (!populateFilter(assignments, candidates, key)){
+			if (!populateFilter(assignments, candidates, key, cp.indexOf(key))){
 				return null;
 			}
 		}
@@ -271,7 +274,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 	private boolean attrBasedPop(Map<MyNode, Set<Node>> candidates){
 		
 		//Get all nodes
-		List<MyNode> nodes = gp.getNodes();
+		List<MyNode> nodes = cp.getVars();
 		
 		//Iterate through all nodes
 		for (MyNode node : nodes){
@@ -340,17 +343,31 @@ public class GPCheckerFC implements GPChecker, Killable{
 	 * @param assignments
 	 * @param candidates
 	 * @param node
+	 * @param var The index of node in the compiled pattern
 	 */
-	private boolean populateFilter(Map<MyNode, Node> assignments, Map<MyNode, Set<Node>> candidates, MyNode node){
+	private boolean populateFilter(Map<MyNode, Node> assignments, Map<MyNode, Set<Node>> candidates, MyNode node, int var){
 
 		Node vertex = assignments.get(node);
-		//Get all of the relationships from GP that contain the given node.
-		List<MyRelationship> rels = gp.getAllRelationships(node);
 
-		//Iterate through the relationships
-		for (MyRelationship rel : rels){
+		//Forward propagate the mutual exclusion constraints, i.e. remove the vertex from the candidates of the
+		//unassigned mex partners now, rather than when they are picked.
+		int numMex = cp.getNumMex(var);
+		for (int m = 0; m < numMex; m++){
+			MyNode partner = cp.getVar(cp.getMexPartner(var, m));
+			Set<Node> temp = candidates.get(partner);
+			if (temp != null && !assignments.containsKey(partner) && temp.remove(vertex)){
+				if (temp.isEmpty()){
+					return false;
+				}
+			}
+		}
+
+		//Iterate through the relationships from GP that contain the given node.
+		int degree = cp.getDegree(var);
+		for (int k = 0; k < degree; k++){
+			MyRelationship rel = cp.getIncident(var, k);
 			//Record the other node (from the perspective of the given node)
-			MyNode otherNode = rel.getOther(node);
+			MyNode otherNode = cp.getVar(cp.getOther(var, k));
 
 			//If the other node is not already been assigned, then populate/filter it
 			if (!assignments.containsKey(otherNode)){
@@ -384,7 +401,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 
 
 		//If we have assigned every node, then we are done with this result set!
-		if (gp.getNodes().size() == assignments.keySet().size()){
+		if (cp.getNumVars() == assignments.size()){
 			allRes++;
 			//Add the assignments for the queryResults list
 			List<MyNode> resultSchema = gph.getResultSchema();
@@ -407,6 +424,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 		//Pick the next node to assign such that it is populated but not yet assigned 
 		MyNode nextNode = pickNextNode(assignments, candidates);
 		mexFilter(nextNode, candidates.get(nextNode), assignments);
+		int var = cp.indexOf(nextNode);
 		
 		//Choose a vertex for nextNode.
 		//According to our algorithm, each candidate for nextNode satisfies all of the constraints
@@ -434,7 +452,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 
 			candsClone.remove(nextNode);
 			assnClone.put(nextNode, vertex);
-			boolean validVertex = populateFilter(assnClone, candsClone, nextNode);
+			boolean validVertex = populateFilter(assnClone, candsClone, nextNode, var);
 
 			if (validVertex){
 				//If we didn't abandon this vertex, then we can recurse
@@ -464,7 +482,7 @@ public class GPCheckerFC implements GPChecker, Killable{
 	 */
 	private MyNode pickNextNode(Map<MyNode, Node> assignments, Map<MyNode, Set<Node>> candidates){
 
-		List<MyNode> allNodes = gp.getNodes();
+		List<MyNode> allNodes = cp.getVars();
 		// Find nodes such that they are populated but not yet assigned.
 		// Pick the node with the smallest candidates size
 		// Optimization idea: When a node is assigned, remove it from candidates. Thus,
@@ -544,19 +562,11 @@ public class GPCheckerFC implements GPChecker, Killable{
 	 */
 	
 	private void mexFilter(MyNode variable, Set<Node> candidates, Map<MyNode, Node> assignments){
-		//Get the mutual exclusion constraints containing the variable
-		List<Pair<MyNode, MyNode>> mexList = gph.getMexList(variable); 
+		//Get the mutual exclusion partners of the variable (indexed in gph)
+		List<MyNode> mexPartners = gph.getMexPartners(variable);
 
 
-		for (Pair<MyNode, MyNode> mex : mexList){
-			//For the constraint, get the other node
-			MyNode other = null;
-			if (mex.first.equals(variable)){
-				other = mex.second;
-			} else {
-				other = mex.first;
-			}
-
+		for (MyNode other : mexPartners){
 			//If the other node is populate
 			if (assignments.containsKey(other)){
 				//Remove 'node' from its candidates set 
@@ -573,54 +583,23 @@ public class GPCheckerFC implements GPChecker, Killable{
 	}
 
 	private boolean checkAttrs(HasAttributes source, Entity target){
-		//Prepare the list of source attribute requirements (if any)
-		Map<String, String> attrReqs = source.getAttributes();
-		List<String> attrNames = new ArrayList<String>();
-		attrNames.addAll(attrReqs.keySet());
+		//Get the compiled attribute requirements (if any)
+		AttrPredicate[] preds = source.getCompiledAttrs();
+		if (preds.length == 0){
+			return true;
+		}
 
 		//Check if the target satisfies all attribute requirements.
-		for (String attr : attrNames){
-
-			//Get the attribute/property from the target
-			Object val = null;
-			try (Transaction tx = graphDb.beginTx()){
-				val = target.getProperty(attr, null);
-				tx.success();
-			}
-
-			if (val != null){	//Ensure that the target has the attribute/property
-				if (AttributeTypes.isIntType(attr)){
-					//Compare the property, based on if its an int or a String
-					//If the values don't match, return false.
-					try{
-						int reqVal = Integer.parseInt(attrReqs.get(attr));
-						if (reqVal != (int) val){
-							return false;
-						}
-					} catch (NumberFormatException e){
-						String reqVal = attrReqs.get(attr);
-						if (!reqVal.equals(val)){
-							return false;
-						}
-					} catch (ClassCastException e){
-						String reqVal = attrReqs.get(attr);
-						if (!reqVal.equals(val)){
-							return false;
-						}
-					}
-
-				} else {
-					String reqVal = attrReqs.get(attr);
-					String tempVal = val+"";
-					if (!reqVal.equals(tempVal)){
-						return false;
-					}
+		try (Transaction tx = graphDb.beginTx()){
+			for (int idx = 0; idx < preds.length; idx++){
+				//Get the attribute/property from the target, and compare it.
+				//If the target did not have the required attribute/property, or the values don't match, return false
+				if (!preds[idx].test(target.getProperty(preds[idx].getKey(), null))){
+					tx.success();
+					return false;
 				}
-			} else {
-				//If the target did not have the required attribute/property, return false
-				return false;
 			}
-
+			tx.success();
 		}
 
 		//If the target satisfies all attribute requirements, return true
@@ -9,6 +9,7 @@ import java.util.Set;
 
 import ca.ucalgary.ispia.graphpatterns.gpchecker.GPChecker;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.DBAccess;
+import ca.ucalgary.ispia.graphpatterns.graph.CompiledPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
 import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
@@ -25,9 +26,10 @@ import ca.ucalgary.ispia.graphpatterns.tests.Killable;
 public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 
 	//private final GraphDatabaseService graphDb;			//The graph database interface
-	private int queryCount;							//The counter for transactions
+	private long queryCount;							//The number of NeighbourhoodAccess invocations
 	private final GPHolder gph;							//The GPHolder
 	private final GraphPattern gp;						//The graph pattern contained in gph
+	private final CompiledPattern cp;					//The compiled graph pattern, used during the search
 	public List<Map<MyNode, N>> queryResults;	//The list of results that satisfy the query
 
 	//The modularized components
@@ -40,8 +42,15 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 
 	private boolean killed;							//The kill flag.
 
-	private int allRes;
-	private int searchSpace;
+	//Probe the candidates (instead of expanding the neighbourhood) if degree > probe cost * PROBE_RATIO
+	private static final int PROBE_RATIO = 4;
+	//Domains larger than this are never probed
+	private static final int MAX_PROBE_DOMAIN = 1024;
+
+	private long allRes;
+	private long searchSpace;
+
+	private SearchProfile profile;					//The search profile; null if not profiled
 	
 	/**
 	 * Constructor to set and initialize the fields.
@@ -53,6 +62,7 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 		//this.graphDb = graphDb;
 		this.gph = gph;
 		this.gp = gph.getGp();
+		this.cp = gph.compile();
 
 		//Initialize the results, the counter, and the kill flag
 		queryResults = new ArrayList<Map<MyNode, N>>();
@@ -69,25 +79,41 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 		searchSpace = 0;
 	}
 	
-	public int getMaxNeighbourhood(){
+	public long getMaxNeighbourhood(){
 		return neighbourhoodAccess.getMaxNeighbourhood();
 	}
 	
-	public int getAllRes(){
+	public long getAllRes(){
 		return this.allRes;
 	}
 	
-	public int getSearchSpace(){
+	public long getSearchSpace(){
 		return this.searchSpace;
 	}
 
 	/**
 	 * @return the query count
 	 */
-	public int getQueryCount(){
+	public long getQueryCount(){
 		return this.queryCount;
 	}
 
+	/**
+	 * Sets the profile to record the next evaluation in (profile mode). The ConstraintsEvaluator and the
+	 * NeighbourhoodAccess should be wrapped by the same profile (see SearchProfile).
+	 * @param profile The search profile; null to disable profiling
+	 */
+	public void setProfile(SearchProfile profile){
+		this.profile = profile;
+	}
+
+	/**
+	 * @return The search profile; null if not profiled
+	 */
+	public SearchProfile getProfile(){
+		return this.profile;
+	}
+
 	//--------------------------//
 	// PUBLICLY EXPOSED METHODS
 	//--------------------------//
@@ -100,9 +126,12 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 		//Initialize the assignments and candidates maps
 		Map<MyNode, N> assignments = new HashMap<MyNode, N>();
 		Map<MyNode, Set<N>> candidates = new HashMap<MyNode, Set<N>>();
+		if (profile != null){
+			profile.begin(cp);
+		}
 
 		//Delegate to the overloaded method
-		return check_init(assignments, candidates);
+		return finish(check_init(assignments, candidates));
 
 	}
 
@@ -117,10 +146,14 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 		//Initialize the assignments and candidates maps
 		Map<MyNode, N> assignments = new HashMap<MyNode, N>();
 		Map<MyNode, Set<N>> candidates = new HashMap<MyNode, Set<N>>();
+		if (profile != null){
+			profile.begin(cp);
+		}
 
 		//For each node in the extraInfo map
 		for (MyNode node : extraInfo.keySet()){
 
+			queryCount++;
 			N vertex = neighbourhoodAccess.findNode(node, extraInfo.get(node));
 			if (vertex != null){
 				Set<N> temp = new HashSet<N>();
@@ -128,12 +161,24 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 				candidates.put(node, temp);
 			} else {
 				//System.out.println("HERE A");
-				return null;
+				return finish(null);
 			}
 
 		}
 		//Continue on by delegating to the overloaded method
-		return check_init(assignments, candidates);
+		return finish(check_init(assignments, candidates));
+	}
+
+	/**
+	 * Ends the profile (if profiling).
+	 * @param result The query result
+	 * @return The query result
+	 */
+	private List<Map<MyNode, N>> finish(List<Map<MyNode, N>> result){
+		if (profile != null){
+			profile.end();
+		}
+		return result;
 	}
 
 	//--------------------------//
@@ -148,11 +193,12 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 	private List<Map<MyNode, N>> check_init(Map<MyNode, N> assignments, Map<MyNode, Set<N>> candidates){
 
 		//Create the candidates for the remaining fixed nodes
-		List<MyNode> nodes = gp.getNodes();
+		List<MyNode> nodes = cp.getVars();
 		for (MyNode node : nodes){
 			//These nodes are not already fixed and have the id attribute
 			if (!candidates.keySet().contains(node) && node.hasAttribute("id")){
 
+				queryCount++;
 				N vertex = neighbourhoodAccess.findNode(node);
 				if (vertex != null){
 					Set<N> temp = new HashSet<N>();
@@ -171,7 +217,7 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 		//If the canadidates map is still empty, because there we no fixed nodes, then
 		//populate the candidates map based on the attributes.
 		if (candidates.isEmpty()){
-			if (!altStart.startPop(gp.getNodes(), candidates)){
+			if (!altStart.startPop(cp.getVars(), candidates)){
 				return null;
 			}
 		}
@@ -218,9 +264,12 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 		// BASE CASE
 
 		//If we have assigned every node, then we are done with this result set!
-		if (gp.getNodes().size() == assignments.keySet().size()){
+		if (cp.getNumVars() == assignments.size()){
 			allRes++;
 			count++;
+			if (profile != null){
+				profile.result();
+			}
 
 			//Add the assignments for the queryResults list
 			List<MyNode> resultSchema = gph.getResultSchema();
@@ -246,9 +295,17 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 
 		//Pick the next node to assign such that it is populated but not yet assigned 
 		MyNode nextNode = variableOrdering.pickNextNode(assignments, candidates);
+		int depth = assignments.size();
+		int var = cp.indexOf(nextNode);
+		if (profile != null){
+			profile.enter(depth, var);
+		}
 		if (consEval != null){
 			consEval.mexFilter(nextNode, candidates.get(nextNode), assignments, confIn);
 		}
+		if (profile != null){
+			profile.add(SearchProfile.Counter.CANDIDATES, depth, var, candidates.get(nextNode).size());
+		}
 
 		
 		//Dead-end flag
@@ -263,6 +320,9 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 		//(i.e. the relationships with its already assigned neighbours and attribute requirements).
 		for(N vertex : candidates.get(nextNode)){
 			searchSpace++;
+			if (profile != null){
+				profile.inc(SearchProfile.Counter.TRIED, depth, var);
+			}
 			
 			//Clone the candidates and assignments map
 			Map<MyNode, Set<N>> candsClone = new HashMap<MyNode, Set<N>>();
@@ -295,7 +355,16 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 			}
 
 			//Perform forward checking
-			boolean validVertex = populateFilter(assnClone, candsClone, nextNode, confOut, confInClone);
+			if (profile != null){
+				profile.startPopulate(depth, var);
+			}
+			boolean validVertex = populateFilter(assnClone, candsClone, nextNode, var, confOut, confInClone);
+			if (profile != null){
+				profile.endPopulate();
+				if (!validVertex){
+					profile.inc(SearchProfile.Counter.PRUNED, depth, var);
+				}
+			}
 
 			if (validVertex){
 				//Update deadEnd flag
@@ -332,6 +401,12 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 
 		if (deadEnd || bjFlag == count){
 			conflicts.addAll(deadEndJump(nextNode, confOut, confIn));
+			if (profile != null){
+				if (deadEnd){
+					profile.inc(SearchProfile.Counter.DEAD_ENDS, depth, var);
+				}
+				profile.backjump(depth, var, conflicts);
+			}
 			return conflicts;
 		} else {			
 			return new HashSet<MyNode>();
@@ -347,37 +422,70 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 	 * @param assignments
 	 * @param candidates
 	 * @param node
+	 * @param var The index of node in the compiled pattern
 	 * @param confOut
 	 * @param confIn
 	 * @return
 	 */
-	private boolean populateFilter(Map<MyNode, N> assignments, Map<MyNode, Set<N>> candidates, MyNode node, Set<MyNode> confOut, Map<MyNode, Set<MyNode>> confIn){
+	private boolean populateFilter(Map<MyNode, N> assignments, Map<MyNode, Set<N>> candidates, MyNode node, int var, Set<MyNode> confOut, Map<MyNode, Set<MyNode>> confIn){
 
 		N vertex = assignments.get(node);
-		//Get all of the relationships from GP that contain the given node.
-		List<MyRelationship> rels = gp.getAllRelationships(node);
 
-		//Iterate through the relationships
-		for (MyRelationship rel : rels){
+		//Forward propagate the mutual exclusion constraints, i.e. remove the vertex from the candidates of the
+		//unassigned mex partners now, rather than when they are picked.
+		int numMex = cp.getNumMex(var);
+		for (int m = 0; m < numMex; m++){
+			MyNode partner = cp.getVar(cp.getMexPartner(var, m));
+			Set<N> temp = candidates.get(partner);
+			if (temp != null && !assignments.containsKey(partner) && temp.remove(vertex)){
+				addConflictIn(node, partner, confIn);
+				if (temp.isEmpty()){
+					confOut.add(partner);
+					return false;
+				}
+			}
+		}
+
+		//Iterate through the relationships from GP that contain the given node.
+		int degree = cp.getDegree(var);
+		for (int k = 0; k < degree; k++){
+			MyRelationship rel = cp.getIncident(var, k);
 			//Record the other node (from the perspective of the given node)
-			MyNode otherNode = rel.getOther(node);
+			MyNode otherNode = cp.getVar(cp.getOther(var, k));
 
 			//If the other node is not already been assigned, then populate/filter it
 			if (!assignments.containsKey(otherNode)){
-				Set<N> neighbours = neighbourhoodAccess.findNeighbours(rel, node, vertex);
 
 				if (candidates.containsKey(otherNode)){
 					//If the candidates set exists, then filter it
 					Set<N> temp = candidates.get(otherNode);
 
-					//If there is filtering, then add the incoming conflict.
-					if (!neighbours.containsAll(temp)){
-						addConflictIn(node, otherNode, confIn);
-					}
+					if (shouldProbe(rel, node, vertex, temp)){
+						//Probe the (few) candidates instead of expanding the (large) neighbourhood
+						queryCount++;
+						Set<N> connected = neighbourhoodAccess.probeNeighbours(rel, node, vertex, temp);
+
+						//If there is filtering, then add the incoming conflict.
+						if (connected.size() != temp.size()){
+							addConflictIn(node, otherNode, confIn);
+						}
+
+						candidates.put(otherNode, connected);
+					} else {
+						queryCount++;
+						Set<N> neighbours = neighbourhoodAccess.findNeighbours(rel, node, vertex);
 
-					temp.retainAll(neighbours);				
+						//If there is filtering, then add the incoming conflict.
+						if (!neighbours.containsAll(temp)){
+							addConflictIn(node, otherNode, confIn);
+						}
+
+						temp.retainAll(neighbours);
+					}
 				} else {
 					//Else populate it
+					queryCount++;
+					Set<N> neighbours = neighbourhoodAccess.findNeighbours(rel, node, vertex);
 					Set<N> temp = new HashSet<N>();
 					temp.addAll(neighbours);
 					candidates.put(otherNode, temp);
@@ -404,6 +512,30 @@ public class GPCheckerFCCBJ<N, E> implements GPChecker<N, E>, Killable{
 	// HELPER METHODS
 	//--------------------------//	
 
+	/**
+	 * Decides whether the candidates for the other node in the relationship should be filtered by probing each 
+	 * candidate (rather than by expanding the neighbourhood of the vertex). Probing is chosen when the vertex's 
+	 * degree is much larger than the estimated cost of probing the candidates (e.g. the sum of their degrees, see
+	 * NeighbourhoodAccess.getProbeCost). The estimate is not counted in queryCount.
+	 * @param rel The relationship being checked.
+	 * @param node The assigned node.
+	 * @param vertex The vertex assigned to the node.
+	 * @param candidates The candidates for the other node.
+	 * @return True if the candidates should be probed, else false.
+	 */
+	private boolean shouldProbe(MyRelationship rel, MyNode node, N vertex, Set<N> candidates){
+		if (candidates.size() > MAX_PROBE_DOMAIN){
+			return false;
+		}
+		int degree = neighbourhoodAccess.getDegree(rel, node, vertex);
+		//The smallest cost that is too large for probing
+		long bound = (degree + PROBE_RATIO - 1) / PROBE_RATIO;
+		if (candidates.size() >= bound){
+			return false;
+		}
+		return neighbourhoodAccess.getProbeCost(rel, node, candidates, bound) < bound;
+	}
+
 	//-------------------------//
 	// KILLABLE FEATURES	
 	//-------------------------//
@@ -22,11 +22,47 @@ public interface NeighbourhoodAccess<N> {
 	 */
 	public abstract Set<N> findNeighbours(MyRelationship rel, MyNode node, N vertex);
 	
+	/**
+	 * Returns the subset of the given candidates that are connected to the vertex through the given relationship 
+	 * (i.e. the candidates that findNeighbours would return). Unlike findNeighbours, the vertex's neighbourhood is not 
+	 * expanded; instead each candidate is probed individually. This is cheaper when the candidates set is small
+	 * and the vertex has a large degree.
+	 * Assumption: The candidates already satisfy the attribute requirements of the other node in the relationship.
+	 * @param rel The target relationship. Used to specifying the relationship direction and the relationship attribute requirements.
+	 * @param node The gp node. Used for specifying the relationship direction.
+	 * @param vertex The vertex assigned to the node.
+	 * @param candidates The candidates for the other node in the relationship.
+	 * @return The set of candidates that are connected to the vertex.
+	 */
+	public abstract Set<N> probeNeighbours(MyRelationship rel, MyNode node, N vertex, Set<N> candidates);
+	
+	/**
+	 * Returns the number of relationships of the given vertex that match the type and direction of the given relationship.
+	 * Used for estimating the cost of findNeighbours.
+	 * @param rel The target relationship. 
+	 * @param node The gp node. Used for specifying the relationship direction.
+	 * @param vertex The vertex assigned to the node.
+	 * @return The degree of the vertex, for the relationship type and direction.
+	 */
+	public abstract int getDegree(MyRelationship rel, MyNode node, N vertex);
+	
+	/**
+	 * Estimates the cost of probeNeighbours for the given candidates, in the same unit as getDegree (the number
+	 * of relationships read), so it can be compared against the cost of findNeighbours. The estimate may stop 
+	 * counting once it reaches the given bound.
+	 * @param rel The target relationship.
+	 * @param node The gp node. Used for specifying the relationship direction.
+	 * @param candidates The candidates for the other node in the relationship.
+	 * @param bound The cost above which the exact value doesn't matter.
+	 * @return The estimated cost; at least bound if the cost is at least bound.
+	 */
+	public abstract long getProbeCost(MyRelationship rel, MyNode node, Set<N> candidates, long bound);
+	
 	public abstract N findNode(MyNode src);
 	
 	public abstract N findNode(MyNode src, Integer id);
 	
 	public abstract boolean relationshipExists (N src, N tgt, MyRelationship rel);
 	
-	public abstract int getMaxNeighbourhood();
+	public abstract long getMaxNeighbourhood();
 }
@@ -0,0 +1,411 @@
+package ca.ucalgary.ispia.graphpatterns.gpchecker.opt;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+import ca.ucalgary.ispia.graphpatterns.graph.CompiledPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+
+/**
+ * The search profile of a single query evaluation (profile mode). Records long counters, broken down by the search
+ * depth and by the variable assigned at that depth:
+ * the candidates of the variable, the candidates tried, the candidates rejected by forward checking, the dead-ends,
+ * the backjumps and their distances (in levels), the neighbourhood fetches and their sizes, and the time spent in
+ * findNeighbours/probeNeighbours, checkAttrs, mexFilter and the set operations of populateFilter.
+ *
+ * Usage: wrap the ConstraintsEvaluator (before creating the components that use it) and the NeighbourhoodAccess,
+ * create the engine with the wrapped components, set the profile (GPCheckerFCCBJ.setProfile or
+ * GPCheckerFCLBJ.setProfile), run the check, and print render(). A profile records a single evaluation.
+ *
+ * A backjump is recorded whenever a level returns a conflict set (after a dead-end, and for GPCheckerFCLBJ also after a
+ * live-end); its distance is the number of levels up to the deepest variable in the set, so the average distance shows
+ * how far the conflicts let the search jump (1 is a chronological backtrack).
+ *
+ * The work done before the search (e.g. by the AltStart, or finding the fixed nodes) is recorded under "Start".
+ * The checkAttrs time only covers the components that call it through the wrapped ConstraintsEvaluator (DBAccess and
+ * the AltStarts); DSAccess filters through ColumnarConstraintsChecker directly, so its attribute checks are part of the
+ * findNeighbours time. The findNeighbours time includes the nested checkAttrs time.
+ *
+ * Not thread-safe: the counters are plain fields, so the profiled evaluation (including the wrapped components) must
+ * run on a single thread. In particular, it cannot be used with ParallelAttrStart, which calls the wrapped
+ * ConstraintsEvaluator from its pool threads.
+ * @author szrrizvi
+ *
+ */
+public class SearchProfile {
+
+	/**
+	 * The recorded counters.
+	 */
+	public enum Counter {
+		CANDIDATES("candidates", false),
+		TRIED("tried", false),
+		PRUNED("pruned", false),
+		DEAD_ENDS("dead-ends", false),
+		BACKJUMPS("backjumps", false),
+		BACKJUMP_DISTANCE("jumped levels", false),
+		FETCHES("fetches", false),
+		FETCHED("fetched", false),
+		FIND_NEIGHBOURS("findNeighbours", true),
+		CHECK_ATTRS("checkAttrs", true),
+		MEX_FILTER("mexFilter", true),
+		SET_OPS("set ops", true);
+
+		private final String label;
+		private final boolean time;		//True if the counter is a time in ns
+
+		private Counter(String label, boolean time){
+			this.label = label;
+			this.time = time;
+		}
+	}
+
+	private CompiledPattern cp;			//The compiled pattern of the profiled query
+	private long[][][] counts;			//counts[counter][depth + 1][var]; depth -1 and var n are the start
+	private int depth;					//The current depth (-1 before the search)
+	private int var;					//The variable assigned at the current depth (n before the search)
+	private int[] varDepth;				//The depth at which each variable was last picked (-1 if never picked)
+	private long results;				//The number of results
+	private long start;					//The start time of the evaluation
+	private long time;					//The total time of the evaluation
+	private long populateStart;			//The start time of the current populateFilter call
+	private long fetchAtStart;			//The findNeighbours time when the current populateFilter call started
+	private long fetchTotal;			//The total findNeighbours time
+
+	/**
+	 * Starts the profile for the given pattern. Called by the engine when the evaluation starts.
+	 * @param cp The compiled graph pattern
+	 */
+	void begin(CompiledPattern cp){
+		this.cp = cp;
+		int n = cp.getNumVars();
+		counts = new long[Counter.values().length][n + 1][n + 1];
+		varDepth = new int[n];
+		Arrays.fill(varDepth, -1);
+		depth = -1;
+		var = n;
+		results = 0;
+		fetchTotal = 0;
+		time = 0;
+		start = System.nanoTime();
+	}
+
+	/**
+	 * Ends the profile. Called by the engine when the evaluation ends.
+	 */
+	void end(){
+		time = System.nanoTime() - start;
+	}
+
+	/**
+	 * Records that the given variable was picked at the given depth.
+	 * @param depth The depth (i.e. the number of assigned variables)
+	 * @param var The variable index
+	 */
+	void enter(int depth, int var){
+		this.depth = depth;
+		this.var = var;
+		varDepth[var] = depth;
+	}
+
+	/**
+	 * Increments the given counter for the given depth and variable.
+	 */
+	void inc(Counter counter, int depth, int var){
+		counts[counter.ordinal()][depth + 1][var]++;
+	}
+
+	/**
+	 * Adds the value to the given counter for the given depth and variable.
+	 */
+	void add(Counter counter, int depth, int var, long val){
+		counts[counter.ordinal()][depth + 1][var] += val;
+	}
+
+	/**
+	 * Records a result.
+	 */
+	void result(){
+		results++;
+	}
+
+	/**
+	 * Records the start of a populateFilter call for the given depth and variable.
+	 */
+	void startPopulate(int depth, int var){
+		this.depth = depth;
+		this.var = var;
+		fetchAtStart = fetchTotal;
+		populateStart = System.nanoTime();
+	}
+
+	/**
+	 * Records the end of the populateFilter call; its set operations time is its total time, without the
+	 * neighbourhood fetches.
+	 */
+	void endPopulate(){
+		long elapsed = System.nanoTime() - populateStart;
+		counts[Counter.SET_OPS.ordinal()][depth + 1][var] += elapsed - (fetchTotal - fetchAtStart);
+	}
+
+	/**
+	 * Records a backjump from the given depth and variable to the deepest of the given variables. The distance is the
+	 * number of levels jumped (1 for a chronological backtrack).
+	 * @param depth The depth of the dead-end
+	 * @param var The variable at the dead-end
+	 * @param jumpVars The variables to jump back to; if none of them was picked at a lower depth, the jump ends the search.
+	 */
+	void backjump(int depth, int var, Set<MyNode> jumpVars){
+		int target = -1;
+		for (MyNode node : jumpVars){
+			int v = cp.indexOf(node);
+			//Skip the variables that were never picked (e.g. the fixed nodes)
+			if (v != -1 && varDepth[v] != -1 && varDepth[v] < depth){
+				target = Math.max(target, varDepth[v]);
+			}
+		}
+		counts[Counter.BACKJUMPS.ordinal()][depth + 1][var]++;
+		counts[Counter.BACKJUMP_DISTANCE.ordinal()][depth + 1][var] += depth - target;
+	}
+
+	private void add(Counter counter, long val){
+		counts[counter.ordinal()][depth + 1][var] += val;
+	}
+
+	//--------------------------//
+	// RESULTS
+	//--------------------------//
+
+	/**
+	 * @param counter The counter
+	 * @return The total value of the counter
+	 */
+	public long getTotal(Counter counter){
+		long sum = 0;
+		for (long[] byVar : counts[counter.ordinal()]){
+			for (long val : byVar){
+				sum += val;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @param counter The counter
+	 * @param depth The depth (-1 for the start)
+	 * @param var The variable index
+	 * @return The value of the counter for the depth and variable
+	 */
+	public long get(Counter counter, int depth, int var){
+		return counts[counter.ordinal()][depth + 1][var];
+	}
+
+	/**
+	 * @return The number of results
+	 */
+	public long getResults(){
+		return results;
+	}
+
+	/**
+	 * @return The total time of the evaluation, in ns
+	 */
+	public long getTime(){
+		return time;
+	}
+
+	/**
+	 * Renders the profile as a tree of the search depths (similar to EXPLAIN ANALYZE), with a line for each variable
+	 * assigned at each depth.
+	 * @return The rendered profile
+	 */
+	public String render(){
+		if (counts == null){
+			return "Search (not run)\n";
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append("Search  (time: " + ms(time) + ", results: " + results);
+		for (Counter counter : Counter.values()){
+			append(sb, counter, getTotal(counter));
+		}
+		sb.append(")\n");
+
+		int n = cp.getNumVars();
+		String indent = "";
+		for (int d = -1; d < n; d++){
+			//Skip the levels that were never reached
+			long[] sums = new long[Counter.values().length];
+			boolean reached = false;
+			for (int v = 0; v <= n; v++){
+				for (Counter counter : Counter.values()){
+					long val = counts[counter.ordinal()][d + 1][v];
+					sums[counter.ordinal()] += val;
+					reached |= (val != 0);
+				}
+			}
+			if (!reached){
+				continue;
+			}
+
+			sb.append(indent + "-> " + ((d == -1) ? "Start" : "Depth " + d) + "  (");
+			boolean first = true;
+			for (Counter counter : Counter.values()){
+				if (sums[counter.ordinal()] != 0){
+					if (!first){
+						sb.append(", ");
+					}
+					first = false;
+					sb.append(format(counter, sums[counter.ordinal()]));
+				}
+			}
+			sb.append(")\n");
+
+			for (int v = 0; v < n; v++){
+				if (counts[Counter.CANDIDATES.ordinal()][d + 1][v] == 0 && counts[Counter.TRIED.ordinal()][d + 1][v] == 0){
+					continue;
+				}
+				sb.append(indent + "     " + name(cp.getVar(v)) + "  (");
+				first = true;
+				for (Counter counter : Counter.values()){
+					long val = counts[counter.ordinal()][d + 1][v];
+					if (val != 0){
+						if (!first){
+							sb.append(", ");
+						}
+						first = false;
+						sb.append(format(counter, val));
+					}
+				}
+				if (counts[Counter.BACKJUMPS.ordinal()][d + 1][v] != 0){
+					sb.append(", avg jump: " + String.format("%.2f", (double) counts[Counter.BACKJUMP_DISTANCE.ordinal()][d + 1][v] / counts[Counter.BACKJUMPS.ordinal()][d + 1][v]));
+				}
+				sb.append(")\n");
+			}
+			indent += "   ";
+		}
+		return sb.toString();
+	}
+
+	private static void append(StringBuilder sb, Counter counter, long val){
+		sb.append(", " + format(counter, val));
+	}
+
+	private static String format(Counter counter, long val){
+		return counter.label + ": " + (counter.time ? ms(val) : Long.toString(val));
+	}
+
+	private static String ms(long ns){
+		return String.format("%.3f ms", ns / 1000000.0);
+	}
+
+	private static String name(MyNode node){
+		StringBuilder sb = new StringBuilder("Node " + node.getId());
+		if (node.hasAttributes()){
+			sb.append(" " + node.getAttributes().keySet());
+		}
+		return sb.toString();
+	}
+
+	//--------------------------//
+	// COMPONENT WRAPPERS
+	//--------------------------//
+
+	/**
+	 * Wraps the given constraints evaluator, recording the checkAttrs and mexFilter calls.
+	 * @param ce The constraints evaluator
+	 * @return The wrapped constraints evaluator
+	 */
+	public <N, E> ConstraintsEvaluator<N, E> wrap(final ConstraintsEvaluator<N, E> ce){
+		return new ConstraintsEvaluator<N, E>() {
+			@Override
+			public void mexFilter(MyNode variable, Set<N> candidates, Map<MyNode, N> assignments, Map<MyNode, Set<MyNode>> confIn){
+				long start = System.nanoTime();
+				ce.mexFilter(variable, candidates, assignments, confIn);
+				record(Counter.MEX_FILTER, start);
+			}
+
+			@Override
+			public boolean checkAttrs(HasAttributes source, E target){
+				long start = System.nanoTime();
+				boolean result = ce.checkAttrs(source, target);
+				record(Counter.CHECK_ATTRS, start);
+				return result;
+			}
+		};
+	}
+
+	/**
+	 * Wraps the given neighbourhood access, recording the findNeighbours and probeNeighbours calls.
+	 * @param access The neighbourhood access
+	 * @return The wrapped neighbourhood access
+	 */
+	public <N> NeighbourhoodAccess<N> wrap(final NeighbourhoodAccess<N> access){
+		return new NeighbourhoodAccess<N>() {
+			@Override
+			public Set<N> findNeighbours(MyRelationship rel, MyNode node, N vertex){
+				long start = System.nanoTime();
+				Set<N> result = access.findNeighbours(rel, node, vertex);
+				recordFetch(start, result.size());
+				return result;
+			}
+
+			@Override
+			public Set<N> probeNeighbours(MyRelationship rel, MyNode node, N vertex, Set<N> candidates){
+				long start = System.nanoTime();
+				Set<N> result = access.probeNeighbours(rel, node, vertex, candidates);
+				recordFetch(start, result.size());
+				return result;
+			}
+
+			@Override
+			public int getDegree(MyRelationship rel, MyNode node, N vertex){
+				return access.getDegree(rel, node, vertex);
+			}
+
+			@Override
+			public long getProbeCost(MyRelationship rel, MyNode node, Set<N> candidates, long bound){
+				return access.getProbeCost(rel, node, candidates, bound);
+			}
+
+			@Override
+			public N findNode(MyNode src){
+				return access.findNode(src);
+			}
+
+			@Override
+			public N findNode(MyNode src, Integer id){
+				return access.findNode(src, id);
+			}
+
+			@Override
+			public boolean relationshipExists(N src, N tgt, MyRelationship rel){
+				return access.relationshipExists(src, tgt, rel);
+			}
+
+			@Override
+			public long getMaxNeighbourhood(){
+				return access.getMaxNeighbourhood();
+			}
+		};
+	}
+
+	private void record(Counter counter, long start){
+		if (counts != null){
+			add(counter, System.nanoTime() - start);
+		}
+	}
+
+	private void recordFetch(long start, int size){
+		if (counts != null){
+			long elapsed = System.nanoTime() - start;
+			fetchTotal += elapsed;
+			add(Counter.FIND_NEIGHBOURS, elapsed);
+			add(Counter.FETCHES, 1);
+			add(Counter.FETCHED, size);
+		}
+	}
+}
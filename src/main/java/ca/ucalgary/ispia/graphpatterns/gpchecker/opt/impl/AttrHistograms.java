@@ -0,0 +1,114 @@
+package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
+import ca.ucalgary.ispia.graphpatterns.util.LabelEnum;
+
+/**
+ * Per-property value histograms for the nodes in the database. Used for estimating the number of nodes
+ * that satisfy an attribute requirement (i.e. its selectivity) without querying the database.
+ * The histograms are built once, with a single scan over the nodes, and only for the given property keys.
+ * @author szrrizvi
+ *
+ */
+public class AttrHistograms {
+
+	private final Map<String, Map<Object, Integer>> counts;	//Property key -> (value -> number of nodes)
+	private int numNodes;									//Total number of scanned nodes
+
+	/**
+	 * Initializes empty histograms for the given keys.
+	 * @param keys The property keys
+	 */
+	private AttrHistograms(Collection<String> keys){
+		counts = new HashMap<String, Map<Object, Integer>>();
+		for (String key : keys){
+			counts.put(key, new HashMap<Object, Integer>());
+		}
+		numNodes = 0;
+	}
+
+	/**
+	 * Builds the histograms for the given property keys, by scanning all of the nodes in the database.
+	 * @param graphDb The graph database service
+	 * @param keys The property keys
+	 * @return The histograms
+	 */
+	public static AttrHistograms build(GraphDatabaseService graphDb, Collection<String> keys){
+		AttrHistograms histograms = new AttrHistograms(keys);
+		String[] keysArr = keys.toArray(new String[keys.size()]);
+
+		try (Transaction tx = graphDb.beginTx()){
+			ResourceIterator<Node> rite = graphDb.findNodes(LabelEnum.PERSON);
+			while (rite.hasNext()){
+				Node node = rite.next();
+				histograms.add(node.getProperties(keysArr));
+			}
+			rite.close();
+			tx.success();
+		}
+
+		return histograms;
+	}
+
+	/**
+	 * Adds the given node's properties to the histograms.
+	 * @param props The node's properties
+	 */
+	private void add(Map<String, Object> props){
+		numNodes++;
+		for (String key : props.keySet()){
+			Map<Object, Integer> hist = counts.get(key);
+			Object val = props.get(key);
+			Integer cnt = hist.get(val);
+			if (cnt == null){
+				hist.put(val, 1);
+			} else {
+				hist.put(val, cnt + 1);
+			}
+		}
+	}
+
+	/**
+	 * Estimates the number of nodes that satisfy the given attribute requirement.
+	 * @param pred The attribute requirement
+	 * @return The estimated number of nodes. If there is no histogram for the attribute, then
+	 * the total number of nodes is returned (i.e. no selectivity).
+	 */
+	public int estimate(AttrPredicate pred){
+		Map<Object, Integer> hist = counts.get(pred.getKey());
+		if (hist == null){
+			return numNodes;
+		}
+
+		Object val = null;
+		if (pred instanceof AttrPredicate.IntEquals){
+			val = ((AttrPredicate.IntEquals) pred).getValue();
+		} else if (pred instanceof AttrPredicate.StringEquals){
+			val = ((AttrPredicate.StringEquals) pred).getValue();
+		} else {
+			return numNodes;
+		}
+
+		Integer cnt = hist.get(val);
+		if (cnt == null){
+			return 0;
+		}
+		return cnt;
+	}
+
+	/**
+	 * @return The total number of nodes scanned when building the histograms
+	 */
+	public int getNumNodes(){
+		return this.numNodes;
+	}
+}
@@ -0,0 +1,168 @@
+package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.ConstraintsEvaluator;
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
+import ca.ucalgary.ispia.graphpatterns.graph.AttributeStore;
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * This class provides the methods for constraints checking for the in-memory graph pattern evaluation (see DSAccess).
+ * The attribute requirements are evaluated against the columns of an AttributeStore, therefore the in-memory
+ * evaluation has the same semantics as the database evaluation (see ConstraintsChecker).
+ * @author szrrizvi
+ *
+ */
+public class ColumnarConstraintsChecker implements ConstraintsEvaluator<MyNode, HasAttributes>{
+
+	private final GPHolder gph;				//GPHolder - gives access to the constraints
+	private final AttributeStore store;		//AttributeStore - gives access to the attributes of the dataset
+
+	/**
+	 * Simple constructor. Assigns the instance variables.
+	 * @param gph The GPHolder
+	 * @param store The attribute store for the dataset
+	 */
+	public ColumnarConstraintsChecker(GPHolder gph, AttributeStore store){
+		this.gph = gph;
+		this.store = store;
+	}
+
+	/**
+	 * Filters the candidates set based on the mutual exclusion constraints and current assignment
+	 * @param variable The target graph pattern node
+	 * @param candidates The list of candidates for the currently populated nodes
+	 */
+	public void mexFilter(MyNode variable, Set<MyNode> candidates, Map<MyNode, MyNode> assignments, Map<MyNode, Set<MyNode>> confIn){
+		//Get the mutual exclusion partners of the variable (indexed in gph)
+		List<MyNode> mexPartners = gph.getMexPartners(variable);
+
+		if (!confIn.containsKey(variable)){
+			confIn.put(variable, new HashSet<MyNode>());
+		}
+
+		for (MyNode other : mexPartners){
+			//If the other node is populated, remove its assignment from the candidates
+			if (assignments.containsKey(other)){
+				candidates.remove(assignments.get(other));
+				confIn.get(variable).add(other);
+			}
+		}
+	}
+
+	/**
+	 * Checks if the given dataset node or relationship has the required attributes.
+	 * @param source The MyNode or MyRelationship object from gp.
+	 * @param target The MyNode or MyRelationship object from the dataset.
+	 * @return true if the target can satisfy the required attributes, else false.
+	 */
+	public boolean checkAttrs(HasAttributes source, HasAttributes target){
+		AttrPredicate[] preds = source.getCompiledAttrs();
+		if (preds.length == 0){
+			return true;
+		}
+
+		if (target instanceof MyNode){
+			return store.matches(preds, store.getRow((MyNode) target));
+		} else {
+			MyRelationship rel = (MyRelationship) target;
+			return checkEdge(source, rel.getSource(), rel.getTarget(), rel.getIdentifier());
+		}
+	}
+
+	/**
+	 * Checks if a relationship (src)-[relType]->(tgt) with the required attributes exists in the dataset.
+	 * @param source The MyRelationship object from gp.
+	 * @param src The source node from the dataset
+	 * @param tgt The target node from the dataset
+	 * @param relType The relationship type
+	 * @return true if such a relationship exists, else false.
+	 */
+	public boolean checkEdge(HasAttributes source, MyNode src, MyNode tgt, RelType relType){
+		AttrPredicate[] preds = source.getCompiledAttrs();
+		if (preds.length == 0){
+			return true;
+		}
+		return store.edgeMatches(preds, store.getRow(src), store.getRow(tgt), relType.getIdx());
+	}
+
+	/**
+	 * Checks if a relationship (src)-[relType]->(tgt) with the required attributes exists in the dataset.
+	 * @param source The MyRelationship object from gp.
+	 * @param srcRow The row of the source node in the attribute store
+	 * @param tgtRow The row of the target node in the attribute store
+	 * @param relType The relationship type
+	 * @return true if such a relationship exists, else false.
+	 */
+	public boolean checkEdgeRows(HasAttributes source, int srcRow, int tgtRow, RelType relType){
+		AttrPredicate[] preds = source.getCompiledAttrs();
+		if (preds.length == 0){
+			return true;
+		}
+		return store.edgeMatches(preds, srcRow, tgtRow, relType.getIdx());
+	}
+
+	/**
+	 * Filters the given rows of the attribute store in place, keeping the rows that have the required attributes
+	 * (in their original order).
+	 * @param source The MyNode object from gp.
+	 * @param rows The rows
+	 * @param len The number of rows (starting at index 0) to filter
+	 * @return The number of remaining rows
+	 */
+	public int filterRows(HasAttributes source, int[] rows, int len){
+		AttrPredicate[] preds = source.getCompiledAttrs();
+		if (preds.length == 0){
+			return len;
+		}
+		return store.filter(preds, rows, len);
+	}
+
+	/**
+	 * @return The attribute store
+	 */
+	public AttributeStore getStore(){
+		return this.store;
+	}
+
+	/**
+	 * Returns the subset of the given candidates that have the required attributes. The candidates are
+	 * filtered in a single batch over the attribute columns.
+	 * @param source The MyNode object from gp.
+	 * @param candidates The nodes from the dataset. Not modified.
+	 * @return The candidates that satisfy the attribute requirements. If there are no requirements, then the candidates set itself is returned.
+	 */
+	public Set<MyNode> filterNodes(HasAttributes source, Set<MyNode> candidates){
+		AttrPredicate[] preds = source.getCompiledAttrs();
+		if (preds.length == 0){
+			return candidates;
+		}
+
+		//Collect the rows of the candidates
+		int[] rows = new int[candidates.size()];
+		int len = 0;
+		for (MyNode candidate : candidates){
+			int row = store.getRow(candidate);
+			if (row >= 0){
+				rows[len] = row;
+				len++;
+			}
+		}
+
+		len = store.filter(preds, rows, len);
+
+		Set<MyNode> result = new HashSet<MyNode>();
+		for (int idx = 0; idx < len; idx++){
+			result.add(store.getNode(rows[idx]));
+		}
+		return result;
+	}
+}
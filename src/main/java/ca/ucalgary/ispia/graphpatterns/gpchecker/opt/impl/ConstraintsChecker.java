@@ -1,6 +1,5 @@
 package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -9,14 +8,12 @@ import java.util.Set;
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Transaction;
 
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.ConstraintsEvaluator;
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
 import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
 import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
 import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
-import ca.ucalgary.ispia.graphpatterns.util.AttributeTypes;
-import ca.ucalgary.ispia.graphpatterns.util.Pair;
 
 /**
  * This class provides the methods for constraints checking for the graph pattern evaluation.
@@ -29,6 +26,7 @@ public class ConstraintsChecker implements ConstraintsEvaluator<Node, Entity>{
 
 	private final GPHolder gph;					//GPHolder - gives access to the constraints
 	private final GraphDatabaseService graphDb;	//GraphDatabaseService - gives access to underlying database
+	private final NodePropertyCache propCache;	//NodePropertyCache - cached node properties (can be null)
 	
 	/**
 	 * Simple constructor. Assigns the instance variables.
@@ -36,9 +34,21 @@ public class ConstraintsChecker implements ConstraintsEvaluator<Node, Entity>{
 	 * @param graphDb The GraphDatabaseService
 	 */
 	public ConstraintsChecker(GPHolder gph, GraphDatabaseService graphDb){
+		this(gph, graphDb, null);
+	}
+	
+	/**
+	 * Constructor. Assigns the instance variables. The node attribute requirements are evaluated 
+	 * against the properties in the given cache.
+	 * @param gph The GPHolder
+	 * @param graphDb The GraphDatabaseService
+	 * @param propCache The node property cache; if null then the properties are read directly from the nodes.
+	 */
+	public ConstraintsChecker(GPHolder gph, GraphDatabaseService graphDb, NodePropertyCache propCache){
 		//Initialize instance variables.
 		this.gph = gph;
 		this.graphDb = graphDb;
+		this.propCache = propCache;
 	}
 	
 	/**
@@ -48,23 +58,15 @@ public class ConstraintsChecker implements ConstraintsEvaluator<Node, Entity>{
 	 * @param candidates The list of candidates for the currently populated nodes
 	 */
 	public void mexFilter(MyNode variable, Set<Node> candidates, Map<MyNode, Node> assignments, Map<MyNode, Set<MyNode>> confIn){
-		//Get the mutual exclusion constraints containing the variable
-		List<Pair<MyNode, MyNode>> mexList = gph.getMexList(variable); 
+		//Get the mutual exclusion partners of the variable (indexed in gph)
+		List<MyNode> mexPartners = gph.getMexPartners(variable);
 
 		if (!confIn.containsKey(variable)){
 			confIn.put(variable, new HashSet<MyNode>());
 		}
 		
 
-		for (Pair<MyNode, MyNode> mex : mexList){
-			//For the constraint, get the other node
-			MyNode other = null;
-			if (mex.first.equals(variable)){
-				other = mex.second;
-			} else {
-				other = mex.first;
-			}
-
+		for (MyNode other : mexPartners){
 			//If the other node is populate
 			if (assignments.containsKey(other)){
 				//Remove 'node' from its candidates set 
@@ -77,55 +79,35 @@ public class ConstraintsChecker implements ConstraintsEvaluator<Node, Entity>{
 	
 	
 	/**
-	 * Checks if the given entity has the required attributes.
+	 * Checks if the given entity has the required attributes. The attribute requirements are evaluated
+	 * using their compiled form (see AttrPredicate), therefore no parsing or allocations take place here.
+	 * Assumption: Invoked within an open transaction.
 	 * @param source The MyNode or MyRelationship object from gp.
 	 * @param target The Node or Relationship object from the database.
 	 * @return true if the target can satisfy the required attributes, else false.
 	 */
 	public boolean checkAttrs(HasAttributes source, Entity target){
-		//Prepare the list of source attribute requirements (if any)
-		Map<String, String> attrReqs = source.getAttributes();
-		List<String> attrNames = new ArrayList<String>();
-		attrNames.addAll(attrReqs.keySet());
+		//Get the compiled attribute requirements (if any)
+		AttrPredicate[] preds = source.getCompiledAttrs();
 
-		//Check if the target satisfies all attribute requirements.
-		for (String attr : attrNames){
-
-			//Get the attribute/property from the target
-			Object val = null;
-			try (Transaction tx = graphDb.beginTx()){
-				val = target.getProperty(attr, null);
-				tx.success();
+		//Use the cached properties for nodes, if available
+		if (propCache != null && preds.length > 0 && target instanceof Node){
+			Node node = (Node) target;
+			for (int idx = 0; idx < preds.length; idx++){
+				if (!preds[idx].test(propCache.getProperty(node, preds[idx].getKey()))){
+					return false;
+				}
 			}
+			return true;
+		}
 
-			if (val != null){	//Ensure that the target has the attribute/property
-				if (AttributeTypes.isIntType(attr)){
-					//Compare the property, based on if its an int or a String
-					//If the values don't match, return false.
-					try{
-						int reqVal = Integer.parseInt(attrReqs.get(attr));
-						if (reqVal != (int) val){
-							return false;
-						}
-					} catch (NumberFormatException | ClassCastException e){
-						String reqVal = attrReqs.get(attr);
-						if (!reqVal.equals(val)){
-							return false;
-						}
-					}
-
-				} else {
-					String reqVal = attrReqs.get(attr);
-					String tempVal = val+"";
-					if (!reqVal.equals(tempVal)){
-						return false;
-					}
-				}
-			} else {
-				//If the target did not have the required attribute/property, return false
+		//Check if the target satisfies all attribute requirements.
+		for (int idx = 0; idx < preds.length; idx++){
+			//Get the attribute/property from the target, and compare it.
+			//If the target did not have the required attribute/property, or the values don't match, return false
+			if (!preds[idx].test(target.getProperty(preds[idx].getKey(), null))){
 				return false;
 			}
-
 		}
 
 		//If the target satisfies all attribute requirements, return true
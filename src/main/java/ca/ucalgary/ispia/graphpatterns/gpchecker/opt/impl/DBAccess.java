@@ -30,10 +30,11 @@ import ca.ucalgary.ispia.graphpatterns.util.LabelEnum;
 public class DBAccess implements NeighbourhoodAccess<Node>{
 	private final GraphDatabaseService graphDb;					//GraphDatabaseService - gives access to the database
 	private final ConstraintsEvaluator<Node, Entity> constraintsEvaluator;	//ConstraintsEvaluator - gives access to the components that ensures constraints are satisfied
+	private final NodePropertyCache propCache;					//The property cache used by the constraintsEvaluator (can be null)
 	
 	//public Map<Integer, Integer> neighbourhoodSizes; 
 	
-	public int maxNeighbourhood;
+	public long maxNeighbourhood;
 
 	/**
 	 * Initilizes the instance variables.
@@ -41,14 +42,26 @@ public class DBAccess implements NeighbourhoodAccess<Node>{
 	 * @param constraintsChecker The ConstraintsChecker
 	 */
 	public DBAccess (GraphDatabaseService graphDb, ConstraintsEvaluator<Node, Entity> constraintsEvaluator){
+		this(graphDb, constraintsEvaluator, null);
+	}
+
+	/**
+	 * Initilizes the instance variables. The properties of the candidate neighbours are loaded into the given cache
+	 * in one batch per neighbourhood (see NodePropertyCache.prefetch), before their attribute requirements are checked.
+	 * @param graphDb The GraphDatabaseService
+	 * @param constraintsChecker The ConstraintsChecker
+	 * @param propCache The property cache used by the constraintsEvaluator; if null then nothing is prefetched
+	 */
+	public DBAccess (GraphDatabaseService graphDb, ConstraintsEvaluator<Node, Entity> constraintsEvaluator, NodePropertyCache propCache){
 		//Initialize the instance variables
 		this.graphDb = graphDb;
 		this.constraintsEvaluator = constraintsEvaluator;
+		this.propCache = propCache;
 		//this.neighbourhoodSizes = new HashMap<Integer, Integer>();
 		maxNeighbourhood = 0;
 	}
 	
-	public int getMaxNeighbourhood(){
+	public long getMaxNeighbourhood(){
 		return this.maxNeighbourhood;
 	}
 	
@@ -84,13 +97,31 @@ public class DBAccess implements NeighbourhoodAccess<Node>{
 		try (Transaction tx = graphDb.beginTx()){
 			Iterable<Relationship> result = vertex.getRelationships(rel.getIdentifier(), dir);
 			
-			for (Relationship tempR : result){
-				Node neighbour = tempR.getOtherNode(vertex);
+			if (propCache != null && otherNode.hasAttributes()){
+				//Collect the neighbours through the relationships that satisfy the attribute requirements, 
+				//and load their properties in one batch before checking them
+				List<Node> batch = new ArrayList<Node>();
+				for (Relationship tempR : result){
+					if (constraintsEvaluator.checkAttrs(rel, tempR)){
+						batch.add(tempR.getOtherNode(vertex));
+					}
+				}
+				propCache.prefetch(batch);
+				
+				for (Node neighbour : batch){
+					if (constraintsEvaluator.checkAttrs(otherNode, neighbour)){
+						neighbours.add(neighbour);
+					}
+				}
+			} else {
+				for (Relationship tempR : result){
+					Node neighbour = tempR.getOtherNode(vertex);
 
-				//If the relationship and neighbour both satisfy the attribute requirements
-				//then add the neighbour to the result list
-				if (constraintsEvaluator.checkAttrs(rel, tempR) && constraintsEvaluator.checkAttrs(otherNode, neighbour)){
-					neighbours.add(neighbour);
+					//If the relationship and neighbour both satisfy the attribute requirements
+					//then add the neighbour to the result list
+					if (constraintsEvaluator.checkAttrs(rel, tempR) && constraintsEvaluator.checkAttrs(otherNode, neighbour)){
+						neighbours.add(neighbour);
+					}
 				}
 			}
 			//End transaction
@@ -125,9 +156,7 @@ public class DBAccess implements NeighbourhoodAccess<Node>{
 			if (tgt == null){
 				//If the node is not found, return null
 				System.out.println("Not fixed: " + id);
-			}
-			
-			if (!constraintsEvaluator.checkAttrs(src, tgt)){
+			} else if (!constraintsEvaluator.checkAttrs(src, tgt)){
 				//If other attr requirements fail, then tgt is not the correct node
 				tgt = null;						
 			}
@@ -137,33 +166,116 @@ public class DBAccess implements NeighbourhoodAccess<Node>{
 		return tgt;
 	}
 	
+	/**
+	 * Returns the subset of the given candidates that are connected to the vertex through the given relationship.
+	 * Each candidate's relationships (in the opposite direction) are scanned, instead of the vertex's relationships.
+	 * Assumption: The candidates already satisfy the attribute requirements of the other node in the relationship.
+	 * @param rel The target relationship. Used to specifying the relationship direction and the relationship attribute requirements.
+	 * @param node The gp node. Used for specifying the relationship direction.
+	 * @param vertex The vertex assigned to the node.
+	 * @param candidates The candidates for the other node in the relationship.
+	 * @return The set of candidates that are connected to the vertex.
+	 */
+	public Set<Node> probeNeighbours(MyRelationship rel, MyNode node, Node vertex, Set<Node> candidates){
+		
+		Set<Node> neighbours = new HashSet<Node>();
+
+		//Get the direction, from the perspective of the candidates
+		Direction dir = null;
+		if (rel.getSource().equals(node)){
+			dir = Direction.INCOMING;
+		} else {
+			dir = Direction.OUTGOING;
+		}
+		
+		try (Transaction tx = graphDb.beginTx()){
+			for (Node candidate : candidates){
+				for (Relationship tempR : candidate.getRelationships(rel.getIdentifier(), dir)){
+					if (tempR.getOtherNode(candidate).equals(vertex) && constraintsEvaluator.checkAttrs(rel, tempR)){
+						neighbours.add(candidate);
+						break;
+					}
+				}
+			}
+			tx.success();
+		}
+		
+		return neighbours;
+	}
+	
+	/**
+	 * Returns the sum of the candidates' degrees, for the relationship type and the direction towards the vertex, 
+	 * since probeNeighbours scans these relationships. Stops summing once the sum reaches the bound.
+	 */
+	public long getProbeCost(MyRelationship rel, MyNode node, Set<Node> candidates, long bound){
+		//Get the direction, from the perspective of the candidates
+		Direction dir = null;
+		if (rel.getSource().equals(node)){
+			dir = Direction.INCOMING;
+		} else {
+			dir = Direction.OUTGOING;
+		}
+		
+		long cost = 0;
+		try (Transaction tx = graphDb.beginTx()){
+			for (Node candidate : candidates){
+				cost += candidate.getDegree(rel.getIdentifier(), dir);
+				if (cost >= bound){
+					break;
+				}
+			}
+			tx.success();
+		}
+		return cost;
+	}
+	
+	public int getDegree(MyRelationship rel, MyNode node, Node vertex){
+		//Get the direction
+		Direction dir = null;
+		if (rel.getSource().equals(node)){
+			dir = Direction.OUTGOING;
+		} else {
+			dir = Direction.INCOMING;
+		}
+		
+		int degree = 0;
+		try (Transaction tx = graphDb.beginTx()){
+			degree = vertex.getDegree(rel.getIdentifier(), dir);
+			tx.success();
+		}
+		return degree;
+	}
+	
 	public boolean relationshipExists (Node src, Node tgt, MyRelationship rel){
 		
 		Relationship dbRel = null;
-		boolean retVal = false;
 		
 		//Check if the relationship exists between them.
 		try (Transaction tx = graphDb.beginTx()){
-			Iterator<Relationship> relIte = src.getRelationships(rel.getIdentifier(), Direction.OUTGOING).iterator();
+			//Scan the relationships of the endpoint with the smaller degree
+			Node from = src;
+			Node to = tgt;
+			Direction dir = Direction.OUTGOING;
+			if (tgt.getDegree(rel.getIdentifier(), Direction.INCOMING) < src.getDegree(rel.getIdentifier(), Direction.OUTGOING)){
+				from = tgt;
+				to = src;
+				dir = Direction.INCOMING;
+			}
+			
+			Iterator<Relationship> relIte = from.getRelationships(rel.getIdentifier(), dir).iterator();
 
 			while (relIte.hasNext() && dbRel == null){
 				Relationship r = relIte.next();
-				Node neighbour = r.getEndNode();
+				Node neighbour = r.getOtherNode(from);
 
-				if (neighbour.equals(tgt)){
+				if (neighbour.equals(to) && constraintsEvaluator.checkAttrs(rel, r)){
 					dbRel = r;
 				}
 			}
-
-			if (dbRel != null){
-				if(!constraintsEvaluator.checkAttrs(rel, dbRel)){
-					dbRel = null;
-				}
-			}
 			
 			tx.success();
 		}
 		
-		return retVal;
+		return dbRel != null;
 	}
 }
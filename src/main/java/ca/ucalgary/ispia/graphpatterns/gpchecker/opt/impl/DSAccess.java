@@ -2,12 +2,13 @@ package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
 
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.NeighbourhoodAccess;
-import ca.ucalgary.ispia.graphpatterns.graph.DataSetInterface;
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphStore;
+import ca.ucalgary.ispia.graphpatterns.graph.IntSlice;
 import ca.ucalgary.ispia.graphpatterns.graph.MyDirection;
 import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
 import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
@@ -20,22 +21,41 @@ import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
 
 public class DSAccess implements NeighbourhoodAccess<MyNode>{
 
-	private DataSetInterface dataset;
+	private GraphStore dataset;
+	private final ColumnarConstraintsChecker constraintsEvaluator;	//Evaluates the attribute requirements (can be null)
+	private final CSRGraph csr;		//The dataset, if it is a CSRGraph whose ordinals are the rows of the attribute store (else null)
 	private Map<Integer, Integer> neighbourhoodSizes;
 
 
+	/**
+	 * Initilizes the instance variables. The attribute requirements are ignored.
+	 * @param dataset The in-memory dataset (DataSetInterface or CSRGraph)
+	 */
+	public DSAccess (GraphStore dataset){
+		this(dataset, null);
+	}
+
 	/**
 	 * Initilizes the instance variables.
-	 * @param graphDb The GraphDatabaseService
-	 * @param constraintsChecker The ConstraintsChecker
+	 * @param dataset The in-memory dataset (DataSetInterface or CSRGraph)
+	 * @param constraintsEvaluator Evaluates the node and relationship attribute requirements; if null then the requirements are ignored.
 	 */
-	public DSAccess (DataSetInterface dataset){
+	public DSAccess (GraphStore dataset, ColumnarConstraintsChecker constraintsEvaluator){
 		//Initialize the instance variables
 		this.dataset = dataset;
+		this.constraintsEvaluator = constraintsEvaluator;
 		neighbourhoodSizes = new HashMap<Integer, Integer>();
+		
+		//The neighbourhoods can be filtered on the adjacency slices, if the ordinals are the rows of the attribute store
+		if (dataset instanceof CSRGraph && constraintsEvaluator != null 
+				&& ((CSRGraph) dataset).getDictionary() == constraintsEvaluator.getStore().getDictionary()){
+			this.csr = (CSRGraph) dataset;
+		} else {
+			this.csr = null;
+		}
 	}
 	
-	public int getMaxNeighbourhood(){
+	public long getMaxNeighbourhood(){
 		return 0;
 	}
 	
@@ -65,7 +85,19 @@ public class DSAccess implements NeighbourhoodAccess<MyNode>{
 		//Query the database for the neighbours of vertex, where direction = dir.
 		//Only keep the neighbours where the edge and vertex attributes are satisfied
 		
-		Set<MyNode> result = dataset.getNeighbours(vertex, rel.getIdentifier(), dir);
+		Set<MyNode> result = null;
+		MyNode other = rel.getOther(node);
+		
+		if (csr != null && (rel.hasAttributes() || other.hasAttributes())){
+			result = filterSlice(rel, other, vertex, dir);
+		} else {
+			result = dataset.getNeighbours(vertex, rel.getIdentifier(), dir);
+			
+			if (constraintsEvaluator != null){
+				result = filterEdges(rel, vertex, dir, result);
+				result = constraintsEvaluator.filterNodes(other, result);
+			}
+		}
 		
 		int size = result.size();
 		if (neighbourhoodSizes.containsKey(size)){
@@ -75,10 +107,6 @@ public class DSAccess implements NeighbourhoodAccess<MyNode>{
 			neighbourhoodSizes.put(size, 1);
 		}
 		
-		if (size == 394){
-			System.out.println("Suspect Node: " + vertex);
-		}
-		
 		//long end = System.nanoTime();
 		
 		//System.out.println("Query time: " + (end-start));
@@ -99,26 +127,130 @@ public class DSAccess implements NeighbourhoodAccess<MyNode>{
 		if (tgt == null){
 			//If the node is not found, return null
 			System.out.println("Not fixed: " + id+"");
+		} else if (constraintsEvaluator != null && !constraintsEvaluator.checkAttrs(src, tgt)){
+			//If other attr requirements fail, then tgt is not the correct node
+			tgt = null;
 		}
 
 		return tgt;
 	}
 
 	@Override
-	public boolean relationshipExists(MyNode src, MyNode tgt, MyRelationship rel) {
-		boolean retVal = false;
+	public Set<MyNode> probeNeighbours(MyRelationship rel, MyNode node, MyNode vertex, Set<MyNode> candidates) {
+		
+		//Probe the neighbourhood for each candidate
+		MyDirection dir = getDirection(rel, node);
+		
+		Set<MyNode> result = new HashSet<MyNode>();
+		for (MyNode candidate : candidates){
+			if (dataset.hasNeighbour(vertex, rel.getIdentifier(), dir, candidate)){
+				result.add(candidate);
+			}
+		}
+		
+		if (constraintsEvaluator != null){
+			result = filterEdges(rel, vertex, dir, result);
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Returns the number of candidates: probeNeighbours checks each candidate with hasNeighbour, which only
+	 * searches (or probes the hub bitmap of) one adjacency list instead of scanning it.
+	 */
+	@Override
+	public long getProbeCost(MyRelationship rel, MyNode node, Set<MyNode> candidates, long bound) {
+		return candidates.size();
+	}
+	
+	@Override
+	public int getDegree(MyRelationship rel, MyNode node, MyNode vertex) {
+		return dataset.getDegree(vertex, rel.getIdentifier(), getDirection(rel, node));
+	}
 
+	@Override
+	public boolean relationshipExists(MyNode src, MyNode tgt, MyRelationship rel) {
 		//Check if the relationship exists between them.
-		Iterator<MyNode> neighbourhoodIte = dataset.getNeighbours(src, rel.getIdentifier(), MyDirection.OUTGOING).iterator(); 
-
-		while (neighbourhoodIte.hasNext()){
-			MyNode neighbour = neighbourhoodIte.next();
-
-			if (neighbour.equals(tgt)){
-				retVal = true;
+		if (!dataset.hasNeighbour(src, rel.getIdentifier(), MyDirection.OUTGOING, tgt)){
+			return false;
+		}
+		return constraintsEvaluator == null || constraintsEvaluator.checkEdge(rel, src, tgt, rel.getIdentifier());
+	}
+	
+	/**
+	 * Returns the neighbours of the vertex that satisfy the attribute requirements of the relationship and the other node.
+	 * The neighbours are filtered directly on the adjacency slice of the CSRGraph (the ordinals are the rows of the
+	 * attribute store), so the result set is only materialized once, for the neighbours that pass the filters.
+	 * @param rel The target relationship
+	 * @param other The other node in the relationship
+	 * @param vertex The vertex
+	 * @param dir The direction of the relationship, from the perspective of the vertex
+	 * @return The filtered neighbours
+	 */
+	private Set<MyNode> filterSlice(MyRelationship rel, MyNode other, MyNode vertex, MyDirection dir){
+		int ord = csr.getDictionary().toInternal(vertex);
+		IntSlice slice = csr.neighbours(ord, rel.getIdentifier().getIdx(), dir);
+		
+		//Filter the relationships
+		int[] rows = new int[slice.size()];
+		int len = 0;
+		for (int idx = 0; idx < slice.size(); idx++){
+			int row = slice.get(idx);
+			int src = (dir == MyDirection.OUTGOING) ? ord : row;
+			int tgt = (dir == MyDirection.OUTGOING) ? row : ord;
+			if (constraintsEvaluator.checkEdgeRows(rel, src, tgt, rel.getIdentifier())){
+				rows[len] = row;
+				len++;
 			}
 		}
-
-		return retVal;
+		
+		//Filter the neighbours
+		len = constraintsEvaluator.filterRows(other, rows, len);
+		
+		Set<MyNode> result = new HashSet<MyNode>();
+		for (int idx = 0; idx < len; idx++){
+			result.add(csr.getNode(rows[idx]));
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the neighbours that are connected to the vertex through a relationship that satisfies the 
+	 * attribute requirements of the given relationship.
+	 * @param rel The target relationship
+	 * @param vertex The vertex
+	 * @param dir The direction of the relationship, from the perspective of the vertex
+	 * @param neighbours The neighbours of the vertex. Not modified.
+	 * @return The filtered neighbours. If the relationship has no attribute requirements, then the neighbours set itself is returned.
+	 */
+	private Set<MyNode> filterEdges(MyRelationship rel, MyNode vertex, MyDirection dir, Set<MyNode> neighbours){
+		if (!rel.hasAttributes()){
+			return neighbours;
+		}
+		
+		Set<MyNode> result = new HashSet<MyNode>();
+		for (MyNode neighbour : neighbours){
+			MyNode src = (dir == MyDirection.OUTGOING) ? vertex : neighbour;
+			MyNode tgt = (dir == MyDirection.OUTGOING) ? neighbour : vertex;
+			if (constraintsEvaluator.checkEdge(rel, src, tgt, rel.getIdentifier())){
+				result.add(neighbour);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the direction of the relationship from the perspective of the given node.
+	 * @param rel The relationship
+	 * @param node The node
+	 * @return OUTGOING if the node is the source of the relationship, else INCOMING.
+	 */
+	private MyDirection getDirection(MyRelationship rel, MyNode node){
+		if (rel.getSource().equals(node)){
+			return MyDirection.OUTGOING;
+		} else {
+			return MyDirection.INCOMING;
+		}
 	}
 }
@@ -0,0 +1,94 @@
+package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.AltStart;
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
+import ca.ucalgary.ispia.graphpatterns.graph.AttributeStore;
+import ca.ucalgary.ispia.graphpatterns.graph.IntSlice;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+
+/**
+ * This class populates the candidates set based on the attribute requirements for nodes, for the in-memory
+ * evaluation (see DSAccess). The candidates are read from the posting lists of the AttributeStore indexes;
+ * for nodes with multiple attribute requirements the posting lists are intersected, starting from the shortest one.
+ * @author szrrizvi
+ *
+ */
+public class IndexedAttrStart implements AltStart<MyNode>{
+
+	private final AttributeStore store;		//AttributeStore: Provides access to the attribute indexes
+
+	/**
+	 * Initializes the instance variables.
+	 * @param store The attribute store for the dataset. Its indexes are built if needed.
+	 */
+	public IndexedAttrStart(AttributeStore store){
+		this.store = store;
+		store.buildIndexes();
+	}
+
+	/**
+	 * Populates the candidates maps based on the attribute requirements of the graph pattern.
+	 * Assumption: The candidates map is empty.
+	 * Return false, if there was even 1 node with attr requirements that could not be satisfied.
+	 * @param nodes The list of all nodes in the graph pattern
+	 * @param candidates The candidates map
+	 * @return False if there was even 1 node with attr requirements that could not be satisfied,
+	 * else true.
+	 *
+	 * Side Effect: candidates will be updated
+	 */
+	public boolean startPop(List<MyNode> nodes, Map<MyNode, Set<MyNode>> candidates){
+
+		for (MyNode node : nodes){
+			AttrPredicate[] preds = node.getCompiledAttrs();
+			if (preds.length == 0){
+				continue;
+			}
+
+			//Get the posting list for each requirement, and sort them by size
+			IntSlice[] lists = new IntSlice[preds.length];
+			for (int idx = 0; idx < preds.length; idx++){
+				lists[idx] = store.getPostings(preds[idx]);
+				if (lists[idx].isEmpty()){
+					return false;
+				}
+			}
+			Arrays.sort(lists, new Comparator<IntSlice>(){
+				@Override
+				public int compare(IntSlice a, IntSlice b){
+					return Integer.compare(a.size(), b.size());
+				}
+			});
+
+			//Intersect: keep the rows of the shortest list that are contained in all of the other lists
+			Set<MyNode> nodeCads = new HashSet<MyNode>();
+			IntSlice shortest = lists[0];
+			for (int pos = 0; pos < shortest.size(); pos++){
+				int row = shortest.get(pos);
+				boolean inAll = true;
+				for (int idx = 1; idx < lists.length && inAll; idx++){
+					inAll = lists[idx].contains(row);
+				}
+				if (inAll){
+					nodeCads.add(store.getNode(row));
+				}
+			}
+
+			if (nodeCads.isEmpty()){
+				return false;
+			}
+			candidates.put(node, nodeCads);
+		}
+
+		//If reached here, then there is at least one candidate for each
+		//node with attr requirement.
+		return true;
+	}
+}
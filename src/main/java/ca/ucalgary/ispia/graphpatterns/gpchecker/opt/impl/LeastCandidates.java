@@ -7,6 +7,7 @@ import java.util.Set;
 import org.neo4j.graphdb.Node;
 
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.VariableOrdering;
+import ca.ucalgary.ispia.graphpatterns.graph.CompiledPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
 
@@ -19,7 +20,7 @@ import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
 public class LeastCandidates<N> implements VariableOrdering<N>{
 
 	
-	private final GraphPattern gp;	//The associated graph pattern
+	private final CompiledPattern cp;	//The associated graph pattern (compiled)
 	
 	/**
 	 * Initializes the instance variables.
@@ -27,7 +28,7 @@ public class LeastCandidates<N> implements VariableOrdering<N>{
 	 */
 	public LeastCandidates(GraphPattern gp){
 		//Set the instance variables.
-		this.gp = gp;
+		this.cp = gp.compile();
 	}
 	
 	/**
@@ -39,7 +40,7 @@ public class LeastCandidates<N> implements VariableOrdering<N>{
 	 */
 	public MyNode pickNextNode(Map<MyNode, N> assignments, Map<MyNode, Set<N>> candidates){
 
-		List<MyNode> allNodes = gp.getNodes();
+		List<MyNode> allNodes = cp.getVars();
 		// Find nodes such that they are populated but not yet assigned.
 		// Pick the node with the smallest candidates size
 		// Optimization idea: When a node is assigned, remove it from candidates. Thus,
@@ -0,0 +1,401 @@
+package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+
+/**
+ * Caches the node properties referenced by the loaded policies, keyed by the Neo4j node id.
+ * The properties for a node are loaded in bulk (one read of the property chain per node), and then
+ * reused across all of the attribute checks and queries that involve the node. This avoids reloading
+ * the properties of the same (hub) vertices over and over again.
+ *
+ * The cache is bounded by the number of nodes; the least recently used nodes are evicted first. The rows are
+ * kept in an open addressing table keyed by the primitive node id (see LongLruMap), so lookups don't box the ids.
+ * Entries can be invalidated manually (invalidate/clear), or automatically by registering the cache
+ * with the database (see registerWith).
+ * @author szrrizvi
+ *
+ */
+public class NodePropertyCache {
+
+	//Marker for properties that the node does not have
+	private static final Object ABSENT = new Object();
+
+	private final String[] keys;						//The cached property keys
+	private final Map<String, Integer> keyIdx;			//Property key -> index in the cached rows
+	private final LongLruMap rows;						//Node id -> property values (LRU order), guarded by this
+
+	private final AtomicLong hits;						//The number of rows found in the cache
+	private final AtomicLong misses;					//The number of rows loaded from the database
+
+	/**
+	 * Initializes the cache.
+	 * @param keys The property keys to cache. Only these properties are loaded for each node.
+	 * @param maxNodes The maximum number of nodes to keep in the cache.
+	 */
+	public NodePropertyCache(Collection<String> keys, int maxNodes){
+		this.keys = new String[keys.size()];
+		this.keyIdx = new HashMap<String, Integer>();
+
+		int idx = 0;
+		for (String key : keys){
+			this.keys[idx] = key.intern();
+			keyIdx.put(this.keys[idx], idx);
+			idx++;
+		}
+
+		this.rows = new LongLruMap(maxNodes);
+
+		hits = new AtomicLong();
+		misses = new AtomicLong();
+	}
+
+	/**
+	 * Creates a cache for the vertex attributes referenced by the given policies.
+	 * @param policies The loaded policies
+	 * @param maxNodes The maximum number of nodes to keep in the cache.
+	 * @return The cache
+	 */
+	public static NodePropertyCache forPolicies(Collection<GPHolder> policies, int maxNodes){
+		return new NodePropertyCache(referencedKeys(policies), maxNodes);
+	}
+
+	/**
+	 * Returns the set of vertex attribute names that are referenced by the given policies.
+	 * @param policies The policies
+	 * @return The set of referenced vertex attribute names.
+	 */
+	public static Set<String> referencedKeys(Collection<GPHolder> policies){
+		Set<String> result = new LinkedHashSet<String>();
+		for (GPHolder gph : policies){
+			for (MyNode node : gph.getGp().getNodes()){
+				result.addAll(node.getAttributes().keySet());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks if the given property key is cached.
+	 * @param key The property key
+	 * @return True if the property is cached, else false.
+	 */
+	public boolean covers(String key){
+		return keyIdx.containsKey(key);
+	}
+
+	/**
+	 * Returns the value of the given property for the given node. The node's properties are loaded
+	 * if they are not already cached. If the key is not covered by the cache, then the property is
+	 * read directly from the node.
+	 * Assumption: Invoked within an open transaction.
+	 * @param node The database node
+	 * @param key The property key
+	 * @return The property value, or null if the node does not have the property.
+	 */
+	public Object getProperty(Node node, String key){
+		Integer idx = keyIdx.get(key);
+		if (idx == null){
+			return node.getProperty(key, null);
+		}
+
+		Object val = getRow(node)[idx];
+		if (val == ABSENT){
+			return null;
+		}
+		return val;
+	}
+
+	/**
+	 * Loads the properties for all of the given nodes that are not already cached, under a single lock
+	 * acquisition. Does nothing if no properties are cached.
+	 * Assumption: Invoked within an open transaction.
+	 * @param nodes The database nodes
+	 */
+	public synchronized void prefetch(Iterable<Node> nodes){
+		if (keys.length == 0){
+			return;
+		}
+		for (Node node : nodes){
+			getRow(node);
+		}
+	}
+
+	/**
+	 * Returns the cached row for the given node, loading it if required.
+	 * @param node The database node
+	 * @return The cached property values for the node
+	 */
+	private synchronized Object[] getRow(Node node){
+		long id = node.getId();
+		Object[] row = rows.get(id);
+		if (row != null){
+			hits.incrementAndGet();
+			return row;
+		}
+
+		misses.incrementAndGet();
+		//Read all of the cached properties with one pass over the property chain
+		Map<String, Object> props = node.getProperties(keys);
+		row = new Object[keys.length];
+		for (int idx = 0; idx < keys.length; idx++){
+			Object val = props.get(keys[idx]);
+			row[idx] = (val == null) ? ABSENT : val;
+		}
+		rows.put(id, row);
+		return row;
+	}
+
+	/**
+	 * Removes the given node from the cache.
+	 * @param nodeId The database node id
+	 */
+	public synchronized void invalidate(long nodeId){
+		rows.remove(nodeId);
+	}
+
+	/**
+	 * Removes all nodes from the cache.
+	 */
+	public synchronized void clear(){
+		rows.clear();
+	}
+
+	/**
+	 * @return The number of cached nodes
+	 */
+	public synchronized int size(){
+		return rows.size();
+	}
+
+	public long getHits(){
+		return this.hits.get();
+	}
+
+	public long getMisses(){
+		return this.misses.get();
+	}
+
+	/**
+	 * Registers a transaction event handler with the given database, such that nodes whose properties
+	 * are changed (or that are deleted) are invalidated after the transaction commits.
+	 * @param graphDb The database
+	 * @return The registered handler; can be used for unregistering.
+	 */
+	public TransactionEventHandler<Object> registerWith(GraphDatabaseService graphDb){
+		return graphDb.registerTransactionEventHandler(new InvalidationHandler());
+	}
+
+	/**
+	 * Invalidates the changed nodes after every committed transaction.
+	 */
+	private class InvalidationHandler implements TransactionEventHandler<Object>{
+
+		@Override
+		public Object beforeCommit(TransactionData data) throws Exception {
+			return null;
+		}
+
+		@Override
+		public void afterCommit(TransactionData data, Object state) {
+			for (PropertyEntry<Node> entry : data.assignedNodeProperties()){
+				invalidate(entry.entity().getId());
+			}
+			for (PropertyEntry<Node> entry : data.removedNodeProperties()){
+				invalidate(entry.entity().getId());
+			}
+			for (Node node : data.deletedNodes()){
+				invalidate(node.getId());
+			}
+		}
+
+		@Override
+		public void afterRollback(TransactionData data, Object state) {
+			//Nothing was changed
+		}
+	}
+	/**
+	 * A bounded map from long keys to rows, that evicts the least recently used entry when it is full. The entries
+	 * are stored in parallel arrays (keys, values, and a doubly linked list in access order), and the table maps the
+	 * hash of a key to its entry, with linear probing. Not thread-safe.
+	 */
+	private static final class LongLruMap {
+		private static final int NONE = -1;
+
+		private final long[] entryKeys;		//The key of each entry
+		private final Object[][] values;	//The row of each entry
+		private final int[] prev;			//The previous (less recently used) entry, or NONE
+		private final int[] next;			//The next (more recently used) entry, or NONE
+		private final int[] table;			//Hash slot -> entry, or NONE
+		private final int mask;				//table.length - 1
+		private int head;					//The least recently used entry, or NONE
+		private int tail;					//The most recently used entry, or NONE
+		private int size;					//The number of entries
+
+		private LongLruMap(int capacity){
+			int tableSize = Integer.highestOneBit(Math.max(capacity, 1) * 2 - 1) << 1;
+			this.entryKeys = new long[capacity];
+			this.values = new Object[capacity][];
+			this.prev = new int[capacity];
+			this.next = new int[capacity];
+			this.table = new int[tableSize];
+			this.mask = tableSize - 1;
+			clear();
+		}
+
+		private static int hash(long key){
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		/**
+		 * @return The hash slot of the key, or the empty slot where it would be inserted.
+		 */
+		private int slot(long key){
+			int slot = hash(key) & mask;
+			while (table[slot] != NONE && entryKeys[table[slot]] != key){
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		/**
+		 * Returns the row for the given key, and marks it as the most recently used.
+		 */
+		private Object[] get(long key){
+			int entry = table[slot(key)];
+			if (entry == NONE){
+				return null;
+			}
+			unlink(entry);
+			link(entry);
+			return values[entry];
+		}
+
+		/**
+		 * Adds the row for the given key (not in the map), evicting the least recently used entry if full.
+		 */
+		private void put(long key, Object[] row){
+			if (entryKeys.length == 0){
+				return;
+			}
+			int entry;
+			if (size == entryKeys.length){
+				//Reuse the least recently used entry
+				entry = head;
+				removeSlot(slot(entryKeys[entry]));
+				unlink(entry);
+			} else {
+				entry = size;
+				size++;
+			}
+			entryKeys[entry] = key;
+			values[entry] = row;
+			table[slot(key)] = entry;
+			link(entry);
+		}
+
+		/**
+		 * Removes the given key (if present).
+		 */
+		private void remove(long key){
+			int slot = slot(key);
+			int entry = table[slot];
+			if (entry == NONE){
+				return;
+			}
+			removeSlot(slot);
+			unlink(entry);
+
+			//Move the last entry into the freed entry, so the entries stay dense
+			size--;
+			if (entry != size){
+				entryKeys[entry] = entryKeys[size];
+				values[entry] = values[size];
+				table[slot(entryKeys[entry])] = entry;
+				prev[entry] = prev[size];
+				next[entry] = next[size];
+				if (prev[entry] == NONE){
+					head = entry;
+				} else {
+					next[prev[entry]] = entry;
+				}
+				if (next[entry] == NONE){
+					tail = entry;
+				} else {
+					prev[next[entry]] = entry;
+				}
+			}
+			values[size] = null;
+		}
+
+		/**
+		 * Empties the given hash slot, and shifts the following entries of the probe sequence back.
+		 */
+		private void removeSlot(int slot){
+			int gap = slot;
+			int cur = (gap + 1) & mask;
+			while (table[cur] != NONE){
+				int home = hash(entryKeys[table[cur]]) & mask;
+				//Move the entry into the gap, unless its home slot lies cyclically in (gap, cur]
+				if (((cur - home) & mask) >= ((cur - gap) & mask)){
+					table[gap] = table[cur];
+					gap = cur;
+				}
+				cur = (cur + 1) & mask;
+			}
+			table[gap] = NONE;
+		}
+
+		private void link(int entry){
+			prev[entry] = tail;
+			next[entry] = NONE;
+			if (tail == NONE){
+				head = entry;
+			} else {
+				next[tail] = entry;
+			}
+			tail = entry;
+		}
+
+		private void unlink(int entry){
+			if (prev[entry] == NONE){
+				head = next[entry];
+			} else {
+				next[prev[entry]] = next[entry];
+			}
+			if (next[entry] == NONE){
+				tail = prev[entry];
+			} else {
+				prev[next[entry]] = prev[entry];
+			}
+		}
+
+		private void clear(){
+			Arrays.fill(table, NONE);
+			Arrays.fill(values, null);
+			head = NONE;
+			tail = NONE;
+			size = 0;
+		}
+
+		private int size(){
+			return size;
+		}
+	}
+}
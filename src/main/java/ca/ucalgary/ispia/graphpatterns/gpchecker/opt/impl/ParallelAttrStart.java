@@ -0,0 +1,177 @@
+package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.AltStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.ConstraintsEvaluator;
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.util.LabelEnum;
+
+/**
+ * This class populates the candidates set based on the attribute requirements for nodes (same as AttrBasedStart),
+ * except that the nodes are populated concurrently on the given (bounded) thread pool. Each node is populated in its
+ * own transaction. As soon as one node's candidates set is found to be empty, the remaining work is cancelled and
+ * the query is reported as unsatisfiable. If a population fails, the remaining work is cancelled and the failure is
+ * rethrown to the caller.
+ * @author szrrizvi
+ *
+ */
+public class ParallelAttrStart implements AltStart<Node>{
+
+	private final GraphDatabaseService graphDb;					//GraphDatabaseService: Provides access to database
+	private final ConstraintsEvaluator<Node, Entity> constraintsEvaluator;	//ConstraintsEvaluator: Provides access to constraints evaluator component.
+	private final ExecutorService pool;							//The thread pool used for populating the nodes
+
+	/**
+	 * Initializes the instance variables.
+	 * @param graphDb The graph database service
+	 * @param constraintsEvaluator The constraints checker module. Must be safe to use from multiple threads.
+	 * @param pool The thread pool. The pool is not shut down by this class.
+	 */
+	public ParallelAttrStart(GraphDatabaseService graphDb, ConstraintsEvaluator<Node, Entity> constraintsEvaluator, ExecutorService pool){
+		//Assign the instance variables.
+		this.graphDb = graphDb;
+		this.constraintsEvaluator = constraintsEvaluator;
+		this.pool = pool;
+	}
+
+	/**
+	 * Populates the candidates maps based on the attribute requirements of the graph pattern.
+	 * Assumption: The candidates map is empty.
+	 * Return false, if there was even 1 node with attr requirements that could not be satisfied.
+	 * @param nodes The list of all nodes in the graph pattern
+	 * @param candidates The candidates map
+	 * @return False if there was even 1 node with attr requirements that could not be satisfied,
+	 * else true.
+	 *
+	 * Side Effect: candidates will be updated
+	 * @throws IllegalStateException If the population was interrupted, or failed with a checked exception
+	 */
+	public boolean startPop(List<MyNode> nodes, Map<MyNode, Set<Node>> candidates){
+
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		CompletionService<PopResult> ecs = new ExecutorCompletionService<PopResult>(pool);
+		List<Future<PopResult>> futures = new ArrayList<Future<PopResult>>();
+
+		//Submit a task for each node with at least one required attribute
+		for (final MyNode node : nodes){
+			if (node.hasAttributes()){
+				//Compile the attribute requirements before handing the node to the workers
+				final AttrPredicate[] preds = node.getCompiledAttrs();
+
+				futures.add(ecs.submit(new Callable<PopResult>(){
+					@Override
+					public PopResult call() throws Exception {
+						return populate(node, preds[0], failed);
+					}
+				}));
+			}
+		}
+
+		boolean retVal = true;
+		boolean done = false;
+
+		try {
+			//Collect the results in the order of completion
+			for (int idx = 0; idx < futures.size(); idx++){
+				PopResult res = ecs.take().get();
+
+				//If the node could not be populated, then stop the remaining work
+				if (res.cands.isEmpty()){
+					retVal = false;
+					break;
+				}
+				candidates.put(res.node, res.cands);
+			}
+			done = true;
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while populating the candidates", e);
+		} catch (ExecutionException e){
+			//A failed population is not an unsatisfiable node; abort the query with the cause
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException){
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error){
+				throw (Error) cause;
+			}
+			throw new IllegalStateException("Failed to populate the candidates", cause);
+		} finally {
+			if (!retVal || !done){
+				//Signal and cancel the tasks that are still running/waiting
+				failed.set(true);
+				for (Future<PopResult> future : futures){
+					future.cancel(true);
+				}
+			}
+		}
+
+		return retVal;
+	}
+
+	/**
+	 * Populates the candidates set for the given node. The database is queried for the given attribute requirement, and
+	 * the results are filtered by the remaining attribute requirements.
+	 * @param node The graph pattern node
+	 * @param pred The attribute requirement to query the database with
+	 * @param failed Set when another node could not be populated; the population is abandoned.
+	 * @return The result of the population
+	 */
+	private PopResult populate(MyNode node, AttrPredicate pred, AtomicBoolean failed){
+		Set<Node> nodeCads = new HashSet<Node>();
+
+		Object val = null;
+		if (pred instanceof AttrPredicate.IntEquals){
+			val = ((AttrPredicate.IntEquals) pred).getValue();
+		} else {
+			val = ((AttrPredicate.StringEquals) pred).getValue();
+		}
+
+		try (Transaction tx = graphDb.beginTx()){
+			ResourceIterator<Node> rite = graphDb.findNodes(LabelEnum.PERSON, pred.getKey().trim(), val);
+
+			//Iterate through the candidates, until done or abandoned
+			while (rite.hasNext() && !failed.get() && !Thread.currentThread().isInterrupted()){
+				Node candidate = rite.next();
+				if (constraintsEvaluator.checkAttrs(node, candidate)){
+					nodeCads.add(candidate);
+				}
+			}
+			rite.close();
+			tx.success();
+		}
+
+		return new PopResult(node, nodeCads);
+	}
+
+	/**
+	 * The candidates set populated for a graph pattern node.
+	 */
+	private static class PopResult {
+		final MyNode node;
+		final Set<Node> cands;
+
+		PopResult(MyNode node, Set<Node> cands){
+			this.node = node;
+			this.cands = cands;
+		}
+	}
+}
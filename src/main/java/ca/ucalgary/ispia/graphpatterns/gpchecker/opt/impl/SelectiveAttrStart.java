@@ -0,0 +1,171 @@
+package ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.AltStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.ConstraintsEvaluator;
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
+import ca.ucalgary.ispia.graphpatterns.graph.CompiledPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.util.LabelEnum;
+
+/**
+ * This class populates the candidates set based on the attribute requirements for nodes, using
+ * the value histograms to pick the most selective attribute requirement. Only the most selective
+ * graph pattern node of each connected component is populated; the candidates for the remaining nodes are derived
+ * through forward checking. Components without attribute requirements are populated with all of the nodes
+ * (for their node with the most relationships).
+ * @author szrrizvi
+ *
+ */
+public class SelectiveAttrStart implements AltStart<Node>{
+
+	private final GraphDatabaseService graphDb;					//GraphDatabaseService: Provides access to database
+	private final ConstraintsEvaluator<Node, Entity> constraintsEvaluator;		//ConstraintsEvaluator: Provides access to constraints evaluator component.
+	private final AttrHistograms histograms;					//AttrHistograms: Provides the selectivity estimates
+	private final CompiledPattern cp;							//The graph pattern (compiled), used for the connected components
+
+	/**
+	 * Initializes the instance variables.
+	 * @param graphDb The graph database service
+	 * @param constraintsEvaluator The constraints checker module
+	 * @param histograms The value histograms
+	 * @param gp The graph pattern associated with the current problem
+	 */
+	public SelectiveAttrStart(GraphDatabaseService graphDb, ConstraintsEvaluator<Node, Entity> constraintsEvaluator, AttrHistograms histograms, GraphPattern gp){
+		//Assign the instance variables.
+		this.graphDb = graphDb;
+		this.constraintsEvaluator = constraintsEvaluator;
+		this.histograms = histograms;
+		this.cp = gp.compile();
+	}
+
+	/**
+	 * Populates the candidates map for the graph pattern node with the most selective attribute requirement, in each
+	 * connected component of the graph pattern. Components that already have a populated node are skipped.
+	 * @param nodes The list of all nodes in the graph pattern
+	 * @param candidates The candidates map
+	 * @return False if the candidates set of a chosen node is empty, else true.
+	 *
+	 * Side Effect: candidates will be updated
+	 */
+	public boolean startPop(List<MyNode> nodes, Map<MyNode, Set<Node>> candidates){
+
+		boolean[] seen = new boolean[cp.getNumVars()];
+		int[] stack = new int[cp.getNumVars()];
+
+		for (int root = 0; root < cp.getNumVars(); root++){
+			if (seen[root]){
+				continue;
+			}
+
+			//Find the most selective attribute requirement in the component of root (depth first)
+			MyNode bestNode = null;
+			AttrPredicate bestPred = null;
+			int bestEst = Integer.MAX_VALUE;
+			int hub = root;					//The node with the most relationships, used if there are no requirements
+			boolean populated = false;		//True if a node of the component already has candidates
+
+			int top = 0;
+			stack[top++] = root;
+			seen[root] = true;
+			while (top > 0){
+				int v = stack[--top];
+				MyNode node = cp.getVar(v);
+				populated |= candidates.containsKey(node);
+				if (cp.getDegree(v) > cp.getDegree(hub)){
+					hub = v;
+				}
+
+				AttrPredicate[] preds = node.getCompiledAttrs();
+				for (int idx = 0; idx < preds.length; idx++){
+					int est = histograms.estimate(preds[idx]);
+					if (bestPred == null || est < bestEst){
+						bestNode = node;
+						bestPred = preds[idx];
+						bestEst = est;
+					}
+				}
+
+				for (int k = 0; k < cp.getDegree(v); k++){
+					int other = cp.getOther(v, k);
+					if (!seen[other]){
+						seen[other] = true;
+						stack[top++] = other;
+					}
+				}
+			}
+
+			if (populated){
+				continue;
+			}
+
+			Set<Node> nodeCads = (bestNode == null) ? findAll() : find(bestNode, bestPred);
+			if (nodeCads.isEmpty()){
+				return false;
+			}
+			candidates.put((bestNode == null) ? cp.getVar(hub) : bestNode, nodeCads);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds the nodes that satisfy the given attribute requirement, and the remaining requirements of the node.
+	 */
+	private Set<Node> find(MyNode node, AttrPredicate pred){
+		Set<Node> nodeCads = new HashSet<Node>();
+
+		try (Transaction tx = graphDb.beginTx()){
+			//Query the database for nodes that can satisfy the chosen attribute requirement
+			Object val = null;
+			if (pred instanceof AttrPredicate.IntEquals){
+				val = ((AttrPredicate.IntEquals) pred).getValue();
+			} else {
+				val = ((AttrPredicate.StringEquals) pred).getValue();
+			}
+
+			ResourceIterator<Node> rite = graphDb.findNodes(LabelEnum.PERSON, pred.getKey().trim(), val);
+
+			//Only keep the candidates that satisfy the remaining attribute requirements
+			while (rite.hasNext()){
+				Node candidate = rite.next();
+				if (constraintsEvaluator.checkAttrs(node, candidate)){
+					nodeCads.add(candidate);
+				}
+			}
+			rite.close();
+			tx.success();
+		}
+
+		return nodeCads;
+	}
+
+	/**
+	 * Finds all of the nodes.
+	 */
+	private Set<Node> findAll(){
+		Set<Node> nodeCads = new HashSet<Node>();
+
+		try (Transaction tx = graphDb.beginTx()){
+			ResourceIterator<Node> rite = graphDb.findNodes(LabelEnum.PERSON);
+			while (rite.hasNext()){
+				nodeCads.add(rite.next());
+			}
+			rite.close();
+			tx.success();
+		}
+
+		return nodeCads;
+	}
+}
@@ -0,0 +1,148 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.Map;
+
+import ca.ucalgary.ispia.graphpatterns.util.AttributeTypes;
+
+/**
+ * Represents a single attribute requirement (of a MyNode or MyRelationship) in a compiled, typed form.
+ * The requirement is parsed once when it is compiled, so that evaluating it against a property value
+ * does not require any string parsing, type lookups, or allocations.
+ * The property key is interned, so that it can be reused for every property lookup.
+ * @author szrrizvi
+ *
+ */
+public abstract class AttrPredicate {
+
+	private static final AttrPredicate[] EMPTY = new AttrPredicate[0];
+
+	private final String key;		//The (interned) name of the attribute
+
+	/**
+	 * Initializes the key.
+	 * @param key The name of the attribute.
+	 */
+	protected AttrPredicate(String key){
+		this.key = key.intern();
+	}
+
+	/**
+	 * @return The (interned) name of the attribute
+	 */
+	public String getKey(){
+		return this.key;
+	}
+
+	/**
+	 * Checks if the given property value satisfies the requirement.
+	 * @param val The property value from the database. Can be null if the property doesn't exist.
+	 * @return True if the value satisfies the requirement, else false.
+	 */
+	public abstract boolean test(Object val);
+
+	/**
+	 * Compiles the given attribute requirement. Attributes with int types (see AttributeTypes) are
+	 * compiled into int equality checks, and the remaining attributes are compiled into string equality checks.
+	 * @param key The name of the attribute.
+	 * @param val The required value of the attribute.
+	 * @return The compiled attribute requirement.
+	 */
+	public static AttrPredicate compile(String key, String val){
+		if (AttributeTypes.isIntType(key)){
+			try {
+				return new IntEquals(key, Integer.parseInt(val), val);
+			} catch (NumberFormatException e){
+				//If the required value is not an int, then fall through and compare as strings
+			}
+		}
+		return new StringEquals(key, val);
+	}
+
+	/**
+	 * Compiles all of the given attribute requirements.
+	 * @param attrs The map of attribute names and required values.
+	 * @return The array of compiled attribute requirements. Never null.
+	 */
+	public static AttrPredicate[] compileAll(Map<String, String> attrs){
+		if (attrs == null || attrs.isEmpty()){
+			return EMPTY;
+		}
+
+		AttrPredicate[] result = new AttrPredicate[attrs.size()];
+		int idx = 0;
+		for (String key : attrs.keySet()){
+			result[idx] = compile(key, attrs.get(key));
+			idx++;
+		}
+		return result;
+	}
+
+	/**
+	 * Int equality requirement.
+	 */
+	public static final class IntEquals extends AttrPredicate {
+		private final int reqVal;		//The required value
+		private final String reqStr;	//The required value as string, used if the property is not stored as an int
+
+		public IntEquals(String key, int reqVal, String reqStr){
+			super(key);
+			this.reqVal = reqVal;
+			this.reqStr = reqStr;
+		}
+
+		public int getValue(){
+			return this.reqVal;
+		}
+
+		public String getString(){
+			return this.reqStr;
+		}
+
+		@Override
+		public boolean test(Object val){
+			if (val instanceof Integer){
+				return ((Integer) val).intValue() == reqVal;
+			}
+			//The property is not stored as an int, compare it as it is
+			return reqStr.equals(val);
+		}
+
+		@Override
+		public String toString(){
+			return getKey() + " = " + reqVal;
+		}
+	}
+
+	/**
+	 * String equality requirement.
+	 */
+	public static final class StringEquals extends AttrPredicate {
+		private final String reqVal;	//The required value
+
+		public StringEquals(String key, String reqVal){
+			super(key);
+			this.reqVal = reqVal;
+		}
+
+		public String getValue(){
+			return this.reqVal;
+		}
+
+		@Override
+		public boolean test(Object val){
+			if (val == null){
+				return false;
+			}
+			if (val instanceof String){
+				return reqVal.equals(val);
+			}
+			//Non-string properties are compared based on their string representation
+			return reqVal.equals(String.valueOf(val));
+		}
+
+		@Override
+		public String toString(){
+			return getKey() + " = '" + reqVal + "'";
+		}
+	}
+}
@@ -0,0 +1,482 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.ucalgary.ispia.graphpatterns.util.AttributeTypes;
+
+/**
+ * Columnar store for the node and relationship attributes of an in-memory dataset.
+ * Each attribute is stored as a single int column: int typed attributes (see AttributeTypes) are stored as
+ * their values, and the remaining attributes are dictionary encoded. The node columns are indexed by the
+ * internal ordinals of the nodes (see IdDictionary); the relationship columns are indexed by the position of
+ * the relationship in the (sorted) relationship table.
+ *
+ * Since every column is a flat int array, an equality requirement is evaluated over a batch of rows with a
+ * single tight, branch-free loop (see filter).
+ *
+ * The node columns can also be indexed (see buildIndexes): the index of a column maps each value to the sorted
+ * posting list of the rows with that value.
+ *
+ * Besides the attributes in labels.data and the edge attributes (see AttributeTypes), the store contains the
+ * "id" column (the node ids) and any other attribute found in the dataset. Attributes without any values are
+ * not stored.
+ * @author szrrizvi
+ *
+ */
+public class AttributeStore {
+
+	private static final long NO_MATCH = Long.MIN_VALUE;	//Returned by Column.encode if no row can match
+
+	private final IdDictionary dict;				//Maps the node ids to the rows
+	private final MyNode[] nodes;					//The node for each row
+	private final Map<String, Column> nodeCols;		//The node attribute columns
+
+	private final long[] edgeKeys;					//(srcRow << 32 | tgtRow) for each relationship, sorted
+	private final int[] edgeTypes;					//The relationship type index for each relationship
+	private final Map<String, Column> edgeCols;		//The relationship attribute columns
+
+	private AttributeStore(IdDictionary dict, MyNode[] nodes, Map<String, Column> nodeCols, long[] edgeKeys, int[] edgeTypes, Map<String, Column> edgeCols){
+		this.dict = dict;
+		this.nodes = nodes;
+		this.nodeCols = nodeCols;
+		this.edgeKeys = edgeKeys;
+		this.edgeTypes = edgeTypes;
+		this.edgeCols = edgeCols;
+	}
+
+	/**
+	 * Builds the store for the given dataset, using the dictionary of the dataset (see DataSet.getDictionary),
+	 * so the rows are aligned with the ordinals of the other in-memory stores.
+	 * @param dataSet The dataset
+	 * @return The attribute store
+	 */
+	public static AttributeStore build(DataSet dataSet){
+		return build(dataSet, dataSet.getDictionary());
+	}
+
+	/**
+	 * Builds the store for the given dataset, using the given id dictionary. Using the dictionary of the
+	 * DataSetInterface (see DataSetInterface.getDictionary) keeps the rows aligned with its ordinals.
+	 * @param dataSet The dataset
+	 * @param dict The id dictionary, built for the dataset
+	 * @return The attribute store
+	 */
+	public static AttributeStore build(DataSet dataSet, IdDictionary dict){
+		int numNodes = dict.size();
+
+		//The nodes per row
+		MyNode[] nodes = new MyNode[numNodes];
+		for (MyNode node : dataSet.getNodes()){
+			nodes[dict.toInternal(node)] = node;
+		}
+
+		//The node columns: labels.data, and the attributes found in the dataset
+		Set<String> names = new LinkedHashSet<String>();
+		List<String> vertexAttrs = AttributeTypes.getVertexAttributes();
+		if (vertexAttrs != null){
+			names.addAll(vertexAttrs);
+		}
+		for (MyNode node : nodes){
+			names.addAll(node.getAttributes().keySet());
+		}
+		names.remove("id");
+
+		Map<String, Column> nodeCols = new HashMap<String, Column>();
+		for (String name : names){
+			String[] vals = new String[numNodes];
+			for (int row = 0; row < numNodes; row++){
+				vals[row] = nodes[row].getAttribute(name);
+			}
+			Column col = Column.build(name, vals);
+			if (col != null){
+				nodeCols.put(name.intern(), col);
+			}
+		}
+
+		//The id column
+		int[] ids = new int[numNodes];
+		for (int row = 0; row < numNodes; row++){
+			String id = nodes[row].getAttribute("id");
+			ids[row] = (id == null) ? nodes[row].getId() : Integer.parseInt(id);
+		}
+		nodeCols.put("id", new Column(ids, null));
+
+		//The relationship table, sorted by (srcRow, tgtRow)
+		List<MyRelationship> rels = new ArrayList<MyRelationship>();
+		for (Set<MyRelationship> out : dataSet.getOutgoingRels().values()){
+			rels.addAll(out);
+		}
+		//Counting sort by the source row, then sort each segment by the target row
+		int numRels = rels.size();
+		int[] offsets = new int[numNodes + 1];
+		for (MyRelationship rel : rels){
+			offsets[dict.toInternal(rel.getSource()) + 1]++;
+		}
+		for (int row = 0; row < numNodes; row++){
+			offsets[row + 1] += offsets[row];
+		}
+		//(tgtRow << 32 | index in rels), placed in the segment of the source row
+		long[] packed = new long[numRels];
+		int[] cursor = Arrays.copyOf(offsets, numNodes);
+		for (int idx = 0; idx < numRels; idx++){
+			MyRelationship rel = rels.get(idx);
+			packed[cursor[dict.toInternal(rel.getSource())]++] = ((long) dict.toInternal(rel.getTarget()) << 32) | idx;
+		}
+		cursor = null;
+
+		long[] edgeKeys = new long[numRels];
+		int[] edgeTypes = new int[numRels];
+		int[] perm = new int[numRels];
+		for (int row = 0; row < numNodes; row++){
+			Arrays.sort(packed, offsets[row], offsets[row + 1]);
+			for (int pos = offsets[row]; pos < offsets[row + 1]; pos++){
+				perm[pos] = (int) packed[pos];
+				edgeKeys[pos] = edgeKey(row, (int) (packed[pos] >>> 32));
+				edgeTypes[pos] = rels.get(perm[pos]).getIdentifier().getIdx();
+			}
+		}
+		packed = null;
+
+		//The relationship columns: the edge attributes, and the attributes found in the dataset
+		Set<String> edgeNames = new LinkedHashSet<String>(AttributeTypes.getEdgeAttributes());
+		for (MyRelationship rel : rels){
+			edgeNames.addAll(rel.getAttributes().keySet());
+		}
+		Map<String, Column> edgeCols = new HashMap<String, Column>();
+		for (String name : edgeNames){
+			String[] vals = new String[numRels];
+			for (int idx = 0; idx < numRels; idx++){
+				vals[idx] = rels.get(perm[idx]).getAttribute(name);
+			}
+			Column col = Column.build(name, vals);
+			if (col != null){
+				edgeCols.put(name.intern(), col);
+			}
+		}
+
+		return new AttributeStore(dict, nodes, nodeCols, edgeKeys, edgeTypes, edgeCols);
+	}
+
+	private static long edgeKey(int srcRow, int tgtRow){
+		return ((long) srcRow << 32) | (tgtRow & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * @return The id dictionary that maps the node ids to the rows
+	 */
+	public IdDictionary getDictionary(){
+		return this.dict;
+	}
+
+	/**
+	 * Returns the row for the given node (cached in the node, see IdDictionary.toInternal(MyNode)).
+	 * @param node The node
+	 * @return The row, or -1 if the node is not in the store.
+	 */
+	public int getRow(MyNode node){
+		return dict.toInternal(node);
+	}
+
+	/**
+	 * @param row The row
+	 * @return The node at the given row
+	 */
+	public MyNode getNode(int row){
+		return nodes[row];
+	}
+
+	/**
+	 * @return The number of node rows
+	 */
+	public int numRows(){
+		return nodes.length;
+	}
+
+	/**
+	 * Builds the (value -> rows) indexes for all of the node columns. Should be invoked at load time;
+	 * otherwise the index of a column is built on its first use (see getPostings).
+	 */
+	public void buildIndexes(){
+		for (Column col : nodeCols.values()){
+			col.buildIndex();
+		}
+	}
+
+	/**
+	 * Returns the posting list for the given attribute requirement, i.e. the sorted rows of the nodes that
+	 * satisfy the requirement.
+	 * @param pred The attribute requirement
+	 * @return The sorted rows. Must not be modified.
+	 */
+	public IntSlice getPostings(AttrPredicate pred){
+		Column col = nodeCols.get(pred.getKey());
+		if (col == null){
+			return IntSlice.EMPTY;
+		}
+		col.buildIndex();
+		return col.postings(pred);
+	}
+
+	/**
+	 * Filters the given node rows, based on the given attribute requirements. The rows that satisfy all of the
+	 * requirements are moved to the front of the array (in their original order).
+	 * @param preds The attribute requirements
+	 * @param rows The node rows
+	 * @param len The number of rows (starting at index 0) to filter
+	 * @return The number of rows that satisfy the requirements.
+	 */
+	public int filter(AttrPredicate[] preds, int[] rows, int len){
+		for (int idx = 0; idx < preds.length && len > 0; idx++){
+			Column col = nodeCols.get(preds[idx].getKey());
+			long code = (col == null) ? NO_MATCH : col.encode(preds[idx]);
+			if (code == NO_MATCH){
+				return 0;
+			}
+			len = col.filterEquals((int) code, rows, len);
+		}
+		return len;
+	}
+
+	/**
+	 * Checks if the given node row satisfies the given attribute requirements.
+	 * @param preds The attribute requirements
+	 * @param row The node row
+	 * @return True if the row satisfies all of the requirements, else false.
+	 */
+	public boolean matches(AttrPredicate[] preds, int row){
+		if (row < 0){
+			return preds.length == 0;
+		}
+		for (int idx = 0; idx < preds.length; idx++){
+			Column col = nodeCols.get(preds[idx].getKey());
+			long code = (col == null) ? NO_MATCH : col.encode(preds[idx]);
+			if (code == NO_MATCH || col.vals[row] != (int) code){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if a relationship (srcRow)-[relType]->(tgtRow) that satisfies the given attribute requirements exists.
+	 * @param preds The attribute requirements
+	 * @param srcRow The source node row
+	 * @param tgtRow The target node row
+	 * @param relTypeIdx The relationship type index
+	 * @return True if such a relationship exists, else false.
+	 */
+	public boolean edgeMatches(AttrPredicate[] preds, int srcRow, int tgtRow, int relTypeIdx){
+		if (srcRow < 0 || tgtRow < 0){
+			return false;
+		}
+
+		//Find the first relationship between the nodes
+		long key = edgeKey(srcRow, tgtRow);
+		int pos = Arrays.binarySearch(edgeKeys, key);
+		if (pos < 0){
+			return false;
+		}
+		while (pos > 0 && edgeKeys[pos - 1] == key){
+			pos--;
+		}
+
+		//Check the parallel relationships of the given type
+		for (; pos < edgeKeys.length && edgeKeys[pos] == key; pos++){
+			if (edgeTypes[pos] != relTypeIdx){
+				continue;
+			}
+			boolean match = true;
+			for (int idx = 0; idx < preds.length && match; idx++){
+				Column col = edgeCols.get(preds[idx].getKey());
+				long code = (col == null) ? NO_MATCH : col.encode(preds[idx]);
+				match = code != NO_MATCH && col.vals[pos] == (int) code;
+			}
+			if (match){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A single attribute column. The values are either the int values of the attribute (dict == null), with
+	 * Integer.MIN_VALUE for absent values, or the codes of the dictionary encoded values, with -1 for absent values.
+	 */
+	private static final class Column {
+		private final int[] vals;					//The value (or code) per row
+		private final Map<String, Integer> dict;	//The dictionary; null for int columns
+
+		private int[] postKeys;						//The distinct (encoded) values, sorted; null if not indexed
+		private int[] postOffsets;					//The offsets of the posting lists, per value
+		private int[] postRows;						//The posting lists, each sorted by row
+
+		private Column(int[] vals, Map<String, Integer> dict){
+			this.vals = vals;
+			this.dict = dict;
+		}
+
+		/**
+		 * Builds the column for the given values. An int column is built if the attribute has an int type and all of
+		 * the values are ints, else a dictionary encoded column is built.
+		 * @return The column, or null if none of the rows have a value (a missing column matches no rows).
+		 */
+		private static Column build(String name, String[] vals){
+			boolean empty = true;
+			for (int row = 0; row < vals.length && empty; row++){
+				empty = vals[row] == null;
+			}
+			if (empty){
+				return null;
+			}
+
+			if (AttributeTypes.isIntType(name)){
+				int[] ints = new int[vals.length];
+				boolean allInts = true;
+				for (int row = 0; row < vals.length && allInts; row++){
+					if (vals[row] == null){
+						ints[row] = Integer.MIN_VALUE;
+					} else {
+						try {
+							ints[row] = Integer.parseInt(vals[row]);
+							allInts = ints[row] != Integer.MIN_VALUE;
+						} catch (NumberFormatException e){
+							allInts = false;
+						}
+					}
+				}
+				if (allInts){
+					return new Column(ints, null);
+				}
+			}
+
+			Map<String, Integer> dict = new HashMap<String, Integer>();
+			int[] codes = new int[vals.length];
+			for (int row = 0; row < vals.length; row++){
+				if (vals[row] == null){
+					codes[row] = -1;
+				} else {
+					Integer code = dict.get(vals[row]);
+					if (code == null){
+						code = dict.size();
+						dict.put(vals[row], code);
+					}
+					codes[row] = code;
+				}
+			}
+			return new Column(codes, dict);
+		}
+
+		/**
+		 * Encodes the required value of the given predicate into the value space of the column.
+		 * @return The encoded value, or NO_MATCH if no row can satisfy the predicate.
+		 */
+		private long encode(AttrPredicate pred){
+			if (dict == null){
+				if (pred instanceof AttrPredicate.IntEquals){
+					int val = ((AttrPredicate.IntEquals) pred).getValue();
+					return (val == Integer.MIN_VALUE) ? NO_MATCH : val;
+				}
+				//A non int requirement can't match an int value
+				return NO_MATCH;
+			}
+
+			String val;
+			if (pred instanceof AttrPredicate.IntEquals){
+				val = ((AttrPredicate.IntEquals) pred).getString();
+			} else {
+				val = ((AttrPredicate.StringEquals) pred).getValue();
+			}
+			Integer code = dict.get(val);
+			return (code == null) ? NO_MATCH : code;
+		}
+
+		/**
+		 * Keeps the rows whose value equals the given (encoded) value, and moves them to the front of the array.
+		 * The loop is branch-free, so that the JIT can unroll it.
+		 * @return The number of rows kept.
+		 */
+		private int filterEquals(int code, int[] rows, int len){
+			int[] vals = this.vals;
+			int kept = 0;
+			for (int idx = 0; idx < len; idx++){
+				int row = rows[idx];
+				rows[kept] = row;
+				kept += (vals[row] == code) ? 1 : 0;
+			}
+			return kept;
+		}
+
+		/**
+		 * Builds the index of the column, if it hasn't been built yet.
+		 */
+		private synchronized void buildIndex(){
+			if (postKeys != null){
+				return;
+			}
+			int absent = (dict == null) ? Integer.MIN_VALUE : -1;
+
+			//Sort the (value, row) pairs, packed into longs
+			int numPresent = 0;
+			for (int row = 0; row < vals.length; row++){
+				if (vals[row] != absent){
+					numPresent++;
+				}
+			}
+			long[] pairs = new long[numPresent];
+			int pos = 0;
+			for (int row = 0; row < vals.length; row++){
+				if (vals[row] != absent){
+					pairs[pos] = ((long) vals[row] << 32) | row;
+					pos++;
+				}
+			}
+			Arrays.sort(pairs);
+
+			//Split into the distinct values and their posting lists
+			int numKeys = 0;
+			for (pos = 0; pos < pairs.length; pos++){
+				if (pos == 0 || (int) (pairs[pos] >> 32) != (int) (pairs[pos - 1] >> 32)){
+					numKeys++;
+				}
+			}
+			int[] keys = new int[numKeys];
+			int[] offsets = new int[numKeys + 1];
+			int[] rows = new int[pairs.length];
+			int key = -1;
+			for (pos = 0; pos < pairs.length; pos++){
+				if (pos == 0 || (int) (pairs[pos] >> 32) != (int) (pairs[pos - 1] >> 32)){
+					key++;
+					keys[key] = (int) (pairs[pos] >> 32);
+					offsets[key] = pos;
+				}
+				rows[pos] = (int) pairs[pos];
+			}
+			offsets[numKeys] = pairs.length;
+
+			this.postRows = rows;
+			this.postOffsets = offsets;
+			this.postKeys = keys;
+		}
+
+		/**
+		 * Returns the posting list for the given predicate. Assumption: The index has been built.
+		 */
+		private IntSlice postings(AttrPredicate pred){
+			long code = encode(pred);
+			if (code == NO_MATCH){
+				return IntSlice.EMPTY;
+			}
+			int pos = Arrays.binarySearch(postKeys, (int) code);
+			if (pos < 0){
+				return IntSlice.EMPTY;
+			}
+			return new IntSlice(postRows, postOffsets[pos], postOffsets[pos + 1]);
+		}
+	}
+}
@@ -0,0 +1,687 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Stores the in-memory dataset in the compressed sparse row (CSR) format. For each direction there is an
+ * offsets array and a targets array. The nodes are identified by their dense internal ordinals (see IdDictionary),
+ * so the arrays are sized by the number of nodes, regardless of the ids. The neighbours of node n, for relationship
+ * type t, are stored in targets[offsets[n*numRelTypes + t] .. offsets[n*numRelTypes + t + 1]), sorted by ordinal
+ * and without duplicates. Compared to DataSetInterface, there are no per (node, relType) sets, and no boxed 
+ * references; the adjacency is just two int arrays per direction.
+ *
+ * Optionally, the neighbourhoods of the hubs (see buildHubIndex) are also stored as compressed bitmaps, so that
+ * membership checks against a hub's neighbourhood take constant time, and the neighbourhood does not have to be
+ * materialized for filtering the candidates (see getNeighbours).
+ *
+ * Assumption: After a CSRGraph has been built, it does not add/remove any relationships/nodes.
+ * @author szrrizvi
+ *
+ */
+public class CSRGraph implements GraphStore {
+
+	public static final int NO_HUBS = 0;	//The hub degree for building a graph without a hub index
+
+	private final IdDictionary dict;	//Maps the node ids to the internal ordinals
+	private final int numNodes;			//The number of nodes
+	private final int numRelTypes;		//The number of relationship types
+
+	private final int[] outOffsets;		//Offsets for the outgoing relationships
+	private final int[] outTargets;		//Targets of the outgoing relationships
+	private final int[] inOffsets;		//Offsets for the incoming relationships
+	private final int[] inTargets;		//Sources of the incoming relationships
+
+	private final MyNode[] nodes;		//The nodes, indexed by ordinal
+
+	private volatile HubIndex hubs;		//The hub neighbourhoods (null if there is no hub index)
+
+	/**
+	 * Initializes the graph from already built CSR arrays. The ordinals of the nodes are cached in the nodes
+	 * (see IdDictionary.toInternal(MyNode)).
+	 * @param dict The id dictionary
+	 * @param numRelTypes The number of relationship types
+	 * @param outOffsets Offsets for the outgoing relationships. Length: dict.size()*numRelTypes + 1
+	 * @param outTargets Targets of the outgoing relationships
+	 * @param inOffsets Offsets for the incoming relationships. Length: dict.size()*numRelTypes + 1
+	 * @param inTargets Sources of the incoming relationships
+	 * @param nodes The nodes, indexed by ordinal. Length: dict.size()
+	 */
+	public CSRGraph(IdDictionary dict, int numRelTypes, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inTargets, MyNode[] nodes){
+		this.dict = dict;
+		this.numNodes = dict.size();
+		this.numRelTypes = numRelTypes;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.inOffsets = inOffsets;
+		this.inTargets = inTargets;
+		this.nodes = nodes;
+
+		for (int ord = 0; ord < numNodes; ord++){
+			dict.bind(nodes[ord], ord);
+		}
+	}
+
+	/**
+	 * Builds the CSR representation of the given dataset, using the dictionary of the dataset (see DataSet.getDictionary).
+	 * @param dataSet The dataset
+	 * @return The CSR representation
+	 */
+	public static CSRGraph fromDataSet(DataSet dataSet){
+		return fromDataSet(dataSet, dataSet.getDictionary(), NO_HUBS);
+	}
+
+	/**
+	 * Builds the CSR representation of the given dataset, using the dictionary of the dataset (see DataSet.getDictionary),
+	 * and its hub index (see buildHubIndex).
+	 * @param dataSet The dataset
+	 * @param hubDegree The minimum degree of a hub neighbourhood; NO_HUBS for no hub index
+	 * @return The CSR representation
+	 */
+	public static CSRGraph fromDataSet(DataSet dataSet, int hubDegree){
+		return fromDataSet(dataSet, dataSet.getDictionary(), hubDegree);
+	}
+
+	/**
+	 * Builds the CSR representation of the given dataset, using the given id dictionary.
+	 * @param dataSet The dataset
+	 * @param dict The id dictionary, built for the dataset
+	 * @param hubDegree The minimum degree of a hub neighbourhood; NO_HUBS for no hub index
+	 * @return The CSR representation
+	 */
+	public static CSRGraph fromDataSet(DataSet dataSet, IdDictionary dict, int hubDegree){
+		MyNode[] nodes = new MyNode[dict.size()];
+		for (MyNode node : dataSet.getNodes()){
+			nodes[dict.toInternal(node)] = node;
+		}
+
+		//Count the relationships
+		Map<MyNode, Set<MyRelationship>> relationships = dataSet.getOutgoingRels();
+		int numEdges = 0;
+		for (Set<MyRelationship> rels : relationships.values()){
+			numEdges += rels.size();
+		}
+
+		//Flatten the relationships into edge arrays
+		int[] src = new int[numEdges];
+		int[] tgt = new int[numEdges];
+		int[] type = new int[numEdges];
+		int idx = 0;
+		for (MyNode key : relationships.keySet()){
+			for (MyRelationship rel : relationships.get(key)){
+				src[idx] = dict.toInternal(key);
+				tgt[idx] = dict.toInternal(rel.getTarget());
+				type[idx] = rel.getIdentifier().getIdx();
+				idx++;
+			}
+		}
+
+		return fromEdges(dict, RelType.values().length, src, tgt, type, numEdges, nodes, hubDegree);
+	}
+
+	/**
+	 * Builds the CSR representation from the given edge arrays. Duplicate edges are removed.
+	 * @param dict The id dictionary
+	 * @param numRelTypes The number of relationship types
+	 * @param src The source node ordinals
+	 * @param tgt The target node ordinals
+	 * @param type The relationship type indices (see RelType.getIdx)
+	 * @param numEdges The number of edges in the arrays
+	 * @param nodes The nodes, indexed by ordinal. Length: dict.size()
+	 * @param hubDegree The minimum degree of a hub neighbourhood; NO_HUBS for no hub index
+	 * @return The CSR representation
+	 */
+	public static CSRGraph fromEdges(IdDictionary dict, int numRelTypes, int[] src, int[] tgt, int[] type, int numEdges, MyNode[] nodes, int hubDegree){
+		int[][] out = buildDirection(dict.size(), numRelTypes, src, tgt, type, numEdges);
+		int[][] in = buildDirection(dict.size(), numRelTypes, tgt, src, type, numEdges);
+
+		CSRGraph graph = new CSRGraph(dict, numRelTypes, out[0], out[1], in[0], in[1], nodes);
+		graph.buildHubIndex(hubDegree);
+		return graph;
+	}
+
+	/**
+	 * Builds the CSR representation from already filled offsets and targets arrays, whose segments are not sorted
+	 * yet and may contain duplicates (e.g. filled by a loader, see EdgeListLoader). The segments are sorted and the
+	 * duplicates are removed in place.
+	 * @param dict The id dictionary
+	 * @param numRelTypes The number of relationship types
+	 * @param outOffsets Offsets for the outgoing relationships. Length: dict.size()*numRelTypes + 1. Modified.
+	 * @param outTargets Targets of the outgoing relationships (ordinals). Modified.
+	 * @param inOffsets Offsets for the incoming relationships. Length: dict.size()*numRelTypes + 1. Modified.
+	 * @param inTargets Sources of the incoming relationships (ordinals). Modified.
+	 * @param nodes The nodes, indexed by ordinal. Length: dict.size()
+	 * @param hubDegree The minimum degree of a hub neighbourhood; NO_HUBS for no hub index
+	 * @return The CSR representation
+	 */
+	public static CSRGraph fromAdjacency(IdDictionary dict, int numRelTypes, int[] outOffsets, int[] outTargets, int[] inOffsets, int[] inTargets, MyNode[] nodes, int hubDegree){
+		outTargets = sortSegments(outOffsets, outTargets);
+		inTargets = sortSegments(inOffsets, inTargets);
+
+		CSRGraph graph = new CSRGraph(dict, numRelTypes, outOffsets, outTargets, inOffsets, inTargets, nodes);
+		graph.buildHubIndex(hubDegree);
+		return graph;
+	}
+
+	/**
+	 * Replaces the external ids in the given array with the internal ordinals. Used by the loaders, which read the
+	 * edges as ids.
+	 * @param dict The id dictionary; must contain all of the ids
+	 * @param ids The ids
+	 * @param count The number of ids in the array
+	 */
+	public static void toInternal(IdDictionary dict, int[] ids, int count){
+		for (int idx = 0; idx < count; idx++){
+			ids[idx] = dict.toInternal(ids[idx]);
+		}
+	}
+
+	/**
+	 * Builds the offsets and targets arrays for one direction.
+	 * @return {offsets, targets}
+	 */
+	private static int[][] buildDirection(int numNodes, int numRelTypes, int[] from, int[] to, int[] type, int numEdges){
+		int numKeys = numNodes * numRelTypes;
+		int[] offsets = new int[numKeys + 1];
+
+		//Count the edges per (node, relType)
+		for (int idx = 0; idx < numEdges; idx++){
+			offsets[from[idx] * numRelTypes + type[idx] + 1]++;
+		}
+
+		//Prefix sums
+		for (int idx = 0; idx < numKeys; idx++){
+			offsets[idx + 1] += offsets[idx];
+		}
+
+		//Fill the targets
+		int[] targets = new int[numEdges];
+		int[] cursor = Arrays.copyOf(offsets, numKeys);
+		for (int idx = 0; idx < numEdges; idx++){
+			int key = from[idx] * numRelTypes + type[idx];
+			targets[cursor[key]] = to[idx];
+			cursor[key]++;
+		}
+		cursor = null;
+
+		targets = sortSegments(offsets, targets);
+		return new int[][]{offsets, targets};
+	}
+
+	/**
+	 * Sorts each segment of the targets array and removes the duplicates in place; the offsets are updated.
+	 * @param offsets The offsets of the segments. Modified.
+	 * @param targets The targets. Modified.
+	 * @return The targets, trimmed to the remaining entries.
+	 */
+	private static int[] sortSegments(int[] offsets, int[] targets){
+		int numKeys = offsets.length - 1;
+		int write = 0;
+		int start = 0;
+		for (int key = 0; key < numKeys; key++){
+			int end = offsets[key + 1];
+			Arrays.sort(targets, start, end);
+
+			offsets[key] = write;
+			for (int idx = start; idx < end; idx++){
+				if (idx == start || targets[idx] != targets[idx - 1]){
+					targets[write] = targets[idx];
+					write++;
+				}
+			}
+			start = end;
+		}
+		offsets[numKeys] = write;
+
+		if (write < targets.length){
+			targets = Arrays.copyOf(targets, write);
+		}
+		return targets;
+	}
+
+	/**
+	 * Builds the hub index: every (node, relType, direction) neighbourhood with at least minDegree neighbours is
+	 * also stored as a bitmap. Replaces the previous hub index (if any). Usually called through the hubDegree of
+	 * fromDataSet/fromEdges (or the loaders).
+	 * @param minDegree The minimum degree of a hub neighbourhood; NO_HUBS (or less) removes the hub index
+	 * @return The number of hub neighbourhoods
+	 */
+	public int buildHubIndex(int minDegree){
+		if (minDegree <= NO_HUBS){
+			this.hubs = null;
+			return 0;
+		}
+
+		int numKeys = numNodes * numRelTypes;
+		IntBitmap[] outHubs = new IntBitmap[numKeys];
+		IntBitmap[] inHubs = new IntBitmap[numKeys];
+		int numHubs = 0;
+		for (int key = 0; key < numKeys; key++){
+			if (outOffsets[key + 1] - outOffsets[key] >= minDegree){
+				outHubs[key] = IntBitmap.fromSorted(outTargets, outOffsets[key], outOffsets[key + 1]);
+				numHubs++;
+			}
+			if (inOffsets[key + 1] - inOffsets[key] >= minDegree){
+				inHubs[key] = IntBitmap.fromSorted(inTargets, inOffsets[key], inOffsets[key + 1]);
+				numHubs++;
+			}
+		}
+		this.hubs = new HubIndex(outHubs, inHubs, minDegree);
+		return numHubs;
+	}
+
+	/**
+	 * @return The minimum degree of the hub neighbourhoods, or NO_HUBS if there is no hub index
+	 */
+	public int getHubDegree(){
+		HubIndex hubs = this.hubs;
+		return (hubs == null) ? NO_HUBS : hubs.minDegree;
+	}
+
+	/**
+	 * Returns the bitmap of the neighbours of the given node, if the neighbourhood is a hub neighbourhood.
+	 * @param ord The node ordinal
+	 * @param relTypeIdx The relationship type index
+	 * @param dir The direction of relationships (INCOMING or OUTGOING)
+	 * @return The bitmap (of ordinals), or null if the neighbourhood is not in the hub index.
+	 */
+	public IntBitmap getHubBitmap(int ord, int relTypeIdx, MyDirection dir){
+		HubIndex hubs = this.hubs;
+		if (hubs == null || ord < 0 || ord >= numNodes){
+			return null;
+		}
+		return hubs.get(ord * numRelTypes + relTypeIdx, dir);
+	}
+
+	/**
+	 * Returns the intersection of the two sets. If both sets are hub neighbourhoods of this graph (see
+	 * getNeighbours), then their bitmaps are intersected (see IntBitmap.and) and the result is again a read-only
+	 * view; else the smaller set is filtered by the larger one.
+	 * @param first The first set. Not modified.
+	 * @param second The second set. Not modified.
+	 * @return The nodes that are in both sets
+	 */
+	public Set<MyNode> intersect(Set<MyNode> first, Set<MyNode> second){
+		IntBitmap firstBitmap = hubBitmap(first);
+		IntBitmap secondBitmap = hubBitmap(second);
+		if (firstBitmap != null && secondBitmap != null){
+			return new HubNeighbours(firstBitmap.and(secondBitmap));
+		}
+
+		Set<MyNode> small = (first.size() <= second.size()) ? first : second;
+		Set<MyNode> large = (small == first) ? second : first;
+		Set<MyNode> result = new HashSet<MyNode>();
+		for (MyNode node : small){
+			if (large.contains(node)){
+				result.add(node);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The bitmap of the set, if it is a hub neighbourhood of this graph, else null.
+	 */
+	private IntBitmap hubBitmap(Set<MyNode> set){
+		if (set instanceof HubNeighbours && ((HubNeighbours) set).graph() == this){
+			return ((HubNeighbours) set).bitmap;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the neighbours of the given node, without copying them.
+	 * @param ord The node ordinal
+	 * @param relTypeIdx The relationship type index
+	 * @param dir The direction of relationships (INCOMING or OUTGOING)
+	 * @return The sorted neighbour ordinals.
+	 */
+	public IntSlice neighbours(int ord, int relTypeIdx, MyDirection dir){
+		if (ord < 0 || ord >= numNodes){
+			return IntSlice.EMPTY;
+		}
+		int key = ord * numRelTypes + relTypeIdx;
+
+		if (dir == MyDirection.OUTGOING){
+			return new IntSlice(outTargets, outOffsets[key], outOffsets[key + 1]);
+		} else if (dir == MyDirection.INCOMING){
+			return new IntSlice(inTargets, inOffsets[key], inOffsets[key + 1]);
+		} else {
+			throw new IllegalArgumentException("Slices are only available for a single direction: " + dir);
+		}
+	}
+
+	/**
+	 * Checks if the relationship (src)-[relType]->(tgt) exists.
+	 * @param src The source node ordinal
+	 * @param tgt The target node ordinal
+	 * @param relTypeIdx The relationship type index
+	 * @return True if the relationship exists, else false.
+	 */
+	public boolean hasEdge(int src, int tgt, int relTypeIdx){
+		if (src < 0 || src >= numNodes || tgt < 0 || tgt >= numNodes){
+			return false;
+		}
+		int outKey = src * numRelTypes + relTypeIdx;
+		int inKey = tgt * numRelTypes + relTypeIdx;
+
+		//Probe the hub bitmaps, if either endpoint is a hub
+		HubIndex hubs = this.hubs;
+		if (hubs != null){
+			IntBitmap bitmap = hubs.outHubs[outKey];
+			if (bitmap != null){
+				return bitmap.contains(tgt);
+			}
+			bitmap = hubs.inHubs[inKey];
+			if (bitmap != null){
+				return bitmap.contains(src);
+			}
+		}
+
+		//Search the shorter adjacency list
+		int outSize = outOffsets[outKey + 1] - outOffsets[outKey];
+		int inSize = inOffsets[inKey + 1] - inOffsets[inKey];
+
+		if (outSize <= inSize){
+			return Arrays.binarySearch(outTargets, outOffsets[outKey], outOffsets[outKey + 1], tgt) >= 0;
+		} else {
+			return Arrays.binarySearch(inTargets, inOffsets[inKey], inOffsets[inKey + 1], src) >= 0;
+		}
+	}
+
+	/**
+	 * Returns the set of neighbours from the given node, based on the given relType and direction.
+	 * For a single direction, a read-only view backed by the adjacency slice is returned, so nothing is copied;
+	 * contains is a binary search over the slice. For hub neighbourhoods the view is backed by the hub bitmap
+	 * instead, so that retainAll/containsAll against it are bitmap probes. For BOTH directions, the set is
+	 * materialized.
+	 * @param node The node
+	 * @param relType The relationship type
+	 * @param dir The direction of relationships
+	 * @return The set of neighbours to/from the given node.
+	 */
+	public Set<MyNode> getNeighbours(MyNode node, RelType relType, MyDirection dir){
+		int ord = dict.toInternal(node);
+		if (dir != MyDirection.BOTH){
+			IntBitmap bitmap = getHubBitmap(ord, relType.getIdx(), dir);
+			if (bitmap != null){
+				return new HubNeighbours(bitmap);
+			}
+			return new SliceNeighbours(neighbours(ord, relType.getIdx(), dir));
+		}
+
+		Set<MyNode> result = new HashSet<MyNode>();
+
+		if (dir == MyDirection.OUTGOING || dir == MyDirection.BOTH){
+			addAll(neighbours(ord, relType.getIdx(), MyDirection.OUTGOING), result);
+		}
+		if (dir == MyDirection.INCOMING || dir == MyDirection.BOTH){
+			addAll(neighbours(ord, relType.getIdx(), MyDirection.INCOMING), result);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Adds the nodes in the given slice to the result set.
+	 */
+	private void addAll(IntSlice slice, Set<MyNode> result){
+		for (int idx = 0; idx < slice.size(); idx++){
+			result.add(nodes[slice.get(idx)]);
+		}
+	}
+
+	public boolean hasNeighbour(MyNode node, RelType relType, MyDirection dir, MyNode other){
+		int ord = dict.toInternal(node);
+		int otherOrd = dict.toInternal(other);
+		if (dir == MyDirection.OUTGOING){
+			return hasEdge(ord, otherOrd, relType.getIdx());
+		} else if (dir == MyDirection.INCOMING){
+			return hasEdge(otherOrd, ord, relType.getIdx());
+		} else {
+			return hasEdge(ord, otherOrd, relType.getIdx()) || hasEdge(otherOrd, ord, relType.getIdx());
+		}
+	}
+
+	public int getDegree(MyNode node, RelType relType, MyDirection dir){
+		if (dir == MyDirection.BOTH){
+			return getNeighbours(node, relType, dir).size();
+		}
+		return neighbours(dict.toInternal(node), relType.getIdx(), dir).size();
+	}
+
+	public int getInDegree(MyNode node){
+		return degree(inOffsets, dict.toInternal(node));
+	}
+
+	public int getOutDegree(MyNode node){
+		return degree(outOffsets, dict.toInternal(node));
+	}
+
+	public int getTotalDegree(MyNode node){
+		return getInDegree(node) + getOutDegree(node);
+	}
+
+	/**
+	 * @return The number of neighbours over all relationship types, for the given offsets array
+	 */
+	private int degree(int[] offsets, int ord){
+		if (ord < 0 || ord >= numNodes){
+			return 0;
+		}
+		return offsets[(ord + 1) * numRelTypes] - offsets[ord * numRelTypes];
+	}
+
+	/**
+	 * Returns the node with the given id.
+	 * @param id The (external) node id
+	 * @return The node, or null if the graph doesn't contain the node.
+	 */
+	public MyNode findNode(int id){
+		int ord = dict.toInternal(id);
+		if (ord < 0){
+			return null;
+		}
+		return nodes[ord];
+	}
+
+	/**
+	 * @param ord The node ordinal
+	 * @return The node with the given ordinal
+	 */
+	public MyNode getNode(int ord){
+		return nodes[ord];
+	}
+
+	/**
+	 * @return The nodes, indexed by their internal ordinals. Does not contain nulls.
+	 */
+	public MyNode[] getNodes(){
+		return this.nodes;
+	}
+
+	/**
+	 * @return The id dictionary
+	 */
+	public IdDictionary getDictionary(){
+		return this.dict;
+	}
+
+	/**
+	 * @return The number of nodes
+	 */
+	public int getNumNodes(){
+		return this.numNodes;
+	}
+
+	public int getNumRelTypes(){
+		return this.numRelTypes;
+	}
+
+	/**
+	 * @return The number of (distinct) relationships
+	 */
+	public int getNumEdges(){
+		return this.outTargets.length;
+	}
+
+	public int[] getOutOffsets(){
+		return this.outOffsets;
+	}
+
+	public int[] getOutTargets(){
+		return this.outTargets;
+	}
+
+	public int[] getInOffsets(){
+		return this.inOffsets;
+	}
+
+	public int[] getInTargets(){
+		return this.inTargets;
+	}
+
+	/**
+	 * Read-only view of a neighbourhood, backed by its adjacency slice.
+	 */
+	private final class SliceNeighbours extends AbstractSet<MyNode> {
+		private final IntSlice slice;
+
+		private SliceNeighbours(IntSlice slice){
+			this.slice = slice;
+		}
+
+		@Override
+		public boolean contains(Object obj){
+			if (!(obj instanceof MyNode)){
+				return false;
+			}
+			return slice.contains(dict.toInternal((MyNode) obj));
+		}
+
+		@Override
+		public int size(){
+			return slice.size();
+		}
+
+		@Override
+		public Iterator<MyNode> iterator(){
+			return new Iterator<MyNode>(){
+				private int pos = 0;
+
+				@Override
+				public boolean hasNext(){
+					return pos < slice.size();
+				}
+
+				@Override
+				public MyNode next(){
+					if (pos >= slice.size()){
+						throw new NoSuchElementException();
+					}
+					pos++;
+					return nodes[slice.get(pos - 1)];
+				}
+
+				@Override
+				public void remove(){
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+
+	/**
+	 * The hub neighbourhoods, indexed by (node ordinal * numRelTypes + relType index) for each direction; null
+	 * for the neighbourhoods that are not hubs. Published as a whole, so the arrays and the degree are consistent.
+	 */
+	private static final class HubIndex {
+		private final IntBitmap[] outHubs;	//The outgoing hub neighbourhoods
+		private final IntBitmap[] inHubs;	//The incoming hub neighbourhoods
+		private final int minDegree;		//The minimum degree of the hub neighbourhoods
+
+		private HubIndex(IntBitmap[] outHubs, IntBitmap[] inHubs, int minDegree){
+			this.outHubs = outHubs;
+			this.inHubs = inHubs;
+			this.minDegree = minDegree;
+		}
+
+		private IntBitmap get(int key, MyDirection dir){
+			return (dir == MyDirection.OUTGOING) ? outHubs[key] : inHubs[key];
+		}
+	}
+
+	/**
+	 * Read-only view of a hub neighbourhood, backed by its bitmap.
+	 */
+	private final class HubNeighbours extends AbstractSet<MyNode> {
+		private final IntBitmap bitmap;
+
+		private HubNeighbours(IntBitmap bitmap){
+			this.bitmap = bitmap;
+		}
+
+		private CSRGraph graph(){
+			return CSRGraph.this;
+		}
+
+		@Override
+		public boolean containsAll(Collection<?> coll){
+			if (coll instanceof Set){
+				//Both hubs: the other set is contained if the intersection is as large as it
+				@SuppressWarnings("unchecked")
+				IntBitmap other = hubBitmap((Set<MyNode>) coll);
+				if (other != null){
+					return bitmap.and(other).cardinality() == other.cardinality();
+				}
+			}
+			return super.containsAll(coll);
+		}
+
+		@Override
+		public boolean contains(Object obj){
+			if (!(obj instanceof MyNode)){
+				return false;
+			}
+			return bitmap.contains(dict.toInternal((MyNode) obj));
+		}
+
+		@Override
+		public int size(){
+			return bitmap.cardinality();
+		}
+
+		@Override
+		public Iterator<MyNode> iterator(){
+			final int[] ords = bitmap.toArray();
+			return new Iterator<MyNode>(){
+				private int pos = 0;
+
+				@Override
+				public boolean hasNext(){
+					return pos < ords.length;
+				}
+
+				@Override
+				public MyNode next(){
+					if (pos >= ords.length){
+						throw new NoSuchElementException();
+					}
+					pos++;
+					return nodes[ords[pos - 1]];
+				}
+
+				@Override
+				public void remove(){
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,332 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reads and writes the binary snapshot format for the in-memory dataset. The snapshot contains the CSR adjacency
+ * (see CSRGraph), the node attribute columns (dictionary encoded), and the relationship type metadata.
+ * The snapshot is opened through FileChannel.map, therefore loading it only requires reading the (small) header;
+ * the adjacency and the attribute dictionaries are read off-heap, directly from the page cache, which can be shared
+ * between JVMs.
+ *
+ * The nodes are stored by their internal ordinals (see IdDictionary), so the sections are sized by the number of
+ * nodes, regardless of the ids.
+ *
+ * Layout (all values are big-endian ints, unless specified otherwise):
+ * <pre>
+ * magic, version, headerBytes
+ * numNodes, numRelTypes, numEdges
+ * numRelTypes x (relationship type name)
+ * numColumns, numColumns x (column name, dictSize, dictBytes)
+ * padding up to headerBytes
+ * ids:        numNodes ints, the id of each ordinal
+ * sortedIds:  numNodes ints, the ids in ascending order
+ * sortedOrds: numNodes ints, the ordinal of each entry in sortedIds
+ * codes:      numColumns x numNodes ints, the dictionary code of the node's value (-1 if absent)
+ * outOffsets: numNodes*numRelTypes + 1 ints
+ * outTargets: numEdges ints
+ * inOffsets:  numNodes*numRelTypes + 1 ints
+ * inTargets:  numEdges ints
+ * numColumns x (
+ *   dictOffsets: dictSize + 1 ints, the offset of each value in dictValues
+ *   dictValues:  dictBytes bytes, the UTF-8 bytes of the values)
+ * </pre>
+ * Strings in the header are stored as their UTF-8 length followed by the UTF-8 bytes.
+ * Each section is mapped separately, and is therefore limited to 2GB.
+ * @author szrrizvi
+ *
+ */
+public class CSRSnapshot {
+
+	public static final int MAGIC = 0x43535247;	//"CSRG"
+	public static final int VERSION = 3;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int BUFFER_SIZE = 1 << 20;
+
+	/**
+	 * Writes the given graph to the given file. The attribute columns are generated from the attributes of the graph's nodes.
+	 * @param graph The graph
+	 * @param file The snapshot file
+	 * @throws IOException
+	 */
+	public static void write(CSRGraph graph, File file) throws IOException {
+		int numNodes = graph.getNumNodes();
+		MyNode[] nodes = graph.getNodes();
+
+		//Collect the attribute names and build the dictionaries
+		Set<String> names = new LinkedHashSet<String>();
+		for (MyNode node : nodes){
+			names.addAll(node.getAttributes().keySet());
+		}
+		List<String> columns = new ArrayList<String>(names);
+		List<List<byte[]>> dicts = new ArrayList<List<byte[]>>();
+		List<int[]> codes = new ArrayList<int[]>();
+		for (String column : columns){
+			List<byte[]> dict = new ArrayList<byte[]>();
+			Map<String, Integer> dictIdx = new HashMap<String, Integer>();
+			int[] colCodes = new int[numNodes];
+			for (int ord = 0; ord < numNodes; ord++){
+				String val = nodes[ord].getAttribute(column);
+				if (val == null){
+					colCodes[ord] = -1;
+				} else {
+					Integer code = dictIdx.get(val);
+					if (code == null){
+						code = dict.size();
+						dict.add(val.getBytes(UTF8));
+						dictIdx.put(val, code);
+					}
+					colCodes[ord] = code;
+				}
+			}
+			dicts.add(dict);
+			codes.add(colCodes);
+		}
+
+		//The byte offsets of the dictionary values
+		List<int[]> dictOffsets = new ArrayList<int[]>();
+		for (List<byte[]> dict : dicts){
+			int[] offsets = new int[dict.size() + 1];
+			for (int code = 0; code < dict.size(); code++){
+				offsets[code + 1] = offsets[code] + dict.get(code).length;
+			}
+			dictOffsets.add(offsets);
+		}
+
+		//Build the header
+		ByteBuffer header = ByteBuffer.allocate(headerSize(columns));
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(header.capacity());
+		header.putInt(numNodes);
+		header.putInt(graph.getNumRelTypes());
+		header.putInt(graph.getNumEdges());
+		RelType[] types = RelType.values();
+		for (int idx = 0; idx < graph.getNumRelTypes(); idx++){
+			putString(header, types[idx].name());
+		}
+		header.putInt(columns.size());
+		for (int col = 0; col < columns.size(); col++){
+			int[] offsets = dictOffsets.get(col);
+			putString(header, columns.get(col));
+			header.putInt(offsets.length - 1);
+			header.putInt(offsets[offsets.length - 1]);
+		}
+		header.rewind();
+
+		//The id of each ordinal
+		IdDictionary dict = graph.getDictionary();
+		int[] ids = new int[numNodes];
+		for (int ord = 0; ord < numNodes; ord++){
+			ids[ord] = dict.toExternal(ord);
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			FileChannel channel = raf.getChannel();
+			while (header.hasRemaining()){
+				channel.write(header);
+			}
+
+			ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+			writeInts(channel, buf, ids);
+			writeInts(channel, buf, dict.getSortedExternal());
+			writeInts(channel, buf, dict.getSortedToInternal());
+			for (int[] colCodes : codes){
+				writeInts(channel, buf, colCodes);
+			}
+			writeInts(channel, buf, graph.getOutOffsets());
+			writeInts(channel, buf, graph.getOutTargets());
+			writeInts(channel, buf, graph.getInOffsets());
+			writeInts(channel, buf, graph.getInTargets());
+			for (int col = 0; col < columns.size(); col++){
+				writeInts(channel, buf, dictOffsets.get(col));
+				for (byte[] val : dicts.get(col)){
+					ByteBuffer valBuf = ByteBuffer.wrap(val);
+					while (valBuf.hasRemaining()){
+						channel.write(valBuf);
+					}
+				}
+			}
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Opens the given snapshot file. Only the header is read; the remaining sections (including the attribute
+	 * dictionaries) are memory mapped.
+	 * @param file The snapshot file
+	 * @return The graph, backed by the mapped file.
+	 * @throws IOException If the file can't be read, or is not a valid snapshot.
+	 */
+	public static MappedCSRGraph open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+
+			//Read the fixed part of the header
+			ByteBuffer fixed = channel.map(FileChannel.MapMode.READ_ONLY, 0, 12);
+			if (fixed.getInt() != MAGIC){
+				throw new IOException("Not a graph snapshot: " + file);
+			}
+			int version = fixed.getInt();
+			if (version != VERSION){
+				throw new IOException("Unsupported snapshot version " + version + ": " + file);
+			}
+			int headerBytes = fixed.getInt();
+
+			//Read the remaining header
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 12, headerBytes - 12);
+			int numNodes = header.getInt();
+			int numRelTypes = header.getInt();
+			int numEdges = header.getInt();
+
+			//Validate the relationship types against RelType
+			RelType[] types = RelType.values();
+			if (numRelTypes > types.length){
+				throw new IOException("Unknown relationship types in snapshot: " + file);
+			}
+			for (int idx = 0; idx < numRelTypes; idx++){
+				String name = getString(header);
+				if (!types[idx].name().equals(name)){
+					throw new IOException("Relationship type mismatch (" + name + " vs " + types[idx] + "): " + file);
+				}
+			}
+
+			int numColumns = header.getInt();
+			String[] columns = new String[numColumns];
+			int[] dictSizes = new int[numColumns];
+			int[] dictBytes = new int[numColumns];
+			for (int col = 0; col < numColumns; col++){
+				columns[col] = getString(header).intern();
+				dictSizes[col] = header.getInt();
+				dictBytes[col] = header.getInt();
+			}
+
+			//Map the sections
+			long pos = headerBytes;
+			int numKeys = numNodes * numRelTypes + 1;
+
+			IntBuffer ids = mapInts(channel, pos, numNodes);
+			pos += 4L * numNodes;
+			IntBuffer sortedIds = mapInts(channel, pos, numNodes);
+			pos += 4L * numNodes;
+			IntBuffer sortedOrds = mapInts(channel, pos, numNodes);
+			pos += 4L * numNodes;
+
+			IntBuffer[] codes = new IntBuffer[numColumns];
+			for (int col = 0; col < numColumns; col++){
+				codes[col] = mapInts(channel, pos, numNodes);
+				pos += 4L * numNodes;
+			}
+
+			IntBuffer outOffsets = mapInts(channel, pos, numKeys);
+			pos += 4L * numKeys;
+			IntBuffer outTargets = mapInts(channel, pos, numEdges);
+			pos += 4L * numEdges;
+			IntBuffer inOffsets = mapInts(channel, pos, numKeys);
+			pos += 4L * numKeys;
+			IntBuffer inTargets = mapInts(channel, pos, numEdges);
+			pos += 4L * numEdges;
+
+			IntBuffer[] dictOffsets = new IntBuffer[numColumns];
+			ByteBuffer[] dictValues = new ByteBuffer[numColumns];
+			for (int col = 0; col < numColumns; col++){
+				dictOffsets[col] = mapInts(channel, pos, dictSizes[col] + 1);
+				pos += 4L * (dictSizes[col] + 1);
+				dictValues[col] = channel.map(FileChannel.MapMode.READ_ONLY, pos, dictBytes[col]);
+				pos += dictBytes[col];
+			}
+
+			if (pos != channel.size()){
+				throw new IOException("Truncated or corrupt snapshot (expected " + pos + " bytes, found " + channel.size() + "): " + file);
+			}
+
+			//The mappings remain valid after the channel is closed
+			return new MappedCSRGraph(numNodes, numRelTypes, ids, sortedIds, sortedOrds, columns, dictOffsets, dictValues, codes, outOffsets, outTargets, inOffsets, inTargets);
+		} finally {
+			raf.close();
+		}
+	}
+
+	//--------------------------//
+	// HELPER METHODS
+	//--------------------------//
+
+	/**
+	 * Computes the size of the header, padded to a multiple of 8 bytes.
+	 */
+	private static int headerSize(List<String> columns){
+		int size = 6 * 4;
+		for (RelType type : RelType.values()){
+			size += stringSize(type.name());
+		}
+		size += 4;
+		for (String column : columns){
+			size += stringSize(column) + 2 * 4;
+		}
+		return (size + 7) & ~7;
+	}
+
+	private static int stringSize(String str){
+		return 4 + str.getBytes(UTF8).length;
+	}
+
+	private static void putString(ByteBuffer buf, String str){
+		byte[] bytes = str.getBytes(UTF8);
+		buf.putInt(bytes.length);
+		buf.put(bytes);
+	}
+
+	private static String getString(ByteBuffer buf){
+		byte[] bytes = new byte[buf.getInt()];
+		buf.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Writes the given ints to the channel, through the given buffer.
+	 */
+	private static void writeInts(FileChannel channel, ByteBuffer buf, int[] vals) throws IOException {
+		buf.clear();
+		IntBuffer ibuf = buf.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+		int idx = 0;
+		while (idx < vals.length){
+			int len = Math.min(ibuf.capacity(), vals.length - idx);
+			ibuf.clear();
+			ibuf.put(vals, idx, len);
+			idx += len;
+
+			buf.clear();
+			buf.limit(len * 4);
+			while (buf.hasRemaining()){
+				channel.write(buf);
+			}
+		}
+	}
+
+	/**
+	 * Maps the given section of the file as ints.
+	 */
+	private static IntBuffer mapInts(FileChannel channel, long pos, int numInts) throws IOException {
+		MappedByteBuffer mbb = channel.map(FileChannel.MapMode.READ_ONLY, pos, 4L * numInts);
+		return mbb.order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+	}
+}
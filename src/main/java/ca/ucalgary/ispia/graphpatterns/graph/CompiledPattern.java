@@ -0,0 +1,224 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ca.ucalgary.ispia.graphpatterns.util.Pair;
+
+/**
+ * An immutable, int-indexed form of a GraphPattern, used by the evaluation engines during the search.
+ * The variables (MyNodes) are numbered 0 .. n-1, in the order of GraphPattern.getNodes(). For each variable,
+ * the incident relationships are stored as parallel arrays: the index of the other endpoint, and the MyRelationship
+ * itself (used by the NeighbourhoodAccess and ConstraintsEvaluator implementations, which derive the direction and
+ * the relationship type from it).
+ * The engines keep the index of the current variable, so the incident relationships are found without a lookup.
+ *
+ * The incident relationships of a variable are in the same order as GraphPattern.getAllRelationships(node), i.e.
+ * outgoing first, then incoming. A self loop appears in both.
+ *
+ * The mutual exclusion constraints (if compiled from a GPHolder) are stored as int adjacency: for each variable,
+ * the indexes of the variables it must not share a vertex with.
+ *
+ * Use GraphPattern.compile or GPHolder.compile to create instances. Later changes are not reflected.
+ * @author szrrizvi
+ *
+ */
+public final class CompiledPattern {
+
+	private final MyNode[] vars;					//The variables, by index
+	private final List<MyNode> varList;				//Read-only view of vars
+	private final Map<MyNode, Integer> varIndex;	//The index of each variable
+	private final MyRelationship[] rels;			//All of the relationships
+
+	private final int[][] other;					//other[v][k]: The index of the other endpoint of the k-th incident relationship of v
+	private final MyRelationship[][] incident;		//incident[v][k]: The relationship
+	private final int[][] mex;						//mex[v]: The indexes of the mutual exclusion partners of v
+
+	private CompiledPattern(MyNode[] vars, Map<MyNode, Integer> varIndex, MyRelationship[] rels, int[][] other,
+			MyRelationship[][] incident, int[][] mex){
+		this.vars = vars;
+		this.varList = Collections.unmodifiableList(Arrays.asList(vars));
+		this.varIndex = varIndex;
+		this.rels = rels;
+		this.other = other;
+		this.incident = incident;
+		this.mex = mex;
+	}
+
+	/**
+	 * Compiles the given graph pattern and mutual exclusion constraints.
+	 * @param gp The graph pattern
+	 * @param mexList The mutual exclusion constraints (can be null). Constraints on nodes that are not part of the
+	 * graph pattern are ignored.
+	 * @return The compiled pattern
+	 */
+	static CompiledPattern compile(GraphPattern gp, List<Pair<MyNode, MyNode>> mexList){
+		List<MyNode> nodes = gp.getNodes();
+		int n = nodes.size();
+
+		MyNode[] vars = nodes.toArray(new MyNode[n]);
+		Map<MyNode, Integer> varIndex = new HashMap<MyNode, Integer>();
+		for (int v = 0; v < n; v++){
+			varIndex.put(vars[v], v);
+		}
+
+		//Collect the incident relationships (outgoing first, then incoming)
+		List<List<MyRelationship>> outRels = new ArrayList<List<MyRelationship>>(n);
+		List<List<MyRelationship>> inRels = new ArrayList<List<MyRelationship>>(n);
+		for (int v = 0; v < n; v++){
+			outRels.add(new ArrayList<MyRelationship>());
+			inRels.add(new ArrayList<MyRelationship>());
+		}
+		List<MyRelationship> allRels = gp.getAllRelationships();
+		for (MyRelationship rel : allRels){
+			outRels.get(varIndex.get(rel.getSource())).add(rel);
+			inRels.get(varIndex.get(rel.getTarget())).add(rel);
+		}
+
+		int[][] other = new int[n][];
+		MyRelationship[][] incident = new MyRelationship[n][];
+
+		for (int v = 0; v < n; v++){
+			List<MyRelationship> out = outRels.get(v);
+			List<MyRelationship> in = inRels.get(v);
+			int degree = out.size() + in.size();
+
+			other[v] = new int[degree];
+			incident[v] = new MyRelationship[degree];
+
+			int k = 0;
+			for (MyRelationship rel : out){
+				other[v][k] = varIndex.get(rel.getTarget());
+				incident[v][k] = rel;
+				k++;
+			}
+			for (MyRelationship rel : in){
+				other[v][k] = varIndex.get(rel.getSource());
+				incident[v][k] = rel;
+				k++;
+			}
+		}
+
+		//Index the mutual exclusion constraints (in both directions, without duplicates)
+		List<Set<Integer>> partners = new ArrayList<Set<Integer>>(n);
+		for (int v = 0; v < n; v++){
+			partners.add(new LinkedHashSet<Integer>());
+		}
+		if (mexList != null){
+			for (Pair<MyNode, MyNode> pair : mexList){
+				Integer first = varIndex.get(pair.first);
+				Integer second = varIndex.get(pair.second);
+				if (first != null && second != null && !first.equals(second)){
+					partners.get(first).add(second);
+					partners.get(second).add(first);
+				}
+			}
+		}
+		int[][] mex = new int[n][];
+		for (int v = 0; v < n; v++){
+			mex[v] = new int[partners.get(v).size()];
+			int m = 0;
+			for (Integer partner : partners.get(v)){
+				mex[v][m] = partner;
+				m++;
+			}
+		}
+
+		return new CompiledPattern(vars, varIndex, allRels.toArray(new MyRelationship[allRels.size()]), other, incident, mex);
+	}
+
+	/**
+	 * @return The number of variables
+	 */
+	public int getNumVars(){
+		return vars.length;
+	}
+
+	/**
+	 * @return The number of relationships
+	 */
+	public int getNumRelationships(){
+		return rels.length;
+	}
+
+	/**
+	 * @param v The variable index
+	 * @return The variable
+	 */
+	public MyNode getVar(int v){
+		return vars[v];
+	}
+
+	/**
+	 * @return The variables, in index order. Read-only.
+	 */
+	public List<MyNode> getVars(){
+		return varList;
+	}
+
+	/**
+	 * @param node The variable
+	 * @return The index of the variable, or -1 if the node is not part of the pattern.
+	 */
+	public int indexOf(MyNode node){
+		Integer v = varIndex.get(node);
+		return (v == null) ? -1 : v;
+	}
+
+	/**
+	 * @param idx The relationship index
+	 * @return The relationship
+	 */
+	public MyRelationship getRelationship(int idx){
+		return rels[idx];
+	}
+
+	/**
+	 * @param v The variable index
+	 * @return The number of incident relationships (in + out)
+	 */
+	public int getDegree(int v){
+		return other[v].length;
+	}
+
+	/**
+	 * @param v The variable index
+	 * @param k The incident relationship index (0 .. getDegree(v) - 1)
+	 * @return The index of the other endpoint
+	 */
+	public int getOther(int v, int k){
+		return other[v][k];
+	}
+
+	/**
+	 * @param v The variable index
+	 * @param k The incident relationship index (0 .. getDegree(v) - 1)
+	 * @return The relationship
+	 */
+	public MyRelationship getIncident(int v, int k){
+		return incident[v][k];
+	}
+
+	/**
+	 * @param v The variable index
+	 * @return The number of mutual exclusion partners of the variable
+	 */
+	public int getNumMex(int v){
+		return mex[v].length;
+	}
+
+	/**
+	 * @param v The variable index
+	 * @param m The partner index (0 .. getNumMex(v) - 1)
+	 * @return The index of the m-th mutual exclusion partner of the variable
+	 */
+	public int getMexPartner(int v, int m){
+		return mex[v][m];
+	}
+}
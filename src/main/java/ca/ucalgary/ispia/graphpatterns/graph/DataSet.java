@@ -25,6 +25,9 @@ public class DataSet implements Serializable{
 	private Set<MyNode> nodes;
 	
 	private Set<RelationshipType> relTypes;
+	
+	//The id dictionary shared by the in-memory stores (see getDictionary); reset when the dataset is modified
+	private transient IdDictionary dict;
 
 	/**
 	 * Default constructor.
@@ -64,6 +67,7 @@ public class DataSet implements Serializable{
 	public void addNode(MyNode node){
 		if (!nodes.contains(node)){
 			nodes.add(node);
+			dict = null;
 		}
 	}
 
@@ -77,28 +81,21 @@ public class DataSet implements Serializable{
 		MyNode source = rel.getSource();
 		MyNode target = rel.getTarget();
 
-		//If the nodes list doesn't contain the source and target nodes, add them.
-		if (!nodes.contains(source)){
-			nodes.add(source);
-		}
-		if (!nodes.contains(target)){
-			nodes.add(target);
-		}
+		//Add the source and target nodes (no-op if they already exist).
+		//Note: MyNode and MyRelationship hash by id/type only, so no attribute maps are hashed here.
+		nodes.add(source);
+		nodes.add(target);
 
 		//Add the relationship to the outgoing Rels map (adjacency list).
-		if (outgoingRels.containsKey(source)){
-			//If the map already contains the source node as a key,
-			//add the relationship to the value list.
-			outgoingRels.get(source).add(rel);
-		} else {
+		Set<MyRelationship> list = outgoingRels.get(source);
+		if (list == null){
 			//If the map doesn't already contain the source node as a key,
-			//Generate the value list and add the given relationship.
-			Set<MyRelationship> list = new HashSet<MyRelationship>();
-			list.add(rel);
-
-			//Put the key, value pair in the map
+			//Generate the value list and put the key, value pair in the map
+			list = new HashSet<MyRelationship>();
 			outgoingRels.put(source, list);
 		}
+		list.add(rel);
+		dict = null;
 
 	}
 
@@ -119,6 +116,19 @@ public class DataSet implements Serializable{
 		return nodes;
 	}
 	
+	/**
+	 * Returns the id dictionary of the dataset (in BFS order, see IdDictionary). The dictionary is built on the
+	 * first call, and shared by the in-memory stores (DataSetInterface, CSRGraph, AttributeStore) built from the 
+	 * dataset, so that the ordinals cached in the nodes are valid for all of them.
+	 * @return The id dictionary
+	 */
+	public synchronized IdDictionary getDictionary(){
+		if (dict == null){
+			dict = IdDictionary.build(this, IdDictionary.Order.BFS);
+		}
+		return dict;
+	}
+	
 	public void setRelationshipTypes(Set<RelationshipType> relTypes){
 		this.relTypes = relTypes;
 	}
@@ -4,15 +4,35 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-
-public class DataSetInterface {
+/**
+ * Provides the adjacency matrix view of a DataSet. The matrices are indexed by the dense internal
+ * ordinals of the nodes (see IdDictionary), rather than by the node ids, so the ids can be sparse or large.
+ * @author szrrizvi
+ *
+ */
+public class DataSetInterface implements GraphStore {
 	private Set<MyNode>[][] matrixOut;
 	private Set<MyNode>[][] matrixIn;
 	private MyNode[] nodes;
+	private final IdDictionary dict;
 
+	/**
+	 * Builds the matrices for the given dataset, using the dictionary of the dataset (see DataSet.getDictionary).
+	 * @param dataSet The dataset
+	 */
 	public DataSetInterface(DataSet dataSet){
+		this(dataSet, dataSet.getDictionary());
+	}
+	
+	/**
+	 * Builds the matrices for the given dataset, using the given id dictionary.
+	 * @param dataSet The dataset
+	 * @param dict The id dictionary, built for the dataset
+	 */
+	public DataSetInterface(DataSet dataSet, IdDictionary dict){
 
-		int numNodes = dataSet.getNodes().size()+1;
+		this.dict = dict;
+		int numNodes = dict.size();
 		int numRelTypes = dataSet.getRelTypes().size();
 		matrixOut = new HashSet[numNodes][numRelTypes];
 		matrixIn = new HashSet[numNodes][numRelTypes];
@@ -26,7 +46,7 @@ public class DataSetInterface {
 		Set<MyNode> input = dataSet.getNodes();
 		
 		for (MyNode node : input){
-			nodes[node.getId()] = node;
+			nodes[dict.toInternal(node)] = node;
 		}
 	}
 
@@ -37,10 +57,10 @@ public class DataSetInterface {
 		for (MyNode key : relationships.keySet()){
 			//Iterate through the relationships for each src node
 			Set<MyRelationship> rels = relationships.get(key);
+			int srcNodeIdx = dict.toInternal(key);
 
 			for (MyRelationship rel : rels){
-				int srcNodeIdx = key.getId();
-				int tgtNodeIdx = rel.getTarget().getId();
+				int tgtNodeIdx = dict.toInternal(rel.getTarget());
 				int relIdIdx = rel.getIdentifier().getIdx();
 				
 				if (matrixOut[srcNodeIdx][relIdIdx] == null){
@@ -56,6 +76,15 @@ public class DataSetInterface {
 		}
 	}
 	
+	/**
+	 * Returns the internal ordinal for the given node (cached in the node, see IdDictionary.toInternal(MyNode)).
+	 * @param node The node
+	 * @return The internal ordinal, or -1 if the node is not part of the dataset.
+	 */
+	private int ord(MyNode node){
+		return dict.toInternal(node);
+	}
+	
 	/**
 	 * Returns the set of neighbours from the given node, based on the given relType and direction.
 	 * @param node The node
@@ -65,25 +94,29 @@ public class DataSetInterface {
 	 */
 	public Set<MyNode> getNeighbours(MyNode node, RelType relType, MyDirection dir){
 		Set<MyNode> temp = null;
+		int ord = ord(node);
 		
-		if (dir == MyDirection.OUTGOING){
+		if (ord < 0){
+			//The node is not part of the dataset
+			temp = new HashSet<MyNode>();
+		} else if (dir == MyDirection.OUTGOING){
 			//Outgoing relationships; node = src
-			if (matrixOut[node.getId()][relType.getIdx()] != null){
-				return matrixOut[node.getId()][relType.getIdx()];
+			if (matrixOut[ord][relType.getIdx()] != null){
+				return matrixOut[ord][relType.getIdx()];
 			}
 		} else if (dir == MyDirection.INCOMING) {
 			//Incoming relationships; node = tgt
-			if (matrixIn[node.getId()][relType.getIdx()] != null){
-				return matrixIn[node.getId()][relType.getIdx()];
+			if (matrixIn[ord][relType.getIdx()] != null){
+				return matrixIn[ord][relType.getIdx()];
 			}
 		} else {
 			//Both directions; node = src || node = tgt
 			temp = new HashSet<MyNode>();
-			if (matrixOut[node.getId()][relType.getIdx()] != null){
-				temp.addAll(matrixOut[node.getId()][relType.getIdx()]);
+			if (matrixOut[ord][relType.getIdx()] != null){
+				temp.addAll(matrixOut[ord][relType.getIdx()]);
 			}
-			if (matrixIn[node.getId()][relType.getIdx()] != null){
-				temp.addAll(matrixIn[node.getId()][relType.getIdx()])  ;
+			if (matrixIn[ord][relType.getIdx()] != null){
+				temp.addAll(matrixIn[ord][relType.getIdx()])  ;
 			}
 		}
 		
@@ -94,6 +127,14 @@ public class DataSetInterface {
 		return temp;
 	}
 	
+	public boolean hasNeighbour(MyNode node, RelType relType, MyDirection dir, MyNode other){
+		return getNeighbours(node, relType, dir).contains(other);
+	}
+	
+	public int getDegree(MyNode node, RelType relType, MyDirection dir){
+		return getNeighbours(node, relType, dir).size();
+	}
+	
 	/**
 	 * Returns all of the relationships in the graph pattern that contain the given node
 	 * @param node The node
@@ -107,17 +148,21 @@ public class DataSetInterface {
 		if (node == null){
 			return result;
 		}
+		int ord = ord(node);
+		if (ord < 0){
+			return result;
+		}
 		
 		//Add all outgoing and incoming relationships for the node
-		for (int idx = 0; idx < matrixOut[node.getId()].length; idx++){
-			if (matrixOut[node.getId()][idx] != null){
-				result.addAll(matrixOut[node.getId()][idx]);
+		for (int idx = 0; idx < matrixOut[ord].length; idx++){
+			if (matrixOut[ord][idx] != null){
+				result.addAll(matrixOut[ord][idx]);
 			}
 		}
 		
-		for (int idx = 0; idx < matrixIn[node.getId()].length; idx++){
-			if (matrixIn[node.getId()][idx] != null){
-				result.addAll(matrixIn[node.getId()][idx]);
+		for (int idx = 0; idx < matrixIn[ord].length; idx++){
+			if (matrixIn[ord][idx] != null){
+				result.addAll(matrixIn[ord][idx]);
 			}
 		}
 		
@@ -126,9 +171,13 @@ public class DataSetInterface {
 	
 	public int getInDegree(MyNode node){
 		int total = 0;
-		for (int idx = 0; idx < matrixIn[node.getId()].length; idx++){
-			if (matrixIn[node.getId()][idx] != null){
-				total += matrixIn[node.getId()][idx].size();
+		int ord = ord(node);
+		if (ord < 0){
+			return total;
+		}
+		for (int idx = 0; idx < matrixIn[ord].length; idx++){
+			if (matrixIn[ord][idx] != null){
+				total += matrixIn[ord][idx].size();
 			}
 		}
 		
@@ -137,9 +186,13 @@ public class DataSetInterface {
 	
 	public int getOutDegree(MyNode node){
 		int total = 0;
-		for (int idx = 0; idx < matrixOut[node.getId()].length; idx++){
-			if (matrixOut[node.getId()][idx] != null){
-				total += matrixOut[node.getId()][idx].size();
+		int ord = ord(node);
+		if (ord < 0){
+			return total;
+		}
+		for (int idx = 0; idx < matrixOut[ord].length; idx++){
+			if (matrixOut[ord][idx] != null){
+				total += matrixOut[ord][idx].size();
 			}
 		}
 		
@@ -150,11 +203,30 @@ public class DataSetInterface {
 		return getInDegree(node) + getOutDegree(node);
 	}
 	
+	/**
+	 * Returns the node with the given id.
+	 * @param id The (external) node id
+	 * @return The node, or null if the dataset doesn't contain the node.
+	 */
 	public MyNode findNode(int id){
-		return nodes[id];
+		int ord = dict.toInternal(id);
+		if (ord < 0){
+			return null;
+		}
+		return nodes[ord];
 	}
 	
+	/**
+	 * @return The nodes, indexed by their internal ordinals. Does not contain nulls.
+	 */
 	public MyNode[] getNodes(){
 		return this.nodes;
 	}
+	
+	/**
+	 * @return The id dictionary
+	 */
+	public IdDictionary getDictionary(){
+		return this.dict;
+	}
 }
@@ -1,5 +1,6 @@
 package ca.ucalgary.ispia.graphpatterns.graph;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -25,6 +26,13 @@ public class DataSetWrapper{
 	//relationships where the key is the target node.
 	private Map<MyNode, Set<MyRelationship>> incomingRels;
 	
+	//The relationships per (node, relationship type), indexed by RelType.getIdx(), for each direction.
+	private Map<MyNode, Set<MyRelationship>[]> outgoingByType;
+	private Map<MyNode, Set<MyRelationship>[]> incomingByType;
+	
+	//The nodes, indexed by id.
+	private Map<Integer, MyNode> nodesById;
+	
 	/**
 	 * Default constructor. Initialize instance variables.
 	 */
@@ -34,6 +42,7 @@ public class DataSetWrapper{
 		
 		incomingRels = new HashMap<MyNode, Set<MyRelationship>>();
 		populateIncomingRels();
+		populateIndexes();
 	}
 	
 	/**
@@ -63,6 +72,53 @@ public class DataSetWrapper{
 		}
 	}
 	
+	/**
+	 * Populates the per (node, relationship type, direction) indexes and the id index.
+	 */
+	private void populateIndexes(){
+		outgoingByType = new HashMap<MyNode, Set<MyRelationship>[]>();
+		incomingByType = new HashMap<MyNode, Set<MyRelationship>[]>();
+		nodesById = new HashMap<Integer, MyNode>();
+		
+		for (MyNode node : dataSet.getNodes()){
+			nodesById.put(node.getId(), node);
+		}
+		
+		Map<MyNode, Set<MyRelationship>> outgoingRels = dataSet.getOutgoingRels();
+		for (MyNode key : outgoingRels.keySet()){
+			for (MyRelationship rel : outgoingRels.get(key)){
+				addToIndex(outgoingByType, rel.getSource(), rel);
+				addToIndex(incomingByType, rel.getTarget(), rel);
+			}
+		}
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static void addToIndex(Map<MyNode, Set<MyRelationship>[]> index, MyNode node, MyRelationship rel){
+		Set<MyRelationship>[] byType = index.get(node);
+		if (byType == null){
+			byType = new HashSet[RelType.values().length];
+			index.put(node, byType);
+		}
+		int idx = rel.getIdentifier().getIdx();
+		if (byType[idx] == null){
+			byType[idx] = new HashSet<MyRelationship>();
+		}
+		byType[idx].add(rel);
+	}
+	
+	/**
+	 * Returns the indexed relationships for the given node and relationship type.
+	 * @return The (internal) set of relationships; an empty set if there are none.
+	 */
+	private static Set<MyRelationship> lookup(Map<MyNode, Set<MyRelationship>[]> index, MyNode node, RelType relType){
+		Set<MyRelationship>[] byType = index.get(node);
+		if (byType == null || relType == null || byType[relType.getIdx()] == null){
+			return Collections.emptySet();
+		}
+		return byType[relType.getIdx()];
+	}
+	
 	public Set<MyNode> getNodes(){
 		return dataSet.getNodes();
 	}
@@ -75,35 +131,19 @@ public class DataSetWrapper{
 	 */
 	public Set<MyRelationship> getRelationships(MyNode node, RelationshipType relType, MyDirection dir){
 		
+		//The relationships are only of type RelType
+		RelType type = (relType instanceof RelType) ? (RelType) relType : null;
+		
 		//Initialize result list
-		Set<MyRelationship> unfiltered = new HashSet<MyRelationship>();	
+		Set<MyRelationship> result = new HashSet<MyRelationship>();
 		
-		if (dir == MyDirection.OUTGOING){
+		if (dir == MyDirection.OUTGOING || dir == MyDirection.BOTH){
 			//Outgoing relationships; node = src
-			Set<MyRelationship> temp =dataSet.getOutgoingRels().get(node);
-			if (temp != null){
-				unfiltered.addAll(temp);
-			}
-		} else if (dir == MyDirection.INCOMING) {
-			//Incoming relationships; node = tgt
-			Set<MyRelationship> temp = incomingRels.get(node);
-			if (temp != null){
-				unfiltered.addAll(temp);
-			}
-		} else {
-			//Both directions; node = src || node = tgt
-			Set<MyRelationship> temp = getAllRelationships(node);
-			if (temp != null){
-				unfiltered.addAll(temp);
-			}
-			
+			result.addAll(lookup(outgoingByType, node, type));
 		}
-		
-		Set<MyRelationship> result = new HashSet<MyRelationship>();
-		for (MyRelationship rel : unfiltered){
-			if (rel.getIdentifier().equals(relType)){
-				result.add(rel);
-			}
+		if (dir == MyDirection.INCOMING || dir == MyDirection.BOTH) {
+			//Incoming relationships; node = tgt
+			result.addAll(lookup(incomingByType, node, type));
 		}
 		
 		return result;
@@ -181,21 +221,22 @@ public class DataSetWrapper{
 			return -1;
 		}
 
-		int degree = dataSet.getOutgoingRels().get(node).size() + incomingRels.get(node).size();
+		//Nodes without outgoing or incoming relationships are not in the maps
+		int degree = 0;
+		Set<MyRelationship> temp = dataSet.getOutgoingRels().get(node);
+		if (temp != null){
+			degree += temp.size();
+		}
+		temp = incomingRels.get(node);
+		if (temp != null){
+			degree += temp.size();
+		}
 
 		return degree;
 	}
 	
 	public MyNode findNode(int id){
-		Set<MyNode> nodes = dataSet.getNodes();
-		
-		for (MyNode node : nodes){
-			if (node.getId() == (id)){
-				return node;
-			}
-		}
-		
-		return null;
+		return nodesById.get(id);
 	}
 	
 	
@@ -2,6 +2,8 @@ package ca.ucalgary.ispia.graphpatterns.graph;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -21,6 +23,8 @@ public class GPHolder implements Serializable{
 	private List<Pair<MyNode, MyNode>> mexList;		//The list of mutual exclusion constraints
 	private Map<String, MyNode> actMap;				//The mapping from actor names to MyNode
 	private List<MyNode> resultSchema;				//The list of nodes required in the return statement
+
+	private transient volatile Map<MyNode, List<MyNode>> mexIndex;	//The mex partners of each node (built on first use)
 	
 	/**
 	 * Constructor. Sets the fields
@@ -95,6 +99,58 @@ public class GPHolder implements Serializable{
 		return result;
 	}
 
+	/**
+	 * Returns the nodes that are mutually exclusive with the given node. The constraints are indexed on the first call,
+	 * therefore this is a single map lookup.
+	 * Assumption: The mexList is not modified after the first call.
+	 * @param node The target node
+	 * @return The mex partners of the node. Must not be modified.
+	 */
+	public List<MyNode> getMexPartners(MyNode node){
+		Map<MyNode, List<MyNode>> index = mexIndex;
+		if (index == null){
+			index = buildMexIndex();
+			mexIndex = index;
+		}
+		List<MyNode> partners = index.get(node);
+		if (partners == null){
+			return Collections.emptyList();
+		}
+		return partners;
+	}
+
+	/**
+	 * Indexes the mutual exclusion constraints by node (in both directions).
+	 */
+	private Map<MyNode, List<MyNode>> buildMexIndex(){
+		Map<MyNode, List<MyNode>> index = new HashMap<MyNode, List<MyNode>>();
+		for (Pair<MyNode, MyNode> mex : mexList){
+			addMexPartner(index, mex.first, mex.second);
+			addMexPartner(index, mex.second, mex.first);
+		}
+		return index;
+	}
+
+	private static void addMexPartner(Map<MyNode, List<MyNode>> index, MyNode node, MyNode partner){
+		List<MyNode> partners = index.get(node);
+		if (partners == null){
+			partners = new ArrayList<MyNode>();
+			index.put(node, partners);
+		}
+		if (!partners.contains(partner)){
+			partners.add(partner);
+		}
+	}
+
+	/**
+	 * Compiles the graph pattern and the mutual exclusion constraints into the immutable, int-indexed form used
+	 * during the evaluation (see CompiledPattern).
+	 * @return The compiled graph pattern
+	 */
+	public CompiledPattern compile(){
+		return CompiledPattern.compile(gp, mexList);
+	}
+
 	@Override
 	public String toString() {
 		
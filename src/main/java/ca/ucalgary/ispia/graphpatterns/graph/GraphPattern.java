@@ -3,6 +3,7 @@ package ca.ucalgary.ispia.graphpatterns.graph;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -27,6 +28,9 @@ public class GraphPattern implements Serializable{
 	//The list of nodes
 	private List<MyNode> nodes;
 
+	//The set of nodes, for constant time membership checks. Rebuilt lazily (not serialized).
+	private transient Set<MyNode> nodeSet;
+
 	/**
 	 * Default constructor.
 	 */
@@ -63,9 +67,31 @@ public class GraphPattern implements Serializable{
 	 * @param node The node to add to the nodes list.
 	 */
 	public void addNode(MyNode node){
-		if (!nodes.contains(node)){
+		if (!containsNode(node)){
 			nodes.add(node);
+			nodeSet.add(node);
+		}
+	}
+
+	/**
+	 * Checks if the given node is part of the graph pattern.
+	 * @param node The node
+	 * @return True if the node is in the nodes list, else false.
+	 */
+	public boolean containsNode(MyNode node){
+		if (nodeSet == null){
+			nodeSet = new HashSet<MyNode>(nodes);
 		}
+		return nodeSet.contains(node);
+	}
+
+	/**
+	 * Compiles the graph pattern into the immutable, int-indexed form used during the evaluation.
+	 * Later changes to the graph pattern are not reflected in the returned object.
+	 * @return The compiled graph pattern
+	 */
+	public CompiledPattern compile(){
+		return CompiledPattern.compile(this, null);
 	}
 
 	/**
@@ -79,12 +105,8 @@ public class GraphPattern implements Serializable{
 		MyNode target = rel.getTarget();
 
 		//If the nodes list doesn't contain the source and target nodes, add them.
-		if (!nodes.contains(source)){
-			nodes.add(source);
-		}
-		if (!nodes.contains(target)){
-			nodes.add(target);
-		}
+		addNode(source);
+		addNode(target);
 
 		//Add the relationship to the outgoing Rels map (adjacency list).
 		if (outgoingRels.containsKey(source)){
@@ -227,7 +249,7 @@ public class GraphPattern implements Serializable{
 
 		//Get the source node of rel and check if it is in the graph pattern
 		MyNode source = rel.getSource();
-		if (!nodes.contains(source)){
+		if (!containsNode(source)){
 			//If the source node is not found, then return null
 			return null;
 		}
@@ -258,11 +280,20 @@ public class GraphPattern implements Serializable{
 	public int getDegree(MyNode node){
 
 		//Check if node is part of graph pattern.
-		if (!nodes.contains(node)){
+		if (!containsNode(node)){
 			return -1;
 		}
 
-		int degree = outgoingRels.get(node).size() + incomingRels.get(node).size();
+		//Isolated nodes (or nodes with only one direction) have no entries in the maps
+		int degree = 0;
+		List<MyRelationship> temp = outgoingRels.get(node);
+		if (temp != null){
+			degree += temp.size();
+		}
+		temp = incomingRels.get(node);
+		if (temp != null){
+			degree += temp.size();
+		}
 
 		return degree;
 	}
@@ -0,0 +1,252 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A read-only view of a VersionedGraph, at a fixed version. The view is not affected by later writes or compactions,
+ * therefore a graph pattern evaluation (through DSAccess) sees a consistent graph. Use VersionedGraph.snapshot to
+ * create instances.
+ * @author szrrizvi
+ *
+ */
+public class GraphSnapshot implements GraphStore {
+
+	private final VersionedGraph.State state;	//The base and the deltas
+	private final long version;					//The version of the snapshot
+	private final int numRelTypes;				//The number of relationship types
+
+	GraphSnapshot(VersionedGraph.State state, long version, int numRelTypes){
+		this.state = state;
+		this.version = version;
+		this.numRelTypes = numRelTypes;
+	}
+
+	/**
+	 * @return The version of the snapshot
+	 */
+	public long getVersion(){
+		return this.version;
+	}
+
+	private VersionedGraph.Segment segment(int id, int relTypeIdx, MyDirection dir){
+		return state.delta.get(VersionedGraph.segmentKey(id, relTypeIdx, dir, numRelTypes));
+	}
+
+	/**
+	 * Returns the neighbours of the given node id in the base, as ids.
+	 * @param baseOrd The ordinal of the node in the base (-1 if the node is not in the base)
+	 * @return The sorted neighbour ids
+	 */
+	private IntSlice baseNeighbours(int baseOrd, int relTypeIdx, MyDirection dir){
+		IntSlice ords = state.base.neighbours(baseOrd, relTypeIdx, dir);
+		if (ords.isEmpty()){
+			return ords;
+		}
+		IdDictionary dict = state.base.getDictionary();
+		int[] ids = new int[ords.size()];
+		for (int idx = 0; idx < ids.length; idx++){
+			ids[idx] = dict.toExternal(ords.get(idx));
+		}
+		Arrays.sort(ids);
+		return new IntSlice(ids, 0, ids.length);
+	}
+
+	/**
+	 * Returns the neighbours of the given node id.
+	 * @param id The node id
+	 * @param relTypeIdx The relationship type index
+	 * @param dir The direction of relationships (INCOMING or OUTGOING)
+	 * @return The sorted neighbour ids. Must not be modified.
+	 */
+	public int[] neighbours(int id, int relTypeIdx, MyDirection dir){
+		return neighbours(id, state.base.getDictionary().toInternal(id), relTypeIdx, dir);
+	}
+
+	private int[] neighbours(int id, int baseOrd, int relTypeIdx, MyDirection dir){
+		IntSlice base = baseNeighbours(baseOrd, relTypeIdx, dir);
+		VersionedGraph.Segment seg = segment(id, relTypeIdx, dir);
+		if (seg == null || seg.visible(version) == 0){
+			return base.toArray();
+		}
+		return seg.apply(base, version);
+	}
+
+	/**
+	 * Checks if the relationship (src)-[relType]->(tgt) exists in the snapshot.
+	 * @param src The source node id
+	 * @param tgt The target node id
+	 * @param relTypeIdx The relationship type index
+	 * @return True if the relationship exists, else false.
+	 */
+	public boolean hasEdge(int src, int tgt, int relTypeIdx){
+		IdDictionary dict = state.base.getDictionary();
+		return hasEdge(src, tgt, dict.toInternal(src), dict.toInternal(tgt), relTypeIdx);
+	}
+
+	private boolean hasEdge(int src, int tgt, int srcOrd, int tgtOrd, int relTypeIdx){
+		VersionedGraph.Segment seg = segment(src, relTypeIdx, MyDirection.OUTGOING);
+		if (seg != null){
+			int res = seg.lookup(tgt, version);
+			if (res >= 0){
+				return res == 1;
+			}
+		}
+		return state.base.hasEdge(srcOrd, tgtOrd, relTypeIdx);
+	}
+
+	/**
+	 * @return The ordinal of the given node in the base (cached in the node), or -1 if the node is not in the base.
+	 */
+	private int baseOrd(MyNode node){
+		return state.base.getDictionary().toInternal(node);
+	}
+
+	public Set<MyNode> getNeighbours(MyNode node, RelType relType, MyDirection dir){
+		Set<MyNode> result = new HashSet<MyNode>();
+		int baseOrd = baseOrd(node);
+		if (dir == MyDirection.OUTGOING || dir == MyDirection.BOTH){
+			for (int id : neighbours(node.getId(), baseOrd, relType.getIdx(), MyDirection.OUTGOING)){
+				result.add(findNode(id));
+			}
+		}
+		if (dir == MyDirection.INCOMING || dir == MyDirection.BOTH){
+			for (int id : neighbours(node.getId(), baseOrd, relType.getIdx(), MyDirection.INCOMING)){
+				result.add(findNode(id));
+			}
+		}
+		return result;
+	}
+
+	public boolean hasNeighbour(MyNode node, RelType relType, MyDirection dir, MyNode other){
+		int ord = baseOrd(node);
+		int otherOrd = baseOrd(other);
+		if (dir == MyDirection.OUTGOING){
+			return hasEdge(node.getId(), other.getId(), ord, otherOrd, relType.getIdx());
+		} else if (dir == MyDirection.INCOMING){
+			return hasEdge(other.getId(), node.getId(), otherOrd, ord, relType.getIdx());
+		} else {
+			return hasEdge(node.getId(), other.getId(), ord, otherOrd, relType.getIdx()) || hasEdge(other.getId(), node.getId(), otherOrd, ord, relType.getIdx());
+		}
+	}
+
+	public int getDegree(MyNode node, RelType relType, MyDirection dir){
+		if (dir == MyDirection.BOTH){
+			return getNeighbours(node, relType, dir).size();
+		}
+		VersionedGraph.Segment seg = segment(node.getId(), relType.getIdx(), dir);
+		if (seg == null || seg.visible(version) == 0){
+			return state.base.neighbours(baseOrd(node), relType.getIdx(), dir).size();
+		}
+		return neighbours(node.getId(), baseOrd(node), relType.getIdx(), dir).length;
+	}
+
+	public int getInDegree(MyNode node){
+		int degree = 0;
+		for (RelType relType : RelType.values()){
+			if (relType.getIdx() < numRelTypes){
+				degree += getDegree(node, relType, MyDirection.INCOMING);
+			}
+		}
+		return degree;
+	}
+
+	public int getOutDegree(MyNode node){
+		int degree = 0;
+		for (RelType relType : RelType.values()){
+			if (relType.getIdx() < numRelTypes){
+				degree += getDegree(node, relType, MyDirection.OUTGOING);
+			}
+		}
+		return degree;
+	}
+
+	public int getTotalDegree(MyNode node){
+		return getInDegree(node) + getOutDegree(node);
+	}
+
+	public MyNode findNode(int id){
+		MyNode node = state.base.findNode(id);
+		if (node == null){
+			VersionedGraph.AddedNode added = state.addedNodes.get(id);
+			if (added != null && added.version <= version){
+				node = added.node;
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * @return The nodes of the snapshot: the nodes of the base (in ordinal order), followed by the added nodes. Does not contain nulls.
+	 */
+	public MyNode[] getNodes(){
+		List<MyNode> nodes = new ArrayList<MyNode>(Arrays.asList(state.base.getNodes()));
+		for (VersionedGraph.AddedNode added : state.addedNodes.values()){
+			if (added.version <= version){
+				nodes.add(added.node);
+			}
+		}
+		return nodes.toArray(new MyNode[nodes.size()]);
+	}
+
+	/**
+	 * @return The number of nodes in the snapshot
+	 */
+	public int getNumNodes(){
+		int numNodes = state.base.getNumNodes();
+		for (VersionedGraph.AddedNode added : state.addedNodes.values()){
+			if (added.version <= version){
+				numNodes++;
+			}
+		}
+		return numNodes;
+	}
+
+	/**
+	 * Builds a CSRGraph with the content of the snapshot. The ordinals are assigned in ascending id order, and the
+	 * hub index is built with the hub degree of the base.
+	 * @return The CSR graph
+	 */
+	public CSRGraph toCSRGraph(){
+		MyNode[] snapNodes = getNodes();
+		int[] ids = new int[snapNodes.length];
+		for (int idx = 0; idx < snapNodes.length; idx++){
+			ids[idx] = snapNodes[idx].getId();
+		}
+		IdDictionary dict = IdDictionary.fromIds(ids, ids.length);
+		int numNodes = dict.size();
+		MyNode[] nodes = new MyNode[numNodes];
+		for (MyNode node : snapNodes){
+			nodes[dict.toInternal(node.getId())] = node;
+		}
+
+		//Collect the outgoing relationships
+		int capacity = state.base.getNumEdges() + 16;
+		int[] src = new int[capacity];
+		int[] tgt = new int[capacity];
+		int[] type = new int[capacity];
+		int numEdges = 0;
+		for (int ord = 0; ord < numNodes; ord++){
+			for (int relTypeIdx = 0; relTypeIdx < numRelTypes; relTypeIdx++){
+				int[] targets = neighbours(nodes[ord].getId(), relTypeIdx, MyDirection.OUTGOING);
+				if (numEdges + targets.length > src.length){
+					capacity = Math.max(src.length * 2, numEdges + targets.length);
+					src = Arrays.copyOf(src, capacity);
+					tgt = Arrays.copyOf(tgt, capacity);
+					type = Arrays.copyOf(type, capacity);
+				}
+				for (int target : targets){
+					src[numEdges] = ord;
+					tgt[numEdges] = dict.toInternal(target);
+					type[numEdges] = relTypeIdx;
+					numEdges++;
+				}
+			}
+		}
+
+		return CSRGraph.fromEdges(dict, numRelTypes, src, tgt, type, numEdges, nodes, state.base.getHubDegree());
+	}
+}
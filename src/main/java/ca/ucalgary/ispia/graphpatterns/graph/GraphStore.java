@@ -0,0 +1,58 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.Set;
+
+/**
+ * Provides read access to an in-memory dataset, for the in-memory (DSAccess based) evaluation.
+ * @author szrrizvi
+ *
+ */
+public interface GraphStore {
+
+	/**
+	 * Returns the set of neighbours from the given node, based on the given relType and direction.
+	 * The returned set must not be modified.
+	 * @param node The node
+	 * @param relType The relationship type
+	 * @param dir The direction of relationships
+	 * @return The set of neighbours to/from the given node.
+	 */
+	public Set<MyNode> getNeighbours(MyNode node, RelType relType, MyDirection dir);
+
+	/**
+	 * Checks if the other node is a neighbour of the given node, based on the given relType and direction.
+	 * @param node The node
+	 * @param relType The relationship type
+	 * @param dir The direction of relationships
+	 * @param other The potential neighbour
+	 * @return True if other is a neighbour of node, else false.
+	 */
+	public boolean hasNeighbour(MyNode node, RelType relType, MyDirection dir, MyNode other);
+
+	/**
+	 * Returns the number of neighbours from the given node, based on the given relType and direction.
+	 * @param node The node
+	 * @param relType The relationship type
+	 * @param dir The direction of relationships
+	 * @return The number of neighbours to/from the given node.
+	 */
+	public int getDegree(MyNode node, RelType relType, MyDirection dir);
+
+	public int getInDegree(MyNode node);
+
+	public int getOutDegree(MyNode node);
+
+	public int getTotalDegree(MyNode node);
+
+	/**
+	 * Returns the node with the given id.
+	 * @param id The node id
+	 * @return The node, or null if the dataset doesn't contain the node.
+	 */
+	public MyNode findNode(int id);
+
+	/**
+	 * @return The nodes of the dataset. The indexing depends on the implementation (node id, or internal ordinal). Can contain nulls.
+	 */
+	public MyNode[] getNodes();
+}
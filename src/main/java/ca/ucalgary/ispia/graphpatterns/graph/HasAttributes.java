@@ -38,4 +38,9 @@ public interface HasAttributes {
 	 * @return True if attribute successfully added, else false.
 	 */
 	public boolean addAttribute(String key, String val);
+	
+	/**
+	 * @return The attribute requirements compiled into typed predicates. Never null.
+	 */
+	public AttrPredicate[] getCompiledAttrs();
 }
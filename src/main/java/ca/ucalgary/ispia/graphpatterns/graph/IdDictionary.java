@@ -0,0 +1,255 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Maps the external node ids (i.e. MyNode.getId(), which can be sparse or large) to dense internal ordinals
+ * (0 .. n-1) and back. This allows the in-memory dataset structures to be dense arrays, regardless of the ids.
+ * The ordinals are assigned in a locality improving order (see Order), so that nodes that are accessed
+ * together are stored close to each other.
+ *
+ * Looking up an id is a binary search. The stores resolve the ordinal of a MyNode only once, and cache it in
+ * the node (see toInternal(MyNode)); the binary search is only used for the ids bound by the queries.
+ * @author szrrizvi
+ *
+ */
+public class IdDictionary {
+
+	/**
+	 * The order in which the internal ordinals are assigned.
+	 */
+	public enum Order {
+		ID,		//Ascending external id
+		DEGREE,	//Descending total degree (hubs first)
+		BFS		//Breadth first traversal (ignoring directions), starting from the hubs
+	}
+
+	private final int[] sortedExternal;		//The external ids, sorted
+	private final int[] sortedToInternal;	//The internal ordinal for each entry in sortedExternal
+	private final int[] toExternal;			//The external id for each internal ordinal
+
+	/**
+	 * Initializes the dictionary.
+	 * @param sortedExternal The external ids, sorted.
+	 * @param order order[i] is the index (in sortedExternal) of the node with internal ordinal i.
+	 */
+	private IdDictionary(int[] sortedExternal, int[] order){
+		this.sortedExternal = sortedExternal;
+		this.sortedToInternal = new int[sortedExternal.length];
+		this.toExternal = new int[sortedExternal.length];
+
+		for (int ord = 0; ord < order.length; ord++){
+			sortedToInternal[order[ord]] = ord;
+			toExternal[ord] = sortedExternal[order[ord]];
+		}
+	}
+
+	/**
+	 * Builds the dictionary for the given ids. The internal ordinals are assigned in ascending id order.
+	 * @param ids The ids; can contain duplicates
+	 * @param count The number of ids in the array
+	 * @return The dictionary
+	 */
+	public static IdDictionary fromIds(int[] ids, int count){
+		int[] sorted = Arrays.copyOf(ids, count);
+		Arrays.sort(sorted);
+
+		//Remove the duplicates
+		int n = 0;
+		for (int idx = 0; idx < count; idx++){
+			if (idx == 0 || sorted[idx] != sorted[idx - 1]){
+				sorted[n] = sorted[idx];
+				n++;
+			}
+		}
+		sorted = Arrays.copyOf(sorted, n);
+
+		int[] identity = new int[n];
+		for (int idx = 0; idx < n; idx++){
+			identity[idx] = idx;
+		}
+		return new IdDictionary(sorted, identity);
+	}
+
+	/**
+	 * Builds the dictionary for the nodes of the given dataset.
+	 * @param dataSet The dataset
+	 * @param order The order in which the internal ordinals are assigned
+	 * @return The dictionary
+	 */
+	public static IdDictionary build(DataSet dataSet, Order order){
+		//Collect and sort the external ids
+		Set<MyNode> nodes = dataSet.getNodes();
+		int[] sorted = new int[nodes.size()];
+		int idx = 0;
+		for (MyNode node : nodes){
+			sorted[idx] = node.getId();
+			idx++;
+		}
+		Arrays.sort(sorted);
+		int n = sorted.length;
+
+		if (order == Order.ID){
+			int[] identity = new int[n];
+			for (idx = 0; idx < n; idx++){
+				identity[idx] = idx;
+			}
+			return new IdDictionary(sorted, identity);
+		}
+
+		//Build the undirected adjacency (over the positions in the sorted array)
+		Map<MyNode, Set<MyRelationship>> relationships = dataSet.getOutgoingRels();
+		int[] offsets = new int[n + 1];
+		for (MyNode key : relationships.keySet()){
+			int src = Arrays.binarySearch(sorted, key.getId());
+			for (MyRelationship rel : relationships.get(key)){
+				int tgt = Arrays.binarySearch(sorted, rel.getTarget().getId());
+				offsets[src + 1]++;
+				offsets[tgt + 1]++;
+			}
+		}
+		for (idx = 0; idx < n; idx++){
+			offsets[idx + 1] += offsets[idx];
+		}
+
+		//Sort the positions by descending degree; ties are broken by the external id
+		int[] byDegree = sortByDegree(offsets, n);
+
+		if (order == Order.DEGREE){
+			return new IdDictionary(sorted, byDegree);
+		}
+
+		int[] adj = new int[offsets[n]];
+		int[] cursor = Arrays.copyOf(offsets, n);
+		for (MyNode key : relationships.keySet()){
+			int src = Arrays.binarySearch(sorted, key.getId());
+			for (MyRelationship rel : relationships.get(key)){
+				int tgt = Arrays.binarySearch(sorted, rel.getTarget().getId());
+				adj[cursor[src]++] = tgt;
+				adj[cursor[tgt]++] = src;
+			}
+		}
+		cursor = null;
+
+		//Breadth first traversal, starting from the unvisited node with the largest degree
+		int[] bfs = new int[n];
+		boolean[] visited = new boolean[n];
+		int head = 0;
+		int tail = 0;
+		for (int start : byDegree){
+			if (visited[start]){
+				continue;
+			}
+			visited[start] = true;
+			bfs[tail++] = start;
+
+			while (head < tail){
+				int cur = bfs[head++];
+				for (int pos = offsets[cur]; pos < offsets[cur + 1]; pos++){
+					if (!visited[adj[pos]]){
+						visited[adj[pos]] = true;
+						bfs[tail++] = adj[pos];
+					}
+				}
+			}
+		}
+
+		return new IdDictionary(sorted, bfs);
+	}
+
+	/**
+	 * Returns the positions 0..n-1 sorted by descending degree (offsets[i+1] - offsets[i]).
+	 */
+	private static int[] sortByDegree(int[] offsets, int n){
+		//Sort (degree, position) pairs packed into longs; negate the degree for descending order
+		long[] keys = new long[n];
+		for (int idx = 0; idx < n; idx++){
+			long degree = offsets[idx + 1] - offsets[idx];
+			keys[idx] = ((-degree) << 32) | idx;
+		}
+		Arrays.sort(keys);
+
+		int[] result = new int[n];
+		for (int idx = 0; idx < n; idx++){
+			result[idx] = (int) keys[idx];
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the internal ordinal for the given external id.
+	 * @param externalId The external id
+	 * @return The internal ordinal, or -1 if the id is not in the dictionary.
+	 */
+	public int toInternal(int externalId){
+		int pos = Arrays.binarySearch(sortedExternal, externalId);
+		if (pos < 0){
+			return -1;
+		}
+		return sortedToInternal[pos];
+	}
+
+	/**
+	 * Returns the internal ordinal for the given node. The ordinal is cached in the node, therefore only the first
+	 * lookup of a node (per dictionary) is a binary search.
+	 * @param node The node
+	 * @return The internal ordinal, or -1 if the node is not in the dictionary.
+	 */
+	public int toInternal(MyNode node){
+		int ord = node.getOrdinal(this);
+		if (ord == MyNode.Ordinal.NO_ORDINAL){
+			ord = toInternal(node.getId());
+			node.setOrdinal(this, ord);
+		}
+		return ord;
+	}
+
+	/**
+	 * Caches the given internal ordinal in the node (see toInternal(MyNode)). Used by the stores, which already
+	 * know the ordinals of their nodes.
+	 * @param node The node
+	 * @param ord The internal ordinal of the node
+	 */
+	void bind(MyNode node, int ord){
+		node.setOrdinal(this, ord);
+	}
+
+	/**
+	 * Returns the external id for the given internal ordinal.
+	 * @param internal The internal ordinal
+	 * @return The external id
+	 */
+	public int toExternal(int internal){
+		return toExternal[internal];
+	}
+
+	/**
+	 * @return The number of nodes in the dictionary
+	 */
+	public int size(){
+		return toExternal.length;
+	}
+
+	/**
+	 * @return The largest external id, or -1 if the dictionary is empty
+	 */
+	public int maxId(){
+		return (sortedExternal.length == 0) ? -1 : sortedExternal[sortedExternal.length - 1];
+	}
+
+	/**
+	 * @return The external ids, sorted. Must not be modified.
+	 */
+	int[] getSortedExternal(){
+		return this.sortedExternal;
+	}
+
+	/**
+	 * @return The internal ordinal for each entry in getSortedExternal. Must not be modified.
+	 */
+	int[] getSortedToInternal(){
+		return this.sortedToInternal;
+	}
+}
@@ -0,0 +1,239 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed bitmap of non-negative ints. The int space is split into chunks of 2^16 values (by the
+ * high 16 bits); each non-empty chunk is stored either as a sorted array of the low 16 bits (sparse chunks), or as a
+ * plain 2^16 bit bitmap (dense chunks). Membership is a binary search over the chunks, followed by a bit test or
+ * a binary search over at most ARRAY_MAX values.
+ * @author szrrizvi
+ *
+ */
+public final class IntBitmap {
+
+	private static final int ARRAY_MAX = 4096;	//Chunks with more values are stored as bitmaps (same size as 4096 chars)
+
+	private final int[] keys;			//The high 16 bits of each chunk, sorted
+	private final char[][] arrays;		//The sorted low 16 bits, for the sparse chunks (else null)
+	private final long[][] bitmaps;		//The bitmap, for the dense chunks (else null)
+	private final int cardinality;		//The number of values
+
+	private IntBitmap(int[] keys, char[][] arrays, long[][] bitmaps, int cardinality){
+		this.keys = keys;
+		this.arrays = arrays;
+		this.bitmaps = bitmaps;
+		this.cardinality = cardinality;
+	}
+
+	/**
+	 * Builds the bitmap for the given range of sorted, distinct, non-negative values.
+	 * @param vals The values
+	 * @param from The first index (inclusive)
+	 * @param to The last index (exclusive)
+	 * @return The bitmap
+	 */
+	public static IntBitmap fromSorted(int[] vals, int from, int to){
+		//Count the chunks
+		int numChunks = 0;
+		for (int idx = from; idx < to; idx++){
+			if (idx == from || (vals[idx] >>> 16) != (vals[idx - 1] >>> 16)){
+				numChunks++;
+			}
+		}
+
+		int[] keys = new int[numChunks];
+		char[][] arrays = new char[numChunks][];
+		long[][] bitmaps = new long[numChunks][];
+
+		int chunk = 0;
+		int start = from;
+		while (start < to){
+			int key = vals[start] >>> 16;
+			int end = start;
+			while (end < to && (vals[end] >>> 16) == key){
+				end++;
+			}
+
+			keys[chunk] = key;
+			if (end - start > ARRAY_MAX){
+				long[] bits = new long[1 << 10];
+				for (int idx = start; idx < end; idx++){
+					int low = vals[idx] & 0xFFFF;
+					bits[low >>> 6] |= 1L << low;
+				}
+				bitmaps[chunk] = bits;
+			} else {
+				char[] arr = new char[end - start];
+				for (int idx = start; idx < end; idx++){
+					arr[idx - start] = (char) (vals[idx] & 0xFFFF);
+				}
+				arrays[chunk] = arr;
+			}
+
+			chunk++;
+			start = end;
+		}
+
+		return new IntBitmap(keys, arrays, bitmaps, to - from);
+	}
+
+	/**
+	 * Checks if the bitmap contains the given value.
+	 * @param val The value
+	 * @return True if the value is in the bitmap, else false.
+	 */
+	public boolean contains(int val){
+		if (val < 0){
+			return false;
+		}
+		int chunk = Arrays.binarySearch(keys, val >>> 16);
+		if (chunk < 0){
+			return false;
+		}
+		int low = val & 0xFFFF;
+		if (bitmaps[chunk] != null){
+			return (bitmaps[chunk][low >>> 6] & (1L << low)) != 0;
+		}
+		return Arrays.binarySearch(arrays[chunk], (char) low) >= 0;
+	}
+
+	/**
+	 * Returns the intersection of this bitmap and the given bitmap. The chunks are intersected pairwise: two
+	 * bitmaps word by word, a bitmap and an array by bit tests, and two arrays by a merge.
+	 * @param other The other bitmap
+	 * @return The values that are in both bitmaps
+	 */
+	public IntBitmap and(IntBitmap other){
+		int maxChunks = Math.min(keys.length, other.keys.length);
+		int[] resKeys = new int[maxChunks];
+		char[][] resArrays = new char[maxChunks][];
+		long[][] resBitmaps = new long[maxChunks][];
+		int numChunks = 0;
+		int resCardinality = 0;
+
+		int i = 0;
+		int j = 0;
+		while (i < keys.length && j < other.keys.length){
+			if (keys[i] < other.keys[j]){
+				i++;
+			} else if (keys[i] > other.keys[j]){
+				j++;
+			} else {
+				int count;
+				if (bitmaps[i] != null && other.bitmaps[j] != null){
+					long[] bits = new long[1 << 10];
+					count = 0;
+					for (int word = 0; word < bits.length; word++){
+						bits[word] = bitmaps[i][word] & other.bitmaps[j][word];
+						count += Long.bitCount(bits[word]);
+					}
+					if (count > ARRAY_MAX){
+						resBitmaps[numChunks] = bits;
+					} else if (count > 0){
+						resArrays[numChunks] = toChars(bits, count);
+					}
+				} else if (bitmaps[i] != null || other.bitmaps[j] != null){
+					char[] arr = (bitmaps[i] != null) ? other.arrays[j] : arrays[i];
+					long[] bits = (bitmaps[i] != null) ? bitmaps[i] : other.bitmaps[j];
+					char[] res = new char[arr.length];
+					count = 0;
+					for (char low : arr){
+						if ((bits[low >>> 6] & (1L << low)) != 0){
+							res[count] = low;
+							count++;
+						}
+					}
+					if (count > 0){
+						resArrays[numChunks] = Arrays.copyOf(res, count);
+					}
+				} else {
+					char[] a = arrays[i];
+					char[] b = other.arrays[j];
+					char[] res = new char[Math.min(a.length, b.length)];
+					count = 0;
+					int x = 0;
+					int y = 0;
+					while (x < a.length && y < b.length){
+						if (a[x] < b[y]){
+							x++;
+						} else if (a[x] > b[y]){
+							y++;
+						} else {
+							res[count] = a[x];
+							count++;
+							x++;
+							y++;
+						}
+					}
+					if (count > 0){
+						resArrays[numChunks] = Arrays.copyOf(res, count);
+					}
+				}
+
+				if (count > 0){
+					resKeys[numChunks] = keys[i];
+					numChunks++;
+					resCardinality += count;
+				}
+				i++;
+				j++;
+			}
+		}
+
+		return new IntBitmap(Arrays.copyOf(resKeys, numChunks), Arrays.copyOf(resArrays, numChunks), 
+				Arrays.copyOf(resBitmaps, numChunks), resCardinality);
+	}
+
+	/**
+	 * Converts a chunk bitmap with the given number of set bits to the sorted array of its low 16 bits.
+	 */
+	private static char[] toChars(long[] bits, int count){
+		char[] result = new char[count];
+		int pos = 0;
+		for (int word = 0; word < bits.length; word++){
+			long w = bits[word];
+			while (w != 0){
+				result[pos] = (char) ((word << 6) | Long.numberOfTrailingZeros(w));
+				pos++;
+				w &= w - 1;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return The number of values in the bitmap
+	 */
+	public int cardinality(){
+		return this.cardinality;
+	}
+
+	/**
+	 * @return The values, sorted
+	 */
+	public int[] toArray(){
+		int[] result = new int[cardinality];
+		int pos = 0;
+		for (int chunk = 0; chunk < keys.length; chunk++){
+			int high = keys[chunk] << 16;
+			if (bitmaps[chunk] != null){
+				long[] bits = bitmaps[chunk];
+				for (int word = 0; word < bits.length; word++){
+					long w = bits[word];
+					while (w != 0){
+						result[pos] = high | (word << 6) | Long.numberOfTrailingZeros(w);
+						pos++;
+						w &= w - 1;
+					}
+				}
+			} else {
+				for (char low : arrays[chunk]){
+					result[pos] = high | low;
+					pos++;
+				}
+			}
+		}
+		return result;
+	}
+}
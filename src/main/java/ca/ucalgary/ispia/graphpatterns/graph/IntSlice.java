@@ -0,0 +1,77 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.Arrays;
+
+/**
+ * A read-only view of a range of an int array. Used for returning adjacency lists without copying them.
+ * @author szrrizvi
+ *
+ */
+public final class IntSlice {
+
+	public static final IntSlice EMPTY = new IntSlice(new int[0], 0, 0);
+
+	private final int[] array;	//The backing array
+	private final int from;		//Start index (inclusive)
+	private final int to;		//End index (exclusive)
+
+	/**
+	 * Initializes the view.
+	 * @param array The backing array
+	 * @param from Start index (inclusive)
+	 * @param to End index (exclusive)
+	 */
+	public IntSlice(int[] array, int from, int to){
+		this.array = array;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @return The number of elements
+	 */
+	public int size(){
+		return to - from;
+	}
+
+	public boolean isEmpty(){
+		return to == from;
+	}
+
+	/**
+	 * @param idx The index, relative to the start of the slice
+	 * @return The element at the given index
+	 */
+	public int get(int idx){
+		return array[from + idx];
+	}
+
+	/**
+	 * Searches for the given value.
+	 * Assumption: The slice is sorted.
+	 * @param val The value
+	 * @return True if the slice contains the value, else false.
+	 */
+	public boolean contains(int val){
+		return Arrays.binarySearch(array, from, to, val) >= 0;
+	}
+
+	/**
+	 * @return A copy of the elements
+	 */
+	public int[] toArray(){
+		return Arrays.copyOfRange(array, from, to);
+	}
+
+	public int[] getArray(){
+		return this.array;
+	}
+
+	public int getFrom(){
+		return this.from;
+	}
+
+	public int getTo(){
+		return this.to;
+	}
+}
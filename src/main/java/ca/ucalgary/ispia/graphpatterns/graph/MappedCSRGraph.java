@@ -0,0 +1,402 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.Charset;
+import java.util.AbstractSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A CSR graph (see CSRGraph) whose arrays are memory mapped from a snapshot file (see CSRSnapshot).
+ * The adjacency, the id dictionary, the attribute codes and the attribute dictionaries are read off-heap; the
+ * attribute values are decoded on demand, and only the (lazily created) MyNode objects are kept on the heap.
+ * As in CSRGraph, the nodes are identified by their internal ordinals; the ordinal of a MyNode is cached in the
+ * node (see IdDictionary.toInternal(MyNode)).
+ *
+ * The nodes are created on the first request and published through an AtomicReferenceArray, so the graph can be
+ * shared between threads; if two threads create the same node, both return the node that was published first.
+ *
+ * Assumption: After a MappedCSRGraph has been opened, it does not add/remove any relationships/nodes.
+ * @author szrrizvi
+ *
+ */
+public class MappedCSRGraph implements GraphStore {
+
+	private final int numNodes;			//The number of nodes
+	private final int numRelTypes;		//The number of relationship types
+
+	private final IntBuffer ids;		//The id of each ordinal
+	private final IntBuffer sortedIds;	//The ids, sorted
+	private final IntBuffer sortedOrds;	//The ordinal of each entry in sortedIds
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String[] columns;			//The attribute names
+	private final IntBuffer[] dictOffsets;	//The offset of each dictionary value in dictValues, per attribute
+	private final ByteBuffer[] dictValues;	//The UTF-8 bytes of the dictionary values, per attribute
+	private final IntBuffer[] codes;		//The dictionary codes per attribute, indexed by ordinal
+
+	private final IntBuffer outOffsets;	//Offsets for the outgoing relationships
+	private final IntBuffer outTargets;	//Targets of the outgoing relationships
+	private final IntBuffer inOffsets;	//Offsets for the incoming relationships
+	private final IntBuffer inTargets;	//Sources of the incoming relationships
+
+	private final AtomicReferenceArray<MyNode> nodes;	//The lazily created nodes, indexed by ordinal
+
+	/**
+	 * Initializes the graph from the mapped sections. Use CSRSnapshot.open to create instances.
+	 */
+	MappedCSRGraph(int numNodes, int numRelTypes, IntBuffer ids, IntBuffer sortedIds, IntBuffer sortedOrds, String[] columns,
+			IntBuffer[] dictOffsets, ByteBuffer[] dictValues, IntBuffer[] codes,
+			IntBuffer outOffsets, IntBuffer outTargets, IntBuffer inOffsets, IntBuffer inTargets){
+		this.numNodes = numNodes;
+		this.numRelTypes = numRelTypes;
+		this.ids = ids;
+		this.sortedIds = sortedIds;
+		this.sortedOrds = sortedOrds;
+		this.columns = columns;
+		this.dictOffsets = dictOffsets;
+		this.dictValues = dictValues;
+		this.codes = codes;
+		this.outOffsets = outOffsets;
+		this.outTargets = outTargets;
+		this.inOffsets = inOffsets;
+		this.inTargets = inTargets;
+		this.nodes = new AtomicReferenceArray<MyNode>(numNodes);
+	}
+
+	/**
+	 * Returns the internal ordinal for the given id (binary search over the sorted ids).
+	 * @param id The node id
+	 * @return The ordinal, or -1 if the node doesn't exist.
+	 */
+	public int toInternal(int id){
+		int low = 0;
+		int high = numNodes - 1;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			int val = sortedIds.get(mid);
+			if (val < id){
+				low = mid + 1;
+			} else if (val > id){
+				high = mid - 1;
+			} else {
+				return sortedOrds.get(mid);
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the internal ordinal for the given node. The ordinal is cached in the node.
+	 * @param node The node
+	 * @return The ordinal, or -1 if the node doesn't exist.
+	 */
+	private int ord(MyNode node){
+		int ord = node.getOrdinal(this);
+		if (ord == MyNode.Ordinal.NO_ORDINAL){
+			ord = toInternal(node.getId());
+			node.setOrdinal(this, ord);
+		}
+		return ord;
+	}
+
+	/**
+	 * Checks if the node with the given id exists.
+	 * @param id The node id
+	 * @return True if the node exists, else false.
+	 */
+	public boolean exists(int id){
+		return toInternal(id) >= 0;
+	}
+
+	/**
+	 * Returns the node with the given id. The node (and its attributes) is created on the first request.
+	 * @param id The node id
+	 * @return The node, or null if the node doesn't exist.
+	 */
+	public MyNode findNode(int id){
+		int ord = toInternal(id);
+		if (ord < 0){
+			return null;
+		}
+		return getNode(ord);
+	}
+
+	/**
+	 * Returns the node with the given ordinal. The node (and its attributes) is created on the first request.
+	 * @param ord The node ordinal
+	 * @return The node
+	 */
+	public MyNode getNode(int ord){
+		MyNode node = nodes.get(ord);
+		if (node == null){
+			node = new MyNode(ids.get(ord), "");
+			for (int col = 0; col < columns.length; col++){
+				String val = getAttribute(ord, col);
+				if (val != null){
+					node.addAttribute(columns[col], val);
+				}
+			}
+			node.setOrdinal(this, ord);
+			//Publish the node, unless another thread was first
+			if (!nodes.compareAndSet(ord, null, node)){
+				node = nodes.get(ord);
+			}
+		}
+		return node;
+	}
+
+	/**
+	 * Returns the value of the given attribute for the given node.
+	 * @param id The node id
+	 * @param name The attribute name
+	 * @return The attribute value, or null if the node doesn't have the attribute.
+	 */
+	public String getAttribute(int id, String name){
+		int ord = toInternal(id);
+		if (ord < 0){
+			return null;
+		}
+		for (int col = 0; col < columns.length; col++){
+			if (columns[col].equals(name)){
+				return getAttribute(ord, col);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Decodes the value of the given attribute column for the given node, from the mapped dictionary.
+	 */
+	private String getAttribute(int ord, int col){
+		int code = codes[col].get(ord);
+		if (code < 0){
+			return null;
+		}
+		int from = dictOffsets[col].get(code);
+		byte[] bytes = new byte[dictOffsets[col].get(code + 1) - from];
+		//Absolute gets, so the shared buffer's position is never changed
+		for (int idx = 0; idx < bytes.length; idx++){
+			bytes[idx] = dictValues[col].get(from + idx);
+		}
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * @return The attribute names stored in the snapshot
+	 */
+	public String[] getAttributeNames(){
+		return this.columns;
+	}
+
+	/**
+	 * Checks if the relationship (src)-[relType]->(tgt) exists.
+	 * @param src The source node ordinal
+	 * @param tgt The target node ordinal
+	 * @param relTypeIdx The relationship type index
+	 * @return True if the relationship exists, else false.
+	 */
+	public boolean hasEdge(int src, int tgt, int relTypeIdx){
+		if (src < 0 || src >= numNodes || tgt < 0 || tgt >= numNodes){
+			return false;
+		}
+		//Search the shorter adjacency list
+		int outKey = src * numRelTypes + relTypeIdx;
+		int inKey = tgt * numRelTypes + relTypeIdx;
+		int outFrom = outOffsets.get(outKey), outTo = outOffsets.get(outKey + 1);
+		int inFrom = inOffsets.get(inKey), inTo = inOffsets.get(inKey + 1);
+
+		if (outTo - outFrom <= inTo - inFrom){
+			return binarySearch(outTargets, outFrom, outTo, tgt);
+		} else {
+			return binarySearch(inTargets, inFrom, inTo, src);
+		}
+	}
+
+	/**
+	 * Binary search over the sorted range [from, to) of the buffer.
+	 */
+	private static boolean binarySearch(IntBuffer buf, int from, int to, int key){
+		int low = from;
+		int high = to - 1;
+		while (low <= high){
+			int mid = (low + high) >>> 1;
+			int val = buf.get(mid);
+			if (val < key){
+				low = mid + 1;
+			} else if (val > key){
+				high = mid - 1;
+			} else {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the set of neighbours from the given node, based on the given relType and direction.
+	 * For a single direction, a read-only view backed by the mapped adjacency slice is returned, so nothing is
+	 * copied; contains is a binary search over the slice, and the nodes are only created while iterating. For BOTH
+	 * directions, the set is materialized.
+	 * @param node The node
+	 * @param relType The relationship type
+	 * @param dir The direction of relationships
+	 * @return The set of neighbours to/from the given node.
+	 */
+	public Set<MyNode> getNeighbours(MyNode node, RelType relType, MyDirection dir){
+		int ord = ord(node);
+		if (ord < 0){
+			return new SliceNeighbours(outTargets, 0, 0);
+		}
+		int key = ord * numRelTypes + relType.getIdx();
+
+		if (dir == MyDirection.OUTGOING){
+			return new SliceNeighbours(outTargets, outOffsets.get(key), outOffsets.get(key + 1));
+		} else if (dir == MyDirection.INCOMING){
+			return new SliceNeighbours(inTargets, inOffsets.get(key), inOffsets.get(key + 1));
+		}
+
+		Set<MyNode> result = new HashSet<MyNode>();
+
+		if (dir == MyDirection.OUTGOING || dir == MyDirection.BOTH){
+			for (int idx = outOffsets.get(key); idx < outOffsets.get(key + 1); idx++){
+				result.add(getNode(outTargets.get(idx)));
+			}
+		}
+		if (dir == MyDirection.INCOMING || dir == MyDirection.BOTH){
+			for (int idx = inOffsets.get(key); idx < inOffsets.get(key + 1); idx++){
+				result.add(getNode(inTargets.get(idx)));
+			}
+		}
+		return result;
+	}
+
+	public boolean hasNeighbour(MyNode node, RelType relType, MyDirection dir, MyNode other){
+		int ord = ord(node);
+		int otherOrd = ord(other);
+		if (dir == MyDirection.OUTGOING){
+			return hasEdge(ord, otherOrd, relType.getIdx());
+		} else if (dir == MyDirection.INCOMING){
+			return hasEdge(otherOrd, ord, relType.getIdx());
+		} else {
+			return hasEdge(ord, otherOrd, relType.getIdx()) || hasEdge(otherOrd, ord, relType.getIdx());
+		}
+	}
+
+	public int getDegree(MyNode node, RelType relType, MyDirection dir){
+		int ord = ord(node);
+		if (ord < 0){
+			return 0;
+		}
+		int key = ord * numRelTypes + relType.getIdx();
+		if (dir == MyDirection.OUTGOING){
+			return outOffsets.get(key + 1) - outOffsets.get(key);
+		} else if (dir == MyDirection.INCOMING){
+			return inOffsets.get(key + 1) - inOffsets.get(key);
+		} else {
+			return getNeighbours(node, relType, dir).size();
+		}
+	}
+
+	public int getInDegree(MyNode node){
+		return degree(inOffsets, ord(node));
+	}
+
+	public int getOutDegree(MyNode node){
+		return degree(outOffsets, ord(node));
+	}
+
+	public int getTotalDegree(MyNode node){
+		return getInDegree(node) + getOutDegree(node);
+	}
+
+	private int degree(IntBuffer offsets, int ord){
+		if (ord < 0){
+			return 0;
+		}
+		return offsets.get((ord + 1) * numRelTypes) - offsets.get(ord * numRelTypes);
+	}
+
+	/**
+	 * @return The nodes, indexed by ordinal. All of the nodes are created by this call.
+	 */
+	public MyNode[] getNodes(){
+		MyNode[] result = new MyNode[numNodes];
+		for (int ord = 0; ord < numNodes; ord++){
+			result[ord] = getNode(ord);
+		}
+		return result;
+	}
+
+	public int getNumNodes(){
+		return this.numNodes;
+	}
+
+	public int getNumRelTypes(){
+		return this.numRelTypes;
+	}
+
+	public int getNumEdges(){
+		return this.outTargets.capacity();
+	}
+
+	/**
+	 * Read-only view of a neighbourhood, backed by its mapped adjacency slice.
+	 */
+	private final class SliceNeighbours extends AbstractSet<MyNode> {
+		private final IntBuffer targets;	//The adjacency targets
+		private final int from;				//The first index of the slice (inclusive)
+		private final int to;				//The last index of the slice (exclusive)
+
+		private SliceNeighbours(IntBuffer targets, int from, int to){
+			this.targets = targets;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public boolean contains(Object obj){
+			if (!(obj instanceof MyNode)){
+				return false;
+			}
+			int ord = ord((MyNode) obj);
+			return ord >= 0 && binarySearch(targets, from, to, ord);
+		}
+
+		@Override
+		public int size(){
+			return to - from;
+		}
+
+		@Override
+		public Iterator<MyNode> iterator(){
+			return new Iterator<MyNode>(){
+				private int pos = from;
+
+				@Override
+				public boolean hasNext(){
+					return pos < to;
+				}
+
+				@Override
+				public MyNode next(){
+					if (pos >= to){
+						throw new NoSuchElementException();
+					}
+					pos++;
+					return getNode(targets.get(pos - 1));
+				}
+
+				@Override
+				public void remove(){
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package ca.ucalgary.ispia.graphpatterns.graph;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -18,11 +19,16 @@ public class MyNode implements HasAttributes, Serializable{
 	
 	private static final long serialVersionUID = -7348537080994739107L;
 	
+	//The shared (immutable) attributes map of the elements without attributes. Replaced on the first addAttribute.
+	static final Map<String, String> NO_ATTRIBUTES = Collections.emptyMap();
 	
 	//Fields
 	private final int id;
 	private final String label;
 	private Map<String, String> attributes;
+	private transient AttrPredicate[] compiledAttrs;	//Lazily compiled attribute requirements
+	private transient Map<String, String> attributesView;	//The read-only view of the attributes map (null until first needed)
+	private transient Ordinal ordinal;					//The cached internal ordinal (see IdDictionary.toInternal(MyNode))
 	
 	/**
 	 * Initializes the given fields
@@ -33,7 +39,7 @@ public class MyNode implements HasAttributes, Serializable{
 		//Set the fields and initialize the atrributes map
 		this.id = id;
 		this.label = label;
-		this.attributes = new HashMap<String, String>();
+		this.attributes = NO_ATTRIBUTES;
 	}
 	
 	/**
@@ -64,7 +70,12 @@ public class MyNode implements HasAttributes, Serializable{
 			return false;
 		}
 		else {
+			if (attributes == NO_ATTRIBUTES){
+				attributes = new HashMap<String, String>();
+				attributesView = null;
+			}
 			attributes.put(name, val);
+			compiledAttrs = null;
 		}
 		
 		return true;
@@ -99,15 +110,65 @@ public class MyNode implements HasAttributes, Serializable{
 		return attributes.containsKey(attrName);
 	}
 	
+	/**
+	 * Replaces the attributes of the node with a copy of the given map.
+	 * @param attributes The attributes. Not modified, and not referenced after the call.
+	 */
 	public void setAttributes(Map<String, String> attributes){
-		this.attributes = attributes;
+		if (attributes == null || attributes.isEmpty()){
+			this.attributes = NO_ATTRIBUTES;
+		} else {
+			this.attributes = new HashMap<String, String>(attributes);
+		}
+		this.attributesView = Collections.unmodifiableMap(this.attributes);
+		this.compiledAttrs = null;
 	}
 	
 	/**
-	 * @return The map of attributes
+	 * @return The map of attributes (read only; use addAttribute or setAttributes, so the compiled attributes are reset)
 	 */
 	public Map<String, String> getAttributes(){
-		return this.attributes;
+		Map<String, String> view = this.attributesView;
+		if (view == null){
+			//The view is live, so it is only replaced when the attributes map is replaced
+			view = Collections.unmodifiableMap(this.attributes);
+			this.attributesView = view;
+		}
+		return view;
+	}
+	
+	/**
+	 * Returns the attribute requirements compiled into typed predicates. The predicates are compiled 
+	 * on the first call, and recompiled only if the attributes are changed.
+	 * @return The compiled attribute requirements. Never null.
+	 */
+	public AttrPredicate[] getCompiledAttrs(){
+		if (compiledAttrs == null){
+			compiledAttrs = AttrPredicate.compileAll(attributes);
+		}
+		return compiledAttrs;
+	}
+
+	/**
+	 * Returns the cached internal ordinal of the node, if it was assigned by the given owner.
+	 * @param owner The dictionary (or store) that assigned the ordinal
+	 * @return The ordinal (-1 if the node is not part of the owner), or NO_ORDINAL if the ordinal is not cached for the owner.
+	 */
+	int getOrdinal(Object owner){
+		Ordinal cur = ordinal;
+		if (cur == null || cur.owner != owner){
+			return Ordinal.NO_ORDINAL;
+		}
+		return cur.ord;
+	}
+	
+	/**
+	 * Caches the internal ordinal of the node. Replaces the ordinal cached for any other owner.
+	 * @param owner The dictionary (or store) that assigned the ordinal
+	 * @param ord The ordinal
+	 */
+	void setOrdinal(Object owner, int ord){
+		ordinal = new Ordinal(owner, ord);
 	}
 
 	@Override
@@ -142,5 +203,19 @@ public class MyNode implements HasAttributes, Serializable{
 		return str.toString();
 	}
 	
-	
+	/**
+	 * An internal ordinal, and the owner that assigned it. Immutable, so it can be published without synchronization;
+	 * a thread that doesn't see the latest ordinal just resolves it again.
+	 */
+	static final class Ordinal {
+		static final int NO_ORDINAL = Integer.MIN_VALUE;
+		
+		final Object owner;
+		final int ord;
+		
+		Ordinal(Object owner, int ord){
+			this.owner = owner;
+			this.ord = ord;
+		}
+	}
 }
@@ -1,6 +1,7 @@
 package ca.ucalgary.ispia.graphpatterns.graph;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -22,6 +23,8 @@ public class MyRelationship implements HasAttributes, Serializable {
 	private final RelType identifier;
 	private final int id;
 	private Map<String, String> attributes;
+	private transient AttrPredicate[] compiledAttrs;	//Lazily compiled attribute requirements
+	private transient Map<String, String> attributesView;	//The read-only view of the attributes map (null until first needed)
 	
 	/**
 	 * Initializes the given fields
@@ -35,7 +38,7 @@ public class MyRelationship implements HasAttributes, Serializable {
 		this.target = target;
 		this.identifier = identifier;
 		this.id = id;
-		this.attributes = new HashMap<String, String>();
+		this.attributes = MyNode.NO_ATTRIBUTES;
 	}
 	
 	/**
@@ -99,7 +102,12 @@ public class MyRelationship implements HasAttributes, Serializable {
 			return false;
 		}
 		else {
+			if (attributes == MyNode.NO_ATTRIBUTES){
+				attributes = new HashMap<String, String>();
+				attributesView = null;
+			}
 			attributes.put(name, val);
+			compiledAttrs = null;
 		}
 		
 		return true;
@@ -134,28 +142,63 @@ public class MyRelationship implements HasAttributes, Serializable {
 		return attributes.containsKey(attrName);
 	}
 	
+	/**
+	 * Replaces the attributes of the relationship with a copy of the given map.
+	 * @param attributes The attributes. Not modified, and not referenced after the call.
+	 */
 	public void setAttributes(Map<String, String> attributes){
-		this.attributes = attributes;
+		if (attributes == null || attributes.isEmpty()){
+			this.attributes = MyNode.NO_ATTRIBUTES;
+		} else {
+			this.attributes = new HashMap<String, String>(attributes);
+		}
+		this.attributesView = Collections.unmodifiableMap(this.attributes);
+		this.compiledAttrs = null;
 	}
 	
 	/**
-	 * @return The map of attributes
+	 * @return The map of attributes (read only; use addAttribute or setAttributes, so the compiled attributes are reset)
 	 */
 	public Map<String, String> getAttributes(){
-		return this.attributes;
+		Map<String, String> view = this.attributesView;
+		if (view == null){
+			//The view is live, so it is only replaced when the attributes map is replaced
+			view = Collections.unmodifiableMap(this.attributes);
+			this.attributesView = view;
+		}
+		return view;
+	}
+	
+	/**
+	 * Returns the attribute requirements compiled into typed predicates. The predicates are compiled 
+	 * on the first call, and recompiled only if the attributes are changed.
+	 * @return The compiled attribute requirements. Never null.
+	 */
+	public AttrPredicate[] getCompiledAttrs(){
+		if (compiledAttrs == null){
+			compiledAttrs = AttrPredicate.compileAll(attributes);
+		}
+		return compiledAttrs;
 	}
 
+	/**
+	 * The hash code only depends on the type and the endpoint ids (see MyNode.hashCode), so inserting a relationship
+	 * into a hashed collection doesn't hash the attributes map. Relationships that only differ in their attributes
+	 * collide, and are told apart by equals.
+	 */
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
-		result = prime * result + ((attributes == null) ? 0 : attributes.hashCode());
-		result = prime * result + ((identifier == null) ? 0 : identifier.hashCode());
-		result = prime * result + ((source == null) ? 0 : source.hashCode());
-		result = prime * result + ((target == null) ? 0 : target.hashCode());
+		result = prime * result + ((identifier == null) ? 0 : identifier.getIdx());
+		result = prime * result + ((source == null) ? 0 : source.getId());
+		result = prime * result + ((target == null) ? 0 : target.getId());
 		return result;
 	}
 
+	/**
+	 * Compares the type and endpoints first; the attribute maps are only compared if those are equal.
+	 */
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj)
@@ -165,15 +208,7 @@ public class MyRelationship implements HasAttributes, Serializable {
 		if (getClass() != obj.getClass())
 			return false;
 		MyRelationship other = (MyRelationship) obj;
-		if (attributes == null) {
-			if (other.attributes != null)
-				return false;
-		} else if (!attributes.equals(other.attributes))
-			return false;
-		if (identifier == null) {
-			if (other.identifier != null)
-				return false;
-		} else if (!identifier.equals(other.identifier))
+		if (identifier != other.identifier)
 			return false;
 		if (source == null) {
 			if (other.source != null)
@@ -185,6 +220,11 @@ public class MyRelationship implements HasAttributes, Serializable {
 				return false;
 		} else if (!target.equals(other.target))
 			return false;
+		if (attributes == null) {
+			if (other.attributes != null)
+				return false;
+		} else if (attributes != other.attributes && !attributes.equals(other.attributes))
+			return false;
 		return true;
 	}
 
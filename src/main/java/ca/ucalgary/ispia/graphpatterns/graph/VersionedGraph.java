@@ -0,0 +1,449 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A mutable in-memory graph with snapshot isolation. The graph consists of an immutable CSR base (see CSRGraph)
+ * and delta segments, which record the relationships added/removed since the base was built.
+ *
+ * Every write creates a new version. Readers work against a GraphSnapshot (see snapshot), which only sees the
+ * writes up to its version; therefore an in-flight evaluation sees a consistent graph, while the writers continue
+ * to apply updates. The delta segments are append-only buffers published through immutable record holders
+ * (see Segment), so the readers never need to lock.
+ *
+ * The deltas are periodically merged into a new CSR base (see compact and startCompaction). Existing snapshots
+ * keep their reference to the old base and deltas, and are not affected by the compaction.
+ *
+ * Assumption: The nodes are never removed.
+ * @author szrrizvi
+ *
+ */
+public class VersionedGraph {
+
+	private final int numRelTypes;						//The number of relationship types
+	private final Object writeLock = new Object();		//Serializes the writers (and the swap at the end of a compaction)
+	private final Object compactLock = new Object();	//Serializes the compactions
+
+	private volatile Head head;							//The latest state and version
+	private int deltaSize;								//The number of records in the delta segments of the latest state (guarded by writeLock)
+
+	private ScheduledExecutorService compactor;			//The background compaction thread (null if not started)
+
+	/**
+	 * Initializes the graph with the given base.
+	 * @param base The initial content of the graph
+	 */
+	public VersionedGraph(CSRGraph base){
+		this.numRelTypes = base.getNumRelTypes();
+		this.head = new Head(new State(base, 0, new ConcurrentHashMap<Long, Segment>(), new ConcurrentHashMap<Integer, AddedNode>()), 0);
+	}
+
+	/**
+	 * Returns a read-only view of the current version of the graph. The view is not affected by later writes.
+	 * @return The snapshot
+	 */
+	public GraphSnapshot snapshot(){
+		Head cur = head;
+		return new GraphSnapshot(cur.state, cur.version, numRelTypes);
+	}
+
+	/**
+	 * @return The latest version
+	 */
+	public long getVersion(){
+		return head.version;
+	}
+
+	/**
+	 * Adds the relationship (src)-[relType]->(tgt). The nodes are created if they don't exist.
+	 * @param src The source node id
+	 * @param tgt The target node id
+	 * @param relType The relationship type
+	 * @return True if the relationship was added, false if it already existed.
+	 */
+	public boolean addRelationship(int src, int tgt, RelType relType){
+		return write(src, tgt, relType.getIdx(), true);
+	}
+
+	/**
+	 * Removes the relationship (src)-[relType]->(tgt).
+	 * @param src The source node id
+	 * @param tgt The target node id
+	 * @param relType The relationship type
+	 * @return True if the relationship was removed, false if it didn't exist.
+	 */
+	public boolean removeRelationship(int src, int tgt, RelType relType){
+		return write(src, tgt, relType.getIdx(), false);
+	}
+
+	/**
+	 * Records the addition/removal of a relationship as a new version.
+	 */
+	private boolean write(int src, int tgt, int relTypeIdx, boolean add){
+		if (src < 0 || tgt < 0){
+			throw new IllegalArgumentException("Node ids must be non-negative: " + src + ", " + tgt);
+		}
+
+		synchronized (writeLock){
+			Head cur = head;
+			GraphSnapshot latest = new GraphSnapshot(cur.state, cur.version, numRelTypes);
+			if (latest.hasEdge(src, tgt, relTypeIdx) == add){
+				//Nothing to do
+				return false;
+			}
+
+			long version = cur.version + 1;
+			State state = cur.state;
+
+			if (add){
+				addNode(state, latest, src, version);
+				addNode(state, latest, tgt, version);
+			}
+
+			append(state.delta, segmentKey(src, relTypeIdx, MyDirection.OUTGOING), tgt, version, add);
+			append(state.delta, segmentKey(tgt, relTypeIdx, MyDirection.INCOMING), src, version, add);
+			deltaSize += 2;
+
+			//Publish the new version
+			head = new Head(state, version);
+			return true;
+		}
+	}
+
+	private static void addNode(State state, GraphSnapshot latest, int id, long version){
+		if (latest.findNode(id) == null){
+			state.addedNodes.put(id, new AddedNode(new MyNode(id, ""), version));
+		}
+	}
+
+	private static void append(Map<Long, Segment> delta, long key, int target, long version, boolean add){
+		Segment seg = delta.get(key);
+		if (seg == null){
+			delta.put(key, new Segment(target, version, add));
+		} else {
+			seg.append(target, version, add);
+		}
+	}
+
+	private long segmentKey(int id, int relTypeIdx, MyDirection dir){
+		return segmentKey(id, relTypeIdx, dir, numRelTypes);
+	}
+
+	/**
+	 * Returns the key of the delta segment for the given node, relationship type and direction.
+	 */
+	static long segmentKey(int id, int relTypeIdx, MyDirection dir, int numRelTypes){
+		return (((long) id * numRelTypes + relTypeIdx) << 1) | ((dir == MyDirection.OUTGOING) ? 0 : 1);
+	}
+
+	/**
+	 * Merges the delta segments into a new CSR base. The writers are only blocked while the new state is swapped in.
+	 * @return The version of the new base
+	 */
+	public long compact(){
+		synchronized (compactLock){
+			Head cur = head;
+			GraphSnapshot snap = new GraphSnapshot(cur.state, cur.version, numRelTypes);
+
+			//Build the new base from the snapshot
+			CSRGraph base = snap.toCSRGraph();
+
+			synchronized (writeLock){
+				//Keep the records written during the compaction
+				State old = head.state;
+				Map<Long, Segment> delta = new ConcurrentHashMap<Long, Segment>();
+				int size = 0;
+				for (Map.Entry<Long, Segment> entry : old.delta.entrySet()){
+					Segment seg = entry.getValue().after(cur.version);
+					if (seg != null){
+						delta.put(entry.getKey(), seg);
+						size += seg.size();
+					}
+				}
+				Map<Integer, AddedNode> addedNodes = new ConcurrentHashMap<Integer, AddedNode>();
+				for (Map.Entry<Integer, AddedNode> entry : old.addedNodes.entrySet()){
+					if (entry.getValue().version > cur.version){
+						addedNodes.put(entry.getKey(), entry.getValue());
+					}
+				}
+
+				head = new Head(new State(base, cur.version, delta, addedNodes), head.version);
+				deltaSize = size;
+			}
+
+			return cur.version;
+		}
+	}
+
+	/**
+	 * @return The number of records in the delta segments
+	 */
+	public int getDeltaSize(){
+		synchronized (writeLock){
+			return deltaSize;
+		}
+	}
+
+	/**
+	 * Starts the background compaction. Every period, the deltas are compacted if they contain at least minRecords records.
+	 * @param period The time between the checks
+	 * @param unit The time unit of the period
+	 * @param minRecords The minimum number of delta records for a compaction
+	 */
+	public synchronized void startCompaction(long period, TimeUnit unit, final int minRecords){
+		if (compactor != null){
+			return;
+		}
+		compactor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread thread = new Thread(r, "graph-compaction");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		compactor.scheduleWithFixedDelay(new Runnable(){
+			@Override
+			public void run(){
+				if (getDeltaSize() >= minRecords){
+					compact();
+				}
+			}
+		}, period, period, unit);
+	}
+
+	/**
+	 * Stops the background compaction (if started).
+	 */
+	public synchronized void stopCompaction(){
+		if (compactor != null){
+			compactor.shutdownNow();
+			compactor = null;
+		}
+	}
+
+	//--------------------------//
+	// STATE
+	//--------------------------//
+
+	/**
+	 * The latest state, and the latest version. Replaced on every write, so that readers get both with a single read.
+	 */
+	private static final class Head {
+		private final State state;
+		private final long version;
+
+		private Head(State state, long version){
+			this.state = state;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * A CSR base and the deltas on top of it. The deltas only contain records with versions after baseVersion.
+	 */
+	static final class State {
+		final CSRGraph base;						//The immutable base
+		final long baseVersion;						//The version the base was built from
+		final Map<Long, Segment> delta;				//The delta segments, by segment key
+		final Map<Integer, AddedNode> addedNodes;	//The nodes created after the base was built
+
+		State(CSRGraph base, long baseVersion, Map<Long, Segment> delta, Map<Integer, AddedNode> addedNodes){
+			this.base = base;
+			this.baseVersion = baseVersion;
+			this.delta = delta;
+			this.addedNodes = addedNodes;
+		}
+	}
+
+	/**
+	 * A node created after the base was built.
+	 */
+	static final class AddedNode {
+		final MyNode node;
+		final long version;		//The version that created the node
+
+		AddedNode(MyNode node, long version){
+			this.node = node;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * The added/removed neighbours of one (node, relationship type, direction), in version order.
+	 *
+	 * The segment is an append-only buffer. Its records (arrays and length) are held by an immutable Records object,
+	 * published through a single volatile field: the writer (holding the writeLock) writes the new record past the
+	 * published length (into a grown copy of the arrays, if they are full), and then publishes a new Records object.
+	 * A reader only reads the records below the length of the Records object it read, which were all written before
+	 * that object was published; the records it may miss are newer than its version anyway.
+	 */
+	static final class Segment {
+		private static final int INITIAL_CAPACITY = 4;
+
+		private volatile Records records;	//The published records
+
+		private Segment(Records records){
+			this.records = records;
+		}
+
+		Segment(int target, long version, boolean add){
+			this(new Records(new int[INITIAL_CAPACITY], new long[INITIAL_CAPACITY], 0));
+			append(target, version, add);
+		}
+
+		private static long stamp(long version, boolean add){
+			return (version << 1) | (add ? 1 : 0);
+		}
+
+		int size(){
+			return records.length;
+		}
+
+		/**
+		 * Appends the given record, and publishes it. Only called by the writer.
+		 */
+		void append(int target, long version, boolean add){
+			Records cur = records;
+			int len = cur.length;
+			int[] targets = cur.targets;
+			long[] stamps = cur.stamps;
+			if (len == targets.length){
+				targets = Arrays.copyOf(targets, len * 2);
+				stamps = Arrays.copyOf(stamps, len * 2);
+			}
+			targets[len] = target;
+			stamps[len] = stamp(version, add);
+			records = new Records(targets, stamps, len + 1);
+		}
+
+		/**
+		 * @return A new segment with the records with versions after the given version, or null if there are none.
+		 */
+		Segment after(long version){
+			Records cur = records;
+			int from = 0;
+			while (from < cur.length && (cur.stamps[from] >>> 1) <= version){
+				from++;
+			}
+			if (from == cur.length){
+				return null;
+			}
+			int len = cur.length - from;
+			int size = Math.max(len, INITIAL_CAPACITY);
+			int[] targets = new int[size];
+			long[] stamps = new long[size];
+			System.arraycopy(cur.targets, from, targets, 0, len);
+			System.arraycopy(cur.stamps, from, stamps, 0, len);
+			return new Segment(new Records(targets, stamps, len));
+		}
+
+		/**
+		 * @return The number of records visible at the given version
+		 */
+		int visible(long version){
+			return records.visible(version);
+		}
+
+		/**
+		 * Returns the latest state of the given target, at the given version.
+		 * @return 1 if added, 0 if removed, -1 if there is no record for the target.
+		 */
+		int lookup(int target, long version){
+			Records cur = records;
+			for (int idx = cur.visible(version) - 1; idx >= 0; idx--){
+				if (cur.targets[idx] == target){
+					return (int) (cur.stamps[idx] & 1);
+				}
+			}
+			return -1;
+		}
+
+		/**
+		 * Applies the records visible at the given version to the given (sorted) base neighbours.
+		 * @return The sorted neighbour ids.
+		 */
+		int[] apply(IntSlice base, long version){
+			Records cur = records;
+			int len = cur.visible(version);
+
+			//Sort the records by target, the latest record of each target first: the key is the target in the high
+			//bits and the reversed record index in the low bits (the targets are non-negative)
+			long[] keys = new long[len];
+			for (int idx = 0; idx < len; idx++){
+				keys[idx] = ((long) cur.targets[idx] << 32) | (len - 1 - idx);
+			}
+			Arrays.sort(keys);
+
+			//Keep the latest record of each target: the sorted targets, and whether they were added
+			int[] targets = new int[len];
+			boolean[] added = new boolean[len];
+			int numTargets = 0;
+			for (int idx = 0; idx < len; idx++){
+				int target = (int) (keys[idx] >>> 32);
+				if (numTargets == 0 || targets[numTargets - 1] != target){
+					int rec = len - 1 - (int) (keys[idx] & 0xFFFFFFFFL);
+					targets[numTargets] = target;
+					added[numTargets] = (cur.stamps[rec] & 1) == 1;
+					numTargets++;
+				}
+			}
+
+			//Merge with the base neighbours
+			int[] result = new int[base.size() + numTargets];
+			int pos = 0;
+			int b = 0;
+			int d = 0;
+			while (b < base.size() || d < numTargets){
+				if (d == numTargets || (b < base.size() && base.get(b) < targets[d])){
+					result[pos] = base.get(b);
+					pos++;
+					b++;
+				} else {
+					if (added[d]){
+						result[pos] = targets[d];
+						pos++;
+					}
+					if (b < base.size() && base.get(b) == targets[d]){
+						b++;
+					}
+					d++;
+				}
+			}
+			return (pos == result.length) ? result : Arrays.copyOf(result, pos);
+		}
+	}
+
+	/**
+	 * The records of a segment: the first length entries of the arrays. Immutable once published; the entries past
+	 * length are only written by the writer, before the next Records object is published.
+	 */
+	private static final class Records {
+		private final int[] targets;	//The neighbour ids
+		private final long[] stamps;	//(version << 1) | 1 for additions, (version << 1) for removals
+		private final int length;		//The number of records
+
+		private Records(int[] targets, long[] stamps, int length){
+			this.targets = targets;
+			this.stamps = stamps;
+			this.length = length;
+		}
+
+		/**
+		 * @return The number of records visible at the given version (the records are in version order)
+		 */
+		private int visible(long version){
+			int len = length;
+			while (len > 0 && (stamps[len - 1] >>> 1) > version){
+				len--;
+			}
+			return len;
+		}
+	}
+}
@@ -0,0 +1,353 @@
+package ca.ucalgary.ispia.graphpatterns.tests;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.AttrHistograms;
+import ca.ucalgary.ispia.graphpatterns.graph.AttrPredicate;
+import ca.ucalgary.ispia.graphpatterns.graph.CompiledPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+
+/**
+ * Predicts the running time of a graph pattern on each backend (Cypher and the native GPCheckerFCLBJ), from the
+ * features of the graph pattern (see Features). For each backend, the model is linear in the features and predicts
+ * log(1 + time in ms).
+ *
+ * The weights are trained with least squares (with a small ridge term) from the log written by HybridExecutor, where
+ * each line records the features of a query, the backend it ran on, and its running time. Timed out runs are included
+ * with the timeout as their running time (a lower bound). Without training, all of the predictions are 0, and
+ * HybridExecutor routes every query to the native engine.
+ * @author szrrizvi
+ *
+ */
+public class CostModel {
+
+	public static final int CYPHER = 0;		//Backend index for Cypher (Neo4jQueries)
+	public static final int NATIVE = 1;		//Backend index for GPCheckerFCLBJ
+	public static final String[] BACKENDS = {"cypher", "native"};
+
+	private static final double RIDGE = 1e-3;	//Regularization for the least squares fit
+
+	private final double[][] weights;		//weights[backend][feature]; the last weight is the bias
+
+	/**
+	 * Creates an untrained model (all weights 0).
+	 */
+	public CostModel(){
+		weights = new double[BACKENDS.length][Features.NUM_FEATURES + 1];
+	}
+
+	/**
+	 * The features of a graph pattern used by the cost model.
+	 */
+	public static final class Features {
+
+		public static final int NUM_FEATURES = 8;
+		public static final String HEADER = "vars,rels,cycles,fixed,attrs,mex,results,logCands";
+
+		private final double[] values;
+
+		private Features(double[] values){
+			this.values = values;
+		}
+
+		/**
+		 * Extracts the features of the given graph pattern:
+		 * the number of variables, relationships, independent cycles (relationships - variables + components), fixed
+		 * variables (with the "id" attribute), attribute requirements (on variables and relationships), mutual exclusion
+		 * constraints, result schema variables, and log10(1 + the estimated number of candidates for the most selective
+		 * variable).
+		 * @param gph The graph pattern holder
+		 * @param histograms Used for estimating the candidates; if null then only the fixed variables are selective.
+		 * @param numNodes The number of nodes in the database
+		 * @return The features
+		 */
+		public static Features extract(GPHolder gph, AttrHistograms histograms, long numNodes){
+			CompiledPattern cp = gph.compile();
+			int n = cp.getNumVars();
+
+			//Count the connected components
+			int components = 0;
+			boolean[] seen = new boolean[n];
+			int[] stack = new int[n];
+			for (int v = 0; v < n; v++){
+				if (!seen[v]){
+					components++;
+					seen[v] = true;
+					int top = 0;
+					stack[top++] = v;
+					while (top > 0){
+						int cur = stack[--top];
+						for (int k = 0; k < cp.getDegree(cur); k++){
+							int other = cp.getOther(cur, k);
+							if (!seen[other]){
+								seen[other] = true;
+								stack[top++] = other;
+							}
+						}
+					}
+				}
+			}
+
+			int fixed = 0;
+			int attrs = 0;
+			long minCands = numNodes;
+			for (MyNode node : cp.getVars()){
+				if (node.hasAttribute("id")){
+					fixed++;
+					minCands = Math.min(minCands, 1);
+				}
+				AttrPredicate[] preds = node.getCompiledAttrs();
+				attrs += preds.length;
+				if (histograms != null){
+					for (AttrPredicate pred : preds){
+						minCands = Math.min(minCands, histograms.estimate(pred));
+					}
+				}
+			}
+			for (int idx = 0; idx < cp.getNumRelationships(); idx++){
+				MyRelationship rel = cp.getRelationship(idx);
+				if (rel.hasAttributes()){
+					attrs += rel.getAttributes().size();
+				}
+			}
+
+			double[] values = new double[NUM_FEATURES];
+			values[0] = n;
+			values[1] = cp.getNumRelationships();
+			values[2] = cp.getNumRelationships() - n + components;
+			values[3] = fixed;
+			values[4] = attrs;
+			values[5] = gph.getMexList().size();
+			values[6] = gph.getResultSchema().size();
+			values[7] = Math.log10(1 + minCands);
+			return new Features(values);
+		}
+
+		/**
+		 * @param idx The feature index
+		 * @return The value of the feature
+		 */
+		public double get(int idx){
+			return values[idx];
+		}
+
+		@Override
+		public String toString(){
+			StringBuilder sb = new StringBuilder();
+			for (int idx = 0; idx < values.length; idx++){
+				if (idx > 0){
+					sb.append(",");
+				}
+				sb.append(values[idx]);
+			}
+			return sb.toString();
+		}
+
+		/**
+		 * Parses the features from the given fields (as written by toString).
+		 */
+		private static Features parse(String[] fields, int offset){
+			double[] values = new double[NUM_FEATURES];
+			for (int idx = 0; idx < NUM_FEATURES; idx++){
+				values[idx] = Double.parseDouble(fields[offset + idx]);
+			}
+			return new Features(values);
+		}
+	}
+
+	/**
+	 * Predicts the running time of the graph pattern with the given features on the given backend.
+	 * @param features The features of the graph pattern
+	 * @param backend CYPHER or NATIVE
+	 * @return The predicted running time, in ms
+	 */
+	public double predict(Features features, int backend){
+		double[] w = weights[backend];
+		double sum = w[Features.NUM_FEATURES];
+		for (int idx = 0; idx < Features.NUM_FEATURES; idx++){
+			sum += w[idx] * features.get(idx);
+		}
+		//Clamp to avoid overflow on outliers
+		return Math.expm1(Math.max(0, Math.min(sum, 50)));
+	}
+
+	/**
+	 * @param features The features of the graph pattern
+	 * @return The backend with the lower predicted running time; NATIVE on ties.
+	 */
+	public int choose(Features features){
+		return (predict(features, CYPHER) < predict(features, NATIVE)) ? CYPHER : NATIVE;
+	}
+
+	/**
+	 * Trains the model from the given HybridExecutor log. The weights of a backend are only updated if the log contains
+	 * at least one run on it.
+	 * @param logFile The log file
+	 * @return The number of runs used for training, or -1 if the log could not be read.
+	 */
+	public int train(String logFile){
+		List<List<Features>> xs = new ArrayList<List<Features>>();
+		List<List<Double>> ys = new ArrayList<List<Double>>();
+		for (int b = 0; b < BACKENDS.length; b++){
+			xs.add(new ArrayList<Features>());
+			ys.add(new ArrayList<Double>());
+		}
+
+		int count = 0;
+		try (BufferedReader reader = new BufferedReader(new FileReader(logFile))){
+			String line;
+			while ((line = reader.readLine()) != null){
+				if (line.isEmpty() || line.startsWith("#")){
+					continue;
+				}
+				//query,backend,reason,predictedMs,timeMs,timedOut,rows,features...
+				String[] fields = line.split(",");
+				if (fields.length != HybridExecutor.LOG_FIELDS + Features.NUM_FEATURES){
+					continue;
+				}
+				int backend = backendIndex(fields[1]);
+				if (backend == -1){
+					continue;
+				}
+				xs.get(backend).add(Features.parse(fields, HybridExecutor.LOG_FIELDS));
+				ys.get(backend).add(Math.log1p(Double.parseDouble(fields[4])));
+				count++;
+			}
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return -1;
+		}
+
+		for (int b = 0; b < BACKENDS.length; b++){
+			if (!xs.get(b).isEmpty()){
+				weights[b] = fit(xs.get(b), ys.get(b));
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Least squares fit (with the ridge term), by solving the normal equations with Gaussian elimination.
+	 */
+	private static double[] fit(List<Features> xs, List<Double> ys){
+		int dim = Features.NUM_FEATURES + 1;
+		double[][] a = new double[dim][dim + 1];	//Augmented matrix [X^T X + rI | X^T y]
+		double[] row = new double[dim];
+
+		for (int i = 0; i < xs.size(); i++){
+			for (int j = 0; j < Features.NUM_FEATURES; j++){
+				row[j] = xs.get(i).get(j);
+			}
+			row[Features.NUM_FEATURES] = 1;
+			for (int j = 0; j < dim; j++){
+				for (int k = 0; k < dim; k++){
+					a[j][k] += row[j] * row[k];
+				}
+				a[j][dim] += row[j] * ys.get(i);
+			}
+		}
+		for (int j = 0; j < dim; j++){
+			a[j][j] += RIDGE;
+		}
+
+		//Gaussian elimination with partial pivoting
+		for (int col = 0; col < dim; col++){
+			int pivot = col;
+			for (int r = col + 1; r < dim; r++){
+				if (Math.abs(a[r][col]) > Math.abs(a[pivot][col])){
+					pivot = r;
+				}
+			}
+			double[] tmp = a[col];
+			a[col] = a[pivot];
+			a[pivot] = tmp;
+
+			for (int r = 0; r < dim; r++){
+				if (r != col && a[col][col] != 0){
+					double factor = a[r][col] / a[col][col];
+					for (int c = col; c <= dim; c++){
+						a[r][c] -= factor * a[col][c];
+					}
+				}
+			}
+		}
+
+		double[] w = new double[dim];
+		for (int j = 0; j < dim; j++){
+			w[j] = (a[j][j] == 0) ? 0 : a[j][dim] / a[j][j];
+		}
+		return w;
+	}
+
+	/**
+	 * Writes the weights to the given file (one line per backend).
+	 * @param fileName The file name
+	 * @return True if the weights were written
+	 */
+	public boolean save(String fileName){
+		try (PrintWriter writer = new PrintWriter(new FileWriter(fileName))){
+			writer.println("#backend," + Features.HEADER + ",bias");
+			for (int b = 0; b < BACKENDS.length; b++){
+				writer.print(BACKENDS[b]);
+				for (double w : weights[b]){
+					writer.print("," + w);
+				}
+				writer.println();
+			}
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the weights written by save.
+	 * @param fileName The file name
+	 * @return The model, or null if the file could not be read.
+	 */
+	public static CostModel load(String fileName){
+		CostModel model = new CostModel();
+		try (BufferedReader reader = new BufferedReader(new FileReader(fileName))){
+			String line;
+			while ((line = reader.readLine()) != null){
+				if (line.isEmpty() || line.startsWith("#")){
+					continue;
+				}
+				String[] fields = line.split(",");
+				int backend = backendIndex(fields[0]);
+				if (backend == -1 || fields.length != Features.NUM_FEATURES + 2){
+					System.out.println("Illegal line format: " + line);
+					return null;
+				}
+				for (int idx = 0; idx <= Features.NUM_FEATURES; idx++){
+					model.weights[backend][idx] = Double.parseDouble(fields[idx + 1]);
+				}
+			}
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return null;
+		}
+		return model;
+	}
+
+	/**
+	 * @return The index of the backend with the given name, or -1 if there is no such backend.
+	 */
+	static int backendIndex(String name){
+		for (int b = 0; b < BACKENDS.length; b++){
+			if (BACKENDS[b].equals(name)){
+				return b;
+			}
+		}
+		return -1;
+	}
+}
@@ -2,19 +2,26 @@ package ca.ucalgary.ispia.graphpatterns.tests;
 
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.neo4j.graphdb.Entity;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.event.TransactionEventHandler;
 
 import ca.ucalgary.ispia.graphpatterns.gpchecker.GPCheckerFC;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.AltStart;
@@ -22,15 +29,33 @@ import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.ConstraintsEvaluator;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.GPCheckerFCCBJ;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.GPCheckerFCLBJ;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.NeighbourhoodAccess;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.SearchProfile;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.VariableOrdering;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.AttrBasedStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.AttrHistograms;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.ColumnarConstraintsChecker;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.ConstraintsChecker;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.DBAccess;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.DSAccess;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.IndexedAttrStart;
 import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.LeastCandidates;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.NodePropertyCache;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.ParallelAttrStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.SelectiveAttrStart;
+import ca.ucalgary.ispia.graphpatterns.graph.AttributeStore;
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.DataSet;
 import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphStore;
+import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
 import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.VersionedGraph;
+import ca.ucalgary.ispia.graphpatterns.util.CypherParser;
+import ca.ucalgary.ispia.graphpatterns.util.CypherQuery;
+import ca.ucalgary.ispia.graphpatterns.util.GPHolderIO;
 import ca.ucalgary.ispia.graphpatterns.util.GPUtil;
 import ca.ucalgary.ispia.graphpatterns.util.SimpleCypherParser;
+import ca.ucalgary.ispia.graphpatterns.util.Translator;
 
 /**
  * This class runs the evaluation tests. 
@@ -40,6 +65,23 @@ import ca.ucalgary.ispia.graphpatterns.util.SimpleCypherParser;
 public class EvalTestRunner {
 
 	private GraphDatabaseService graphDb;
+	private NodePropertyCache propCache;	//Shared across tests; null if disabled
+	private TransactionEventHandler<Object> propCacheHandler;	//Invalidates the propCache on updates
+	private AttrHistograms histograms;		//Value histograms for the selective start; null if disabled
+	private ExecutorService startPool;		//The thread pool for the parallel start; null if disabled
+	private boolean propertyCacheMode;		//If true, the test runners enable the property cache for their tests
+	private boolean selectiveStartMode;		//If true, the test runners enable the selective start for their tests
+	private boolean profileMode;			//If true, the optimized checkers print their search profiles
+	private boolean cypherBaselineMode;		//If true, the test runners also run each test as a Cypher query
+	private Neo4jQueries cypherQueries;		//Runs the Cypher baseline; null until first used
+	private Set<String> indexedKeys;		//The keys indexed on :PERSON, for the index hints of the Cypher baseline
+	private CSRGraph memGraph;				//The dataset for the in-memory runners; null if not loaded
+	private AttributeStore memStore;		//The attributes of memGraph
+	private IndexedAttrStart memStart;		//The alternative start for the in-memory runners
+	private VersionedGraph memVersions;		//The updatable version of memGraph; null if the versioned mode is disabled
+
+	//The maximum number of nodes kept in the property cache
+	private static final int PROP_CACHE_SIZE = 500000;
 
 	/**
 	 * Constructor. Initialize the graph database service (graphDb)
@@ -47,6 +89,190 @@ public class EvalTestRunner {
 	 */
 	public EvalTestRunner(GraphDatabaseService graphDb){
 		this.graphDb = graphDb;
+		this.propCache = null;
+		this.propCacheHandler = null;
+		this.histograms = null;
+		this.startPool = null;
+		this.propertyCacheMode = false;
+		this.selectiveStartMode = false;
+		this.profileMode = false;
+		this.cypherBaselineMode = false;
+		this.cypherQueries = null;
+		this.indexedKeys = null;
+		this.memGraph = null;
+		this.memStore = null;
+		this.memStart = null;
+		this.memVersions = null;
+	}
+
+	/**
+	 * Enables the node property cache for the given tests. Only the properties referenced by the tests are cached, 
+	 * and the cache is shared by all of the subsequent test executions.
+	 * @param tests The loaded tests
+	 */
+	public void enablePropertyCache(List<GPHolder> tests){
+		enablePropertyCacheForKeys(NodePropertyCache.referencedKeys(tests));
+	}
+
+	/**
+	 * Enables the node property cache for the given vertex attributes.
+	 * @param keys The vertex attribute names to cache
+	 */
+	private void enablePropertyCacheForKeys(Collection<String> keys){
+		if (propCacheHandler != null){
+			graphDb.unregisterTransactionEventHandler(propCacheHandler);
+		}
+		propCache = new NodePropertyCache(keys, PROP_CACHE_SIZE);
+		propCacheHandler = propCache.registerWith(graphDb);
+	}
+
+	/**
+	 * Enables the selectivity based alternative start (SelectiveAttrStart) for the given tests. The value
+	 * histograms are built for the vertex attributes referenced by the tests.
+	 * @param tests The loaded tests
+	 */
+	public void enableSelectiveStart(List<GPHolder> tests){
+		histograms = AttrHistograms.build(graphDb, NodePropertyCache.referencedKeys(tests));
+	}
+
+	/**
+	 * Enables the property cache mode: the test runners (runSimTests, runSuiteTests and runCypherTests) enable the
+	 * property cache for the vertex attributes referenced by the tests they load. By default the runners read the
+	 * properties directly from the nodes.
+	 */
+	public void enablePropertyCacheMode(){
+		propertyCacheMode = true;
+	}
+
+	/**
+	 * Enables the selective start mode: the test runners (runSimTests and runSuiteTests) enable the selective start
+	 * for the tests they load. Building the histograms scans the nodes once per run; by default the runners use
+	 * AttrBasedStart.
+	 */
+	public void enableSelectiveStartMode(){
+		selectiveStartMode = true;
+	}
+
+	/**
+	 * Enables the parallel alternative start (ParallelAttrStart) for the subsequent test executions: the nodes with
+	 * attribute requirements are populated concurrently, on a shared pool of the given number of (daemon) threads.
+	 * The selective start takes precedence, if enabled. Cannot be combined with the profile mode (SearchProfile
+	 * is single-threaded).
+	 * @param numThreads The number of threads
+	 * @throws IllegalStateException If the profile mode is enabled
+	 */
+	public void enableParallelStart(int numThreads){
+		if (profileMode){
+			throw new IllegalStateException("The parallel start cannot be used in the profile mode");
+		}
+		disableParallelStart();
+		startPool = Executors.newFixedThreadPool(numThreads, new ThreadFactory(){
+			@Override
+			public Thread newThread(Runnable r){
+				Thread thread = new Thread(r, "parallel-start");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Disables the parallel alternative start, and shuts down its thread pool.
+	 */
+	public void disableParallelStart(){
+		if (startPool != null){
+			startPool.shutdownNow();
+			startPool = null;
+		}
+	}
+
+	/**
+	 * Enables the profile mode: the optimized checkers (FCLBJ and FCCBJ) record a SearchProfile for each test, and
+	 * print it after the timing line. The profiling overhead is included in the reported time. Cannot be combined
+	 * with the parallel start (SearchProfile is single-threaded).
+	 * @throws IllegalStateException If the parallel start is enabled
+	 */
+	public void enableProfileMode(){
+		if (startPool != null){
+			throw new IllegalStateException("The profile mode cannot be used with the parallel start");
+		}
+		profileMode = true;
+	}
+
+	/**
+	 * Enables the Cypher baseline mode: the test runners (runSimTests, runSuiteTests, runCypherTests and
+	 * runGPHTestsList) also run each test as a parameterized Cypher query (see executeSoloTestCypher), after the
+	 * FCLBJ run, so both timings are printed for the same test.
+	 */
+	public void enableCypherBaselineMode(){
+		cypherBaselineMode = true;
+	}
+
+	/**
+	 * Loads the given dataset for the in-memory runners (runMemoryTests and executeSoloTestMemory). The dataset is
+	 * converted to a CSRGraph, with the hub index for the given degree, and an AttributeStore; both share the
+	 * dictionary of the dataset, so DSAccess filters the neighbourhoods directly on the adjacency slices.
+	 * @param dataSet The dataset
+	 * @param hubDegree The minimum degree of a hub neighbourhood (see CSRGraph.buildHubIndex); CSRGraph.NO_HUBS for no hub index
+	 */
+	public void loadMemoryDataSet(DataSet dataSet, int hubDegree){
+		disableVersionedMode();
+		memGraph = CSRGraph.fromDataSet(dataSet, hubDegree);
+		memStore = AttributeStore.build(dataSet);
+		memStart = new IndexedAttrStart(memStore);
+	}
+
+	/**
+	 * Enables the versioned mode for the in-memory runners: the loaded dataset is wrapped in a VersionedGraph, which
+	 * accepts relationship updates (e.g. from another thread) while the tests run. Each test is evaluated against a
+	 * snapshot of the latest version (see VersionedGraph.snapshot), and the deltas are compacted in the background.
+	 * Precondition: The dataset is loaded (see loadMemoryDataSet).
+	 * @param compactionPeriod The time between the compaction checks, in milliseconds
+	 * @param minRecords The minimum number of delta records for a compaction
+	 * @return The versioned graph, for the updates
+	 */
+	public VersionedGraph enableVersionedMode(long compactionPeriod, int minRecords){
+		disableVersionedMode();
+		memVersions = new VersionedGraph(memGraph);
+		memVersions.startCompaction(compactionPeriod, TimeUnit.MILLISECONDS, minRecords);
+		return memVersions;
+	}
+
+	/**
+	 * Disables the versioned mode (if enabled), and stops its background compaction.
+	 */
+	public void disableVersionedMode(){
+		if (memVersions != null){
+			memVersions.stopCompaction();
+			memVersions = null;
+		}
+	}
+
+	/**
+	 * Creates the alternative start component for the optimized checkers.
+	 * @param test The test
+	 * @param ce The constraints evaluator
+	 * @return SelectiveAttrStart if the histograms are available, else ParallelAttrStart if enabled, else
+	 * AttrBasedStart.
+	 */
+	private AltStart<Node> createAltStart(GPHolder test, ConstraintsEvaluator<Node, Entity> ce){
+		if (histograms != null){
+			return new SelectiveAttrStart(graphDb, ce, histograms, test.getGp());
+		}
+		if (startPool != null){
+			return new ParallelAttrStart(graphDb, ce, startPool);
+		}
+		return new AttrBasedStart(graphDb, ce);
+	}
+
+	/**
+	 * Creates a hybrid executor that shares the property cache and histograms enabled for this runner.
+	 * @param model The cost model used for routing the tests
+	 * @param timeout The timeout for each backend, in ms
+	 * @return The hybrid executor
+	 */
+	public HybridExecutor createHybridExecutor(CostModel model, long timeout){
+		return new HybridExecutor(graphDb, model, propCache, histograms, timeout);
 	}
 
 	///////////////////////////////////////////////////////
@@ -80,8 +306,18 @@ public class EvalTestRunner {
 			samples.remove(rand.nextInt(samples.size()));
 		}
 		
+		if (propertyCacheMode){
+			enablePropertyCache(samples);
+		}
+		if (selectiveStartMode){
+			enableSelectiveStart(samples);
+		}
+		
 		for (GPHolder test : samples){
 			executeSoloTestFCLBJ(test);
+			if (cypherBaselineMode){
+				executeSoloTestCypher(test);
+			}
 			//executeSoloTestFCCBJ(test);
 			//executeSoloTestFC(test);
 		}
@@ -99,9 +335,19 @@ public class EvalTestRunner {
 			e.printStackTrace();
 			return;
 		}
+		
+		if (propertyCacheMode){
+			enablePropertyCache(tests);
+		}
+		if (selectiveStartMode){
+			enableSelectiveStart(tests);
+		}
 			
 		for (GPHolder test : tests){
 			executeSoloTestFCLBJ(test);
+			if (cypherBaselineMode){
+				executeSoloTestCypher(test);
+			}
 			//executeSoloTestFCCBJ(test);
 			//executeSoloTestFC(test);
 		}
@@ -109,6 +355,141 @@ public class EvalTestRunner {
 	}
 	
 	
+	/**
+	 * Runs the tests in the given suite file (see GPHolderIO). The tests are streamed, one at a time, therefore the
+	 * suite doesn't need to fit in memory. The suite is read twice: once to collect the vertex attributes referenced
+	 * by the tests (for the property cache and the histograms, in the property cache and selective start modes), and
+	 * once to run the tests.
+	 * @param fileName The suite file
+	 */
+	public void runSuiteTests(String fileName){
+		GPHolderIO.SuiteReader reader = null;
+		try {
+			//Collect the referenced vertex attributes
+			Set<String> keys = new LinkedHashSet<String>();
+			reader = new GPHolderIO.SuiteReader(fileName);
+			GPHolder test;
+			while ((test = reader.read()) != null){
+				for (MyNode node : test.getGp().getNodes()){
+					keys.addAll(node.getAttributes().keySet());
+				}
+			}
+			reader.close();
+
+			if (propertyCacheMode){
+				enablePropertyCacheForKeys(keys);
+			}
+			if (selectiveStartMode){
+				histograms = AttrHistograms.build(graphDb, keys);
+			}
+
+			//Run the tests
+			reader = new GPHolderIO.SuiteReader(fileName);
+			while ((test = reader.read()) != null){
+				executeSoloTestFCLBJ(test);
+				if (cypherBaselineMode){
+					executeSoloTestCypher(test);
+				}
+				//executeSoloTestFCCBJ(test);
+				//executeSoloTestFC(test);
+			}
+			reader.close();
+			reader = null;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+		} finally {
+			if (reader != null){
+				try {
+					reader.close();
+				} catch (IOException e){
+					//Ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the queries in the given Cypher file (see CypherParser) with GPCheckerFCLBJ. The file is read twice, one
+	 * query at a time: first to enable the property cache and the selective start (in the property cache and
+	 * selective start modes) for the referenced vertex attributes, then to run the queries. A query outside of the
+	 * supported subset stops the run.
+	 * @param fileName The query file
+	 */
+	public void runCypherTests(String fileName){
+		CypherParser.QueryReader reader = null;
+		try {
+			//Collect the referenced vertex attributes
+			Set<String> keys = new LinkedHashSet<String>();
+			reader = new CypherParser.QueryReader(fileName);
+			GPHolder test;
+			while ((test = reader.read()) != null){
+				for (MyNode node : test.getGp().getNodes()){
+					keys.addAll(node.getAttributes().keySet());
+				}
+			}
+			reader.close();
+
+			if (propertyCacheMode){
+				enablePropertyCacheForKeys(keys);
+			}
+			if (selectiveStartMode){
+				histograms = AttrHistograms.build(graphDb, keys);
+			}
+
+			//Run the tests
+			reader = new CypherParser.QueryReader(fileName);
+			while ((test = reader.read()) != null){
+				executeSoloTestFCLBJ(test);
+				if (cypherBaselineMode){
+					executeSoloTestCypher(test);
+				}
+			}
+			reader.close();
+			reader = null;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+		} catch (IllegalArgumentException e){
+			System.out.println(fileName + ": " + e.getMessage());
+		} finally {
+			if (reader != null){
+				reader.close();
+			}
+		}
+	}
+
+	/**
+	 * Runs the tests in the given suite file (see GPHolderIO) against the in-memory dataset (see loadMemoryDataSet).
+	 * The tests are streamed, one at a time.
+	 * @param fileName The suite file
+	 */
+	public void runMemoryTests(String fileName){
+		if (memGraph == null){
+			System.out.println("No in-memory dataset loaded");
+			return;
+		}
+
+		GPHolderIO.SuiteReader reader = null;
+		try {
+			reader = new GPHolderIO.SuiteReader(fileName);
+			GPHolder test;
+			while ((test = reader.read()) != null){
+				executeSoloTestMemory(test);
+			}
+			reader.close();
+			reader = null;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+		} finally {
+			if (reader != null){
+				try {
+					reader.close();
+				} catch (IOException e){
+					//Ignore
+				}
+			}
+		}
+	}
+
 	/**
 	 * Runs the GPH Test cases.
 	 * Precondition: Each file contains a list of GPHolder objects.
@@ -135,6 +516,9 @@ public class EvalTestRunner {
 			
 			for (GPHolder test : tests){
 				executeSoloTestFCLBJ(test);
+				if (cypherBaselineMode){
+					executeSoloTestCypher(test);
+				}
 				//executeSoloTestFCCBJ(test);
 				//executeSoloTestFC(test);
 			}
@@ -159,12 +543,20 @@ public class EvalTestRunner {
 
 	public void executeSoloTestFCLBJ(GPHolder test){
 
-		ConstraintsEvaluator<Node,Entity> ce = new ConstraintsChecker(test, graphDb);
-		NeighbourhoodAccess<Node> neighbourhoodAccess = new DBAccess(graphDb, ce);
+		SearchProfile profile = profileMode ? new SearchProfile() : null;
+		ConstraintsEvaluator<Node,Entity> ce = new ConstraintsChecker(test, graphDb, propCache);
+		if (profile != null){
+			ce = profile.wrap(ce);
+		}
+		NeighbourhoodAccess<Node> neighbourhoodAccess = new DBAccess(graphDb, ce, propCache);
+		if (profile != null){
+			neighbourhoodAccess = profile.wrap(neighbourhoodAccess);
+		}
 		VariableOrdering<Node> variableOrdering = new LeastCandidates<Node>(test.getGp());
-		AltStart<Node> as = new AttrBasedStart(graphDb, ce);
+		AltStart<Node> as = createAltStart(test, ce);
 
 		GPCheckerFCLBJ<Node, Entity> gpEval = new GPCheckerFCLBJ<Node, Entity>(test, ce, neighbourhoodAccess, variableOrdering, as);
+		gpEval.setProfile(profile);
 
 		GPCheckerFC gpEvalB = new GPCheckerFC(graphDb, test);
 		//Set a 6 second kill switch
@@ -187,6 +579,9 @@ public class EvalTestRunner {
 		}
 		
 		System.out.println(time + ", " + resSize + ", " + gpEval.getAllRes() + ", " + gpEval.getSearchSpace() + ", " + gpEval.getMaxNeighbourhood());
+		if (profile != null){
+			System.out.print(profile.render());
+		}
 		/*if (result != null){
 			System.out.print(result.size() + ", ");
 
@@ -202,12 +597,20 @@ public class EvalTestRunner {
 
 	public void executeSoloTestFCCBJ(GPHolder test){
 
-		ConstraintsEvaluator<Node,Entity> ce = new ConstraintsChecker(test, graphDb);
-		NeighbourhoodAccess<Node> neighbourhoodAccess = new DBAccess(graphDb, ce);
+		SearchProfile profile = profileMode ? new SearchProfile() : null;
+		ConstraintsEvaluator<Node,Entity> ce = new ConstraintsChecker(test, graphDb, propCache);
+		if (profile != null){
+			ce = profile.wrap(ce);
+		}
+		NeighbourhoodAccess<Node> neighbourhoodAccess = new DBAccess(graphDb, ce, propCache);
+		if (profile != null){
+			neighbourhoodAccess = profile.wrap(neighbourhoodAccess);
+		}
 		VariableOrdering<Node> variableOrdering = new LeastCandidates<Node>(test.getGp());
-		AltStart<Node> as = new AttrBasedStart(graphDb, ce);
+		AltStart<Node> as = createAltStart(test, ce);
 
 		GPCheckerFCCBJ<Node, Entity> gpEval = new GPCheckerFCCBJ<Node, Entity>(test, ce, neighbourhoodAccess, variableOrdering, as);
+		gpEval.setProfile(profile);
 
 		//Set a 6 second kill switch
 		Terminator term = new Terminator(gpEval);
@@ -229,7 +632,82 @@ public class EvalTestRunner {
 		}
 		
 		System.out.println(time + ", " + resSize + ", " + gpEval.getAllRes() + ", " + gpEval.getSearchSpace() + ", " + gpEval.getMaxNeighbourhood());
+		if (profile != null){
+			System.out.print(profile.render());
+		}
+
+	}
+
+	/**
+	 * Evaluates the given test with GPCheckerFCLBJ against the in-memory dataset (see loadMemoryDataSet), or against
+	 * a snapshot of its latest version in the versioned mode (see enableVersionedMode).
+	 * @param test The test
+	 */
+	public void executeSoloTestMemory(GPHolder test){
+
+		GraphStore graph = memGraph;
+		if (memVersions != null){
+			graph = memVersions.snapshot();
+		}
+
+		SearchProfile profile = profileMode ? new SearchProfile() : null;
+		ColumnarConstraintsChecker checker = new ColumnarConstraintsChecker(test, memStore);
+		ConstraintsEvaluator<MyNode, HasAttributes> ce = checker;
+		if (profile != null){
+			ce = profile.wrap(ce);
+		}
+		NeighbourhoodAccess<MyNode> neighbourhoodAccess = new DSAccess(graph, checker);
+		if (profile != null){
+			neighbourhoodAccess = profile.wrap(neighbourhoodAccess);
+		}
+		VariableOrdering<MyNode> variableOrdering = new LeastCandidates<MyNode>(test.getGp());
+
+		GPCheckerFCLBJ<MyNode, HasAttributes> gpEval = new GPCheckerFCLBJ<MyNode, HasAttributes>(test, ce, neighbourhoodAccess, variableOrdering, memStart);
+		gpEval.setProfile(profile);
+
+		//Set a 60 second kill switch
+		Terminator term = new Terminator(gpEval);
+		term.terminateAfter(60000l);
+		//Run the algorithm and record the time
+		long start = System.nanoTime();
+		List<Map<MyNode, MyNode>> result = gpEval.check();
+		long end = System.nanoTime();
+		//Make sure the terminator is killed
+		term.nullifyObj();
+		term.stop();
+
+		long time = end - start;
+
+		//Print the performance time
+		int resSize = 0;
+		if (result!= null){
+			resSize = result.size();
+		}
+		
+		System.out.println(time + ", " + resSize + ", " + gpEval.getAllRes() + ", " + gpEval.getSearchSpace() + ", " + gpEval.getMaxNeighbourhood());
+		if (profile != null){
+			System.out.print(profile.render());
+		}
+	}
+
+	/**
+	 * Evaluates the given test as a Cypher query (the baseline), translated by Translator.translateToParameterizedCypher
+	 * with the index hints for the keys indexed on :PERSON. The output line has the same columns as the other
+	 * runners; the engine counters are 0, and the time is -1 if the query was terminated.
+	 * @param test The test
+	 */
+	public void executeSoloTestCypher(GPHolder test){
+		if (cypherQueries == null){
+			cypherQueries = new Neo4jQueries(graphDb);
+			//The same limit as the kill switch of the engines
+			cypherQueries.setTimeout(60000l);
+			indexedKeys = cypherQueries.getIndexedKeys();
+		}
+
+		CypherQuery query = Translator.translateToParameterizedCypher(test, indexedKeys);
+		long time = cypherQueries.runQuery(query);
 
+		System.out.println(time + ", " + cypherQueries.getRowCount() + ", " + 0 + ", " + 0 + ", " + 0);
 	}
 
 	public void executeSoloTestFC(GPHolder test){
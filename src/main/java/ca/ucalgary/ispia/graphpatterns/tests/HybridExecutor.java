@@ -0,0 +1,259 @@
+package ca.ucalgary.ispia.graphpatterns.tests;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.neo4j.graphdb.Entity;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.AltStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.ConstraintsEvaluator;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.GPCheckerFCLBJ;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.NeighbourhoodAccess;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.VariableOrdering;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.AttrBasedStart;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.AttrHistograms;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.ConstraintsChecker;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.DBAccess;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.LeastCandidates;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.NodePropertyCache;
+import ca.ucalgary.ispia.graphpatterns.gpchecker.opt.impl.SelectiveAttrStart;
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.util.CypherQuery;
+import ca.ucalgary.ispia.graphpatterns.util.LabelEnum;
+import ca.ucalgary.ispia.graphpatterns.util.Translator;
+
+/**
+ * Executes graph patterns on either Cypher (Neo4jQueries, with the parameterized translation) or the native
+ * GPCheckerFCLBJ, whichever the CostModel predicts to be faster. If the chosen backend doesn't finish within the
+ * timeout, or fails (e.g. a Cypher QueryExecutionException), the query is run again on the other backend (with the
+ * same timeout). A failed run is logged like a timeout (timeMs is the timeout), so the model learns to avoid it.
+ *
+ * Every run is appended to the log (if set) as a CSV line:
+ * query,backend,reason,predictedMs,timeMs,timedOut,rows,features...
+ * where reason is "routed" (chosen by the model), "fallback" (after a timeout or failure of the other backend), or "calibrate"
+ * (see calibrate). The log is the training input of CostModel.train.
+ * @author szrrizvi
+ *
+ */
+public class HybridExecutor {
+
+	public static final int LOG_FIELDS = 7;			//The number of fields in a log line before the features
+
+	private static final long TIMED_OUT = -1;		//The run time of a run that timed out
+	private static final long FAILED = -2;			//The run time of a run that failed
+
+	private GraphDatabaseService graphDb;
+	private Neo4jQueries neo4jQueries;
+	private CostModel model;
+	private NodePropertyCache propCache;			//Can be null
+	private AttrHistograms histograms;				//Can be null
+	private Set<String> indexedKeys;				//Used for the index hints
+	private long numNodes;							//The number of :PERSON nodes
+	private long timeout;							//The timeout for each backend, in ms
+	private PrintWriter log;						//The routing log; null if disabled
+	private long queryCount;							//The number of executed queries
+
+	/**
+	 * Constructor.
+	 * @param graphDb The graph database service
+	 * @param model The cost model
+	 * @param propCache The node property cache for the native engine (can be null)
+	 * @param histograms The value histograms, used for the features and the selective start (can be null)
+	 * @param timeout The timeout for each backend, in ms
+	 */
+	public HybridExecutor(GraphDatabaseService graphDb, CostModel model, NodePropertyCache propCache, AttrHistograms histograms, long timeout){
+		this.graphDb = graphDb;
+		this.model = model;
+		this.propCache = propCache;
+		this.histograms = histograms;
+		this.timeout = timeout;
+		this.log = null;
+		this.queryCount = 0;
+
+		this.neo4jQueries = new Neo4jQueries(graphDb);
+		this.neo4jQueries.setTimeout(timeout);
+		this.indexedKeys = neo4jQueries.getIndexedKeys();
+		this.numNodes = (histograms != null) ? histograms.getNumNodes() : countNodes();
+	}
+
+	/**
+	 * The outcome of a query execution.
+	 */
+	public static final class Outcome {
+		public final int backend;			//The backend that produced the result (CostModel.CYPHER or NATIVE)
+		public final boolean fellBack;		//True if the routed backend timed out or failed
+		public final boolean timedOut;		//True if neither backend produced a result
+		public final long time;				//The total running time, in ns (including the timed out/failed run)
+		public final long rows;				//The number of results
+
+		private Outcome(int backend, boolean fellBack, boolean timedOut, long time, long rows){
+			this.backend = backend;
+			this.fellBack = fellBack;
+			this.timedOut = timedOut;
+			this.time = time;
+			this.rows = rows;
+		}
+
+		@Override
+		public String toString(){
+			return time + ", " + rows + ", " + CostModel.BACKENDS[backend] + ", " + fellBack + ", " + timedOut;
+		}
+	}
+
+	/**
+	 * Appends the routing decisions and their outcomes to the given file.
+	 * @param fileName The log file
+	 * @return True if the log was opened
+	 */
+	public boolean setLog(String fileName){
+		closeLog();
+		try {
+			log = new PrintWriter(new FileWriter(fileName, true));
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Flushes and closes the log.
+	 */
+	public void closeLog(){
+		if (log != null){
+			log.close();
+			log = null;
+		}
+	}
+
+	/**
+	 * Executes the query on the backend chosen by the cost model, falling back to the other backend on timeout or failure.
+	 * @param gph The query
+	 * @return The outcome
+	 */
+	public Outcome execute(GPHolder gph){
+		queryCount++;
+		CostModel.Features features = CostModel.Features.extract(gph, histograms, numNodes);
+		int first = model.choose(features);
+		int second = 1 - first;
+
+		long[] run = run(gph, first);
+		log(first, "routed", features, run);
+		if (run[0] >= 0){
+			return new Outcome(first, false, false, run[0], run[1]);
+		}
+
+		long[] fallback = run(gph, second);
+		log(second, "fallback", features, fallback);
+		return new Outcome(second, true, fallback[0] < 0, run[2] + fallback[2], fallback[1]);
+	}
+
+	/**
+	 * Executes the query on both backends and logs both outcomes, to produce training data for the cost model.
+	 * @param gph The query
+	 */
+	public void calibrate(GPHolder gph){
+		queryCount++;
+		CostModel.Features features = CostModel.Features.extract(gph, histograms, numNodes);
+		for (int backend = 0; backend < CostModel.BACKENDS.length; backend++){
+			log(backend, "calibrate", features, run(gph, backend));
+		}
+	}
+
+	/**
+	 * Runs the query on the given backend.
+	 * @return {time in ns (or TIMED_OUT/FAILED), rows, elapsed time in ns (including a timed out/failed run)}
+	 */
+	private long[] run(GPHolder gph, int backend){
+		if (backend == CostModel.CYPHER){
+			CypherQuery query = Translator.translateToParameterizedCypher(gph, indexedKeys);
+			long start = System.nanoTime();
+			try {
+				long time = neo4jQueries.runQuery(query);
+				return new long[]{time, neo4jQueries.getRowCount(), System.nanoTime() - start};
+			} catch (RuntimeException e){
+				//E.g. a QueryExecutionException for a plan the hints can't satisfy
+				System.out.println("Cypher query " + queryCount + " failed: " + e);
+				return new long[]{FAILED, 0, System.nanoTime() - start};
+			}
+		}
+
+		ConstraintsEvaluator<Node, Entity> ce = new ConstraintsChecker(gph, graphDb, propCache);
+		NeighbourhoodAccess<Node> neighbourhoodAccess = new DBAccess(graphDb, ce, propCache);
+		VariableOrdering<Node> variableOrdering = new LeastCandidates<Node>(gph.getGp());
+		AltStart<Node> as = (histograms != null) ? new SelectiveAttrStart(graphDb, ce, histograms, gph.getGp()) : new AttrBasedStart(graphDb, ce);
+		final GPCheckerFCLBJ<Node, Entity> gpEval = new GPCheckerFCLBJ<Node, Entity>(gph, ce, neighbourhoodAccess, variableOrdering, as);
+
+		//Set the kill switch
+		ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
+		ScheduledFuture<?> kill = service.schedule(new Runnable() {
+			@Override
+			public void run() {
+				gpEval.kill();
+			}
+		}, timeout, TimeUnit.MILLISECONDS);
+
+		long start = System.nanoTime();
+		List<Map<MyNode, Node>> result = null;
+		boolean failed = false;
+		try {
+			result = gpEval.check();
+		} catch (RuntimeException e){
+			System.out.println("Native query " + queryCount + " failed: " + e);
+			failed = true;
+		}
+		long end = System.nanoTime();
+		//Cancel first: the run was killed iff the kill switch could no longer be cancelled (i.e. it has already fired)
+		boolean killed = !kill.cancel(false);
+		service.shutdownNow();
+
+		if (failed){
+			return new long[]{FAILED, 0, end - start};
+		}
+		if (killed){
+			return new long[]{TIMED_OUT, 0, end - start};
+		}
+		return new long[]{end - start, (result == null) ? 0 : result.size(), end - start};
+	}
+
+	private void log(int backend, String reason, CostModel.Features features, long[] run){
+		if (log == null){
+			return;
+		}
+		double predicted = model.predict(features, backend);
+		boolean timedOut = (run[0] == TIMED_OUT);
+		double timeMs = (run[0] < 0) ? timeout : run[0] / 1000000.0;
+		log.println(queryCount + "," + CostModel.BACKENDS[backend] + "," + reason + "," + predicted + "," + timeMs + ","
+				+ timedOut + "," + run[1] + "," + features);
+		log.flush();
+	}
+
+	/**
+	 * @return The number of :PERSON nodes in the database (from the counts store)
+	 */
+	private long countNodes(){
+		long count = 0;
+		try (Transaction tx = graphDb.beginTx()){
+			Result result = graphDb.execute("MATCH (n:" + LabelEnum.PERSON + ") RETURN count(n) AS c");
+			if (result.hasNext()){
+				count = ((Number) result.next().get("c")).longValue();
+			}
+			result.close();
+			tx.success();
+		}
+		return count;
+	}
+}
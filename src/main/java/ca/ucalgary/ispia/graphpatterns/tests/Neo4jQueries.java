@@ -1,7 +1,10 @@
 package ca.ucalgary.ispia.graphpatterns.tests;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -11,6 +14,10 @@ import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Result;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.graphdb.TransactionTerminatedException;
+import org.neo4j.graphdb.schema.IndexDefinition;
+
+import ca.ucalgary.ispia.graphpatterns.util.CypherQuery;
+import ca.ucalgary.ispia.graphpatterns.util.LabelEnum;
 
 /**
  * This class provides the means for running Neo4j queries.
@@ -22,6 +29,8 @@ public class Neo4jQueries {
 
 	private GraphDatabaseService graphDb;
 	private boolean debug;
+	private long timeout;		//The query timeout, in ms
+	private long rowCount;		//The number of rows returned by the last query
 
 	/**
 	 * Constructor. Initializes the Neo4j database.
@@ -31,33 +40,71 @@ public class Neo4jQueries {
 
 		this.graphDb = graphDb;
 		debug = false;
+		timeout = 10000l;
+		rowCount = 0;
 	}
 
 	public void setDebug(boolean debug){
 		this.debug = debug;
 	}
 
+	/**
+	 * Sets the time after which the queries are terminated (default 10 seconds).
+	 * @param timeout The timeout, in ms
+	 */
+	public void setTimeout(long timeout){
+		this.timeout = timeout;
+	}
+
+	/**
+	 * @return The number of rows returned by the last query (0 if it was terminated)
+	 */
+	public long getRowCount(){
+		return rowCount;
+	}
+
 	/**
 	 * The method runs the given query on the database
 	 * @param query The cypher query to run
 	 */
 	public long runQuery(String query){
+		return runQuery(query, Collections.<String, Object>emptyMap());
+	}
+
+	/**
+	 * The method runs the given parameterized query on the database. Since the query text doesn't change with the
+	 * parameter values, Neo4j reuses the cached plan (see Translator.translateToParameterizedCypher).
+	 * @param query The parameterized cypher query to run
+	 */
+	public long runQuery(CypherQuery query){
+		return runQuery(query.getQuery(), query.getParams());
+	}
+
+	/**
+	 * The method runs the given query with the given parameters on the database
+	 * @param query The cypher query to run
+	 * @param params The parameter values, by name
+	 * @return The running time in ns, or -1 if the query was terminated after the timeout
+	 */
+	public long runQuery(String query, Map<String, Object> params){
 
 		//Initialize variables to check performance
 		long start = 0l, end = 0l;
 
 		Terminator term = null;
+		rowCount = 0;
 
 		try (Transaction tx = graphDb.beginTx()){
 			term = new Terminator(tx);
-			term.terminateAfter(10000l);
+			term.terminateAfter(timeout);
 
 			//Perform query, iterate through all of the results, and record the performance.
 			start = System.nanoTime();
-			Result result = graphDb.execute(query);
+			Result result = graphDb.execute(query, params);
 
 			while(result.hasNext()){
 				Map<String, Object> row = result.next();
+				rowCount++;
 
 				if (debug){
 					System.out.println("true");
@@ -97,12 +144,30 @@ public class Neo4jQueries {
 			tx.success();
 		} catch (TransactionTerminatedException e){
 			term.stop();
-			System.out.println("Transaction lasted more than 5 seconds");
+			System.out.println("Transaction lasted more than " + timeout + " ms");
+			rowCount = 0;
+			return -1;
 		}
 
 		return (end-start);
 	}
 
+	/**
+	 * @return The property keys indexed on the PERSON label (used for the index hints).
+	 */
+	public Set<String> getIndexedKeys(){
+		Set<String> keys = new HashSet<String>();
+		try (Transaction tx = graphDb.beginTx()){
+			for (IndexDefinition index : graphDb.schema().getIndexes(LabelEnum.PERSON)){
+				for (String key : index.getPropertyKeys()){
+					keys.add(key);
+				}
+			}
+			tx.success();
+		}
+		return keys;
+	}
+
 	public class Terminator {
 
 		private Transaction tx;
@@ -0,0 +1,301 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.DataSet;
+import ca.ucalgary.ispia.graphpatterns.graph.IdDictionary;
+import ca.ucalgary.ispia.graphpatterns.graph.IntSlice;
+import ca.ucalgary.ispia.graphpatterns.graph.MyDirection;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Offline bulk loader for Neo4j stores, based on the batch inserter (no transactions, no logs).
+ * Supports the SNAP edge lists read by TxtToDS (see importEdgeList) and the nodes.csv/rels.csv files written by
+ * JacksonRogersModel (see importCSV), as well as in-memory datasets (see importDataSet).
+ *
+ * Each node is created with the "id" property (also used as the Neo4j node id), the PERSON and Person labels
+ * (used by AttrBasedStart and DBAccess respectively), and optionally the attributes in labels.data. The index on
+ * "id" is created once, at the end of the import.
+ *
+ * The attributes are read from a comma separated file (e.g. census-income.data), where each line contains the
+ * values of the attributes in labels.data (in order). The node with id k gets the values from line (k mod lines).
+ *
+ * Assumption: The store directory is empty or doesn't exist; the database is not running.
+ * @author szrrizvi
+ *
+ */
+public class BulkImporter {
+
+	private static final int PROGRESS_INTERVAL = 1000000;	//Print the progress every 1M edges
+
+	/**
+	 * Imports the given edge list (same format as TxtToDS). The relationship types are assigned from the given
+	 * Random in file order, the same as TxtToDS and EdgeListLoader.
+	 * @param storeDir The Neo4j store directory
+	 * @param edgeFile The edge list file
+	 * @param random Used for assigning the relationship types
+	 * @param attrFile The attribute values file; if null then the nodes only get the "id" property.
+	 * @return The number of relationships created, or -1 if the import failed.
+	 */
+	public static long importEdgeList(String storeDir, String edgeFile, Random random, String attrFile){
+		CSRGraph graph = EdgeListLoader.readCSRGraph(edgeFile, random);
+		if (graph == null){
+			return -1;
+		}
+
+		BatchInserter inserter = null;
+		try {
+			List<String[]> attrRows = readAttributes(attrFile);
+			inserter = BatchInserters.inserter(new File(storeDir));
+			long start = System.nanoTime();
+
+			//Create the nodes
+			MyNode[] nodes = graph.getNodes();
+			for (MyNode node : nodes){
+				createNode(inserter, node.getId(), attrRows);
+			}
+
+			//Create the relationships
+			RelType[] types = RelType.values();
+			long numEdges = 0;
+			IdDictionary dict = graph.getDictionary();
+			for (int ord = 0; ord < graph.getNumNodes(); ord++){
+				for (int relTypeIdx = 0; relTypeIdx < graph.getNumRelTypes(); relTypeIdx++){
+					IntSlice targets = graph.neighbours(ord, relTypeIdx, MyDirection.OUTGOING);
+					for (int idx = 0; idx < targets.size(); idx++){
+						inserter.createRelationship(dict.toExternal(ord), dict.toExternal(targets.get(idx)), types[relTypeIdx], null);
+						numEdges++;
+						progress(numEdges, start);
+					}
+				}
+			}
+
+			finish(inserter, numEdges, start);
+			inserter = null;
+			return numEdges;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return -1;
+		} finally {
+			if (inserter != null){
+				inserter.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Imports the nodes.csv and rels.csv files written by JacksonRogersModel. Both files are streamed.
+	 * @param storeDir The Neo4j store directory
+	 * @param nodesFile The nodes file (":ID,id:int,:LABEL")
+	 * @param relsFile The relationships file (":START_ID,:END_ID,:TYPE")
+	 * @param attrFile The attribute values file; if null then the nodes only get the "id" property.
+	 * @return The number of relationships created, or -1 if the import failed.
+	 */
+	public static long importCSV(String storeDir, String nodesFile, String relsFile, String attrFile){
+		BatchInserter inserter = null;
+		BufferedReader reader = null;
+		try {
+			List<String[]> attrRows = readAttributes(attrFile);
+			inserter = BatchInserters.inserter(new File(storeDir));
+			long start = System.nanoTime();
+
+			//Create the nodes; the :ID column is the id
+			reader = new BufferedReader(new FileReader(nodesFile));
+			String line = reader.readLine();	//Header
+			while ((line = reader.readLine()) != null){
+				if (line.isEmpty()){
+					continue;
+				}
+				int id = Integer.parseInt(line.substring(0, line.indexOf(',')));
+				createNode(inserter, id, attrRows);
+			}
+			reader.close();
+
+			//Create the relationships
+			long numEdges = 0;
+			reader = new BufferedReader(new FileReader(relsFile));
+			line = reader.readLine();			//Header
+			while ((line = reader.readLine()) != null){
+				if (line.isEmpty()){
+					continue;
+				}
+				String[] parts = line.split(",");
+				if (parts.length != 3){
+					System.out.println("Illegal line format: " + line);
+					return -1;
+				}
+				inserter.createRelationship(Long.parseLong(parts[0]), Long.parseLong(parts[1]), RelType.valueOf(parts[2].trim()), null);
+				numEdges++;
+				progress(numEdges, start);
+			}
+
+			finish(inserter, numEdges, start);
+			inserter = null;
+			return numEdges;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return -1;
+		} finally {
+			if (reader != null){
+				try {
+					reader.close();
+				} catch (IOException e){
+					//Ignore
+				}
+			}
+			if (inserter != null){
+				inserter.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Imports the given dataset, including the attributes of the nodes and relationships (converted to ints for the
+	 * int attributes, see AttributeTypes). Used for building a Neo4j store with the same content as an in-memory dataset.
+	 * @param storeDir The Neo4j store directory
+	 * @param dataSet The dataset
+	 * @return The number of relationships created, or -1 if the import failed.
+	 */
+	public static long importDataSet(String storeDir, DataSet dataSet){
+		BatchInserter inserter = null;
+		try {
+			inserter = BatchInserters.inserter(new File(storeDir));
+			long start = System.nanoTime();
+
+			//Create the nodes
+			for (MyNode node : dataSet.getNodes()){
+				Map<String, Object> props = toProperties(node.getAttributes());
+				props.put("id", node.getId());
+				inserter.createNode(node.getId(), props, LabelEnum.PERSON, LabelEnum.Person);
+			}
+
+			//Create the relationships
+			long numEdges = 0;
+			for (Set<MyRelationship> rels : dataSet.getOutgoingRels().values()){
+				for (MyRelationship rel : rels){
+					inserter.createRelationship(rel.getSource().getId(), rel.getTarget().getId(), rel.getIdentifier(), toProperties(rel.getAttributes()));
+					numEdges++;
+					progress(numEdges, start);
+				}
+			}
+
+			finish(inserter, numEdges, start);
+			inserter = null;
+			return numEdges;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return -1;
+		} finally {
+			if (inserter != null){
+				inserter.shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Converts the given attributes to properties; the values of the int attributes are stored as ints (if valid).
+	 */
+	private static Map<String, Object> toProperties(Map<String, String> attrs){
+		Map<String, Object> props = new HashMap<String, Object>();
+		for (Map.Entry<String, String> entry : attrs.entrySet()){
+			props.put(entry.getKey(), toProperty(entry.getKey(), entry.getValue()));
+		}
+		return props;
+	}
+
+	/**
+	 * @return The value as an int for the int attributes (if valid), else the string.
+	 */
+	private static Object toProperty(String name, String val){
+		if (AttributeTypes.isIntType(name)){
+			try {
+				return Integer.parseInt(val);
+			} catch (NumberFormatException e){
+				//Store as string
+			}
+		}
+		return val;
+	}
+
+	/**
+	 * Creates the node with the given id, its labels and properties.
+	 */
+	private static void createNode(BatchInserter inserter, int id, List<String[]> attrRows){
+		Map<String, Object> props = new HashMap<String, Object>();
+		props.put("id", id);
+
+		if (!attrRows.isEmpty()){
+			List<String> names = AttributeTypes.getVertexAttributes();
+			String[] row = attrRows.get(id % attrRows.size());
+			for (int idx = 0; idx < names.size() && idx < row.length; idx++){
+				props.put(names.get(idx), toProperty(names.get(idx), row[idx].trim()));
+			}
+		}
+
+		inserter.createNode(id, props, LabelEnum.PERSON, LabelEnum.Person);
+	}
+
+	/**
+	 * Reads the attribute values file.
+	 * @return The rows of values; empty if the file name is null.
+	 */
+	private static List<String[]> readAttributes(String attrFile) throws IOException {
+		List<String[]> rows = new ArrayList<String[]>();
+		if (attrFile == null){
+			return rows;
+		}
+		if (AttributeTypes.getVertexAttributes() == null){
+			throw new IOException("labels.data not found");
+		}
+
+		BufferedReader reader = new BufferedReader(new FileReader(attrFile));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null){
+				if (!line.trim().isEmpty()){
+					rows.add(line.split(","));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return rows;
+	}
+
+	private static void progress(long numEdges, long start){
+		if (numEdges % PROGRESS_INTERVAL == 0){
+			System.out.println(numEdges + " edges, " + rate(numEdges, start) + " edges/sec");
+		}
+	}
+
+	/**
+	 * Creates the id indexes and shuts down the inserter (which populates the indexes).
+	 */
+	private static void finish(BatchInserter inserter, long numEdges, long start){
+		inserter.createDeferredSchemaIndex(LabelEnum.PERSON).on("id").create();
+		inserter.createDeferredSchemaIndex(LabelEnum.Person).on("id").create();
+		inserter.shutdown();
+
+		System.out.println("Imported " + numEdges + " edges, " + rate(numEdges, start) + " edges/sec (including indexing)");
+	}
+
+	private static long rate(long numEdges, long start){
+		long elapsed = System.nanoTime() - start;
+		return (elapsed == 0) ? 0 : (numEdges * 1000000000L) / elapsed;
+	}
+}
@@ -0,0 +1,740 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.HasAttributes;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Parses the Cypher subset emitted by Translator.translateToCypher and Translator.translateToParameterizedCypher
+ * into GPHolder objects:
+ * <pre>
+ * query     := [PROFILE | EXPLAIN] (MATCH pattern (, pattern)* | hint | WHERE condition (AND condition)*)+
+ *              RETURN [DISTINCT] item (, item)* [LIMIT number] [;]
+ * hint      := USING INDEX var:label(key) | USING JOIN ON var (, var)*
+ * pattern   := node (relationship node)*
+ * node      := ( [var] [:label] [{properties}] )
+ * relationship := -[ [var] :type [{properties}] ]-> | &lt;-[ [var] :type [{properties}] ]-
+ * condition := var.key = literal | var &lt;&gt; var
+ * item      := var[.key] [AS name]
+ * literal   := [-] number | "string" | 'string' | true | false | $param
+ * </pre>
+ * Numbers can be integers or decimals (e.g. 42, 3.5). The parameters ($name) are replaced by their values, which
+ * are given to the QueryReader (see CypherQuery). The planner hints (USING) are accepted but ignored.
+ * Keywords are case insensitive, names can be quoted with backticks, and // comments are ignored.
+ * Property equalities become attribute requirements (on nodes or relationships), &lt;&gt; between two node variables
+ * become mutual exclusion constraints, and the returned node variables become the result schema. The relationship
+ * types must be RelType names. LIMIT is accepted but ignored. Anything else (OR, NOT, undirected relationships,
+ * variable length paths, ...) is rejected with an IllegalArgumentException.
+ *
+ * The nodes are numbered in order of appearance (as in SimpleCypherParser).
+ *
+ * A file can contain any number of queries (optionally separated by ;), which are parsed lazily by QueryReader.
+ * @author szrrizvi
+ *
+ */
+public class CypherParser {
+
+	/**
+	 * Parses a single query.
+	 * @param query The query
+	 * @return The equivalent GPHolder
+	 * @throws IllegalArgumentException If the query is not part of the supported subset.
+	 */
+	public static GPHolder parse(String query){
+		QueryReader reader = new QueryReader(new StringReader(query));
+		try {
+			GPHolder gph = reader.read();
+			if (gph == null){
+				throw new IllegalArgumentException("Empty query");
+			}
+			if (reader.read() != null){
+				throw new IllegalArgumentException("Expected a single query");
+			}
+			return gph;
+		} catch (IOException e){
+			//Not possible with a StringReader
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parses a single parameterized query (e.g. from Translator.translateToParameterizedCypher).
+	 * @param query The query and its parameter values
+	 * @return The equivalent GPHolder
+	 * @throws IllegalArgumentException If the query is not part of the supported subset, or uses an unknown parameter.
+	 */
+	public static GPHolder parse(CypherQuery query){
+		QueryReader reader = new QueryReader(new StringReader(query.getQuery()));
+		reader.setParams(query.getParams());
+		try {
+			GPHolder gph = reader.read();
+			if (gph == null){
+				throw new IllegalArgumentException("Empty query");
+			}
+			if (reader.read() != null){
+				throw new IllegalArgumentException("Expected a single query");
+			}
+			return gph;
+		} catch (IOException e){
+			//Not possible with a StringReader
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Parses all of the queries in the given file. Use QueryReader for large files.
+	 * @param fileName The query file
+	 * @return The GPHolders, or null if the file could not be read or parsed.
+	 */
+	public static List<GPHolder> parseFile(String fileName){
+		QueryReader reader = null;
+		try {
+			reader = new QueryReader(fileName);
+			List<GPHolder> result = new ArrayList<GPHolder>();
+			GPHolder gph;
+			while ((gph = reader.read()) != null){
+				result.add(gph);
+			}
+			return result;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return null;
+		} catch (IllegalArgumentException e){
+			System.out.println(fileName + ": " + e.getMessage());
+			return null;
+		} finally {
+			if (reader != null){
+				reader.close();
+			}
+		}
+	}
+
+	//Token types
+	private static final int EOF = 0;
+	private static final int IDENT = 1;		//Unquoted name or keyword
+	private static final int QUOTED = 2;	//`quoted name`
+	private static final int STRING = 3;	//"string" or 'string'
+	private static final int NUMBER = 4;
+	private static final int SYMBOL = 5;
+	private static final int PARAM = 6;		//$name
+
+	private static final class Token {
+		private final int type;
+		private final String text;
+		private final int line;
+
+		private Token(int type, String text, int line){
+			this.type = type;
+			this.text = text;
+			this.line = line;
+		}
+	}
+
+	/**
+	 * Reads the queries from a character stream, one at a time. After an IllegalArgumentException (i.e. a query
+	 * outside of the supported subset), the position in the stream is undefined.
+	 */
+	public static class QueryReader implements Closeable {
+
+		private final Reader in;
+		private int nextChar;		//The lookahead character (-2 if not read yet)
+		private int line;			//The current line (for the error messages)
+		private Token token;		//The lookahead token (null if not read yet)
+		private Map<String, Object> params;	//The parameter values, by name
+
+		//The state of the query being parsed
+		private GraphPattern gp;
+		private List<Pair<MyNode, MyNode>> mexList;
+		private List<MyNode> resultSchema;
+		private Map<String, MyNode> nodesMap;
+		private Map<String, MyRelationship> relsMap;
+		private int nodeCounter;
+		private int relCounter;
+
+		/**
+		 * @param in The character stream; should be buffered.
+		 */
+		public QueryReader(Reader in){
+			this.in = in;
+			this.nextChar = -2;
+			this.line = 1;
+			this.token = null;
+			this.params = new HashMap<String, Object>();
+		}
+
+		/**
+		 * @param fileName The query file
+		 * @throws IOException
+		 */
+		public QueryReader(String fileName) throws IOException {
+			this(new BufferedReader(new FileReader(fileName)));
+		}
+
+		/**
+		 * Sets the values of the parameters ($name) in the subsequent queries.
+		 * @param params The parameter values, by name (without the $)
+		 */
+		public void setParams(Map<String, Object> params){
+			this.params = new HashMap<String, Object>(params);
+		}
+
+		/**
+		 * Parses the next query.
+		 * @return The GPHolder, or null if there are no more queries.
+		 * @throws IOException If the stream can't be read.
+		 * @throws IllegalArgumentException If the query is not part of the supported subset.
+		 */
+		public GPHolder read() throws IOException {
+			//Skip the empty statements
+			while (isSymbol(peek(), ";")){
+				next();
+			}
+			if (peek().type == EOF){
+				return null;
+			}
+
+			if (isKeyword(peek(), "PROFILE") || isKeyword(peek(), "EXPLAIN")){
+				next();
+			}
+
+			gp = new GraphPattern();
+			mexList = new ArrayList<Pair<MyNode, MyNode>>();
+			resultSchema = new ArrayList<MyNode>();
+			nodesMap = new HashMap<String, MyNode>();
+			relsMap = new HashMap<String, MyRelationship>();
+			nodeCounter = 0;
+			relCounter = 0;
+
+			if (!isKeyword(peek(), "MATCH")){
+				throw error(peek(), "Expected MATCH");
+			}
+
+			//The MATCH, USING and WHERE clauses
+			while (true){
+				if (isKeyword(peek(), "MATCH")){
+					next();
+					parsePattern();
+					while (isSymbol(peek(), ",")){
+						next();
+						parsePattern();
+					}
+				} else if (isKeyword(peek(), "USING")){
+					next();
+					parseHint();
+				} else if (isKeyword(peek(), "WHERE")){
+					next();
+					parseCondition();
+					while (isKeyword(peek(), "AND")){
+						next();
+						parseCondition();
+					}
+				} else {
+					break;
+				}
+			}
+
+			//The RETURN clause
+			expectKeyword("RETURN");
+			if (isKeyword(peek(), "DISTINCT")){
+				next();
+			}
+			parseReturnItem();
+			while (isSymbol(peek(), ",")){
+				next();
+				parseReturnItem();
+			}
+			if (isKeyword(peek(), "LIMIT")){
+				next();
+				expectType(NUMBER, "number");
+			}
+			if (isSymbol(peek(), ";")){
+				next();
+			}
+
+			GPHolder gph = new GPHolder(gp, mexList, new HashMap<String, MyNode>());
+			gph.setResultSchema(resultSchema);
+			return gph;
+		}
+
+		public void close(){
+			try {
+				in.close();
+			} catch (IOException e){
+				//Ignore
+			}
+		}
+
+		//--------------------------//
+		// CLAUSES
+		//--------------------------//
+
+		private void parsePattern() throws IOException {
+			MyNode node = parseNode();
+			while (isSymbol(peek(), "-") || isSymbol(peek(), "<")){
+				node = parseRelationship(node);
+			}
+		}
+
+		private MyNode parseNode() throws IOException {
+			expectSymbol("(");
+
+			String var = null;
+			if (isName(peek())){
+				var = next().text;
+			}
+			String label = null;
+			if (isSymbol(peek(), ":")){
+				next();
+				label = parseName();
+			}
+
+			MyNode node = (var == null) ? null : nodesMap.get(var);
+			if (node == null){
+				node = new MyNode(nodeCounter, (label == null) ? "" : label);
+				nodeCounter++;
+				gp.addNode(node);
+				if (var != null){
+					nodesMap.put(var, node);
+				}
+			}
+
+			if (isSymbol(peek(), "{")){
+				parseProperties(node);
+			}
+			expectSymbol(")");
+			return node;
+		}
+
+		/**
+		 * Parses the relationship (and the node after it).
+		 * @param left The node before the relationship
+		 * @return The node after the relationship
+		 */
+		private MyNode parseRelationship(MyNode left) throws IOException {
+			Token start = peek();
+			boolean incoming = false;
+			if (isSymbol(peek(), "<")){
+				next();
+				incoming = true;
+			}
+			expectSymbol("-");
+
+			String var = null;
+			RelType relType = null;
+			Map<String, String> props = new HashMap<String, String>();
+			Token typeToken = null;
+			if (isSymbol(peek(), "[")){
+				next();
+				if (isName(peek())){
+					var = next().text;
+				}
+				if (isSymbol(peek(), ":")){
+					next();
+					typeToken = peek();
+					relType = toRelType(parseName(), typeToken);
+				}
+				if (isSymbol(peek(), "{")){
+					next();
+					parsePropertyList(props);
+				}
+				expectSymbol("]");
+			}
+			expectSymbol("-");
+
+			boolean outgoing = false;
+			if (isSymbol(peek(), ">")){
+				next();
+				outgoing = true;
+			}
+			if (incoming == outgoing){
+				throw error(start, "Relationships must have exactly one direction");
+			}
+			if (relType == null){
+				throw error(start, "Relationships must have a type");
+			}
+
+			MyNode right = parseNode();
+
+			MyRelationship rel = incoming ? new MyRelationship(right, left, relType, relCounter) : new MyRelationship(left, right, relType, relCounter);
+			relCounter++;
+			for (Map.Entry<String, String> entry : props.entrySet()){
+				rel.addAttribute(entry.getKey(), entry.getValue());
+			}
+			if (var != null){
+				if (relsMap.containsKey(var) || nodesMap.containsKey(var)){
+					throw error(start, "Variable " + var + " is already defined");
+				}
+				relsMap.put(var, rel);
+			}
+			gp.addRelationship(rel);
+
+			return right;
+		}
+
+		/**
+		 * Parses a planner hint, after USING. The hint is ignored.
+		 */
+		private void parseHint() throws IOException {
+			if (isKeyword(peek(), "INDEX")){
+				next();
+				parseName();
+				expectSymbol(":");
+				parseName();
+				expectSymbol("(");
+				parseName();
+				expectSymbol(")");
+			} else if (isKeyword(peek(), "JOIN")){
+				next();
+				expectKeyword("ON");
+				parseName();
+				while (isSymbol(peek(), ",")){
+					next();
+					parseName();
+				}
+			} else {
+				throw error(peek(), "Expected INDEX or JOIN");
+			}
+		}
+
+		private void parseCondition() throws IOException {
+			Token start = peek();
+			String var = parseName();
+
+			if (isSymbol(peek(), ".")){
+				//Attribute requirement
+				next();
+				String key = parseName();
+				expectSymbol("=");
+				String val = parseLiteral();
+				addAttribute(lookup(var, start), key, val, start);
+			} else if (isSymbol(peek(), "<>")){
+				//Mutual exclusion constraint
+				next();
+				Token otherToken = peek();
+				String other = parseName();
+				MyNode first = nodesMap.get(var);
+				MyNode second = nodesMap.get(other);
+				if (first == null){
+					throw error(start, "Unknown node variable " + var);
+				}
+				if (second == null){
+					throw error(otherToken, "Unknown node variable " + other);
+				}
+				mexList.add(new Pair<MyNode, MyNode>(first, second));
+			} else {
+				throw error(peek(), "Expected . or <>");
+			}
+		}
+
+		private void parseReturnItem() throws IOException {
+			Token start = peek();
+			String var = parseName();
+			if (isSymbol(peek(), ".")){
+				//The node is returned (not the property)
+				next();
+				parseName();
+			}
+			if (isKeyword(peek(), "AS")){
+				next();
+				parseName();
+			}
+
+			MyNode node = nodesMap.get(var);
+			if (node == null){
+				throw error(start, "Unknown node variable " + var);
+			}
+			if (!resultSchema.contains(node)){
+				resultSchema.add(node);
+			}
+		}
+
+		private void parseProperties(HasAttributes target) throws IOException {
+			Token start = next();	//{
+			Map<String, String> props = new HashMap<String, String>();
+			parsePropertyList(props);
+			for (Map.Entry<String, String> entry : props.entrySet()){
+				addAttribute(target, entry.getKey(), entry.getValue(), start);
+			}
+		}
+
+		/**
+		 * Parses the properties, after the opening {.
+		 */
+		private void parsePropertyList(Map<String, String> props) throws IOException {
+			if (!isSymbol(peek(), "}")){
+				while (true){
+					String key = parseName();
+					expectSymbol(":");
+					props.put(key, parseLiteral());
+					if (isSymbol(peek(), ",")){
+						next();
+					} else {
+						break;
+					}
+				}
+			}
+			expectSymbol("}");
+		}
+
+		//--------------------------//
+		// HELPERS
+		//--------------------------//
+
+		private HasAttributes lookup(String var, Token token){
+			if (nodesMap.containsKey(var)){
+				return nodesMap.get(var);
+			}
+			if (relsMap.containsKey(var)){
+				return relsMap.get(var);
+			}
+			throw error(token, "Unknown variable " + var);
+		}
+
+		private void addAttribute(HasAttributes target, String key, String val, Token token){
+			String existing = target.getAttribute(key);
+			if (existing != null && !existing.equals(val)){
+				throw error(token, "Conflicting requirements for " + key);
+			}
+			target.addAttribute(key, val);
+		}
+
+		private RelType toRelType(String name, Token token){
+			try {
+				return RelType.valueOf(name);
+			} catch (IllegalArgumentException e){
+				throw error(token, "Unknown relationship type " + name);
+			}
+		}
+
+		private String parseName() throws IOException {
+			Token tok = next();
+			if (!isName(tok)){
+				throw error(tok, "Expected a name");
+			}
+			return tok.text;
+		}
+
+		private String parseLiteral() throws IOException {
+			Token tok = next();
+			if (tok.type == STRING || tok.type == NUMBER){
+				return tok.text;
+			}
+			if (isSymbol(tok, "-") && peek().type == NUMBER){
+				return "-" + next().text;
+			}
+			if (isKeyword(tok, "true") || isKeyword(tok, "false")){
+				return tok.text.toLowerCase();
+			}
+			if (tok.type == PARAM){
+				Object val = params.get(tok.text);
+				if (val == null){
+					throw error(tok, "Unknown parameter $" + tok.text);
+				}
+				return String.valueOf(val);
+			}
+			throw error(tok, "Expected a literal");
+		}
+
+		private void expectSymbol(String symbol) throws IOException {
+			Token tok = next();
+			if (!isSymbol(tok, symbol)){
+				throw error(tok, "Expected " + symbol);
+			}
+		}
+
+		private void expectKeyword(String keyword) throws IOException {
+			Token tok = next();
+			if (!isKeyword(tok, keyword)){
+				throw error(tok, "Expected " + keyword);
+			}
+		}
+
+		private void expectType(int type, String description) throws IOException {
+			Token tok = next();
+			if (tok.type != type){
+				throw error(tok, "Expected a " + description);
+			}
+		}
+
+		private static boolean isSymbol(Token tok, String symbol){
+			return tok.type == SYMBOL && tok.text.equals(symbol);
+		}
+
+		private static boolean isKeyword(Token tok, String keyword){
+			return tok.type == IDENT && tok.text.equalsIgnoreCase(keyword);
+		}
+
+		private static boolean isName(Token tok){
+			return tok.type == IDENT || tok.type == QUOTED;
+		}
+
+		private static IllegalArgumentException error(Token tok, String message){
+			String found = (tok.type == EOF) ? "end of input" : "'" + ((tok.type == PARAM) ? "$" : "") + tok.text + "'";
+			return new IllegalArgumentException("Line " + tok.line + ": " + message + ", found " + found);
+		}
+
+		//--------------------------//
+		// TOKENIZER
+		//--------------------------//
+
+		private Token peek() throws IOException {
+			if (token == null){
+				token = scan();
+			}
+			return token;
+		}
+
+		private Token next() throws IOException {
+			Token tok = peek();
+			token = null;
+			return tok;
+		}
+
+		private int peekChar() throws IOException {
+			if (nextChar == -2){
+				nextChar = in.read();
+			}
+			return nextChar;
+		}
+
+		private int readChar() throws IOException {
+			int c = peekChar();
+			nextChar = -2;
+			if (c == '\n'){
+				line++;
+			}
+			return c;
+		}
+
+		private Token scan() throws IOException {
+			//Skip the whitespace and comments
+			while (true){
+				int c = peekChar();
+				if (c == -1){
+					return new Token(EOF, "", line);
+				} else if (Character.isWhitespace(c)){
+					readChar();
+				} else if (c == '/'){
+					readChar();
+					if (peekChar() != '/'){
+						throw new IllegalArgumentException("Line " + line + ": Unexpected character '/'");
+					}
+					while (peekChar() != -1 && peekChar() != '\n'){
+						readChar();
+					}
+				} else {
+					break;
+				}
+			}
+
+			int tokenLine = line;
+			int c = readChar();
+			StringBuilder sb = new StringBuilder();
+
+			if (Character.isLetter(c) || c == '_'){
+				sb.append((char) c);
+				while (Character.isLetterOrDigit(peekChar()) || peekChar() == '_'){
+					sb.append((char) readChar());
+				}
+				return new Token(IDENT, sb.toString(), tokenLine);
+			}
+
+			if (Character.isDigit(c)){
+				sb.append((char) c);
+				while (Character.isDigit(peekChar())){
+					sb.append((char) readChar());
+				}
+				//A number is never followed by a property access, so the . starts the decimal part
+				if (peekChar() == '.'){
+					sb.append((char) readChar());
+					if (!Character.isDigit(peekChar())){
+						throw new IllegalArgumentException("Line " + tokenLine + ": Expected the decimal part of " + sb);
+					}
+					while (Character.isDigit(peekChar())){
+						sb.append((char) readChar());
+					}
+				}
+				return new Token(NUMBER, sb.toString(), tokenLine);
+			}
+
+			if (c == '$'){
+				while (Character.isLetterOrDigit(peekChar()) || peekChar() == '_'){
+					sb.append((char) readChar());
+				}
+				if (sb.length() == 0){
+					throw new IllegalArgumentException("Line " + tokenLine + ": Expected a parameter name after $");
+				}
+				return new Token(PARAM, sb.toString(), tokenLine);
+			}
+
+			if (c == '`'){
+				while (true){
+					int d = readChar();
+					if (d == -1){
+						throw new IllegalArgumentException("Line " + tokenLine + ": Unterminated name");
+					}
+					if (d == '`'){
+						if (peekChar() != '`'){
+							break;
+						}
+						readChar();	//`` is an escaped `
+					}
+					sb.append((char) d);
+				}
+				return new Token(QUOTED, sb.toString(), tokenLine);
+			}
+
+			if (c == '"' || c == '\''){
+				while (true){
+					int d = readChar();
+					if (d == -1 || d == '\n'){
+						throw new IllegalArgumentException("Line " + tokenLine + ": Unterminated string");
+					}
+					if (d == c){
+						break;
+					}
+					if (d == '\\'){
+						d = readChar();
+						if (d == 'n'){
+							d = '\n';
+						} else if (d == 't'){
+							d = '\t';
+						} else if (d == -1){
+							throw new IllegalArgumentException("Line " + tokenLine + ": Unterminated string");
+						}
+					}
+					sb.append((char) d);
+				}
+				return new Token(STRING, sb.toString(), tokenLine);
+			}
+
+			if (c == '<'){
+				if (peekChar() == '>'){
+					readChar();
+					return new Token(SYMBOL, "<>", tokenLine);
+				}
+				return new Token(SYMBOL, "<", tokenLine);
+			}
+
+			if ("()[]{}:,.=->;".indexOf(c) >= 0){
+				return new Token(SYMBOL, String.valueOf((char) c), tokenLine);
+			}
+
+			throw new IllegalArgumentException("Line " + tokenLine + ": Unexpected character '" + (char) c + "'");
+		}
+	}
+}
@@ -0,0 +1,45 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * A parameterized Cypher query: the query text (with $name placeholders) and the parameter values.
+ * Queries for graph patterns of the same shape have identical text, so Neo4j can reuse the cached plan.
+ * @author szrrizvi
+ *
+ */
+public final class CypherQuery {
+
+	private final String query;					//The query text
+	private final Map<String, Object> params;	//The parameter values, by name
+
+	/**
+	 * Constructor.
+	 * @param query The query text
+	 * @param params The parameter values
+	 */
+	public CypherQuery(String query, Map<String, Object> params){
+		this.query = query;
+		this.params = Collections.unmodifiableMap(params);
+	}
+
+	/**
+	 * @return The query text
+	 */
+	public String getQuery(){
+		return query;
+	}
+
+	/**
+	 * @return The parameter values, by name. Read-only.
+	 */
+	public Map<String, Object> getParams(){
+		return params;
+	}
+
+	@Override
+	public String toString(){
+		return query + "\n" + params;
+	}
+}
@@ -0,0 +1,171 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.CSRSnapshot;
+import ca.ucalgary.ispia.graphpatterns.graph.IdDictionary;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Exports the content of a Neo4j database to the in-memory representation (CSRGraph) and the binary snapshot
+ * format (see CSRSnapshot), so that the database and in-memory evaluations can run on identical data.
+ *
+ * The database is read with two scans: one over all nodes (reading the "id" property and the attributes in
+ * labels.data, with a single getProperties call per node), and one over all relationships (reading only the
+ * type and the endpoint ids). The nodes in the snapshot are identified by their "id" property, the same as in
+ * the graph patterns.
+ *
+ * Nodes without an "id" property, and the relationships with types that are not RelTypes, are skipped.
+ * Relationship properties are not exported, since the snapshot format doesn't store them.
+ * @author szrrizvi
+ *
+ */
+public class DBToSnapshot {
+
+	/**
+	 * Exports the database to a CSRGraph, without a hub index.
+	 * @param graphDb The graph database service
+	 * @return The CSR graph
+	 */
+	public static CSRGraph export(GraphDatabaseService graphDb){
+		return export(graphDb, CSRGraph.NO_HUBS);
+	}
+
+	/**
+	 * Exports the database to a CSRGraph.
+	 * @param graphDb The graph database service
+	 * @param hubDegree The minimum degree of a hub neighbourhood (see CSRGraph.buildHubIndex); CSRGraph.NO_HUBS for no hub index
+	 * @return The CSR graph
+	 */
+	public static CSRGraph export(GraphDatabaseService graphDb, int hubDegree){
+
+		//The property keys to read for each node
+		List<String> attrs = AttributeTypes.getVertexAttributes();
+		String[] keys = new String[(attrs == null) ? 1 : attrs.size() + 1];
+		keys[0] = "id";
+		for (int idx = 1; idx < keys.length; idx++){
+			keys[idx] = attrs.get(idx - 1);
+		}
+
+		int[] externalIds = new int[1024];		//The "id" property, indexed by the internal node id (-1 if none)
+		Arrays.fill(externalIds, -1);
+		List<MyNode> nodeList = new ArrayList<MyNode>();	//The exported nodes, in scan order
+
+		int[] src = new int[1024];
+		int[] tgt = new int[1024];
+		int[] type = new int[1024];
+		int numEdges = 0;
+		int skipped = 0;
+
+		try (Transaction tx = graphDb.beginTx()){
+
+			//Scan the nodes
+			for (Node node : graphDb.getAllNodes()){
+				Map<String, Object> props = node.getProperties(keys);
+				Object idProp = props.get("id");
+				if (idProp == null){
+					continue;
+				}
+				int id = (idProp instanceof Number) ? ((Number) idProp).intValue() : Integer.parseInt(idProp.toString());
+
+				MyNode myNode = new MyNode(id, "");
+				for (int idx = 1; idx < keys.length; idx++){
+					Object val = props.get(keys[idx]);
+					if (val != null){
+						myNode.addAttribute(keys[idx], val.toString());
+					}
+				}
+
+				//Record the node
+				long internal = node.getId();
+				if (internal >= externalIds.length){
+					int oldLen = externalIds.length;
+					externalIds = Arrays.copyOf(externalIds, (int) Math.max(oldLen * 2L, internal + 1));
+					Arrays.fill(externalIds, oldLen, externalIds.length, -1);
+				}
+				externalIds[(int) internal] = id;
+
+				nodeList.add(myNode);
+			}
+
+			//Scan the relationships
+			for (Relationship rel : graphDb.getAllRelationships()){
+				long start = rel.getStartNodeId();
+				long end = rel.getEndNodeId();
+				RelType relType = toRelType(rel.getType().name());
+
+				if (relType == null || start >= externalIds.length || end >= externalIds.length
+						|| externalIds[(int) start] < 0 || externalIds[(int) end] < 0){
+					skipped++;
+					continue;
+				}
+
+				if (numEdges == src.length){
+					src = Arrays.copyOf(src, numEdges * 2);
+					tgt = Arrays.copyOf(tgt, numEdges * 2);
+					type = Arrays.copyOf(type, numEdges * 2);
+				}
+				src[numEdges] = externalIds[(int) start];
+				tgt[numEdges] = externalIds[(int) end];
+				type[numEdges] = relType.getIdx();
+				numEdges++;
+			}
+
+			tx.success();
+		}
+
+		//Build the dictionary of the "id" properties, and switch the edges to the ordinals
+		int[] ids = new int[nodeList.size()];
+		for (int idx = 0; idx < ids.length; idx++){
+			ids[idx] = nodeList.get(idx).getId();
+		}
+		IdDictionary dict = IdDictionary.fromIds(ids, ids.length);
+		MyNode[] nodes = new MyNode[dict.size()];
+		for (MyNode node : nodeList){
+			nodes[dict.toInternal(node.getId())] = node;
+		}
+		CSRGraph.toInternal(dict, src, numEdges);
+		CSRGraph.toInternal(dict, tgt, numEdges);
+
+		System.out.println("Nodes: " + nodes.length + ", Edges: " + numEdges + ", Skipped relationships: " + skipped);
+
+		return CSRGraph.fromEdges(dict, RelType.values().length, src, tgt, type, numEdges, nodes, hubDegree);
+	}
+
+	/**
+	 * Exports the database to the given snapshot file.
+	 * @param graphDb The graph database service
+	 * @param file The snapshot file
+	 * @return The exported graph, or null if the snapshot could not be written.
+	 */
+	public static CSRGraph exportToFile(GraphDatabaseService graphDb, File file){
+		CSRGraph graph = export(graphDb);
+		try {
+			CSRSnapshot.write(graph, file);
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return null;
+		}
+		return graph;
+	}
+
+	private static RelType toRelType(String name){
+		try {
+			return RelType.valueOf(name);
+		} catch (IllegalArgumentException e){
+			return null;
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package ca.ucalgary.ispia.graphpatterns.util;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
@@ -10,8 +11,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.CSRSnapshot;
 import ca.ucalgary.ispia.graphpatterns.graph.DataSet;
-import ca.ucalgary.ispia.graphpatterns.graph.DataSetInterface;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphStore;
+import ca.ucalgary.ispia.graphpatterns.graph.MappedCSRGraph;
 import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
 
 public class DataSetUtil {
@@ -35,6 +41,50 @@ public class DataSetUtil {
 		return dataSet;
 	}
 
+	/**
+	 * Opens the binary graph snapshot (see CSRSnapshot) for the given dataset. The snapshot is memory mapped,
+	 * so this only reads the snapshot header.
+	 * @param fileName The dataset name
+	 * @return The mapped graph, or null if the snapshot could not be opened.
+	 */
+	public static MappedCSRGraph loadSnapshot(String fileName){
+		MappedCSRGraph graph = null;
+		
+		try {
+			graph = CSRSnapshot.open(new File("simulation-tests/"+fileName+".csr"));
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+		}
+		
+		return graph;
+	}
+	
+	/**
+	 * Converts the serialized DataSet (see loadDataSet) for the given dataset into the binary graph snapshot format.
+	 * @param fileName The dataset name
+	 */
+	public static void saveSnapshot(String fileName){
+		DataSet ds = loadDataSet(fileName);
+		if (ds == null){
+			return;
+		}
+		
+		try {
+			CSRSnapshot.write(CSRGraph.fromDataSet(ds), new File("simulation-tests/"+fileName+".csr"));
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+		}
+	}
+
+	/**
+	 * Exports the given database into the binary graph snapshot format (see DBToSnapshot).
+	 * @param graphDb The graph database service
+	 * @param fileName The dataset name
+	 */
+	public static void exportSnapshot(GraphDatabaseService graphDb, String fileName){
+		DBToSnapshot.exportToFile(graphDb, new File("simulation-tests/"+fileName+".csr"));
+	}
+
 	public static void saveDataSet(String fileName, Random random){
 		DataSet ds = TxtToDS.readDataSet("simulation-tests/"+fileName+".txt", random);
 
@@ -49,7 +99,7 @@ public class DataSetUtil {
 	}
 	
 
-	public static void dsStats(DataSetInterface dsi){
+	public static void dsStats(GraphStore dsi){
 		int maxTDegree = -1;
 		int minTDegree = Integer.MAX_VALUE;
 		int totalTDegree = 0;
@@ -176,7 +226,7 @@ public class DataSetUtil {
 		}
 	}
 	
-	public static void analyzeHubs(DataSetInterface dsi, List<Integer> sizes){
+	public static void analyzeHubs(GraphStore dsi, List<Integer> sizes){
 		Map<Integer, Integer> mapOut = new HashMap<Integer, Integer>();
 		Map<Integer, Integer> mapIn = new HashMap<Integer, Integer>();
 		Map<Integer, Integer> mapTotal = new HashMap<Integer, Integer>();
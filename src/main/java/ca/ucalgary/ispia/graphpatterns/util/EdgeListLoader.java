@@ -0,0 +1,384 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.IdDictionary;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Loads an edge list file (same format as TxtToDS) directly into a CSRGraph. The file is memory mapped and split
+ * into chunks at line boundaries; the chunks are parsed in parallel with a hand written digit parser.
+ * Lines starting with '#' or '%' (e.g. the SNAP headers) are skipped.
+ *
+ * The chunks are parsed three times. The first pass validates the lines and counts the edges (and lines) in each
+ * chunk, so that every edge gets its global index; the relationship types are then drawn from the given Random in
+ * file order, therefore the types are identical to the ones assigned by TxtToDS for the same seed. The second pass
+ * counts the degree of each (id, relType) in both directions, which gives the CSR offsets; the third pass writes
+ * each edge directly into its slot of the CSR targets arrays. Apart from the types (one byte per edge), no per
+ * edge arrays are built.
+ * @author szrrizvi
+ *
+ */
+public class EdgeListLoader {
+
+	private static final long CHUNK_SIZE = 64L << 20;	//Nominal chunk size: 64MB
+
+	/**
+	 * Reads the given edge list file into a CSRGraph, using all available processors.
+	 * @param fileName The edge list file
+	 * @param random Used for assigning the relationship types
+	 * @return The graph, or null if the file could not be read.
+	 */
+	public static CSRGraph readCSRGraph(String fileName, Random random){
+		return readCSRGraph(fileName, random, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Reads the given edge list file into a CSRGraph.
+	 * @param fileName The edge list file
+	 * @param random Used for assigning the relationship types
+	 * @param numThreads The number of parser threads
+	 * @return The graph, or null if the file could not be read.
+	 */
+	public static CSRGraph readCSRGraph(String fileName, Random random, int numThreads){
+		return readCSRGraph(fileName, random, numThreads, CSRGraph.NO_HUBS);
+	}
+
+	/**
+	 * Reads the given edge list file into a CSRGraph, and builds its hub index.
+	 * @param fileName The edge list file
+	 * @param random Used for assigning the relationship types
+	 * @param numThreads The number of parser threads
+	 * @param hubDegree The minimum degree of a hub neighbourhood (see CSRGraph.buildHubIndex); CSRGraph.NO_HUBS for no hub index
+	 * @return The graph, or null if the file could not be read (e.g. an illegal line, or an id larger than Integer.MAX_VALUE).
+	 */
+	public static CSRGraph readCSRGraph(String fileName, Random random, int numThreads, int hubDegree){
+		ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+		RandomAccessFile raf = null;
+
+		try {
+			raf = new RandomAccessFile(new File(fileName), "r");
+			FileChannel channel = raf.getChannel();
+
+			//Split the file into chunks, at line boundaries
+			List<long[]> chunks = split(channel, Math.max(numThreads * 4L, channel.size() / CHUNK_SIZE + 1));
+			List<MappedByteBuffer> bufs = new ArrayList<MappedByteBuffer>();
+			for (long[] chunk : chunks){
+				bufs.add(channel.map(FileChannel.MapMode.READ_ONLY, chunk[0], chunk[1] - chunk[0]));
+			}
+
+			//First pass: validate the lines, count the edges and lines, and find the largest id, per chunk
+			List<Future<long[]>> counts = runPass(pool, bufs, null, null);
+
+			long[] edgeOffsets = new long[chunks.size() + 1];
+			long lines = 0;
+			int maxId = -1;
+			for (int idx = 0; idx < chunks.size(); idx++){
+				long[] res;
+				try {
+					res = counts.get(idx).get();
+				} catch (ExecutionException e){
+					if (e.getCause() instanceof LineFormatException){
+						LineFormatException lfe = (LineFormatException) e.getCause();
+						System.out.println("Illegal file format at line " + (lines + lfe.line) + ": " + lfe.getMessage());
+						return null;
+					}
+					throw e;
+				}
+				edgeOffsets[idx + 1] = edgeOffsets[idx] + res[0];
+				maxId = Math.max(maxId, (int) res[1]);
+				lines += res[2];
+			}
+			if (edgeOffsets[chunks.size()] > Integer.MAX_VALUE){
+				System.out.println("Too many edges: " + edgeOffsets[chunks.size()]);
+				return null;
+			}
+			int numEdges = (int) edgeOffsets[chunks.size()];
+
+			//Draw the relationship types in file order
+			RelType[] types = RelType.values();
+			final int numRelTypes = types.length;
+			final byte[] type = new byte[numEdges];
+			for (int idx = 0; idx < numEdges; idx++){
+				type[idx] = (byte) types[random.nextInt(types.length)].getIdx();
+			}
+
+			long numIdKeys = (maxId + 1L) * numRelTypes;
+			if (numIdKeys > Integer.MAX_VALUE){
+				System.out.println("Ids too large: " + maxId);
+				return null;
+			}
+
+			//Second pass: count the degrees per (id, relType), in both directions
+			final AtomicIntegerArray outCursor = new AtomicIntegerArray((int) numIdKeys);
+			final AtomicIntegerArray inCursor = new AtomicIntegerArray((int) numIdKeys);
+			waitFor(runPass(pool, bufs, edgeOffsets, new EdgeVisitor(){
+				@Override
+				void edge(int index, int src, int tgt){
+					outCursor.incrementAndGet(src * numRelTypes + type[index]);
+					inCursor.incrementAndGet(tgt * numRelTypes + type[index]);
+				}
+			}));
+
+			//Build the dictionary of the ids that appear in the edge list (ordinals in ascending id order)
+			final int[] idToOrd = new int[maxId + 1];
+			int numNodes = 0;
+			for (int id = 0; id <= maxId; id++){
+				idToOrd[id] = -1;
+				for (int t = 0; t < numRelTypes; t++){
+					if (outCursor.get(id * numRelTypes + t) > 0 || inCursor.get(id * numRelTypes + t) > 0){
+						idToOrd[id] = numNodes;
+						numNodes++;
+						break;
+					}
+				}
+			}
+			int[] ids = new int[numNodes];
+			for (int id = 0; id <= maxId; id++){
+				if (idToOrd[id] >= 0){
+					ids[idToOrd[id]] = id;
+				}
+			}
+			IdDictionary dict = IdDictionary.fromIds(ids, numNodes);
+
+			//The offsets are the prefix sums of the degrees; the cursors start at the offsets
+			int[] outOffsets = new int[numNodes * numRelTypes + 1];
+			int[] inOffsets = new int[numNodes * numRelTypes + 1];
+			for (int ord = 0; ord < numNodes; ord++){
+				for (int t = 0; t < numRelTypes; t++){
+					int key = ord * numRelTypes + t;
+					int idKey = ids[ord] * numRelTypes + t;
+					outOffsets[key + 1] = outOffsets[key] + outCursor.get(idKey);
+					inOffsets[key + 1] = inOffsets[key] + inCursor.get(idKey);
+					outCursor.set(idKey, outOffsets[key]);
+					inCursor.set(idKey, inOffsets[key]);
+				}
+			}
+
+			//Third pass: write the edges directly into their slots
+			final int[] outTargets = new int[numEdges];
+			final int[] inTargets = new int[numEdges];
+			waitFor(runPass(pool, bufs, edgeOffsets, new EdgeVisitor(){
+				@Override
+				void edge(int index, int src, int tgt){
+					outTargets[outCursor.getAndIncrement(src * numRelTypes + type[index])] = idToOrd[tgt];
+					inTargets[inCursor.getAndIncrement(tgt * numRelTypes + type[index])] = idToOrd[src];
+				}
+			}));
+
+			//Create the nodes
+			MyNode[] nodes = new MyNode[numNodes];
+			for (int ord = 0; ord < nodes.length; ord++){
+				nodes[ord] = new MyNode(ids[ord], "");
+			}
+
+			System.out.println("Nodes: " + nodes.length + ", Edges: " + numEdges);
+
+			return CSRGraph.fromAdjacency(dict, numRelTypes, outOffsets, outTargets, inOffsets, inTargets, nodes, hubDegree);
+
+		} catch (IOException e){
+			System.out.println("File not found: " + fileName);
+			return null;
+		} catch (ExecutionException e){
+			System.out.println("Illegal file format: " + e.getCause().getMessage());
+			return null;
+		} catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			return null;
+		} finally {
+			pool.shutdownNow();
+			if (raf != null){
+				try {
+					raf.close();
+				} catch (IOException e){
+					//Ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Receives the edges parsed in a pass.
+	 */
+	private abstract static class EdgeVisitor {
+		/**
+		 * @param index The global index of the edge (in file order)
+		 * @param src The source id
+		 * @param tgt The target id
+		 */
+		abstract void edge(int index, int src, int tgt);
+	}
+
+	/**
+	 * Thrown by parse for an illegal line.
+	 */
+	private static final class LineFormatException extends IllegalArgumentException {
+		private static final long serialVersionUID = 1L;
+
+		private final long line;	//The line number, within the chunk (starting at 1)
+
+		private LineFormatException(long line, String message){
+			super(message);
+			this.line = line;
+		}
+	}
+
+	/**
+	 * Parses all of the chunks in parallel.
+	 * @param pool The parser threads
+	 * @param bufs The chunks
+	 * @param edgeOffsets The global index of the first edge of each chunk (null for the first pass)
+	 * @param visitor Receives the edges (null for the first pass)
+	 * @return The results of parse, per chunk
+	 */
+	private static List<Future<long[]>> runPass(ExecutorService pool, List<MappedByteBuffer> bufs, long[] edgeOffsets, final EdgeVisitor visitor){
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>();
+		for (int idx = 0; idx < bufs.size(); idx++){
+			//Each task works on its own view of the chunk
+			final ByteBuffer buf = bufs.get(idx).duplicate();
+			final int offset = (edgeOffsets == null) ? 0 : (int) edgeOffsets[idx];
+			results.add(pool.submit(new Callable<long[]>(){
+				@Override
+				public long[] call() throws Exception {
+					return parse(buf, visitor, offset);
+				}
+			}));
+		}
+		return results;
+	}
+
+	private static void waitFor(List<Future<long[]>> results) throws InterruptedException, ExecutionException {
+		for (Future<long[]> result : results){
+			result.get();
+		}
+	}
+
+	/**
+	 * Splits the file into (roughly) the given number of chunks. Each chunk ends just after a line break (or at the end of the file).
+	 * @param channel The file channel
+	 * @param numChunks The nominal number of chunks
+	 * @return The list of chunks, as {start, end} byte positions.
+	 */
+	private static List<long[]> split(FileChannel channel, long numChunks) throws IOException {
+		long size = channel.size();
+		long nominal = Math.max(1, size / numChunks);
+		//Keep each chunk mappable
+		nominal = Math.min(nominal, Integer.MAX_VALUE / 2);
+
+		List<long[]> chunks = new ArrayList<long[]>();
+		ByteBuffer probe = ByteBuffer.allocate(4096);
+		long start = 0;
+		while (start < size){
+			long end = Math.min(size, start + nominal);
+
+			//Move the end to just after the next line break
+			boolean found = false;
+			while (end < size && !found){
+				probe.clear();
+				int read = channel.read(probe, end);
+				for (int idx = 0; idx < read; idx++){
+					if (probe.get(idx) == '\n'){
+						end += idx + 1;
+						found = true;
+						break;
+					}
+				}
+				if (!found){
+					end += read;
+				}
+			}
+
+			chunks.add(new long[]{start, end});
+			start = end;
+		}
+		return chunks;
+	}
+
+	/**
+	 * Parses the edges in the given chunk. Each line must contain exactly two non-negative ints (source and target id),
+	 * separated by white space.
+	 * @param buf The chunk
+	 * @param visitor If not null, receives each edge
+	 * @param offset The global index of the first edge in the chunk
+	 * @return {number of edges, largest id, number of lines}
+	 * @throws LineFormatException If a line has an illegal format, or an id is larger than Integer.MAX_VALUE.
+	 */
+	private static long[] parse(ByteBuffer buf, EdgeVisitor visitor, int offset){
+		int limit = buf.limit();
+		int pos = 0;
+		int count = 0;
+		long line = 0;
+		int maxId = -1;
+		int[] vals = new int[2];
+
+		while (pos < limit){
+			byte b = buf.get(pos);
+			line++;
+
+			//Skip comment lines
+			if (b == '#' || b == '%'){
+				while (pos < limit && buf.get(pos) != '\n'){
+					pos++;
+				}
+				pos++;
+				continue;
+			}
+
+			//Parse the numbers on the line
+			int numVals = 0;
+			while (pos < limit && (b = buf.get(pos)) != '\n'){
+				if (b >= '0' && b <= '9'){
+					long val = 0;
+					while (pos < limit && (b = buf.get(pos)) >= '0' && b <= '9'){
+						val = val * 10 + (b - '0');
+						if (val > Integer.MAX_VALUE){
+							throw new LineFormatException(line, "Id out of range (larger than " + Integer.MAX_VALUE + ")");
+						}
+						pos++;
+					}
+					if (numVals < 2){
+						vals[numVals] = (int) val;
+					}
+					numVals++;
+				} else if (b == ' ' || b == '\t' || b == '\r'){
+					pos++;
+				} else {
+					throw new LineFormatException(line, "Illegal character '" + (char) b + "'");
+				}
+			}
+			pos++;
+
+			if (numVals == 0){
+				//Empty line
+				continue;
+			}
+			if (numVals != 2){
+				throw new LineFormatException(line, "Expected 2 ids but found " + numVals);
+			}
+
+			if (visitor != null){
+				visitor.edge(offset + count, vals[0], vals[1]);
+			}
+			maxId = Math.max(maxId, Math.max(vals[0], vals[1]));
+			count++;
+		}
+
+		return new long[]{count, maxId, line};
+	}
+}
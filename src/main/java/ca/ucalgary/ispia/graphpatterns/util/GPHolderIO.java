@@ -0,0 +1,435 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Reads and writes test suites (sequences of GPHolders) in a compact, versioned binary format. Unlike the Java
+ * serialized lists (testCase-N.ser), the format doesn't depend on the class layouts, and the suites are written
+ * and read one GPHolder at a time (see SuiteWriter and SuiteReader), so a suite never needs to fit in memory.
+ *
+ * Layout (DataOutputStream encoding; strings are modified UTF-8):
+ * <pre>
+ * magic, version
+ * for each GPHolder: 1 (byte), record
+ * 0 (byte)
+ *
+ * record:
+ * numNodes, numGpNodes, numNodes x (id, hasLabel (boolean), [label], attributes)
+ * numRels, numRels x (source, target, relType (byte), id, attributes)
+ * numMex, numMex x (first, second)
+ * numActors (-1 if null), numActors x (name, node)
+ * numResults (-1 if null), numResults x (node)
+ *
+ * attributes: numAttrs, numAttrs x (name, value)
+ * </pre>
+ * The nodes are referred to by their index in the record's node table. The first numGpNodes nodes are the nodes of
+ * the graph pattern (in order); the rest are only referenced by the mex list, actMap or result schema.
+ * Shared MyNode objects are written once, therefore the references between the parts of a GPHolder are preserved.
+ * @author szrrizvi
+ *
+ */
+public class GPHolderIO {
+
+	public static final int MAGIC = 0x47504853;	//"GPHS"
+	public static final int VERSION = 1;
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Writes the GPHolders to a suite file, one at a time.
+	 */
+	public static class SuiteWriter implements Closeable {
+
+		private final DataOutputStream out;
+		private int count;		//The number of GPHolders written
+
+		/**
+		 * Creates the suite file (overwritten if it exists), and writes the header.
+		 * @param fileName The suite file
+		 * @throws IOException
+		 */
+		public SuiteWriter(String fileName) throws IOException {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName), BUFFER_SIZE));
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			count = 0;
+		}
+
+		/**
+		 * Appends the given GPHolder to the suite.
+		 * @param gph The GPHolder
+		 * @throws IOException
+		 */
+		public void write(GPHolder gph) throws IOException {
+			GraphPattern gp = gph.getGp();
+
+			//Build the node table; the graph pattern nodes first
+			Map<MyNode, Integer> table = new IdentityHashMap<MyNode, Integer>();
+			List<MyNode> nodes = new ArrayList<MyNode>();
+			for (MyNode node : gp.getNodes()){
+				register(node, table, nodes);
+			}
+			int numGpNodes = nodes.size();
+			List<MyRelationship> rels = gp.getAllRelationships();
+			for (MyRelationship rel : rels){
+				register(rel.getSource(), table, nodes);
+				register(rel.getTarget(), table, nodes);
+			}
+			for (Pair<MyNode, MyNode> mex : gph.getMexList()){
+				register(mex.first, table, nodes);
+				register(mex.second, table, nodes);
+			}
+			if (gph.getActMap() != null){
+				for (MyNode node : gph.getActMap().values()){
+					register(node, table, nodes);
+				}
+			}
+			if (gph.getResultSchema() != null){
+				for (MyNode node : gph.getResultSchema()){
+					register(node, table, nodes);
+				}
+			}
+
+			out.writeByte(1);
+
+			//The nodes
+			out.writeInt(nodes.size());
+			out.writeInt(numGpNodes);
+			for (MyNode node : nodes){
+				out.writeInt(node.getId());
+				out.writeBoolean(node.getLabel() != null);
+				if (node.getLabel() != null){
+					out.writeUTF(node.getLabel());
+				}
+				writeAttributes(node.getAttributes());
+			}
+
+			//The relationships
+			out.writeInt(rels.size());
+			for (MyRelationship rel : rels){
+				out.writeInt(table.get(rel.getSource()));
+				out.writeInt(table.get(rel.getTarget()));
+				out.writeByte(rel.getIdentifier().getIdx());
+				out.writeInt(rel.getId());
+				writeAttributes(rel.getAttributes());
+			}
+
+			//The mutual exclusion constraints
+			out.writeInt(gph.getMexList().size());
+			for (Pair<MyNode, MyNode> mex : gph.getMexList()){
+				out.writeInt(table.get(mex.first));
+				out.writeInt(table.get(mex.second));
+			}
+
+			//The actMap
+			Map<String, MyNode> actMap = gph.getActMap();
+			if (actMap == null){
+				out.writeInt(-1);
+			} else {
+				out.writeInt(actMap.size());
+				for (Map.Entry<String, MyNode> entry : actMap.entrySet()){
+					out.writeUTF(entry.getKey());
+					out.writeInt(table.get(entry.getValue()));
+				}
+			}
+
+			//The result schema
+			List<MyNode> resultSchema = gph.getResultSchema();
+			if (resultSchema == null){
+				out.writeInt(-1);
+			} else {
+				out.writeInt(resultSchema.size());
+				for (MyNode node : resultSchema){
+					out.writeInt(table.get(node));
+				}
+			}
+
+			count++;
+		}
+
+		private static void register(MyNode node, Map<MyNode, Integer> table, List<MyNode> nodes){
+			if (!table.containsKey(node)){
+				table.put(node, nodes.size());
+				nodes.add(node);
+			}
+		}
+
+		private void writeAttributes(Map<String, String> attrs) throws IOException {
+			if (attrs == null){
+				out.writeInt(0);
+				return;
+			}
+			out.writeInt(attrs.size());
+			for (Map.Entry<String, String> entry : attrs.entrySet()){
+				out.writeUTF(entry.getKey());
+				out.writeUTF(entry.getValue());
+			}
+		}
+
+		/**
+		 * @return The number of GPHolders written so far
+		 */
+		public int getCount(){
+			return this.count;
+		}
+
+		/**
+		 * Writes the end marker and closes the file.
+		 */
+		public void close() throws IOException {
+			out.writeByte(0);
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads the GPHolders from a suite file, one at a time.
+	 */
+	public static class SuiteReader implements Closeable {
+
+		private final DataInputStream in;
+		private boolean done;		//True if the end marker has been read
+
+		/**
+		 * Opens the suite file, and checks the header.
+		 * @param fileName The suite file
+		 * @throws IOException If the file can't be read, or isn't a suite file.
+		 */
+		public SuiteReader(String fileName) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName), BUFFER_SIZE));
+			int magic = in.readInt();
+			int version = in.readInt();
+			if (magic != MAGIC){
+				in.close();
+				throw new IOException("Not a GPHolder suite: " + fileName);
+			}
+			if (version != VERSION){
+				in.close();
+				throw new IOException("Unsupported suite version: " + version);
+			}
+			done = false;
+		}
+
+		/**
+		 * Reads the next GPHolder.
+		 * @return The GPHolder, or null if the end of the suite has been reached.
+		 * @throws IOException If the file can't be read, or is truncated.
+		 */
+		public GPHolder read() throws IOException {
+			if (done){
+				return null;
+			}
+
+			byte marker;
+			try {
+				marker = in.readByte();
+			} catch (EOFException e){
+				throw new IOException("Truncated suite (missing end marker)");
+			}
+			if (marker == 0){
+				done = true;
+				return null;
+			}
+
+			//The nodes
+			int numNodes = in.readInt();
+			int numGpNodes = in.readInt();
+			MyNode[] nodes = new MyNode[numNodes];
+			GraphPattern gp = new GraphPattern();
+			for (int idx = 0; idx < numNodes; idx++){
+				int id = in.readInt();
+				String label = in.readBoolean() ? in.readUTF() : null;
+				nodes[idx] = new MyNode(id, label);
+				readAttributes(nodes[idx]);
+				if (idx < numGpNodes){
+					gp.addNode(nodes[idx]);
+				}
+			}
+
+			//The relationships
+			RelType[] types = RelType.values();
+			int numRels = in.readInt();
+			for (int idx = 0; idx < numRels; idx++){
+				MyNode source = nodes[in.readInt()];
+				MyNode target = nodes[in.readInt()];
+				RelType relType = types[in.readByte()];
+				MyRelationship rel = new MyRelationship(source, target, relType, in.readInt());
+				readAttributes(rel);
+				gp.addRelationship(rel);
+			}
+
+			//The mutual exclusion constraints
+			int numMex = in.readInt();
+			List<Pair<MyNode, MyNode>> mexList = new ArrayList<Pair<MyNode, MyNode>>(numMex);
+			for (int idx = 0; idx < numMex; idx++){
+				MyNode first = nodes[in.readInt()];
+				MyNode second = nodes[in.readInt()];
+				mexList.add(new Pair<MyNode, MyNode>(first, second));
+			}
+
+			//The actMap
+			int numActors = in.readInt();
+			Map<String, MyNode> actMap = null;
+			if (numActors >= 0){
+				actMap = new LinkedHashMap<String, MyNode>();
+				for (int idx = 0; idx < numActors; idx++){
+					String name = in.readUTF();
+					actMap.put(name, nodes[in.readInt()]);
+				}
+			}
+
+			GPHolder gph = new GPHolder(gp, mexList, actMap);
+
+			//The result schema
+			int numResults = in.readInt();
+			if (numResults >= 0){
+				List<MyNode> resultSchema = new ArrayList<MyNode>(numResults);
+				for (int idx = 0; idx < numResults; idx++){
+					resultSchema.add(nodes[in.readInt()]);
+				}
+				gph.setResultSchema(resultSchema);
+			} else {
+				gph.setResultSchema(null);
+			}
+
+			return gph;
+		}
+
+		private void readAttributes(MyNode node) throws IOException {
+			int numAttrs = in.readInt();
+			for (int idx = 0; idx < numAttrs; idx++){
+				String name = in.readUTF();
+				node.addAttribute(name, in.readUTF());
+			}
+		}
+
+		private void readAttributes(MyRelationship rel) throws IOException {
+			int numAttrs = in.readInt();
+			for (int idx = 0; idx < numAttrs; idx++){
+				String name = in.readUTF();
+				rel.addAttribute(name, in.readUTF());
+			}
+		}
+
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the given GPHolders to a suite file.
+	 * @param tests The GPHolders
+	 * @param fileName The suite file
+	 * @return True if the suite was written, else false.
+	 */
+	public static boolean writeAll(List<GPHolder> tests, String fileName){
+		SuiteWriter writer = null;
+		try {
+			writer = new SuiteWriter(fileName);
+			for (GPHolder gph : tests){
+				writer.write(gph);
+			}
+			writer.close();
+			writer = null;
+			return true;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return false;
+		} finally {
+			if (writer != null){
+				//Incomplete suite; close without the end marker, so that it is not read as complete
+				closeQuietly(writer.out);
+			}
+		}
+	}
+
+	/**
+	 * Reads all of the GPHolders from a suite file. Use SuiteReader for large suites.
+	 * @param fileName The suite file
+	 * @return The GPHolders, or null if the suite could not be read.
+	 */
+	public static List<GPHolder> readAll(String fileName){
+		SuiteReader reader = null;
+		try {
+			reader = new SuiteReader(fileName);
+			List<GPHolder> tests = new ArrayList<GPHolder>();
+			GPHolder gph;
+			while ((gph = reader.read()) != null){
+				tests.add(gph);
+			}
+			return tests;
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return null;
+		} finally {
+			closeQuietly(reader);
+		}
+	}
+
+	/**
+	 * Converts a Java serialized list of GPHolders (e.g. performance-tests/testCase-N.ser) to a suite file.
+	 * @param serFile The serialized list
+	 * @param fileName The suite file
+	 * @return The number of GPHolders converted, or -1 if the conversion failed.
+	 */
+	@SuppressWarnings("unchecked")
+	public static int convert(String serFile, String fileName){
+		List<GPHolder> tests = null;
+		ObjectInputStream ois = null;
+		try {
+			ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(serFile), BUFFER_SIZE));
+			tests = (List<GPHolder>) ois.readObject();
+		} catch (IOException e){
+			System.out.println("IOException" + e);
+			return -1;
+		} catch (ClassNotFoundException e){
+			System.out.println("ClassNotFoundException" + e);
+			return -1;
+		} finally {
+			closeQuietly(ois);
+		}
+
+		if (!writeAll(tests, fileName)){
+			return -1;
+		}
+		return tests.size();
+	}
+
+	private static void closeQuietly(Closeable closeable){
+		if (closeable != null){
+			try {
+				closeable.close();
+			} catch (IOException e){
+				//Ignore
+			}
+		}
+	}
+
+	public static void main(String[] args){
+		if (args.length != 2){
+			System.out.println("Usage: GPHolderIO <input .ser file> <output suite file>");
+			return;
+		}
+		System.out.println("Converted " + convert(args[0], args[1]) + " tests");
+	}
+}
@@ -1,11 +1,14 @@
 package ca.ucalgary.ispia.graphpatterns.util;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import ca.ucalgary.ispia.graphpatterns.graph.CompiledPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
 import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
 import ca.ucalgary.ispia.graphpatterns.graph.MyDirection;
@@ -27,8 +30,10 @@ public class Translator {
 		
 		StringBuilder sb = new StringBuilder();
 		
-		for (MyRelationship rel : rels){
-			sb.append("MATCH (a" + rel.getSource().getId() + ":PERSON) -[b" + rel.getId() +" : " + rel.getIdentifier() + "]->(a"+rel.getTarget().getId()+":PERSON) \n");
+		//The relationship variables are numbered by position, since the relationship ids are not necessarily unique
+		for (int idx = 0; idx < rels.size(); idx++){
+			MyRelationship rel = rels.get(idx);
+			sb.append("MATCH (a" + rel.getSource().getId() + ":PERSON) -[b" + idx +" : " + rel.getIdentifier() + "]->(a"+rel.getTarget().getId()+":PERSON) \n");
 			seenNodes.add(rel.getSource());
 			seenNodes.add(rel.getTarget());
 		}
@@ -71,7 +76,8 @@ public class Translator {
 		}
 		
 		
-		for (MyRelationship rel : rels){
+		for (int idx = 0; idx < rels.size(); idx++){
+			MyRelationship rel = rels.get(idx);
 			if (rel.hasAttributes()){
 				if (first){
 					sb.append("WHERE ");
@@ -88,7 +94,7 @@ public class Translator {
 					} else {
 						sb.append("AND ");
 					}
-					sb.append("b"+rel.getId()+ ".`" + key + "`=");
+					sb.append("b"+idx+ ".`" + key + "`=");
 					
 					if (AttributeTypes.isIntType(key) || key.equals("id")){
 						sb.append(rel.getAttribute(key) + " ");
@@ -126,6 +132,205 @@ public class Translator {
 		return sb.toString();
 	}
 	
+	/**
+	 * Translates the graph pattern into a parameterized Cypher query. The variables are named by position (a0, a1, ...
+	 * for the nodes in the order of GraphPattern.getNodes(), and b0, b1, ... for the relationships), and the attribute
+	 * values are passed as parameters ($p0, $p1, ...), so graph patterns of the same shape produce the same query text
+	 * and Neo4j can reuse the cached plan instead of replanning every query.
+	 *
+	 * Planner hints are generated from the structure of the graph pattern:
+	 * - USING INDEX for each node that has an attribute in indexedKeys (the first such attribute).
+	 * - USING JOIN ON, if at least two nodes are anchored by index seeks, on the node where the expansions from the
+	 *   anchors meet (the unanchored node with the least total distance to the anchors, ties broken by degree).
+	 * The hints must refer to existing indexes on :PERSON (see Neo4jQueries.getIndexedKeys).
+	 * @param gph The target graph pattern
+	 * @param indexedKeys The node attribute keys indexed on :PERSON; if null or empty then no hints are generated.
+	 * @return The parameterized Cypher query
+	 */
+	public static CypherQuery translateToParameterizedCypher(GPHolder gph, Set<String> indexedKeys){
+		CompiledPattern cp = gph.getGp().compile();
+		List<MyRelationship> rels = gph.getGp().getAllRelationships();
+		Map<String, Object> params = new LinkedHashMap<String, Object>();
+		
+		StringBuilder sb = new StringBuilder("MATCH ");
+		boolean[] seen = new boolean[cp.getNumVars()];
+		boolean first = true;
+		
+		//The relationship variables are numbered by position, since the relationship ids are not necessarily unique
+		for (int idx = 0; idx < rels.size(); idx++){
+			MyRelationship rel = rels.get(idx);
+			if (first){
+				first = false;
+			} else {
+				sb.append(", ");
+			}
+			int src = cp.indexOf(rel.getSource());
+			int tgt = cp.indexOf(rel.getTarget());
+			sb.append(nodePattern(src, seen) + "-[b" + idx + ":" + rel.getIdentifier() + "]->" + nodePattern(tgt, seen));
+		}
+		
+		for (int v = 0; v < cp.getNumVars(); v++){
+			if (!seen[v]){
+				if (first){
+					first = false;
+				} else {
+					sb.append(", ");
+				}
+				sb.append(nodePattern(v, seen));
+			}
+		}
+		sb.append("\n");
+		
+		//The index hints
+		List<Integer> anchors = new ArrayList<Integer>();
+		if (indexedKeys != null && !indexedKeys.isEmpty()){
+			for (int v = 0; v < cp.getNumVars(); v++){
+				MyNode node = cp.getVar(v);
+				if (node.hasAttributes()){
+					for (String key : node.getAttributes().keySet()){
+						if (indexedKeys.contains(key)){
+							sb.append("USING INDEX a" + v + ":PERSON(`" + key + "`)\n");
+							anchors.add(v);
+							break;
+						}
+					}
+				}
+			}
+		}
+		
+		//The join hint
+		int join = joinVar(cp, anchors);
+		if (join != -1){
+			sb.append("USING JOIN ON a" + join + "\n");
+		}
+		
+		first = true;
+		for (int v = 0; v < cp.getNumVars(); v++){
+			MyNode node = cp.getVar(v);
+			if (node.hasAttributes()){
+				for (String key : node.getAttributes().keySet()){
+					sb.append(first ? "WHERE " : "AND ");
+					first = false;
+					sb.append("a" + v + ".`" + key + "`=" + param(params, key, node.getAttribute(key)) + " ");
+				}
+			}
+		}
+		
+		for (int idx = 0; idx < rels.size(); idx++){
+			MyRelationship rel = rels.get(idx);
+			if (rel.hasAttributes()){
+				for (String key : rel.getAttributes().keySet()){
+					sb.append(first ? "WHERE " : "AND ");
+					first = false;
+					sb.append("b" + idx + ".`" + key + "`=" + param(params, key, rel.getAttribute(key)) + " ");
+				}
+			}
+		}
+		
+		for (Pair<MyNode, MyNode> mex : gph.getMexList()){
+			sb.append(first ? "WHERE " : "AND ");
+			first = false;
+			sb.append("a" + cp.indexOf(mex.first) + "<>a" + cp.indexOf(mex.second) + " ");
+		}
+		
+		first = true;
+		for (MyNode node : gph.getResultSchema()){
+			sb.append(first ? "\nRETURN distinct " : ",");
+			first = false;
+			sb.append("a" + cp.indexOf(node));
+		}
+		
+		return new CypherQuery(sb.toString(), params);
+	}
+	
+	/**
+	 * @return The node pattern for the given variable; the label is only included at the first occurrence.
+	 */
+	private static String nodePattern(int v, boolean[] seen){
+		if (seen[v]){
+			return "(a" + v + ")";
+		}
+		seen[v] = true;
+		return "(a" + v + ":PERSON)";
+	}
+	
+	/**
+	 * Adds the value as the next parameter. The values of the int attributes (and "id") are passed as Integers, so they
+	 * match the stored properties and can use the indexes.
+	 * @return The parameter placeholder
+	 */
+	private static String param(Map<String, Object> params, String key, String value){
+		String name = "p" + params.size();
+		Object val = value;
+		if (AttributeTypes.isIntType(key) || key.equals("id")){
+			try {
+				val = Integer.parseInt(value);
+			} catch (NumberFormatException e){
+				//Pass as string
+			}
+		}
+		params.put(name, val);
+		return "$" + name;
+	}
+	
+	/**
+	 * Finds the node where the expansions from the anchors should meet: the node that is not an anchor, has at least
+	 * two relationships, is reachable from all of the anchors, and has the least total (undirected) distance to the anchors.
+	 * Ties are broken by the higher degree, then the lower index.
+	 * @param cp The compiled graph pattern
+	 * @param anchors The indexes of the anchored nodes
+	 * @return The index of the join node, or -1 if there are less than two anchors or there is no such node.
+	 */
+	private static int joinVar(CompiledPattern cp, List<Integer> anchors){
+		if (anchors.size() < 2){
+			return -1;
+		}
+		
+		int n = cp.getNumVars();
+		int[] total = new int[n];
+		boolean[] reachable = new boolean[n];
+		Arrays.fill(reachable, true);
+		
+		int[] dist = new int[n];
+		int[] queue = new int[n];
+		for (int anchor : anchors){
+			//Breadth first search from the anchor
+			Arrays.fill(dist, -1);
+			dist[anchor] = 0;
+			queue[0] = anchor;
+			int head = 0, tail = 1;
+			while (head < tail){
+				int v = queue[head++];
+				for (int k = 0; k < cp.getDegree(v); k++){
+					int other = cp.getOther(v, k);
+					if (dist[other] == -1){
+						dist[other] = dist[v] + 1;
+						queue[tail++] = other;
+					}
+				}
+			}
+			
+			for (int v = 0; v < n; v++){
+				if (dist[v] == -1){
+					reachable[v] = false;
+				} else {
+					total[v] += dist[v];
+				}
+			}
+		}
+		
+		int best = -1;
+		for (int v = 0; v < n; v++){
+			if (!reachable[v] || anchors.contains(v) || cp.getDegree(v) < 2){
+				continue;
+			}
+			if (best == -1 || total[v] < total[best] || (total[v] == total[best] && cp.getDegree(v) > cp.getDegree(best))){
+				best = v;
+			}
+		}
+		return best;
+	}
+	
 	/**
 	 * A naive method for translating graph patterns into Cypher queries.
 	 * This method treats each edge separately, and produces a "MATCH" statement
@@ -0,0 +1,119 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * Tests IntBitmap against sorted int arrays, for sparse (array) and dense (bitmap) chunks.
+ * @author szrrizvi
+ *
+ */
+public class IntBitmapTest {
+
+	/**
+	 * Returns count distinct random values below bound, sorted.
+	 */
+	private static int[] randomSorted(Random rand, int count, int bound){
+		Set<Integer> vals = new TreeSet<Integer>();
+		while (vals.size() < count){
+			vals.add(rand.nextInt(bound));
+		}
+		int[] result = new int[count];
+		int pos = 0;
+		for (int val : vals){
+			result[pos] = val;
+			pos++;
+		}
+		return result;
+	}
+
+	private static int[] intersect(int[] first, int[] second){
+		Set<Integer> vals = new TreeSet<Integer>();
+		for (int val : first){
+			vals.add(val);
+		}
+		Set<Integer> common = new TreeSet<Integer>();
+		for (int val : second){
+			if (vals.contains(val)){
+				common.add(val);
+			}
+		}
+		int[] result = new int[common.size()];
+		int pos = 0;
+		for (int val : common){
+			result[pos] = val;
+			pos++;
+		}
+		return result;
+	}
+
+	@Test
+	public void testFromSorted(){
+		Random rand = new Random(1);
+		//Sparse chunks, a dense chunk, and values spread over several chunks
+		int[][] inputs = {randomSorted(rand, 100, 1 << 16), randomSorted(rand, 10000, 1 << 16), randomSorted(rand, 20000, 1 << 20)};
+		for (int[] vals : inputs){
+			IntBitmap bitmap = IntBitmap.fromSorted(vals, 0, vals.length);
+			assertEquals(vals.length, bitmap.cardinality());
+			assertArrayEquals(vals, bitmap.toArray());
+			for (int val : vals){
+				assertTrue(bitmap.contains(val));
+			}
+		}
+	}
+
+	@Test
+	public void testContains(){
+		int[] vals = {0, 5, 65535, 65536, 1 << 20, Integer.MAX_VALUE};
+		IntBitmap bitmap = IntBitmap.fromSorted(vals, 1, 5);
+		assertFalse(bitmap.contains(0));
+		assertTrue(bitmap.contains(5));
+		assertTrue(bitmap.contains(65536));
+		assertFalse(bitmap.contains(65537));
+		assertFalse(bitmap.contains(Integer.MAX_VALUE));
+		assertFalse(bitmap.contains(-1));
+		assertEquals(0, IntBitmap.fromSorted(vals, 2, 2).cardinality());
+	}
+
+	@Test
+	public void testAnd(){
+		Random rand = new Random(2);
+		//All combinations of sparse and dense chunks, over a few chunks
+		int[] sizes = {0, 50, 3000, 30000, 120000};
+		for (int firstSize : sizes){
+			for (int secondSize : sizes){
+				int[] first = randomSorted(rand, firstSize, 1 << 18);
+				int[] second = randomSorted(rand, secondSize, 1 << 18);
+				IntBitmap result = IntBitmap.fromSorted(first, 0, first.length).and(IntBitmap.fromSorted(second, 0, second.length));
+
+				int[] expected = intersect(first, second);
+				assertEquals(expected.length, result.cardinality());
+				assertArrayEquals(expected, result.toArray());
+			}
+		}
+	}
+
+	@Test
+	public void testAndDenseToSparse(){
+		//Two dense chunks with a small intersection
+		int[] evens = new int[5000];
+		int[] odds = new int[5000];
+		for (int i = 0; i < 5000; i++){
+			evens[i] = 2 * i;
+			odds[i] = 2 * i + 1;
+		}
+		odds[0] = 0;
+		IntBitmap result = IntBitmap.fromSorted(evens, 0, evens.length).and(IntBitmap.fromSorted(odds, 0, odds.length));
+		assertArrayEquals(new int[]{0}, result.toArray());
+		assertTrue(result.contains(0));
+		assertFalse(result.contains(2));
+	}
+}
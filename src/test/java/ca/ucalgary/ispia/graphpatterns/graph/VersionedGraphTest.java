@@ -0,0 +1,227 @@
+package ca.ucalgary.ispia.graphpatterns.graph;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Tests the snapshot isolation of VersionedGraph against a set-based model.
+ * @author szrrizvi
+ *
+ */
+public class VersionedGraphTest {
+
+	private static final RelType[] TYPES = RelType.values();
+
+	/**
+	 * Builds a versioned graph over numNodes nodes (ids 0, 3, 6, ...) with numRels random relationships, and
+	 * records the relationships in the model as "src:tgt:type".
+	 */
+	private static VersionedGraph build(Random rand, int numNodes, int numRels, Set<String> model){
+		DataSet ds = new DataSet();
+		List<MyNode> nodes = new ArrayList<MyNode>();
+		for (int i = 0; i < numNodes; i++){
+			MyNode node = new MyNode(i * 3, "");
+			ds.addNode(node);
+			nodes.add(node);
+		}
+		for (int i = 0; i < numRels; i++){
+			MyNode src = nodes.get(rand.nextInt(numNodes));
+			MyNode tgt = nodes.get(rand.nextInt(numNodes));
+			RelType type = TYPES[rand.nextInt(TYPES.length)];
+			ds.addRelationship(new MyRelationship(src, tgt, type, i));
+			model.add(key(src.getId(), tgt.getId(), type));
+		}
+		return new VersionedGraph(CSRGraph.fromDataSet(ds, 3));
+	}
+
+	private static String key(int src, int tgt, RelType type){
+		return src + ":" + tgt + ":" + type.getIdx();
+	}
+
+	/**
+	 * Collects the relationships of the snapshot, in the given direction, as "src:tgt:type".
+	 */
+	private static Set<String> edges(GraphSnapshot snapshot, MyDirection dir){
+		Set<String> result = new HashSet<String>();
+		for (MyNode node : snapshot.getNodes()){
+			for (RelType type : TYPES){
+				for (MyNode other : snapshot.getNeighbours(node, type, dir)){
+					if (dir == MyDirection.OUTGOING){
+						result.add(key(node.getId(), other.getId(), type));
+					} else {
+						result.add(key(other.getId(), node.getId(), type));
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	@Test
+	public void testAddRemove(){
+		VersionedGraph graph = new VersionedGraph(CSRGraph.fromDataSet(new DataSet(), CSRGraph.NO_HUBS));
+
+		assertTrue(graph.addRelationship(1, 2, TYPES[0]));
+		assertFalse(graph.addRelationship(1, 2, TYPES[0]));
+		assertEquals(1, graph.getVersion());
+
+		GraphSnapshot before = graph.snapshot();
+		assertTrue(graph.removeRelationship(1, 2, TYPES[0]));
+		assertFalse(graph.removeRelationship(1, 2, TYPES[0]));
+
+		assertTrue(before.hasEdge(1, 2, TYPES[0].getIdx()));
+		assertFalse(graph.snapshot().hasEdge(1, 2, TYPES[0].getIdx()));
+		assertNull(before.findNode(5));
+	}
+
+	@Test
+	public void testSnapshotsMatchModel(){
+		Random rand = new Random(5);
+		Set<String> model = new HashSet<String>();
+		VersionedGraph graph = build(rand, 100, 400, model);
+
+		List<GraphSnapshot> snapshots = new ArrayList<GraphSnapshot>();
+		List<Set<String>> models = new ArrayList<Set<String>>();
+		for (int step = 0; step < 20000; step++){
+			int src = rand.nextInt(150) * 3;
+			int tgt = rand.nextInt(150) * 3;
+			RelType type = TYPES[rand.nextInt(TYPES.length)];
+			String key = key(src, tgt, type);
+			if (rand.nextBoolean()){
+				assertEquals(model.add(key), graph.addRelationship(src, tgt, type));
+			} else {
+				assertEquals(model.remove(key), graph.removeRelationship(src, tgt, type));
+			}
+			if (step % 997 == 0){
+				snapshots.add(graph.snapshot());
+				models.add(new HashSet<String>(model));
+			}
+			if (step % 3001 == 0){
+				graph.compact();
+			}
+		}
+		snapshots.add(graph.snapshot());
+		models.add(model);
+
+		for (int i = 0; i < snapshots.size(); i++){
+			assertEquals("snapshot " + i, models.get(i), edges(snapshots.get(i), MyDirection.OUTGOING));
+			assertEquals("snapshot " + i, models.get(i), edges(snapshots.get(i), MyDirection.INCOMING));
+		}
+	}
+
+	/**
+	 * A single writer keeps growing one segment, while the readers take snapshots and check that each snapshot
+	 * sees exactly the first version targets, in order, however often it is read.
+	 */
+	@Test
+	public void testConcurrentSnapshots() throws InterruptedException {
+		final int numWrites = 20000;
+		final VersionedGraph graph = new VersionedGraph(CSRGraph.fromDataSet(new DataSet(), CSRGraph.NO_HUBS));
+		final AtomicReference<String> failure = new AtomicReference<String>();
+
+		Thread[] readers = new Thread[3];
+		for (int t = 0; t < readers.length; t++){
+			readers[t] = new Thread(){
+				public void run(){
+					while (failure.get() == null){
+						GraphSnapshot snapshot = graph.snapshot();
+						int version = (int) snapshot.getVersion();
+						int[] expected = new int[version];
+						for (int i = 0; i < version; i++){
+							expected[i] = i + 1;
+						}
+						for (int rep = 0; rep < 2; rep++){
+							int[] got = snapshot.neighbours(0, TYPES[0].getIdx(), MyDirection.OUTGOING);
+							if (!Arrays.equals(expected, got)){
+								failure.compareAndSet(null, "version " + version + ": " + got.length + " neighbours");
+							}
+						}
+						if (version == numWrites){
+							return;
+						}
+					}
+				}
+			};
+			readers[t].start();
+		}
+
+		for (int i = 1; i <= numWrites && failure.get() == null; i++){
+			graph.addRelationship(0, i, TYPES[0]);
+		}
+		for (Thread reader : readers){
+			reader.join();
+		}
+		assertNull(failure.get());
+	}
+
+	/**
+	 * Checks that the background compaction does not affect a snapshot that is read concurrently.
+	 */
+	@Test
+	public void testConcurrentCompaction() throws InterruptedException {
+		Random rand = new Random(7);
+		Set<String> model = new HashSet<String>();
+		final VersionedGraph graph = build(rand, 100, 400, model);
+		for (int step = 0; step < 2000; step++){
+			int src = rand.nextInt(150) * 3;
+			int tgt = rand.nextInt(150) * 3;
+			RelType type = TYPES[rand.nextInt(TYPES.length)];
+			if (rand.nextBoolean() ? graph.addRelationship(src, tgt, type) : graph.removeRelationship(src, tgt, type)){
+				String key = key(src, tgt, type);
+				if (!model.remove(key)){
+					model.add(key);
+				}
+			}
+		}
+
+		final GraphSnapshot fixed = graph.snapshot();
+		final Set<String> fixedModel = model;
+		final AtomicReference<String> failure = new AtomicReference<String>();
+		Thread[] readers = new Thread[3];
+		for (int t = 0; t < readers.length; t++){
+			readers[t] = new Thread(){
+				public void run(){
+					for (int it = 0; it < 30; it++){
+						if (!fixedModel.equals(edges(fixed, MyDirection.OUTGOING))){
+							failure.compareAndSet(null, "iteration " + it);
+						}
+					}
+				}
+			};
+			readers[t].start();
+		}
+
+		graph.startCompaction(1, TimeUnit.MILLISECONDS, 50);
+		try {
+			for (int step = 0; step < 20000; step++){
+				int src = rand.nextInt(150) * 3;
+				int tgt = rand.nextInt(150) * 3;
+				RelType type = TYPES[rand.nextInt(TYPES.length)];
+				if (rand.nextBoolean()){
+					graph.addRelationship(src, tgt, type);
+				} else {
+					graph.removeRelationship(src, tgt, type);
+				}
+			}
+			for (Thread reader : readers){
+				reader.join();
+			}
+		} finally {
+			graph.stopCompaction();
+		}
+		assertNull(failure.get());
+	}
+}
@@ -0,0 +1,226 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Tests CypherParser: the supported subset, parameters, decimals, hints, the Translator round trip and the rejected syntax.
+ * @author szrrizvi
+ *
+ */
+public class CypherParserTest {
+
+	/**
+	 * Asserts that the query is rejected with an IllegalArgumentException that mentions the given text.
+	 */
+	private static void assertRejected(String query, String message){
+		try {
+			CypherParser.parse(query);
+			fail("Expected the query to be rejected: " + query);
+		} catch (IllegalArgumentException e){
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	/**
+	 * Describes the relationships by the "name" attributes of their end points, so patterns can be compared
+	 * regardless of the node numbering.
+	 */
+	private static Set<String> describe(GraphPattern gp){
+		Set<String> result = new HashSet<String>();
+		for (MyRelationship rel : gp.getAllRelationships()){
+			result.add(rel.getSource().getAttribute("name") + "-" + rel.getIdentifier() + rel.getAttributes() + "->" + rel.getTarget().getAttribute("name"));
+		}
+		return result;
+	}
+
+	@Test
+	public void testPattern(){
+		GPHolder gph = CypherParser.parse("MATCH (a:PERSON {name:'x'})-[:RelA]->(b:PERSON)<-[r:RelB {w:1}]-(c)\n"
+				+ "WHERE b.age = 42 AND a <> c AND r.v = \"y\"\n"
+				+ "RETURN DISTINCT a, b.age AS age LIMIT 10;");
+
+		List<MyNode> nodes = gph.getGp().getNodes();
+		assertEquals(3, nodes.size());
+		MyNode a = nodes.get(0), b = nodes.get(1), c = nodes.get(2);
+		assertEquals(0, a.getId());
+		assertEquals("PERSON", a.getLabel());
+		assertEquals("", c.getLabel());
+		assertEquals("x", a.getAttribute("name"));
+		assertEquals("42", b.getAttribute("age"));
+
+		List<MyRelationship> rels = gph.getGp().getAllRelationships();
+		assertEquals(2, rels.size());
+		for (MyRelationship rel : rels){
+			if (rel.getIdentifier() == RelType.RelA){
+				assertEquals(a, rel.getSource());
+				assertEquals(b, rel.getTarget());
+				assertTrue(rel.getAttributes().isEmpty());
+			} else {
+				//The incoming relationship is stored from c to b
+				assertEquals(RelType.RelB, rel.getIdentifier());
+				assertEquals(c, rel.getSource());
+				assertEquals(b, rel.getTarget());
+				assertEquals("1", rel.getAttribute("w"));
+				assertEquals("y", rel.getAttribute("v"));
+			}
+		}
+
+		assertEquals(Arrays.asList(new Pair<MyNode, MyNode>(a, c)), gph.getMexList());
+		assertEquals(Arrays.asList(a, b), gph.getResultSchema());
+	}
+
+	@Test
+	public void testParameters(){
+		Map<String, Object> params = new HashMap<String, Object>();
+		params.put("p0", "x");
+		params.put("p1", 42);
+		GPHolder gph = CypherParser.parse(new CypherQuery("MATCH (a)-[:RelC]->(b) WHERE a.name = $p0 AND b.age = $p1 RETURN a", params));
+
+		assertEquals("x", gph.getGp().getNodes().get(0).getAttribute("name"));
+		assertEquals("42", gph.getGp().getNodes().get(1).getAttribute("age"));
+
+		try {
+			CypherParser.parse(new CypherQuery("MATCH (a) WHERE a.name = $p2 RETURN a", params));
+			fail("Expected the unknown parameter to be rejected");
+		} catch (IllegalArgumentException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("Unknown parameter $p2"));
+		}
+
+		//Without any values
+		assertRejected("MATCH (a) WHERE a.name = $p0 RETURN a", "Unknown parameter $p0");
+		assertRejected("MATCH (a) WHERE a.name = $ RETURN a", "Expected a parameter name after $");
+	}
+
+	@Test
+	public void testNumbers(){
+		GPHolder gph = CypherParser.parse("MATCH (a {w:3.5, v:-2, z:-0.25}) RETURN a");
+		MyNode a = gph.getGp().getNodes().get(0);
+		assertEquals("3.5", a.getAttribute("w"));
+		assertEquals("-2", a.getAttribute("v"));
+		assertEquals("-0.25", a.getAttribute("z"));
+
+		assertRejected("MATCH (a {w:3.}) RETURN a", "Expected the decimal part of 3.");
+		assertRejected("MATCH (a) WHERE a.w = 3.x RETURN a", "Expected the decimal part of 3.");
+	}
+
+	@Test
+	public void testHints(){
+		GPHolder gph = CypherParser.parse("MATCH (a:PERSON)-[:RelA]->(b:PERSON), (c:PERSON)-[:RelB]->(b)\n"
+				+ "USING INDEX a:PERSON(`name`)\n"
+				+ "USING INDEX c:PERSON(age)\n"
+				+ "USING JOIN ON b\n"
+				+ "WHERE a.name = 'x' AND c.age = 3\n"
+				+ "RETURN a, b, c");
+		assertEquals(3, gph.getGp().getNodes().size());
+		assertEquals(2, gph.getGp().getAllRelationships().size());
+
+		assertRejected("MATCH (a) USING SCAN a:PERSON RETURN a", "Expected INDEX or JOIN");
+		assertRejected("MATCH (a) USING JOIN b RETURN a", "Expected ON");
+	}
+
+	@Test
+	public void testTranslatorRoundTrip(){
+		GraphPattern gp = new GraphPattern();
+		MyNode[] nodes = new MyNode[4];
+		for (int idx = 0; idx < nodes.length; idx++){
+			nodes[idx] = new MyNode(idx, "PERSON");
+			nodes[idx].addAttribute("name", "n" + idx);
+			gp.addNode(nodes[idx]);
+		}
+		nodes[1].addAttribute("age", "30");
+		gp.addRelationship(new MyRelationship(nodes[0], nodes[1], RelType.RelA, 0));
+		gp.addRelationship(new MyRelationship(nodes[2], nodes[1], RelType.RelB, 1));
+		MyRelationship rel = new MyRelationship(nodes[1], nodes[3], RelType.RelA, 2);
+		rel.addAttribute("since", "2001");
+		gp.addRelationship(rel);
+
+		List<Pair<MyNode, MyNode>> mexList = new ArrayList<Pair<MyNode, MyNode>>();
+		mexList.add(new Pair<MyNode, MyNode>(nodes[0], nodes[2]));
+		GPHolder gph = new GPHolder(gp, mexList, new HashMap<String, MyNode>());
+		gph.setResultSchema(Arrays.asList(nodes[0], nodes[3]));
+
+		List<GPHolder> parsed = new ArrayList<GPHolder>();
+		parsed.add(CypherParser.parse(Translator.translateToCypher(gph)));
+		parsed.add(CypherParser.parse(Translator.translateToParameterizedCypher(gph, null)));
+		parsed.add(CypherParser.parse(Translator.translateToParameterizedCypher(gph, new HashSet<String>(Arrays.asList("name")))));
+
+		for (GPHolder result : parsed){
+			assertEquals(describe(gp), describe(result.getGp()));
+			assertEquals(4, result.getGp().getNodes().size());
+
+			for (MyNode node : result.getGp().getNodes()){
+				int idx = Integer.parseInt(node.getAttribute("name").substring(1));
+				assertEquals(nodes[idx].getAttributes(), node.getAttributes());
+			}
+
+			assertEquals(1, result.getMexList().size());
+			Pair<MyNode, MyNode> mex = result.getMexList().get(0);
+			assertEquals("n0", mex.first.getAttribute("name"));
+			assertEquals("n2", mex.second.getAttribute("name"));
+
+			assertEquals(2, result.getResultSchema().size());
+			assertEquals("n0", result.getResultSchema().get(0).getAttribute("name"));
+			assertEquals("n3", result.getResultSchema().get(1).getAttribute("name"));
+		}
+	}
+
+	@Test
+	public void testQueryReader() throws IOException {
+		CypherParser.QueryReader reader = new CypherParser.QueryReader(new StringReader(
+				"//The first query\n"
+				+ "PROFILE MATCH (a)-[:RelA]->(b) RETURN a;;\n"
+				+ "match (a)<-[:RelD]-(b) return b\n"
+				+ "EXPLAIN MATCH (`the node`) RETURN `the node`;\n"));
+		try {
+			assertEquals(2, reader.read().getGp().getNodes().size());
+			assertEquals(RelType.RelD, reader.read().getGp().getAllRelationships().get(0).getIdentifier());
+			assertEquals(1, reader.read().getResultSchema().size());
+			assertNull(reader.read());
+		} finally {
+			reader.close();
+		}
+
+		assertRejected("MATCH (a) RETURN a; MATCH (b) RETURN b", "Expected a single query");
+		assertRejected(" ; ", "Empty query");
+	}
+
+	@Test
+	public void testUnsupported(){
+		assertRejected("MATCH (a)-[:RelA]-(b) RETURN a", "Relationships must have exactly one direction");
+		assertRejected("MATCH (a)<-[:RelA]->(b) RETURN a", "Relationships must have exactly one direction");
+		assertRejected("MATCH (a)-->(b) RETURN a", "Relationships must have a type");
+		assertRejected("MATCH (a)-[:RelA*2]->(b) RETURN a", "Unexpected character '*'");
+		assertRejected("MATCH (a)-[:KNOWS]->(b) RETURN a", "Unknown relationship type KNOWS");
+		assertRejected("MATCH (a), (b) WHERE a.name = 'x' OR b.name = 'y' RETURN a", "Expected RETURN");
+		assertRejected("MATCH (a) WHERE NOT a.name = 'x' RETURN a", "Expected . or <>");
+		assertRejected("MATCH (a) WHERE a.age > 3 RETURN a", "Expected =, found '>'");
+		assertRejected("MATCH (a {name:'x'}) WHERE a.name = 'y' RETURN a", "Conflicting requirements for name");
+		assertRejected("MATCH (a) WHERE a <> b RETURN a", "Unknown node variable b");
+		assertRejected("MATCH (a)-[r:RelA]->(b) RETURN r", "Unknown node variable r");
+		assertRejected("MATCH (a)-[a:RelA]->(b) RETURN b", "Variable a is already defined");
+		assertRejected("MATCH (a {name:'x) RETURN a", "Unterminated string");
+		assertRejected("CREATE (a) RETURN a", "Expected MATCH");
+		assertRejected("MATCH (a) RETURN a /", "Unexpected character '/'");
+	}
+}
@@ -0,0 +1,106 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ca.ucalgary.ispia.graphpatterns.graph.CSRGraph;
+import ca.ucalgary.ispia.graphpatterns.graph.DataSet;
+import ca.ucalgary.ispia.graphpatterns.graph.IntSlice;
+import ca.ucalgary.ispia.graphpatterns.graph.MyDirection;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Tests EdgeListLoader against TxtToDS, and its handling of illegal files.
+ * @author szrrizvi
+ *
+ */
+public class EdgeListLoaderTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File write(String content) throws IOException {
+		File file = folder.newFile();
+		PrintWriter writer = new PrintWriter(file, "UTF-8");
+		writer.print(content);
+		writer.close();
+		return file;
+	}
+
+	/**
+	 * Returns the sorted neighbour ids of the node with the given id.
+	 */
+	private static int[] neighbourIds(CSRGraph graph, int id, RelType type, MyDirection dir){
+		IntSlice slice = graph.neighbours(graph.getDictionary().toInternal(id), type.getIdx(), dir);
+		int[] result = new int[slice.size()];
+		for (int idx = 0; idx < result.length; idx++){
+			result[idx] = graph.getDictionary().toExternal(slice.get(idx));
+		}
+		//The ordinals of the two graphs are not necessarily in the same order
+		Arrays.sort(result);
+		return result;
+	}
+
+	@Test
+	public void testSameAsTxtToDS() throws IOException {
+		//Random edges, including duplicates and self loops, over sparse ids
+		Random rand = new Random(11);
+		StringBuilder content = new StringBuilder();
+		for (int idx = 0; idx < 5000; idx++){
+			content.append(rand.nextInt(400) * 7).append(idx % 3 == 0 ? "\t" : " ").append(rand.nextInt(400) * 7).append("\n");
+		}
+		File file = write(content.toString());
+
+		DataSet dataSet = TxtToDS.readDataSet(file.getPath(), new Random(3));
+		CSRGraph expected = CSRGraph.fromDataSet(dataSet);
+		CSRGraph graph = EdgeListLoader.readCSRGraph(file.getPath(), new Random(3), 3);
+
+		assertNotNull(graph);
+		assertEquals(expected.getNumNodes(), graph.getNumNodes());
+		for (MyNode node : expected.getNodes()){
+			for (RelType type : RelType.values()){
+				for (MyDirection dir : new MyDirection[]{MyDirection.OUTGOING, MyDirection.INCOMING}){
+					assertArrayEquals(neighbourIds(expected, node.getId(), type, dir), neighbourIds(graph, node.getId(), type, dir));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testCommentsAndBlankLines() throws IOException {
+		File file = write("# Directed graph\n% comment\n1 2\n\n2 3\r\n3 1");
+		CSRGraph graph = EdgeListLoader.readCSRGraph(file.getPath(), new Random(1), 2);
+
+		assertNotNull(graph);
+		assertEquals(3, graph.getNumNodes());
+		assertEquals(3, graph.getNumEdges());
+	}
+
+	@Test
+	public void testIdOutOfRange() throws IOException {
+		File file = write("1 2\n2 2147483648\n");
+		assertNull(EdgeListLoader.readCSRGraph(file.getPath(), new Random(1), 1));
+
+		file = write("1 2\n2 99999999999999999999999\n");
+		assertNull(EdgeListLoader.readCSRGraph(file.getPath(), new Random(1), 1));
+	}
+
+	@Test
+	public void testIllegalLine() throws IOException {
+		assertNull(EdgeListLoader.readCSRGraph(write("1 2\n1 2 3\n").getPath(), new Random(1), 1));
+		assertNull(EdgeListLoader.readCSRGraph(write("1 -2\n").getPath(), new Random(1), 1));
+	}
+}
@@ -0,0 +1,241 @@
+package ca.ucalgary.ispia.graphpatterns.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import ca.ucalgary.ispia.graphpatterns.graph.GPHolder;
+import ca.ucalgary.ispia.graphpatterns.graph.GraphPattern;
+import ca.ucalgary.ispia.graphpatterns.graph.MyNode;
+import ca.ucalgary.ispia.graphpatterns.graph.MyRelationship;
+import ca.ucalgary.ispia.graphpatterns.graph.RelType;
+
+/**
+ * Tests the GPHolderIO suite format: the write/read round trip, the conversion of serialized lists and the
+ * handling of damaged files.
+ * @author szrrizvi
+ *
+ */
+public class GPHolderIOTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * A GPHolder with attributes on nodes and relationships, an unlabelled node, and an actor that is not part of the
+	 * graph pattern.
+	 */
+	private static GPHolder sample(int seed){
+		GraphPattern gp = new GraphPattern();
+		MyNode[] nodes = new MyNode[3];
+		for (int idx = 0; idx < nodes.length; idx++){
+			nodes[idx] = new MyNode(seed + idx, (idx == 2) ? null : "PERSON");
+			gp.addNode(nodes[idx]);
+		}
+		nodes[0].addAttribute("name", "n" + seed);
+		nodes[1].addAttribute("age", String.valueOf(seed));
+		nodes[1].addAttribute("city", "Calgary");
+
+		gp.addRelationship(new MyRelationship(nodes[0], nodes[1], RelType.RelA, 0));
+		MyRelationship rel = new MyRelationship(nodes[2], nodes[1], RelType.RelG, 1);
+		rel.addAttribute("since", "2001");
+		gp.addRelationship(rel);
+
+		List<Pair<MyNode, MyNode>> mexList = new ArrayList<Pair<MyNode, MyNode>>();
+		mexList.add(new Pair<MyNode, MyNode>(nodes[0], nodes[2]));
+
+		Map<String, MyNode> actMap = new HashMap<String, MyNode>();
+		actMap.put("requestor", nodes[0]);
+		actMap.put("owner", new MyNode(seed + 100, "PERSON"));
+
+		GPHolder gph = new GPHolder(gp, mexList, actMap);
+		gph.setResultSchema(Arrays.asList(nodes[1], nodes[2]));
+		return gph;
+	}
+
+	private static void assertNodeEquals(MyNode expected, MyNode actual){
+		assertEquals(expected.getId(), actual.getId());
+		assertEquals(expected.getLabel(), actual.getLabel());
+		assertEquals(expected.getAttributes(), actual.getAttributes());
+	}
+
+	private static void assertHolderEquals(GPHolder expected, GPHolder actual){
+		List<MyNode> expNodes = expected.getGp().getNodes();
+		List<MyNode> actNodes = actual.getGp().getNodes();
+		assertEquals(expNodes.size(), actNodes.size());
+		for (int idx = 0; idx < expNodes.size(); idx++){
+			assertNodeEquals(expNodes.get(idx), actNodes.get(idx));
+		}
+
+		List<MyRelationship> expRels = expected.getGp().getAllRelationships();
+		List<MyRelationship> actRels = actual.getGp().getAllRelationships();
+		assertEquals(expRels.size(), actRels.size());
+		for (int idx = 0; idx < expRels.size(); idx++){
+			MyRelationship exp = expRels.get(idx);
+			MyRelationship act = actRels.get(idx);
+			assertEquals(exp.getId(), act.getId());
+			assertEquals(exp.getIdentifier(), act.getIdentifier());
+			assertEquals(exp.getAttributes(), act.getAttributes());
+			assertNodeEquals(exp.getSource(), act.getSource());
+			assertNodeEquals(exp.getTarget(), act.getTarget());
+		}
+
+		assertEquals(expected.getMexList(), actual.getMexList());
+
+		if (expected.getActMap() == null){
+			assertNull(actual.getActMap());
+		} else {
+			assertEquals(expected.getActMap().keySet(), actual.getActMap().keySet());
+			for (String key : expected.getActMap().keySet()){
+				assertNodeEquals(expected.getActMap().get(key), actual.getActMap().get(key));
+			}
+		}
+
+		assertEquals(expected.getResultSchema(), actual.getResultSchema());
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		GPHolder empty = new GPHolder(new GraphPattern(), new ArrayList<Pair<MyNode, MyNode>>(), null);
+		empty.setResultSchema(null);
+		List<GPHolder> tests = Arrays.asList(sample(0), empty, sample(10));
+
+		String fileName = folder.newFile().getPath();
+		GPHolderIO.SuiteWriter writer = new GPHolderIO.SuiteWriter(fileName);
+		for (GPHolder gph : tests){
+			writer.write(gph);
+		}
+		assertEquals(3, writer.getCount());
+		writer.close();
+
+		GPHolderIO.SuiteReader reader = new GPHolderIO.SuiteReader(fileName);
+		try {
+			for (GPHolder gph : tests){
+				GPHolder result = reader.read();
+				assertNotNull(result);
+				assertHolderEquals(gph, result);
+			}
+			assertNull(reader.read());
+			//The end of the suite is sticky
+			assertNull(reader.read());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void testSharedNodes() throws IOException {
+		String fileName = folder.newFile().getPath();
+		assertTrue(GPHolderIO.writeAll(Arrays.asList(sample(0)), fileName));
+		GPHolder gph = GPHolderIO.readAll(fileName).get(0);
+
+		//The references between the parts of the GPHolder are preserved
+		List<MyNode> nodes = gph.getGp().getNodes();
+		for (MyRelationship rel : gph.getGp().getAllRelationships()){
+			assertSame(nodes.get(rel.getIdentifier() == RelType.RelA ? 0 : 2), rel.getSource());
+			assertSame(nodes.get(1), rel.getTarget());
+		}
+		assertSame(nodes.get(0), gph.getMexList().get(0).first);
+		assertSame(nodes.get(2), gph.getMexList().get(0).second);
+		assertSame(nodes.get(0), gph.getActMap().get("requestor"));
+		assertSame(nodes.get(1), gph.getResultSchema().get(0));
+
+		//The actor that is not part of the graph pattern is not added to it
+		assertEquals(3, nodes.size());
+		assertEquals(100, gph.getActMap().get("owner").getId());
+	}
+
+	@Test
+	public void testConvert() throws IOException {
+		List<GPHolder> tests = new ArrayList<GPHolder>();
+		for (int idx = 0; idx < 5; idx++){
+			tests.add(sample(idx * 10));
+		}
+
+		File serFile = folder.newFile();
+		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(serFile));
+		oos.writeObject(tests);
+		oos.close();
+
+		String fileName = folder.newFile().getPath();
+		assertEquals(5, GPHolderIO.convert(serFile.getPath(), fileName));
+
+		List<GPHolder> result = GPHolderIO.readAll(fileName);
+		assertEquals(5, result.size());
+		for (int idx = 0; idx < tests.size(); idx++){
+			assertHolderEquals(tests.get(idx), result.get(idx));
+		}
+
+		assertEquals(-1, GPHolderIO.convert(new File(folder.getRoot(), "missing.ser").getPath(), fileName));
+	}
+
+	@Test
+	public void testTruncated() throws IOException {
+		File file = folder.newFile();
+		assertTrue(GPHolderIO.writeAll(Arrays.asList(sample(0), sample(10)), file.getPath()));
+
+		//Drop the end marker
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 1);
+		raf.close();
+
+		GPHolderIO.SuiteReader reader = new GPHolderIO.SuiteReader(file.getPath());
+		try {
+			assertNotNull(reader.read());
+			assertNotNull(reader.read());
+			reader.read();
+			fail("Expected the missing end marker to be reported");
+		} catch (IOException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("Truncated suite"));
+		} finally {
+			reader.close();
+		}
+		assertNull(GPHolderIO.readAll(file.getPath()));
+	}
+
+	@Test
+	public void testHeader() throws IOException {
+		File file = folder.newFile();
+		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(file));
+		oos.writeObject(new ArrayList<GPHolder>());
+		oos.close();
+
+		try {
+			new GPHolderIO.SuiteReader(file.getPath()).close();
+			fail("Expected a serialized list to be rejected");
+		} catch (IOException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("Not a GPHolder suite"));
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(0);
+		raf.writeInt(GPHolderIO.MAGIC);
+		raf.writeInt(GPHolderIO.VERSION + 1);
+		raf.close();
+
+		try {
+			new GPHolderIO.SuiteReader(file.getPath()).close();
+			fail("Expected the unknown version to be rejected");
+		} catch (IOException e){
+			assertTrue(e.getMessage(), e.getMessage().contains("Unsupported suite version"));
+		}
+	}
+}